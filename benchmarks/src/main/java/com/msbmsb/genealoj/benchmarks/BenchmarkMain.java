@@ -0,0 +1,40 @@
+/******************************************************************************
+* BenchmarkMain
+* Entry point of the benchmark jar: runs JMH with its usual command line,
+* adding the allocation profiler.
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Takes the same arguments as org.openjdk.jmh.Main. Unless profilers are
+ * given with -prof, every benchmark runs with the gc profiler, which adds
+ * the bytes allocated per operation (gc.alloc.rate.norm) to the results.
+ */
+public class BenchmarkMain {
+  private BenchmarkMain() { }
+
+  public static void main(String[] args) throws Exception {
+    CommandLineOptions cmd = new CommandLineOptions(args);
+    if(cmd.shouldHelp() || cmd.shouldList() || cmd.shouldListWithParams()
+       || cmd.shouldListProfilers() || cmd.shouldListResultFormats()) {
+      // nothing to run, let JMH print what was asked for
+      org.openjdk.jmh.Main.main(args);
+      return;
+    }
+    ChainedOptionsBuilder options = new OptionsBuilder().parent(cmd);
+    if(cmd.getProfilers().isEmpty()) {
+      options.addProfiler(GCProfiler.class);
+    }
+    new Runner(options.build()).run();
+  }
+}
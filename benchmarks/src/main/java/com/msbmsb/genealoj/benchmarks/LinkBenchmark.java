@@ -0,0 +1,73 @@
+/******************************************************************************
+* LinkBenchmark
+* Time for GenealoJ.linkIndividuals to link the individuals of a parsed
+* synthetic tree through their families.
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj.benchmarks;
+
+import com.msbmsb.genealoj.GedcomNode;
+import com.msbmsb.genealoj.GedcomReader;
+import com.msbmsb.genealoj.GenealoJ;
+import com.msbmsb.genealoj.TreeBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Linking adds to the lists of each IndividualNode, so it cannot be
+ * repeated on the same tree: every invocation links a freshly parsed,
+ * unlinked tree and is timed on its own.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgs = { "-Xmx2g" })
+@State(Scope.Benchmark)
+public class LinkBenchmark {
+  @Param({ "2000", "100000" })
+  public int individuals;
+
+  private File m_file;
+  private GenealoJ m_gedcom;
+  private GedcomNode m_root;
+
+  @Setup
+  public void setup() throws IOException {
+    m_file = SyntheticGedcom.temporary(individuals);
+    // any loaded instance will do to call linkIndividuals on
+    m_gedcom = new GenealoJ(SyntheticGedcom.temporary(2));
+  }
+
+  @Setup(Level.Iteration)
+  public void parse() throws IOException {
+    m_root = new GedcomNode(-1, "ROOT");
+    GedcomReader reader = new GedcomReader(m_file);
+    reader.parse(new TreeBuilder(m_root));
+    reader.close();
+  }
+
+  @Benchmark
+  public GedcomNode link() {
+    m_gedcom.linkIndividuals(m_root);
+    return m_root;
+  }
+}
@@ -0,0 +1,70 @@
+/******************************************************************************
+* LoadBenchmark
+* Time to load a synthetic GEDCOM file with GenealoJ, from the bytes on
+* disk to a linked tree, for each way of reading the file.
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj.benchmarks;
+
+import com.msbmsb.genealoj.GenealoJ;
+import com.msbmsb.genealoj.ParseOptions;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Milliseconds per load of a small and a large file. The file is written
+ * once per fork, so every mode reads the same bytes from the page cache.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = { "-Xmx2g" })
+@State(Scope.Benchmark)
+public class LoadBenchmark {
+  @Param({ "2000", "100000" })
+  public int individuals;
+
+  /**
+   * default: GedcomReader, mapped: MappedGedcomReader,
+   * parallel: ParallelGedcomReader on every available processor
+   */
+  @Param({ "default", "mapped", "parallel" })
+  public String mode;
+
+  private File m_file;
+  private ParseOptions m_options;
+
+  @Setup
+  public void setup() throws IOException {
+    m_file = SyntheticGedcom.temporary(individuals);
+    m_options = new ParseOptions();
+    if("mapped".equals(mode)) {
+      m_options.memoryMapped(true);
+    } else if("parallel".equals(mode)) {
+      m_options.parallelism(Runtime.getRuntime().availableProcessors());
+    }
+  }
+
+  @Benchmark
+  public GenealoJ load() {
+    return new GenealoJ(m_file, m_options);
+  }
+}
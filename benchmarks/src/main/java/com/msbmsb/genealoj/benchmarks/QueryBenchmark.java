@@ -0,0 +1,89 @@
+/******************************************************************************
+* QueryBenchmark
+* Time of the Utils queries and of TagQuery on a loaded synthetic tree.
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj.benchmarks;
+
+import com.msbmsb.genealoj.GedcomNode;
+import com.msbmsb.genealoj.GenealoJ;
+import com.msbmsb.genealoj.IndividualNode;
+import com.msbmsb.genealoj.TagQuery;
+import com.msbmsb.genealoj.Utils;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Microseconds per query over the whole tree. None of the queries change
+ * the tree, so one load serves every invocation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = { "-Xmx2g" })
+@State(Scope.Benchmark)
+public class QueryBenchmark {
+  @Param({ "20000" })
+  public int individuals;
+
+  private static final TagQuery BIRTH_PLACES = new TagQuery("INDI/BIRT/PLAC");
+
+  private GedcomNode m_root;
+  private List<IndividualNode> m_individuals;
+
+  @Setup
+  public void setup() throws IOException {
+    GenealoJ gedcom = new GenealoJ(SyntheticGedcom.temporary(individuals));
+    m_root = gedcom.getRoot();
+    m_individuals = Utils.getIndividuals(m_root);
+  }
+
+  @Benchmark
+  public List<IndividualNode> individuals() {
+    return Utils.getIndividuals(m_root);
+  }
+
+  @Benchmark
+  public List<IndividualNode> rootIndividuals() {
+    return Utils.getRootIndividuals(m_root);
+  }
+
+  @Benchmark
+  public List<GedcomNode> locations() {
+    return Utils.getLocations(m_root);
+  }
+
+  @Benchmark
+  public List<GedcomNode> birthPlaces() {
+    return BIRTH_PLACES.findAll(m_root);
+  }
+
+  /**
+   * The surname root of every individual, walking up the fathers
+   */
+  @Benchmark
+  public void surnameRoots(Blackhole bh) {
+    for(IndividualNode indi : m_individuals) {
+      bh.consume(Utils.getSurnameRoot(indi));
+    }
+  }
+}
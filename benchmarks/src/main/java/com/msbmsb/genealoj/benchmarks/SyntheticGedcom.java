@@ -0,0 +1,40 @@
+/******************************************************************************
+* SyntheticGedcom
+* Synthetic GEDCOM files for the benchmarks, so that results can be
+* reproduced without real family trees.
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj.benchmarks;
+
+import com.msbmsb.genealoj.GedcomGenerator;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Files come from GedcomGenerator with its default shape and a fixed
+ * seed, so the same size always gives the same bytes.
+ */
+public class SyntheticGedcom {
+  /**
+   * Seed used by the benchmarks
+   */
+  public static final long DEFAULT_SEED = 42;
+
+  private SyntheticGedcom() { }
+
+  /**
+   * Write a synthetic file to a temporary file, deleted on exit
+   * @param individuals number of individuals
+   * @return the File written
+   */
+  public static File temporary(int individuals) throws IOException {
+    File file = File.createTempFile("genealoj-" + individuals + "-", ".ged");
+    file.deleteOnExit();
+    new GedcomGenerator().seed(DEFAULT_SEED).individuals(individuals).write(file);
+    return file;
+  }
+}
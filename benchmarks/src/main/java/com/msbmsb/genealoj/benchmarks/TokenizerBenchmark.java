@@ -0,0 +1,120 @@
+/******************************************************************************
+* TokenizerBenchmark
+* Compares GedcomTokenizer against the String.split line parsing that
+* GenealoJ.buildGedcomNode used before it, and times the public
+* buildGedcomNode and restFromTok entry points.
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj.benchmarks;
+
+import com.msbmsb.genealoj.GedcomNode;
+import com.msbmsb.genealoj.GedcomReader;
+import com.msbmsb.genealoj.GedcomTokenizer;
+import com.msbmsb.genealoj.IndividualNode;
+import com.msbmsb.genealoj.Utils;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Time per line to turn a GEDCOM line into a GedcomNode.
+ * Run with -prof gc to compare allocation per line.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TokenizerBenchmark {
+  /**
+   * A representative mix of record, event, place and continuation lines
+   */
+  private static final String[] LINES = {
+    "0 @I1042@ INDI",
+    "1 NAME Johann Friedrich /Schmidt/",
+    "1 SEX M",
+    "1 BIRT",
+    "2 DATE ABT 12 MAR 1843",
+    "2 PLAC Gross Flottbek, Hamburg, Germany",
+    "1 FAMS @F388@",
+    "1 FAMC @F120@",
+    "0 @F388@ FAM",
+    "1 HUSB @I1042@",
+    "1 WIFE @I1043@",
+    "1 CHIL @I1077@",
+    "0 @N17@ NOTE Emigrated through Bremerhaven",
+    "1 CONC en route to New York on the SS Donau, arriving in the spring",
+    "1 CONT of 1868 with two brothers.",
+    "0 TRLR",
+  };
+
+  private GedcomTokenizer m_tokenizer = new GedcomTokenizer();
+
+  @Benchmark
+  @OperationsPerInvocation(16)
+  public void split(Blackhole bh) {
+    for(String line : LINES) {
+      bh.consume(splitNode(line));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(16)
+  public void tokenizer(Blackhole bh) {
+    for(String line : LINES) {
+      m_tokenizer.tokenize(line);
+      bh.consume(m_tokenizer.buildNode());
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(16)
+  public void buildGedcomNode(Blackhole bh) {
+    for(String line : LINES) {
+      bh.consume(GedcomReader.buildGedcomNode(line));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(16)
+  public void restFromTok(Blackhole bh) {
+    for(String line : LINES) {
+      bh.consume(GedcomReader.restFromTok(line, 1));
+    }
+  }
+
+  /**
+   * The String.split path as it was in GenealoJ.buildGedcomNode
+   */
+  private static GedcomNode splitNode(String line) {
+    line = line.trim();
+    String[] toks = line.split(" ");
+    int level = Integer.parseInt(toks[0]);
+    if(toks.length == 2) {
+      return new GedcomNode(level, toks[1]);
+    } else if(Utils.isReference(toks[1])) {
+      if(Utils.isIndividual(toks[2])) {
+        return new IndividualNode(level, toks[2],
+            GedcomReader.restFromTok(line, 2), toks[1]);
+      }
+      return new GedcomNode(level, toks[2],
+          GedcomReader.restFromTok(line, 2), toks[1]);
+    }
+    return new GedcomNode(level, toks[1], GedcomReader.restFromTok(line, 1));
+  }
+}
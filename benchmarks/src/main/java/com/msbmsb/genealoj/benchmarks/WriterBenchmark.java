@@ -0,0 +1,125 @@
+/******************************************************************************
+* WriterBenchmark
+* Compares exporting a tree with the streaming GedcomWriter against
+* building the whole file as one String with toString.
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj.benchmarks;
+
+import com.msbmsb.genealoj.GedcomNode;
+import com.msbmsb.genealoj.GedcomWriter;
+import com.msbmsb.genealoj.IndividualNode;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Exports of a generated tree per second. The "bytes" counter gives the
+ * export throughput in bytes per second; divide by 1e6 for MB/s.
+ * Run with -prof gc to compare allocation per export.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = { "-Xmx2g" })
+@State(Scope.Benchmark)
+public class WriterBenchmark {
+  @Param({ "20000" })
+  public int individuals;
+
+  private GedcomNode m_root;
+  private Charset m_charset = Charset.forName("UTF-8");
+
+  /**
+   * Bytes exported, reported as a rate
+   */
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  @State(Scope.Thread)
+  public static class Bytes {
+    public long bytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      bytes = 0;
+    }
+  }
+
+  /**
+   * Channel that only counts what is written to it
+   */
+  private static class NullChannel implements WritableByteChannel {
+    public int write(ByteBuffer src) {
+      int n = src.remaining();
+      src.position(src.limit());
+      return n;
+    }
+
+    public boolean isOpen() {
+      return true;
+    }
+
+    public void close() {
+      return;
+    }
+  }
+
+  @Setup
+  public void setup() {
+    m_root = new GedcomNode(-1, "ROOT");
+    for(int i = 0; i < individuals; i++) {
+      IndividualNode indi = new IndividualNode(0, "INDI", null, "@I" + i + "@");
+      indi.addChildNode(new GedcomNode(1, "NAME", "Given" + i + " /Surname" + (i % 500) + "/"));
+      indi.addChildNode(new GedcomNode(1, "SEX", (i % 2 == 0) ? "M" : "F"));
+      GedcomNode birt = new GedcomNode(1, "BIRT");
+      birt.addChildNode(new GedcomNode(2, "DATE", (1 + i % 28) + " MAR " + (1800 + i % 200)));
+      birt.addChildNode(new GedcomNode(2, "PLAC", "Town" + (i % 300) + ", County, Country"));
+      indi.addChildNode(birt);
+      if(i % 10 == 0) {
+        indi.addChildNode(new GedcomNode(1, "NOTE",
+            "A note long enough to be continued on CONC lines when exported. "
+            + "It mentions the emigration of the family through Bremerhaven "
+            + "to New York on the SS Donau, arriving in the spring of 1868 "
+            + "with two brothers and a sister.\nA second paragraph follows."));
+      }
+      indi.addChildNode(new GedcomNode(1, "FAMS", "@F" + (i / 2) + "@"));
+      m_root.addChildNode(indi);
+    }
+  }
+
+  @Benchmark
+  public long writer(Bytes counter) throws IOException {
+    GedcomWriter writer = new GedcomWriter(new NullChannel(), m_charset);
+    writer.write(m_root);
+    writer.flush();
+    counter.bytes += writer.bytesWritten();
+    return writer.bytesWritten();
+  }
+
+  @Benchmark
+  public String toStringExport(Bytes counter) {
+    String text = m_root.toString();
+    counter.bytes += text.length();
+    return text;
+  }
+}
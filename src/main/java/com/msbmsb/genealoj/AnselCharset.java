@@ -0,0 +1,283 @@
+/******************************************************************************
+* AnselCharset
+* Table-driven Charset for ANSEL (ANSI Z39.47), the default character set
+* of GEDCOM 5.5, including the GEDCOM extensions.
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.text.Normalizer;
+
+/**
+ * Bytes below 0x80 are ASCII and are copied without a table lookup.
+ * Bytes 0xA1 to 0xCF are spacing characters such as L with stroke and
+ * the copyright sign; bytes 0xE0 to 0xFE are combining diacritics, which
+ * ANSEL puts before the letter they modify and Unicode after it. The decoder moves them behind
+ * their letter; the encoder moves them back in front, decomposing
+ * precomposed letters such as e-acute first.
+ * Not registered with Charset.forName; use INSTANCE.
+ */
+public class AnselCharset extends Charset {
+  /**
+   * The shared instance
+   */
+  public static final AnselCharset INSTANCE = new AnselCharset();
+
+  /**
+   * Unicode character of each byte from 0x80; 0 where the byte is unmapped
+   */
+  private static final char[] DECODE = new char[128];
+
+  /**
+   * First combining diacritic byte
+   */
+  private static final int COMBINING = 0xE0;
+
+  static {
+    int[] table = {
+      0x88, 0x0098, 0x89, 0x009C, 0x8D, 0x200D, 0x8E, 0x200C,
+      0xA1, 0x0141, 0xA2, 0x00D8, 0xA3, 0x0110, 0xA4, 0x00DE,
+      0xA5, 0x00C6, 0xA6, 0x0152, 0xA7, 0x02B9, 0xA8, 0x00B7,
+      0xA9, 0x266D, 0xAA, 0x00AE, 0xAB, 0x00B1, 0xAC, 0x01A0,
+      0xAD, 0x01AF, 0xAE, 0x02BC, 0xB0, 0x02BB, 0xB1, 0x0142,
+      0xB2, 0x00F8, 0xB3, 0x0111, 0xB4, 0x00FE, 0xB5, 0x00E6,
+      0xB6, 0x0153, 0xB7, 0x02BA, 0xB8, 0x0131, 0xB9, 0x00A3,
+      0xBA, 0x00F0, 0xBC, 0x01A1, 0xBD, 0x01B0, 0xBE, 0x25A1,
+      0xBF, 0x25A0, 0xC0, 0x00B0, 0xC1, 0x2113, 0xC2, 0x2117,
+      0xC3, 0x00A9, 0xC4, 0x266F, 0xC5, 0x00BF, 0xC6, 0x00A1,
+      0xC7, 0x00DF, 0xC8, 0x20AC, 0xCF, 0x00DF,
+      // combining diacritics
+      0xE0, 0x0309, 0xE1, 0x0300, 0xE2, 0x0301, 0xE3, 0x0302,
+      0xE4, 0x0303, 0xE5, 0x0304, 0xE6, 0x0306, 0xE7, 0x0307,
+      0xE8, 0x0308, 0xE9, 0x030C, 0xEA, 0x030A, 0xEB, 0xFE20,
+      0xEC, 0xFE21, 0xED, 0x0315, 0xEE, 0x030B, 0xEF, 0x0310,
+      0xF0, 0x0327, 0xF1, 0x0328, 0xF2, 0x0323, 0xF3, 0x0324,
+      0xF4, 0x0325, 0xF5, 0x0333, 0xF6, 0x0332, 0xF7, 0x0326,
+      0xF8, 0x031C, 0xF9, 0x032E, 0xFA, 0xFE22, 0xFB, 0xFE23,
+      0xFE, 0x0313,
+    };
+    for(int i = 0; i < table.length; i += 2) {
+      DECODE[table[i] - 0x80] = (char) table[i + 1];
+    }
+  }
+
+  private AnselCharset() {
+    super("ANSEL", new String[] { "x-ansel", "Z39.47" });
+  }
+
+  public boolean contains(Charset cs) {
+    return cs instanceof AnselCharset || cs.name().equals("US-ASCII");
+  }
+
+  public CharsetDecoder newDecoder() {
+    return new Decoder(this);
+  }
+
+  public CharsetEncoder newEncoder() {
+    return new Encoder(this);
+  }
+
+  /**
+   * @return the Unicode character of an ANSEL byte from 0x80; 0 if unmapped
+   */
+  private static char toChar(int b) {
+    return DECODE[b - 0x80];
+  }
+
+  private static boolean isCombining(int b) {
+    return b >= COMBINING && DECODE[b - 0x80] != 0;
+  }
+
+  /**
+   * @return the ANSEL byte of a character from 0x80; -1 if unmapped
+   */
+  private static int toByte(char c) {
+    // the table is small, and mostly only hit by non-Latin text
+    for(int i = 0; i < DECODE.length; i++) {
+      if(DECODE[i] == c) {
+        return i + 0x80;
+      }
+    }
+    return -1;
+  }
+
+  private static class Decoder extends CharsetDecoder {
+    Decoder(Charset cs) {
+      super(cs, 1.0f, 1.0f);
+    }
+
+    protected CoderResult decodeLoop(ByteBuffer in, CharBuffer out) {
+      while(in.hasRemaining()) {
+        int start = in.position();
+        int b = in.get(start) & 0xff;
+        if(b < 0x80) {
+          // ASCII: copy the whole run
+          int n = Math.min(in.remaining(), out.remaining());
+          int i = 0;
+          while(i < n && (b = in.get(start + i)) >= 0) {
+            out.put((char) b);
+            i++;
+          }
+          in.position(start + i);
+          if(i == n && in.hasRemaining() && !out.hasRemaining()) {
+            return CoderResult.OVERFLOW;
+          }
+          continue;
+        }
+        if(!isCombining(b)) {
+          char c = toChar(b);
+          if(c == 0) {
+            return CoderResult.malformedForLength(1);
+          }
+          if(!out.hasRemaining()) {
+            return CoderResult.OVERFLOW;
+          }
+          out.put(c);
+          in.position(start + 1);
+          continue;
+        }
+
+        // diacritics come before their letter in ANSEL, after it in Unicode
+        int end = start;
+        while(end < in.limit() && isCombining(in.get(end) & 0xff)) {
+          end++;
+        }
+        if(end == in.limit()) {
+          // wait for the letter
+          return CoderResult.UNDERFLOW;
+        }
+        int base = in.get(end) & 0xff;
+        char c = (base < 0x80) ? (char) base : toChar(base);
+        int marks = end - start;
+        if(c < ' ') {
+          // no letter to attach to, e.g. at the end of a line: pass the
+          // marks on as they are
+          if(out.remaining() < marks) {
+            return CoderResult.OVERFLOW;
+          }
+          for(int i = start; i < end; i++) {
+            out.put(toChar(in.get(i) & 0xff));
+          }
+          in.position(end);
+          continue;
+        }
+        if(out.remaining() < marks + 1) {
+          return CoderResult.OVERFLOW;
+        }
+        out.put(c);
+        for(int i = start; i < end; i++) {
+          out.put(toChar(in.get(i) & 0xff));
+        }
+        in.position(end + 1);
+      }
+      return CoderResult.UNDERFLOW;
+    }
+  }
+
+  private static class Encoder extends CharsetEncoder {
+    /**
+     * Position in the output of the last letter written in this call, so
+     * that diacritics following it can be moved in front; -1 if none
+     */
+    private int m_letter = -1;
+
+    Encoder(Charset cs) {
+      super(cs, 1.0f, 4.0f, new byte[] { '?' });
+    }
+
+    protected CoderResult encodeLoop(CharBuffer in, ByteBuffer out) {
+      m_letter = -1;
+      while(in.hasRemaining()) {
+        int start = in.position();
+        char c = in.get(start);
+        if(c < 0x80) {
+          if(!out.hasRemaining()) {
+            return CoderResult.OVERFLOW;
+          }
+          m_letter = out.position();
+          out.put((byte) c);
+          in.position(start + 1);
+          continue;
+        }
+        int b = toByte(c);
+        if(b >= COMBINING) {
+          if(!out.hasRemaining()) {
+            return CoderResult.OVERFLOW;
+          }
+          if(m_letter >= 0) {
+            // the letter is the last byte written: move it behind the mark
+            byte letter = out.get(m_letter);
+            out.put(m_letter, (byte) b);
+            out.put(letter);
+            m_letter++;
+          } else {
+            out.put((byte) b);
+          }
+          in.position(start + 1);
+          continue;
+        }
+        if(b >= 0) {
+          if(!out.hasRemaining()) {
+            return CoderResult.OVERFLOW;
+          }
+          m_letter = out.position();
+          out.put((byte) b);
+          in.position(start + 1);
+          continue;
+        }
+        if(Character.isSurrogate(c)) {
+          return surrogate(in, start);
+        }
+
+        // a precomposed letter: write its diacritics, then the letter
+        String parts = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD);
+        int letter = parts.charAt(0);
+        if(parts.length() == 1 || (letter >= 0x80 && toByte(parts.charAt(0)) < 0)) {
+          return CoderResult.unmappableForLength(1);
+        }
+        byte[] bytes = new byte[parts.length()];
+        for(int i = 1; i < parts.length(); i++) {
+          int mark = toByte(parts.charAt(i));
+          if(mark < COMBINING) {
+            return CoderResult.unmappableForLength(1);
+          }
+          bytes[i - 1] = (byte) mark;
+        }
+        bytes[bytes.length - 1] = (byte) ((letter < 0x80) ? letter : toByte(parts.charAt(0)));
+        if(out.remaining() < bytes.length) {
+          return CoderResult.OVERFLOW;
+        }
+        out.put(bytes);
+        m_letter = out.position() - 1;
+        in.position(start + 1);
+      }
+      return CoderResult.UNDERFLOW;
+    }
+
+    /**
+     * A surrogate pair is one unmappable character; a lone surrogate is
+     * malformed
+     */
+    private CoderResult surrogate(CharBuffer in, int start) {
+      char c = in.get(start);
+      if(Character.isHighSurrogate(c)) {
+        if(start + 1 == in.limit()) {
+          return CoderResult.UNDERFLOW;
+        }
+        if(Character.isLowSurrogate(in.get(start + 1))) {
+          return CoderResult.unmappableForLength(2);
+        }
+      }
+      return CoderResult.malformedForLength(1);
+    }
+  }
+}
@@ -0,0 +1,270 @@
+/******************************************************************************
+* EventIndex
+* Time index over the dated BIRT, DEAT and MARR events of a parse, for
+* date range queries.
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj;
+
+import com.msbmsb.genealoj.GedcomDate;
+import com.msbmsb.genealoj.GedcomNode;
+import com.msbmsb.genealoj.Utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Each DATE is parsed once, into a GedcomDate range, when the index is
+ * built. Per event tag the events are sorted by the start of their range,
+ * and a segment tree holds the largest range end of each span. A query
+ * for [from, to] binary searches the events starting no later than to,
+ * then descends the tree only into spans ending no earlier than from. It
+ * costs O(log n) plus the number of matches.
+ * Events whose DATE does not parse are left out. The index is a snapshot
+ * of the tree at build time and is safe to query concurrently.
+ */
+public class EventIndex {
+  /**
+   * Event tags indexed by default
+   */
+  public static final String[] DEFAULT_EVENTS = { "BIRT", "DEAT", "MARR" };
+
+  private static final String DATE_TAG = "DATE";
+
+  private Map<String, Timeline> m_timelines = new HashMap<String, Timeline>();
+
+  /**
+   * Index the default events of the level=0 records of root
+   * @param root the GedcomNode root holding the level=0 records
+   */
+  public EventIndex(GedcomNode root) {
+    this(root, DEFAULT_EVENTS);
+  }
+
+  /**
+   * Index the given events of the level=0 records of root
+   * @param root the GedcomNode root holding the level=0 records
+   * @param events the event tags to index
+   */
+  public EventIndex(GedcomNode root, String[] events) {
+    Map<String, List<Entry>> entries = new HashMap<String, List<Entry>>();
+    for(String tag : events) {
+      entries.put(tag, new ArrayList<Entry>());
+    }
+    for(int g = 0; g < root.childGroupCount(); g++) {
+      for(GedcomNode record : root.childGroup(g)) {
+        for(int e = 0; e < record.childGroupCount(); e++) {
+          List<GedcomNode> group = record.childGroup(e);
+          List<Entry> list = group.isEmpty() ? null : entries.get(group.get(0).tag());
+          if(list == null) {
+            continue;
+          }
+          for(GedcomNode event : group) {
+            List<GedcomNode> dates = event.getChildrenWithTag(DATE_TAG);
+            GedcomDate date = (dates == null) ? null : GedcomDate.parse(dates.get(0).data());
+            if(date != null) {
+              list.add(new Entry(record, event, date));
+            }
+          }
+        }
+      }
+    }
+    for(Map.Entry<String, List<Entry>> e : entries.entrySet()) {
+      m_timelines.put(e.getKey(), new Timeline(e.getValue()));
+    }
+  }
+
+  /**
+   * @param tag an event tag
+   * @return number of dated events with this tag
+   */
+  public int size(String tag) {
+    Timeline t = m_timelines.get(tag);
+    return (t == null) ? 0 : t.m_min.length;
+  }
+
+  /**
+   * Find events whose date range overlaps [from, to]
+   * @param tag the event tag, e.g. BIRT
+   * @param from first day, yyyymmdd (see GedcomDate.pack)
+   * @param to last day, yyyymmdd
+   * @return the event nodes, ordered by start of their date
+   */
+  public List<GedcomNode> findEvents(String tag, int from, int to) {
+    List<GedcomNode> result = new ArrayList<GedcomNode>();
+    Timeline t = m_timelines.get(tag);
+    if(t != null) {
+      for(int i : t.find(from, to)) {
+        result.add(t.m_events[i]);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Find the records (individuals for BIRT and DEAT, families for MARR)
+   * with an event whose date overlaps the given years
+   * @param tag the event tag
+   * @param fromYear first year
+   * @param toYear last year
+   * @return the records, ordered by start of their event date
+   */
+  public List<GedcomNode> findRecords(String tag, int fromYear, int toYear) {
+    return findRecords(tag, fromYear, toYear, null);
+  }
+
+  /**
+   * Find the records with an event in the given years at a place
+   * @param tag the event tag
+   * @param fromYear first year
+   * @param toYear last year
+   * @param place the event PLAC, compared with Utils.normalizePlace;
+   *        null for any place
+   * @return the records, ordered by start of their event date
+   */
+  public List<GedcomNode> findRecords(String tag, int fromYear, int toYear,
+                                      String place) {
+    List<GedcomNode> result = new ArrayList<GedcomNode>();
+    Timeline t = m_timelines.get(tag);
+    if(t == null) {
+      return result;
+    }
+    String key = (place == null) ? null : Utils.normalizePlace(place);
+    for(int i : t.find(GedcomDate.pack(fromYear, 1, 1), GedcomDate.pack(toYear, 12, 31))) {
+      if(key == null || atPlace(t.m_events[i], key)) {
+        result.add(t.m_records[i]);
+      }
+    }
+    return result;
+  }
+
+  private static boolean atPlace(GedcomNode event, String key) {
+    List<GedcomNode> places = event.getChildrenWithTag(Utils.PLACE_TAG);
+    if(places != null) {
+      for(GedcomNode p : places) {
+        if(p.data() != null && Utils.normalizePlace(p.data()).equals(key)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * One dated event while building
+   */
+  private static class Entry implements Comparable<Entry> {
+    GedcomNode m_record;
+    GedcomNode m_event;
+    GedcomDate m_date;
+
+    Entry(GedcomNode record, GedcomNode event, GedcomDate date) {
+      m_record = record;
+      m_event = event;
+      m_date = date;
+    }
+
+    public int compareTo(Entry o) {
+      return (m_date.min() < o.m_date.min()) ? -1
+           : ((m_date.min() == o.m_date.min()) ? 0 : 1);
+    }
+  }
+
+  /**
+   * The events of one tag, sorted by start, with a max segment tree
+   */
+  private static class Timeline {
+    int[] m_min;
+    int[] m_max;
+    GedcomNode[] m_events;
+    GedcomNode[] m_records;
+    /**
+     * m_tree[1] is the root; the children of k are 2k and 2k+1 and the
+     * leaves start at m_leaves
+     */
+    int[] m_tree;
+    int m_leaves;
+
+    Timeline(List<Entry> entries) {
+      Collections.sort(entries);
+      int n = entries.size();
+      m_min = new int[n];
+      m_max = new int[n];
+      m_events = new GedcomNode[n];
+      m_records = new GedcomNode[n];
+      for(int i = 0; i < n; i++) {
+        Entry e = entries.get(i);
+        m_min[i] = e.m_date.min();
+        m_max[i] = e.m_date.max();
+        m_events[i] = e.m_event;
+        m_records[i] = e.m_record;
+      }
+      m_leaves = 1;
+      while(m_leaves < n) {
+        m_leaves <<= 1;
+      }
+      m_tree = new int[2 * m_leaves];
+      Arrays.fill(m_tree, -1);
+      System.arraycopy(m_max, 0, m_tree, m_leaves, n);
+      for(int k = m_leaves - 1; k > 0; k--) {
+        m_tree[k] = Math.max(m_tree[2 * k], m_tree[2 * k + 1]);
+      }
+    }
+
+    /**
+     * @return indices of the events overlapping [from, to], in order
+     */
+    int[] find(int from, int to) {
+      // events 0..count-1 start no later than to
+      int lo = 0;
+      int hi = m_min.length;
+      while(lo < hi) {
+        int mid = (lo + hi) >>> 1;
+        if(m_min[mid] <= to) {
+          lo = mid + 1;
+        } else {
+          hi = mid;
+        }
+      }
+      int count = lo;
+      int[] result = new int[16];
+      int n = 0;
+      if(count == 0) {
+        return new int[0];
+      }
+      // descend the tree left to right, skipping spans ending before from
+      int[] stack = new int[64];
+      int top = 0;
+      stack[top++] = 1;
+      while(top > 0) {
+        int k = stack[--top];
+        if(m_tree[k] < from) {
+          continue;
+        }
+        // first leaf index covered by node k
+        int level = 31 - Integer.numberOfLeadingZeros(k);
+        int first = (k << (31 - Integer.numberOfLeadingZeros(m_leaves) - level)) - m_leaves;
+        if(first >= count) {
+          continue;
+        }
+        if(k >= m_leaves) {
+          if(n == result.length) {
+            result = Arrays.copyOf(result, n * 2);
+          }
+          result[n++] = k - m_leaves;
+        } else {
+          stack[top++] = 2 * k + 1;
+          stack[top++] = 2 * k;
+        }
+      }
+      return Arrays.copyOf(result, n);
+    }
+  }
+}
@@ -0,0 +1,227 @@
+/******************************************************************************
+* FamilyLinker
+* Resolves the members of a FAM record and links them with each other;
+* the one routine behind GenealoJ.linkIndividuals, linkFamily and update.
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj;
+
+import com.msbmsb.genealoj.GedcomNode;
+import com.msbmsb.genealoj.GedcomSymbols;
+import com.msbmsb.genealoj.IndividualNode;
+import com.msbmsb.genealoj.LinkReport;
+import com.msbmsb.genealoj.Utils;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Holds the resolved parents and children of one family at a time, in
+ * buffers reused from family to family, so that linking many families
+ * allocates nothing per family. Not thread-safe.
+ */
+class FamilyLinker {
+  /**
+   * Tags of the family lines that link individuals, parents first
+   */
+  private static final int[] LINK_TAGS =
+    { GedcomSymbols.HUSB, GedcomSymbols.WIFE, GedcomSymbols.CHIL };
+
+  private GedcomNode m_root;
+  private LinkReport m_report;
+  private IndividualNode[] m_parents = new IndividualNode[4];
+  private IndividualNode[] m_children = new IndividualNode[16];
+  private int m_parentCount = 0;
+  private int m_childCount = 0;
+
+  /**
+   * @param root the GedcomNode holding the level=0 records
+   * @param report LinkReport to count links and add problems to; null
+   *        to only link
+   */
+  FamilyLinker(GedcomNode root, LinkReport report) {
+    m_root = root;
+    m_report = report;
+  }
+
+  /**
+   * Resolve the HUSB, WIFE and CHIL lines of a family and link its members
+   * @param family GedcomNode of the FAM node
+   */
+  void link(GedcomNode family) {
+    members(family, true);
+    linkMembers(family);
+  }
+
+  /**
+   * Link the members of a family given by their reference lines
+   * @param family GedcomNode of the FAM node
+   * @param parents the HUSB and WIFE lines
+   * @param children the CHIL lines
+   */
+  void link(GedcomNode family, List<GedcomNode> parents, List<GedcomNode> children) {
+    clear();
+    add(family, parents, true, true);
+    add(family, children, false, true);
+    linkMembers(family);
+  }
+
+  /**
+   * Resolve the members of a family without linking them or reporting
+   * problems, e.g. to unlink them
+   * @param family GedcomNode of the FAM node
+   */
+  void resolve(GedcomNode family) {
+    members(family, false);
+  }
+
+  int parents() {
+    return m_parentCount;
+  }
+
+  IndividualNode parent(int i) {
+    return m_parents[i];
+  }
+
+  int children() {
+    return m_childCount;
+  }
+
+  IndividualNode child(int i) {
+    return m_children[i];
+  }
+
+  /**
+   * @return true if indi is a parent of the resolved family
+   */
+  boolean isParent(IndividualNode indi) {
+    return contains(m_parents, m_parentCount, indi);
+  }
+
+  /**
+   * @return true if indi is a child of the resolved family
+   */
+  boolean isChild(IndividualNode indi) {
+    return contains(m_children, m_childCount, indi);
+  }
+
+  private void members(GedcomNode family, boolean report) {
+    clear();
+    for(int tagId : LINK_TAGS) {
+      add(family, family.getChildrenWithTag(tagId), tagId != GedcomSymbols.CHIL, report);
+    }
+  }
+
+  /**
+   * Resolve reference lines and add their individuals, each once
+   */
+  private void add(GedcomNode family, List<GedcomNode> lines, boolean parent,
+                   boolean report) {
+    if(lines == null) {
+      return;
+    }
+    for(GedcomNode line : lines) {
+      IndividualNode indi = resolve(family, line, report ? m_report : null);
+      if(indi == null) {
+        continue;
+      }
+      if(isParent(indi) || isChild(indi)) {
+        if(report && m_report != null) {
+          m_report.link(false);
+        }
+        continue;
+      }
+      if(parent) {
+        if(m_parentCount == m_parents.length) {
+          m_parents = Arrays.copyOf(m_parents, m_parentCount * 2);
+        }
+        m_parents[m_parentCount++] = indi;
+      } else {
+        if(m_childCount == m_children.length) {
+          m_children = Arrays.copyOf(m_children, m_childCount * 2);
+        }
+        m_children[m_childCount++] = indi;
+      }
+    }
+  }
+
+  /**
+   * Link the resolved members with each other, skipping links that are
+   * already there
+   */
+  private void linkMembers(GedcomNode family) {
+    if(m_report != null) {
+      m_report.family();
+    }
+    for(int i = 0; i < m_parentCount; i++) {
+      IndividualNode p = m_parents[i];
+      p.addFamilyAsHead(family);
+      for(int j = 0; j < m_childCount; j++) {
+        count(p.linkChild(m_children[j]));
+      }
+      for(int j = 0; j < m_parentCount; j++) {
+        if(j != i) {
+          count(p.linkSpouse(m_parents[j]));
+        }
+      }
+    }
+    for(int j = 0; j < m_childCount; j++) {
+      IndividualNode c = m_children[j];
+      c.addFamilyAsChild(family);
+      for(int i = 0; i < m_parentCount; i++) {
+        count(c.linkParent(m_parents[i]));
+      }
+    }
+  }
+
+  private void count(boolean added) {
+    if(m_report != null) {
+      m_report.link(added);
+    }
+  }
+
+  private void clear() {
+    Arrays.fill(m_parents, 0, m_parentCount, null);
+    Arrays.fill(m_children, 0, m_childCount, null);
+    m_parentCount = 0;
+    m_childCount = 0;
+  }
+
+  /**
+   * Resolve the individual of a HUSB, WIFE or CHIL line
+   * @param family the FAM record of the line
+   * @param line the HUSB, WIFE or CHIL line
+   * @param report LinkReport to add a problem to; may be null
+   * @return the individual; null if the line does not reference one
+   */
+  private IndividualNode resolve(GedcomNode family, GedcomNode line, LinkReport report) {
+    String ref = line.data();
+    if(ref == null || !Utils.isReference(ref)) {
+      if(report != null) {
+        report.problem(LinkReport.Kind.MALFORMED, family, line);
+      }
+      return null;
+    }
+    GedcomNode node = m_root.getReferencedNode(ref);
+    if(node instanceof IndividualNode) {
+      return (IndividualNode) node;
+    }
+    if(report != null) {
+      report.problem((node == null) ? LinkReport.Kind.UNRESOLVED : LinkReport.Kind.MISTYPED,
+                     family, line);
+    }
+    return null;
+  }
+
+  private static boolean contains(IndividualNode[] nodes, int to, IndividualNode node) {
+    for(int i = 0; i < to; i++) {
+      if(nodes[i] == node) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,144 @@
+/******************************************************************************
+* FrozenIndividual
+* Immutable copy of a linked IndividualNode, part of a FrozenTree, with its
+* names, location and family links computed up front.
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj;
+
+import com.msbmsb.genealoj.FrozenNode;
+import com.msbmsb.genealoj.IndividualNode;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Parents, children and spouses are kept as the IDs of the individuals in
+ * their FrozenTree, and returned as unmodifiable views over them.
+ */
+public class FrozenIndividual extends FrozenNode {
+  private static final int[] NO_LINKS = new int[0];
+
+  private final int m_id;
+  private final String m_surname;
+  private final String m_fullName;
+  private final FrozenNode m_location;
+
+  private final int[] m_parents;
+  private final int[] m_children;
+  private final int[] m_spouses;
+
+  /**
+   * Every individual of the tree by ID; filled by the FrozenTree before it
+   * is published
+   */
+  private final FrozenIndividual[] m_individuals;
+
+  /**
+   * Constructor
+   * @param node the IndividualNode to copy
+   * @param children the frozen children of node, in input order
+   * @param id the ID of this individual in its tree
+   * @param parents IDs of the parents
+   * @param offspring IDs of the children
+   * @param spouses IDs of the spouses
+   * @param individuals the tree's individuals by ID
+   */
+  FrozenIndividual(IndividualNode node, FrozenNode[] children, int id,
+                   int[] parents, int[] offspring, int[] spouses,
+                   FrozenIndividual[] individuals) {
+    super(node, children);
+    m_id = id;
+    FrozenNode name = getChildWithTag(Utils.NAME_TAG);
+    m_fullName = (name == null || name.data() == null) ? "" : name.data().trim();
+    m_surname = IndividualNode.surname(m_fullName);
+    m_location = location();
+    m_parents = (parents.length == 0) ? NO_LINKS : parents;
+    m_children = (offspring.length == 0) ? NO_LINKS : offspring;
+    m_spouses = (spouses.length == 0) ? NO_LINKS : spouses;
+    m_individuals = individuals;
+  }
+
+  /**
+   * Birth place, else death place, else the first PLAC child, as
+   * IndividualNode.getLocation
+   */
+  private FrozenNode location() {
+    String[] events = { "BIRT", "DEAT" };
+    for(String event : events) {
+      FrozenNode e = getChildWithTag(event);
+      if(e != null) {
+        FrozenNode place = e.getChildWithTag(Utils.PLACE_TAG);
+        if(place != null) {
+          return place;
+        }
+      }
+    }
+    return getChildWithTag(Utils.PLACE_TAG);
+  }
+
+  /**
+   * @return ID of this individual in its FrozenTree, from 0 to the
+   *         number of individuals - 1, in file order
+   */
+  public int id() {
+    return m_id;
+  }
+
+  /**
+   * @return the surname if available, or "" otherwise
+   */
+  public String getSurname() {
+    return m_surname;
+  }
+
+  /**
+   * @return the first NAME value; "" if there is none
+   */
+  public String getFullName() {
+    return m_fullName;
+  }
+
+  /**
+   * @return a representative location: the birth place if available,
+   *         else the death place, else any other place; null if none
+   */
+  public FrozenNode getLocation() {
+    return m_location;
+  }
+
+  public List<FrozenIndividual> getParents() {
+    return new Links(m_parents);
+  }
+
+  public List<FrozenIndividual> getChildren() {
+    return new Links(m_children);
+  }
+
+  public List<FrozenIndividual> getSpouses() {
+    return new Links(m_spouses);
+  }
+
+  /**
+   * Read-only view of linked individuals by ID
+   */
+  private class Links extends AbstractList<FrozenIndividual> implements RandomAccess {
+    private final int[] m_ids;
+
+    Links(int[] ids) {
+      m_ids = ids;
+    }
+
+    public FrozenIndividual get(int i) {
+      return m_individuals[m_ids[i]];
+    }
+
+    public int size() {
+      return m_ids.length;
+    }
+  }
+}
@@ -0,0 +1,146 @@
+/******************************************************************************
+* FrozenNode
+* Immutable copy of a GedcomNode and its children, part of a FrozenTree.
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj;
+
+import com.msbmsb.genealoj.GedcomNode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Every field is final and every list returned is unmodifiable, so a
+ * FrozenNode reached through a FrozenTree can be read from any thread
+ * without locking. Children are kept in input order in one array.
+ */
+public class FrozenNode {
+  static final FrozenNode[] NO_CHILDREN = new FrozenNode[0];
+
+  private final int m_level;
+  private final short m_tagId;
+  private final String m_tag;
+  private final String m_reference;
+  private final String m_data;
+  private final FrozenNode[] m_children;
+
+  /**
+   * Constructor. Copies the line of node, not its children.
+   * @param node the GedcomNode to copy
+   * @param children the frozen children of node, in input order
+   */
+  FrozenNode(GedcomNode node, FrozenNode[] children) {
+    m_level = node.level();
+    m_tagId = (short) node.tagId();
+    m_tag = node.tag();
+    m_reference = node.reference();
+    m_data = node.data();
+    m_children = (children.length == 0) ? NO_CHILDREN : children;
+  }
+
+  /**
+   * @return level of this node
+   */
+  public int level() {
+    return m_level;
+  }
+
+  /**
+   * @return tag of this node
+   */
+  public String tag() {
+    return m_tag;
+  }
+
+  /**
+   * @return ID of this node's tag, GedcomSymbols.UNKNOWN_TAG if it is not
+   *         a standard GEDCOM tag
+   */
+  public int tagId() {
+    return m_tagId;
+  }
+
+  /**
+   * @return reference for this node
+   */
+  public String reference() {
+    return m_reference;
+  }
+
+  /**
+   * @return data element of this node
+   */
+  public String data() {
+    return m_data;
+  }
+
+  /**
+   * @return the children of this node in input order, as an unmodifiable
+   *         view
+   */
+  public List<FrozenNode> getChildNodes() {
+    return Collections.unmodifiableList(Arrays.asList(m_children));
+  }
+
+  /**
+   * Get the children with the given tag
+   * @param tag the tag to retrieve on
+   * @return unmodifiable List<FrozenNode> of the matching children in
+   *         input order; empty if there are none
+   */
+  public List<FrozenNode> getChildrenWithTag(String tag) {
+    List<FrozenNode> matches = null;
+    for(FrozenNode child : m_children) {
+      if(child.m_tag.equals(tag)) {
+        if(matches == null) {
+          matches = new ArrayList<FrozenNode>(2);
+        }
+        matches.add(child);
+      }
+    }
+    if(matches == null) {
+      return Collections.emptyList();
+    }
+    return Collections.unmodifiableList(matches);
+  }
+
+  /**
+   * @param tag the tag to retrieve on
+   * @return the first child with the given tag; null if there is none
+   */
+  public FrozenNode getChildWithTag(String tag) {
+    for(FrozenNode child : m_children) {
+      if(child.m_tag.equals(tag)) {
+        return child;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Get the descendants at any depth with the given tag
+   * @param tag the tag to retrieve on
+   * @return unmodifiable List<FrozenNode> of the matching descendants in
+   *         input order; empty if there are none
+   */
+  public List<FrozenNode> getDescendantsWithTag(String tag) {
+    List<FrozenNode> matches = new ArrayList<FrozenNode>();
+    addDescendantsWithTag(tag, matches);
+    return Collections.unmodifiableList(matches);
+  }
+
+  private void addDescendantsWithTag(String tag, List<FrozenNode> matches) {
+    for(FrozenNode child : m_children) {
+      if(child.m_tag.equals(tag)) {
+        matches.add(child);
+      }
+      child.addDescendantsWithTag(tag, matches);
+    }
+  }
+}
@@ -0,0 +1,171 @@
+/******************************************************************************
+* FrozenTree
+* Immutable snapshot of a parsed GEDCOM tree and the family links between
+* its individuals, for sharing one parse between many reader threads.
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj;
+
+import com.msbmsb.genealoj.FrozenIndividual;
+import com.msbmsb.genealoj.FrozenNode;
+import com.msbmsb.genealoj.GedcomNode;
+import com.msbmsb.genealoj.IndividualNode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The tree is copied into FrozenNodes, whose fields are all final and
+ * whose lists are unmodifiable; values that GedcomNode and IndividualNode
+ * compute on first use, such as tag IDs, surnames and locations, are
+ * computed here up front. Everything is reached through the final fields
+ * of this class, so once the constructor returns the snapshot can be
+ * handed to other threads by any means, even a plain field, and queried
+ * concurrently without locks or copies.
+ * The snapshot does not follow later changes to the tree it was taken of.
+ */
+public class FrozenTree {
+  private final FrozenNode m_root;
+  private final FrozenIndividual[] m_individuals;
+  private final List<FrozenIndividual> m_individualList;
+  private final Map<String, FrozenNode> m_references;
+  private final Map<String, List<FrozenNode>> m_recordsByTag;
+
+  /**
+   * Constructor. Copies the level=0 records of root and the links of its
+   * individuals; links to individuals outside root are dropped.
+   * @param root the GedcomNode holding the level=0 records
+   */
+  public FrozenTree(GedcomNode root) {
+    List<GedcomNode> records = root.getChildNodes();
+    // individual IDs in file order
+    Map<GedcomNode, Integer> ids = new IdentityHashMap<GedcomNode, Integer>();
+    for(GedcomNode record : records) {
+      if(record instanceof IndividualNode) {
+        ids.put(record, ids.size());
+      }
+    }
+    m_individuals = new FrozenIndividual[ids.size()];
+
+    FrozenNode[] frozen = new FrozenNode[records.size()];
+    Map<String, FrozenNode> references = new HashMap<String, FrozenNode>(records.size() * 2);
+    Map<String, List<FrozenNode>> byTag = new LinkedHashMap<String, List<FrozenNode>>();
+    for(int i = 0; i < frozen.length; i++) {
+      FrozenNode record = freeze(records.get(i), ids);
+      frozen[i] = record;
+      if(record instanceof FrozenIndividual) {
+        m_individuals[((FrozenIndividual) record).id()] = (FrozenIndividual) record;
+      }
+      if(record.reference() != null) {
+        references.put(record.reference(), record);
+      }
+      List<FrozenNode> tagged = byTag.get(record.tag());
+      if(tagged == null) {
+        tagged = new ArrayList<FrozenNode>();
+        byTag.put(record.tag(), tagged);
+      }
+      tagged.add(record);
+    }
+    for(Map.Entry<String, List<FrozenNode>> e : byTag.entrySet()) {
+      e.setValue(Collections.unmodifiableList(e.getValue()));
+    }
+
+    m_root = new FrozenNode(root, frozen);
+    m_individualList = Collections.unmodifiableList(Arrays.asList(m_individuals));
+    m_references = Collections.unmodifiableMap(references);
+    m_recordsByTag = Collections.unmodifiableMap(byTag);
+  }
+
+  /**
+   * Copy a node and its descendants
+   */
+  private FrozenNode freeze(GedcomNode node, Map<GedcomNode, Integer> ids) {
+    List<GedcomNode> children = node.getChildNodes();
+    FrozenNode[] frozen = FrozenNode.NO_CHILDREN;
+    if(children.size() > 0) {
+      frozen = new FrozenNode[children.size()];
+      for(int i = 0; i < frozen.length; i++) {
+        frozen[i] = freeze(children.get(i), ids);
+      }
+    }
+    Integer id = ids.get(node);
+    if(id == null) {
+      return new FrozenNode(node, frozen);
+    }
+    IndividualNode indi = (IndividualNode) node;
+    return new FrozenIndividual(indi, frozen, id.intValue(),
+                                links(indi.getParents(), ids),
+                                links(indi.getChildren(), ids),
+                                links(indi.getSpouses(), ids),
+                                m_individuals);
+  }
+
+  /**
+   * @return the IDs of the linked individuals that are in this tree
+   */
+  private static int[] links(List<IndividualNode> others, Map<GedcomNode, Integer> ids) {
+    int[] links = new int[others.size()];
+    int n = 0;
+    for(IndividualNode other : others) {
+      Integer id = ids.get(other);
+      if(id != null) {
+        links[n++] = id.intValue();
+      }
+    }
+    return (n == links.length) ? links : Arrays.copyOf(links, n);
+  }
+
+  /**
+   * @return the level=-1 node holding the level=0 records
+   */
+  public FrozenNode getRoot() {
+    return m_root;
+  }
+
+  /**
+   * Get level=0 nodes of the given tag type
+   * @param tag the tag of nodes to return
+   * @return unmodifiable List<FrozenNode> of the matching records in file
+   *         order; empty if there are none
+   */
+  public List<FrozenNode> getNodes(String tag) {
+    List<FrozenNode> nodes = m_recordsByTag.get(tag);
+    if(nodes == null) {
+      return Collections.emptyList();
+    }
+    return nodes;
+  }
+
+  /**
+   * @param ref the reference, e.g. @I1@
+   * @return the level=0 record declaring ref; null if there is none
+   */
+  public FrozenNode getReferencedNode(String ref) {
+    return m_references.get(ref);
+  }
+
+  /**
+   * @return unmodifiable List of every individual, in file order, i.e.
+   *         by ID
+   */
+  public List<FrozenIndividual> getIndividuals() {
+    return m_individualList;
+  }
+
+  /**
+   * @param id the ID of an individual, from 0 to getIndividuals().size()-1
+   * @return the individual with this ID
+   */
+  public FrozenIndividual individual(int id) {
+    return m_individuals[id];
+  }
+}
@@ -0,0 +1,73 @@
+/******************************************************************************
+* GedcomChanges
+* The level=0 records added, changed and removed by an incremental update
+* of a parsed GEDCOM file.
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Records are identified by their reference, e.g. @I1@. Records without a
+ * reference, such as HEAD and TRLR, are identified by their tag, followed
+ * by #n for the n-th (from 0) later record of that tag, e.g. NOTE#1.
+ */
+public class GedcomChanges {
+  private List<String> m_added;
+  private List<String> m_changed;
+  private List<String> m_removed;
+  private int m_relinked;
+
+  GedcomChanges(List<String> added, List<String> changed, List<String> removed,
+                int relinked) {
+    m_added = Collections.unmodifiableList(added);
+    m_changed = Collections.unmodifiableList(changed);
+    m_removed = Collections.unmodifiableList(removed);
+    m_relinked = relinked;
+  }
+
+  /**
+   * @return keys of the records that are new, in file order
+   */
+  public List<String> added() {
+    return m_added;
+  }
+
+  /**
+   * @return keys of the records whose text changed, in file order
+   */
+  public List<String> changed() {
+    return m_changed;
+  }
+
+  /**
+   * @return keys of the records that are gone
+   */
+  public List<String> removed() {
+    return m_removed;
+  }
+
+  /**
+   * @return number of families whose individuals were linked again
+   */
+  public int relinked() {
+    return m_relinked;
+  }
+
+  /**
+   * @return true if no record was added, changed or removed
+   */
+  public boolean isEmpty() {
+    return m_added.isEmpty() && m_changed.isEmpty() && m_removed.isEmpty();
+  }
+
+  public String toString() {
+    return "added " + m_added.size() + ", changed " + m_changed.size()
+        + ", removed " + m_removed.size() + ", relinked " + m_relinked;
+  }
+}
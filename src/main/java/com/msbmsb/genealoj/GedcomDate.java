@@ -0,0 +1,314 @@
+/******************************************************************************
+* GedcomDate
+* A GEDCOM DATE value parsed into a range of days, each day packed as an
+* int yyyymmdd.
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj;
+
+/**
+ * Parses the standard forms: exact dates ("19 JAN 1916", "JAN 1916",
+ * "1916"), approximations (ABT, CAL, EST), ranges (BEF, AFT, BET ... AND)
+ * and periods (FROM ... TO). A date without a day or month covers the
+ * whole month or year, so "1916" is 19160101 to 19161231. BEF and AFT
+ * exclude the date itself, so "BEF 1900" ends on 18991231 and
+ * "AFT MAR 1850" starts on 18500401. An open end is MIN or MAX. Dual
+ * years ("1750/51") use the later year; interpreted dates
+ * ("INT 1850 (text)") use the date part.
+ * A leading @#DGREGORIAN@ or @#DJULIAN@ calendar escape is accepted, and
+ * Julian dates are taken as-is, with Julian leap years; other calendars,
+ * B.C. dates, days past the end of their month and free text do not
+ * parse.
+ * Packed days compare in date order, so ranges can be compared as ints.
+ * Immutable.
+ */
+public class GedcomDate {
+  /**
+   * Open lower end of a range
+   */
+  public static final int MIN = 0;
+
+  /**
+   * Open upper end of a range
+   */
+  public static final int MAX = 99991231;
+
+  private static final String[] MONTHS = {
+    "JAN", "FEB", "MAR", "APR", "MAY", "JUN",
+    "JUL", "AUG", "SEP", "OCT", "NOV", "DEC"
+  };
+
+  private int m_min;
+  private int m_max;
+  private boolean m_approximate;
+
+  private GedcomDate(int min, int max, boolean approximate) {
+    m_min = min;
+    m_max = max;
+    m_approximate = approximate;
+  }
+
+  /**
+   * @return first possible day, yyyymmdd; MIN if open
+   */
+  public int min() {
+    return m_min;
+  }
+
+  /**
+   * @return last possible day, yyyymmdd; MAX if open
+   */
+  public int max() {
+    return m_max;
+  }
+
+  /**
+   * @return true if qualified by ABT, CAL or EST
+   */
+  public boolean isApproximate() {
+    return m_approximate;
+  }
+
+  /**
+   * @return true if the range overlaps [from, to]
+   */
+  public boolean overlaps(int from, int to) {
+    return m_min <= to && m_max >= from;
+  }
+
+  /**
+   * @param year a year
+   * @param month month 1-12
+   * @param day day 1-31
+   * @return the packed day yyyymmdd
+   */
+  public static int pack(int year, int month, int day) {
+    return year * 10000 + month * 100 + day;
+  }
+
+  /**
+   * Parse a DATE value
+   * @param value the data of a DATE node
+   * @return the GedcomDate; null if value is not a supported date
+   */
+  public static GedcomDate parse(String value) {
+    if(value == null) {
+      return null;
+    }
+    String[] tok = value.trim().toUpperCase().split("\\s+");
+    int i = 0;
+    boolean julian = false;
+    if(i < tok.length && tok[i].startsWith("@#D")) {
+      if(!tok[i].equals("@#DGREGORIAN@") && !tok[i].equals("@#DJULIAN@")) {
+        return null;
+      }
+      julian = tok[i].equals("@#DJULIAN@");
+      i++;
+    }
+    if(i >= tok.length) {
+      return null;
+    }
+
+    String keyword = tok[i];
+    if(keyword.equals("ABT") || keyword.equals("CAL") || keyword.equals("EST")) {
+      int[] range = parseDate(tok, i + 1, tok.length, julian);
+      return (range == null) ? null : new GedcomDate(range[0], range[1], true);
+    }
+    if(keyword.equals("INT")) {
+      // the interpreted date is followed by the original text in brackets
+      int end = i + 1;
+      while(end < tok.length && !tok[end].startsWith("(")) {
+        end++;
+      }
+      int[] range = parseDate(tok, i + 1, end, julian);
+      return (range == null) ? null : new GedcomDate(range[0], range[1], false);
+    }
+    if(keyword.equals("BEF")) {
+      int[] range = parseDate(tok, i + 1, tok.length, julian);
+      if(range == null || range[0] == pack(0, 1, 1)) {
+        return null;
+      }
+      return new GedcomDate(MIN, dayBefore(range[0], julian), false);
+    }
+    if(keyword.equals("AFT")) {
+      int[] range = parseDate(tok, i + 1, tok.length, julian);
+      if(range == null || range[1] == MAX) {
+        return null;
+      }
+      return new GedcomDate(dayAfter(range[1], julian), MAX, false);
+    }
+    if(keyword.equals("BET") || keyword.equals("FROM") || keyword.equals("TO")) {
+      String second = keyword.equals("BET") ? "AND" : "TO";
+      int split = i + 1;
+      if(keyword.equals("TO")) {
+        split = i;
+      }
+      while(split < tok.length && !tok[split].equals(second)) {
+        split++;
+      }
+      int min = MIN;
+      int max = MAX;
+      if(split > i + 1) {
+        int[] from = parseDate(tok, i + 1, split, julian);
+        if(from == null) {
+          return null;
+        }
+        min = from[0];
+      } else if(keyword.equals("BET")) {
+        return null;
+      }
+      if(split < tok.length) {
+        int[] to = parseDate(tok, split + 1, tok.length, julian);
+        if(to == null) {
+          return null;
+        }
+        max = to[1];
+      } else if(keyword.equals("BET")) {
+        return null;
+      }
+      return (min <= max) ? new GedcomDate(min, max, false) : null;
+    }
+
+    int[] range = parseDate(tok, i, tok.length, julian);
+    return (range == null) ? null : new GedcomDate(range[0], range[1], false);
+  }
+
+  /**
+   * Parse "[[day] month] year" from tok[start] up to tok[end]
+   * @param julian true for a Julian calendar date
+   * @return {first day, last day}; null if not a date
+   */
+  private static int[] parseDate(String[] tok, int start, int end, boolean julian) {
+    int n = end - start;
+    if(n < 1 || n > 3) {
+      return null;
+    }
+    int year = parseYear(tok[end - 1]);
+    if(year < 0) {
+      return null;
+    }
+    if(n == 1) {
+      return new int[] { pack(year, 1, 1), pack(year, 12, 31) };
+    }
+    int month = month(tok[end - 2]);
+    if(month < 0) {
+      return null;
+    }
+    if(n == 2) {
+      return new int[] { pack(year, month, 1),
+                         pack(year, month, days(year, month, julian)) };
+    }
+    int day = parseNumber(tok[start]);
+    if(day < 1 || day > days(year, month, julian)) {
+      return null;
+    }
+    return new int[] { pack(year, month, day), pack(year, month, day) };
+  }
+
+  /**
+   * @return number of days in the month
+   */
+  private static int days(int year, int month, boolean julian) {
+    if(month == 2) {
+      boolean leap = (year % 4 == 0)
+          && (julian || year % 100 != 0 || year % 400 == 0);
+      return leap ? 29 : 28;
+    }
+    return (month == 4 || month == 6 || month == 9 || month == 11) ? 30 : 31;
+  }
+
+  /**
+   * @param date a packed day after 00000101
+   * @return the packed day before date
+   */
+  private static int dayBefore(int date, boolean julian) {
+    int year = date / 10000;
+    int month = date / 100 % 100;
+    int day = date % 100;
+    if(day > 1) {
+      return date - 1;
+    }
+    if(month > 1) {
+      return pack(year, month - 1, days(year, month - 1, julian));
+    }
+    return pack(year - 1, 12, 31);
+  }
+
+  /**
+   * @param date a packed day before MAX
+   * @return the packed day after date
+   */
+  private static int dayAfter(int date, boolean julian) {
+    int year = date / 10000;
+    int month = date / 100 % 100;
+    int day = date % 100;
+    if(day < days(year, month, julian)) {
+      return date + 1;
+    }
+    if(month < 12) {
+      return pack(year, month + 1, 1);
+    }
+    return pack(year + 1, 1, 1);
+  }
+
+  /**
+   * @return the year, taking the later of a dual year; -1 if invalid
+   */
+  private static int parseYear(String tok) {
+    int slash = tok.indexOf('/');
+    if(slash < 0) {
+      int year = parseNumber(tok);
+      return (year > 9999) ? -1 : year;
+    }
+    int year = parseNumber(tok.substring(0, slash));
+    String alt = tok.substring(slash + 1);
+    int altYear = parseNumber(alt);
+    if(year < 0 || altYear < 0 || alt.length() > 4) {
+      return -1;
+    }
+    // "1750/51": the later year shares the leading digits
+    int mod = 1;
+    for(int i = 0; i < alt.length(); i++) {
+      mod *= 10;
+    }
+    int later = year - year % mod + altYear;
+    if(later < year) {
+      later += mod;
+    }
+    return (later > 9999) ? -1 : later;
+  }
+
+  /**
+   * @return the non-negative number in tok; -1 if it is not one
+   */
+  private static int parseNumber(String tok) {
+    if(tok.length() == 0 || tok.length() > 8) {
+      return -1;
+    }
+    int n = 0;
+    for(int i = 0; i < tok.length(); i++) {
+      char c = tok.charAt(i);
+      if(c < '0' || c > '9') {
+        return -1;
+      }
+      n = n * 10 + (c - '0');
+    }
+    return n;
+  }
+
+  private static int month(String tok) {
+    for(int i = 0; i < MONTHS.length; i++) {
+      if(MONTHS[i].equals(tok)) {
+        return i + 1;
+      }
+    }
+    return -1;
+  }
+
+  public String toString() {
+    return m_min + "-" + m_max + (m_approximate ? "~" : "");
+  }
+}
@@ -0,0 +1,194 @@
+/******************************************************************************
+* GedcomEncoding
+* Detects the character encoding of a GEDCOM file from its byte order mark
+* or its HEAD.CHAR value.
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj;
+
+import com.msbmsb.genealoj.AnselCharset;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * A byte order mark wins; a file starting with "0" and a zero byte is
+ * UTF-16 without one. Otherwise the "1 CHAR" line of the header names the
+ * encoding: ANSEL, UTF-8, UNICODE (UTF-16), ASCII, ANSI, IBMPC, MACINTOSH
+ * or any Java charset name. ASCII is read as ISO-8859-1, so that stray
+ * 8-bit bytes survive a load and a write unchanged.
+ */
+public class GedcomEncoding {
+  /**
+   * Number of bytes read looking for the header's CHAR line
+   */
+  private static final int HEADER_SIZE = 16 * 1024;
+
+  private GedcomEncoding() {
+  }
+
+  /**
+   * Detect the charset of a GEDCOM file
+   * @param file File of the GEDCOM file
+   * @param fallback Charset to use if the file does not name one
+   * @return the detected Charset, or fallback
+   */
+  public static Charset detect(File file, Charset fallback) throws IOException {
+    byte[] head = new byte[HEADER_SIZE];
+    int length = 0;
+    InputStream in = new FileInputStream(file);
+    try {
+      int n;
+      while(length < head.length && (n = in.read(head, length, head.length - length)) > 0) {
+        length += n;
+      }
+    } finally {
+      in.close();
+    }
+    return detect(head, length, fallback);
+  }
+
+  /**
+   * Detect the charset of a GEDCOM file from its first bytes
+   * @param head the first bytes of the file
+   * @param length number of bytes of head to look at
+   * @param fallback Charset to use if the bytes do not name one
+   * @return the detected Charset, or fallback
+   */
+  public static Charset detect(byte[] head, int length, Charset fallback) {
+    if(length >= 3 && (head[0] & 0xff) == 0xEF && (head[1] & 0xff) == 0xBB
+       && (head[2] & 0xff) == 0xBF) {
+      return StandardCharsets.UTF_8;
+    }
+    if(length >= 2) {
+      int b0 = head[0] & 0xff;
+      int b1 = head[1] & 0xff;
+      if((b0 == 0xFE && b1 == 0xFF) || (b0 == 0 && b1 != 0)) {
+        return StandardCharsets.UTF_16BE;
+      }
+      if((b0 == 0xFF && b1 == 0xFE) || (b0 != 0 && b1 == 0)) {
+        return StandardCharsets.UTF_16LE;
+      }
+    }
+
+    String value = charValue(head, length);
+    Charset charset = (value == null) ? null : forName(value);
+    if(charset == null) {
+      return fallback;
+    }
+    if(!isAsciiCompatible(charset)) {
+      // declared UNICODE, but the bytes are not 16-bit
+      return StandardCharsets.UTF_8;
+    }
+    return charset;
+  }
+
+  /**
+   * @return the value of the header's "1 CHAR" line; null if there is none
+   *         in the given bytes
+   */
+  private static String charValue(byte[] head, int length) {
+    int start = 0;
+    while(start < length) {
+      int end = start;
+      while(end < length && head[end] != '\n' && head[end] != '\r') {
+        end++;
+      }
+      String line = new String(head, start, end - start, StandardCharsets.ISO_8859_1).trim();
+      if(line.startsWith("0 ") && start > 0 && !line.startsWith("0 HEAD")) {
+        // past the header
+        return null;
+      }
+      if(line.startsWith("1 CHAR ")) {
+        return line.substring(7).trim();
+      }
+      start = end + 1;
+    }
+    return null;
+  }
+
+  /**
+   * Map a GEDCOM CHAR value to a Charset
+   * @param value the CHAR value, e.g. ANSEL or UTF-8
+   * @return the Charset; null if the value is unknown
+   */
+  public static Charset forName(String value) {
+    String name = value.trim().toUpperCase(Locale.ROOT);
+    if(name.equals("ANSEL")) {
+      return AnselCharset.INSTANCE;
+    }
+    if(name.equals("UTF-8") || name.equals("UTF8")) {
+      return StandardCharsets.UTF_8;
+    }
+    if(name.equals("UNICODE") || name.equals("UTF-16")) {
+      return StandardCharsets.UTF_16;
+    }
+    if(name.equals("ASCII")) {
+      return StandardCharsets.ISO_8859_1;
+    }
+    if(name.equals("ANSI") || name.equals("IBM WINDOWS")) {
+      return supported("windows-1252");
+    }
+    if(name.equals("IBMPC") || name.equals("IBM PC") || name.equals("IBM DOS")) {
+      return supported("IBM437");
+    }
+    if(name.equals("MACINTOSH")) {
+      return supported("x-MacRoman");
+    }
+    return supported(name);
+  }
+
+  /**
+   * @return the named Charset; null if this JVM does not support it
+   */
+  private static Charset supported(String name) {
+    try {
+      return Charset.isSupported(name) ? Charset.forName(name) : null;
+    } catch(IllegalCharsetNameException icne) {
+      return null;
+    }
+  }
+
+  /**
+   * @return true if the charset encodes ASCII characters as single ASCII
+   *         bytes, as the byte-level readers and RecordIndex require
+   */
+  public static boolean isAsciiCompatible(Charset charset) {
+    if(!charset.canEncode()) {
+      return false;
+    }
+    byte[] ascii = "0 @I1@ INDI\n".getBytes(StandardCharsets.US_ASCII);
+    return Arrays.equals(ascii, "0 @I1@ INDI\n".getBytes(charset));
+  }
+
+  /**
+   * Open a GEDCOM file for reading in the given charset, skipping a byte
+   * order mark
+   * @param file File of the GEDCOM file
+   * @param charset Charset of the file
+   * @return a BufferedReader positioned at the first line
+   */
+  public static BufferedReader newReader(File file, Charset charset) throws IOException {
+    BufferedReader br = new BufferedReader(
+        new InputStreamReader(new FileInputStream(file), charset));
+    br.mark(1);
+    if(br.read() != '\uFEFF') {
+      br.reset();
+    }
+    return br;
+  }
+}
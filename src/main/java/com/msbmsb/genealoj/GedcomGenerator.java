@@ -0,0 +1,668 @@
+/******************************************************************************
+* GedcomGenerator
+* Seeded, streaming generator of synthetic GEDCOM files for load and scale
+* testing without real family trees.
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj;
+
+import com.msbmsb.genealoj.Utils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Families are generated depth first: a founder couple gets children, a
+ * child marries a spouse from outside the file, possibly more than once,
+ * and each of those families is generated before the next child's. Every
+ * record is written as soon as its links are known, so memory is bounded
+ * by the number of generations, not by the size of the file, and lines
+ * are encoded straight into a byte buffer.
+ * Surnames are inherited from the father and, like places, drawn from a
+ * Zipf distribution over a generated pool, so a few are very common and
+ * most are rare. The same options and seed always give the same bytes.
+ * Setters return this generator so they can be chained.
+ */
+public class GedcomGenerator {
+  private static final String SEX_TAG = "SEX";
+  private static final String BIRTH_TAG = "BIRT";
+  private static final String DEATH_TAG = "DEAT";
+  private static final String MARRIAGE_TAG = "MARR";
+  private static final String DATE_TAG = "DATE";
+  private static final String NOTE_TAG = "NOTE";
+  private static final String CONC_TAG = "CONC";
+  private static final String SPOUSE_FAMILY_TAG = "FAMS";
+  private static final String CHILD_FAMILY_TAG = "FAMC";
+
+  private static final String[] MALE = {
+    "Johann", "Friedrich", "Heinrich", "Karl", "Wilhelm", "Georg", "Peter",
+    "Jakob", "Christian", "Andreas", "Thomas", "Martin", "Paul", "Ludwig",
+  };
+  private static final String[] FEMALE = {
+    "Anna", "Maria", "Elisabeth", "Margaretha", "Catharina", "Sophia",
+    "Louise", "Barbara", "Dorothea", "Christina", "Magdalena", "Johanna",
+  };
+  private static final String[] SYLLABLES = {
+    "ba", "ber", "da", "den", "fa", "gel", "ha", "hol", "ka", "ker", "la",
+    "len", "ma", "mer", "na", "ner", "pa", "ra", "ren", "sa", "sch", "ta",
+    "ter", "va", "wal", "wei", "zen", "bro", "stein", "burg", "feld", "mann",
+  };
+  private static final String[] MONTHS = {
+    "JAN", "FEB", "MAR", "APR", "MAY", "JUN", "JUL", "AUG", "SEP", "OCT", "NOV", "DEC",
+  };
+  private static final String[] WORDS = {
+    "the", "family", "emigrated", "through", "Bremerhaven", "and", "settled",
+    "near", "river", "with", "two", "brothers", "a", "sister", "records",
+    "of", "parish", "mention", "farm", "in", "spring", "winter", "church",
+  };
+
+  /**
+   * Characters of NOTE text per line, well below the 255 of a GEDCOM line
+   */
+  private static final int NOTE_LINE = 200;
+
+  /**
+   * Families are generated recursively, one level per generation
+   */
+  public static final int MAX_GENERATIONS = 500;
+
+  private static final int MAX_CHILDREN = 15;
+  private static final int MAX_MARRIAGES = 4;
+  private static final int FIRST_YEAR = 1600;
+  private static final int GENERATION_YEARS = 28;
+
+  private long m_seed = 42;
+  private int m_individuals = 10000;
+  private int m_generations = 12;
+  private double m_children = 2.6;
+  private double m_marriage = 0.75;
+  private double m_remarriage = 0.1;
+  private double m_notes = 0.1;
+  private int m_noteLines = 8;
+  private int m_surnames = 5000;
+  private int m_places = 1000;
+  private double m_skew = 1.0;
+
+  // state of one write
+  private long m_random;
+  private int m_remaining;
+  private int m_nextIndividual;
+  private int m_nextFamily;
+  private String[] m_surnamePool;
+  private String[] m_placePool;
+  private double[] m_surnameWeights;
+  private double[] m_placeWeights;
+  private OutputStream m_out;
+  private byte[] m_buf;
+  private int m_pos;
+  private long m_bytes;
+
+  /**
+   * Usage: GedcomGenerator [--option value]... &lt;file&gt; &lt;individuals&gt;
+   * where the options are seed, generations, children, marriage,
+   * remarriage, notes, note-lines, surnames, places and skew, as the
+   * setters of this class.
+   */
+  public static void main(String[] args) throws IOException {
+    GedcomGenerator generator = new GedcomGenerator();
+    int i = 0;
+    try {
+      for(; i + 1 < args.length && args[i].startsWith("--"); i += 2) {
+        generator.option(args[i].substring(2), args[i + 1]);
+      }
+      if(args.length - i != 2) {
+        throw new IllegalArgumentException("Expected a file and a number of individuals");
+      }
+      generator.individuals(Integer.parseInt(args[i + 1]));
+    } catch(IllegalArgumentException iae) {
+      System.err.println(iae.getMessage());
+      System.err.println("Usage: GedcomGenerator [--option value]... <file> <individuals>");
+      System.err.println("Options: seed, generations, children, marriage, remarriage,");
+      System.err.println("         notes, note-lines, surnames, places, skew");
+      System.exit(1);
+    }
+    long start = System.nanoTime();
+    long bytes = generator.write(new File(args[i]));
+    double seconds = (System.nanoTime() - start) / 1e9;
+    System.err.printf("Wrote %d bytes in %.2fs (%.1f MB/s)%n", bytes, seconds,
+                      bytes / 1e6 / seconds);
+  }
+
+  /**
+   * Set an option by its command line name
+   */
+  private void option(String name, String value) {
+    if("seed".equals(name)) {
+      seed(Long.parseLong(value));
+    } else if("generations".equals(name)) {
+      generations(Integer.parseInt(value));
+    } else if("children".equals(name)) {
+      children(Double.parseDouble(value));
+    } else if("marriage".equals(name)) {
+      marriage(Double.parseDouble(value));
+    } else if("remarriage".equals(name)) {
+      remarriage(Double.parseDouble(value));
+    } else if("notes".equals(name)) {
+      notes(Double.parseDouble(value));
+    } else if("note-lines".equals(name)) {
+      noteLines(Integer.parseInt(value));
+    } else if("surnames".equals(name)) {
+      surnames(Integer.parseInt(value));
+    } else if("places".equals(name)) {
+      places(Integer.parseInt(value));
+    } else if("skew".equals(name)) {
+      skew(Double.parseDouble(value));
+    } else {
+      throw new IllegalArgumentException("Unknown option: --" + name);
+    }
+  }
+
+  /**
+   * @param seed seed of the random choices; default 42
+   * @return this generator
+   */
+  public GedcomGenerator seed(long seed) {
+    m_seed = seed;
+    return this;
+  }
+
+  /**
+   * @param individuals exact number of INDI records to write; default 10000
+   * @return this generator
+   */
+  public GedcomGenerator individuals(int individuals) {
+    if(individuals < 0) {
+      throw new IllegalArgumentException("Invalid number of individuals: " + individuals);
+    }
+    m_individuals = individuals;
+    return this;
+  }
+
+  /**
+   * @param generations generations below each founder couple, at most
+   *        MAX_GENERATIONS; default 12
+   * @return this generator
+   */
+  public GedcomGenerator generations(int generations) {
+    if(generations < 1 || generations > MAX_GENERATIONS) {
+      throw new IllegalArgumentException("Invalid number of generations: " + generations);
+    }
+    m_generations = generations;
+    return this;
+  }
+
+  /**
+   * @param mean mean number of children per family, at most 15; default 2.6
+   * @return this generator
+   */
+  public GedcomGenerator children(double mean) {
+    m_children = check(mean, MAX_CHILDREN, "children");
+    return this;
+  }
+
+  /**
+   * @param probability probability that a child marries; default 0.75
+   * @return this generator
+   */
+  public GedcomGenerator marriage(double probability) {
+    m_marriage = check(probability, 1, "marriage");
+    return this;
+  }
+
+  /**
+   * @param probability probability that a married individual marries
+   *        again, for each further marriage; default 0.1
+   * @return this generator
+   */
+  public GedcomGenerator remarriage(double probability) {
+    m_remarriage = check(probability, 1, "remarriage");
+    return this;
+  }
+
+  /**
+   * @param fraction fraction of individuals with a NOTE; default 0.1
+   * @return this generator
+   */
+  public GedcomGenerator notes(double fraction) {
+    m_notes = check(fraction, 1, "notes");
+    return this;
+  }
+
+  /**
+   * @param lines most CONC lines continuing a NOTE; default 8
+   * @return this generator
+   */
+  public GedcomGenerator noteLines(int lines) {
+    if(lines < 0) {
+      throw new IllegalArgumentException("Invalid number of note lines: " + lines);
+    }
+    m_noteLines = lines;
+    return this;
+  }
+
+  /**
+   * @param surnames number of distinct surnames; default 5000
+   * @return this generator
+   */
+  public GedcomGenerator surnames(int surnames) {
+    if(surnames < 1) {
+      throw new IllegalArgumentException("Invalid number of surnames: " + surnames);
+    }
+    m_surnames = surnames;
+    return this;
+  }
+
+  /**
+   * @param places number of distinct places; default 1000
+   * @return this generator
+   */
+  public GedcomGenerator places(int places) {
+    if(places < 1) {
+      throw new IllegalArgumentException("Invalid number of places: " + places);
+    }
+    m_places = places;
+    return this;
+  }
+
+  /**
+   * @param skew Zipf exponent of the surname and place frequencies;
+   *        0 for uniform, default 1
+   * @return this generator
+   */
+  public GedcomGenerator skew(double skew) {
+    m_skew = check(skew, 10, "skew");
+    return this;
+  }
+
+  private static double check(double value, double max, String name) {
+    if(!(value >= 0 && value <= max)) {
+      throw new IllegalArgumentException("Invalid " + name + ": " + value);
+    }
+    return value;
+  }
+
+  /**
+   * Write a file
+   * @param file File to write; ASCII, declared as UTF-8
+   * @return the number of bytes written
+   */
+  public long write(File file) throws IOException {
+    OutputStream out = new FileOutputStream(file);
+    try {
+      return write(out);
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Write a file to a stream, which is flushed but not closed
+   * @param out OutputStream to write to
+   * @return the number of bytes written
+   */
+  public synchronized long write(OutputStream out) throws IOException {
+    m_random = m_seed;
+    m_remaining = m_individuals;
+    m_nextIndividual = 0;
+    m_nextFamily = 0;
+    m_surnamePool = names(m_surnames, 2, false);
+    m_placePool = names(m_places, 2, true);
+    m_surnameWeights = zipf(m_surnames);
+    m_placeWeights = zipf(m_places);
+    m_out = out;
+    m_buf = new byte[1 << 16];
+    m_pos = 0;
+    m_bytes = 0;
+    try {
+      text("0 HEAD\n1 SOUR GENEALOJ\n1 GEDC\n2 VERS 5.5.1\n"
+           + "2 FORM LINEAGE-LINKED\n1 CHAR UTF-8\n");
+      while(m_remaining >= 2) {
+        // a founder couple and their descendants
+        int husband = m_nextIndividual++;
+        int wife = m_nextIndividual++;
+        int family = m_nextFamily++;
+        m_remaining -= 2;
+        String surname = pick(m_surnamePool, m_surnameWeights);
+        individual(husband, true, surname, FIRST_YEAR, -1, new int[] { family }, 1);
+        individual(wife, false, pick(m_surnamePool, m_surnameWeights), FIRST_YEAR,
+                   -1, new int[] { family }, 1);
+        family(family, husband, wife, surname, 0);
+      }
+      if(m_remaining == 1) {
+        m_remaining--;
+        individual(m_nextIndividual++, true, pick(m_surnamePool, m_surnameWeights),
+                   FIRST_YEAR, -1, null, 0);
+      }
+      text("0 TRLR\n");
+      flush();
+      out.flush();
+      return m_bytes;
+    } finally {
+      m_out = null;
+      m_buf = null;
+    }
+  }
+
+  /**
+   * Write the records of a family's children and their spouses, then the
+   * FAM record, then the families of the children
+   */
+  private void family(int family, int husband, int wife, String surname,
+                      int generation) throws IOException {
+    int born = FIRST_YEAR + (generation + 1) * GENERATION_YEARS;
+    int count = 0;
+    if(generation + 1 < m_generations) {
+      count = Math.min(poisson(m_children), Math.min(MAX_CHILDREN, m_remaining));
+    }
+    int[] children = new int[count];
+    boolean[] male = new boolean[count];
+    // families and spouses of child c at c*MAX_MARRIAGES+j, -1 when unused
+    int[] families = new int[count * MAX_MARRIAGES];
+    int[] spouses = new int[count * MAX_MARRIAGES];
+    Arrays.fill(families, -1);
+    m_remaining -= count;
+    for(int c = 0; c < count; c++) {
+      children[c] = m_nextIndividual++;
+      male[c] = (nextInt(2) == 0);
+      int marriages = 0;
+      if(nextDouble() < m_marriage) {
+        marriages = 1;
+        while(marriages < MAX_MARRIAGES && nextDouble() < m_remarriage) {
+          marriages++;
+        }
+      }
+      marriages = Math.min(marriages, m_remaining);
+      m_remaining -= marriages;
+      int[] own = new int[marriages];
+      for(int j = 0; j < marriages; j++) {
+        own[j] = families[c * MAX_MARRIAGES + j] = m_nextFamily++;
+        spouses[c * MAX_MARRIAGES + j] = m_nextIndividual++;
+      }
+      individual(children[c], male[c], surname, born, family, own, marriages);
+      for(int j = 0; j < marriages; j++) {
+        individual(spouses[c * MAX_MARRIAGES + j], !male[c],
+                   pick(m_surnamePool, m_surnameWeights), born, -1,
+                   new int[] { own[j] }, 1);
+      }
+    }
+
+    xrefLine('F', family, Utils.FAMILY_TAG);
+    refLine(Utils.HUSBAND_TAG, 'I', husband);
+    refLine(Utils.WIFE_TAG, 'I', wife);
+    for(int c = 0; c < count; c++) {
+      refLine(Utils.CHILD_TAG, 'I', children[c]);
+    }
+    event(MARRIAGE_TAG, born - 2 - nextInt(6));
+
+    for(int c = 0; c < count; c++) {
+      for(int j = 0; j < MAX_MARRIAGES && families[c * MAX_MARRIAGES + j] >= 0; j++) {
+        int spouse = spouses[c * MAX_MARRIAGES + j];
+        if(male[c]) {
+          family(families[c * MAX_MARRIAGES + j], children[c], spouse, surname,
+                 generation + 1);
+        } else {
+          // the husband's surname passes to the children
+          family(families[c * MAX_MARRIAGES + j], spouse, children[c],
+                 pick(m_surnamePool, m_surnameWeights), generation + 1);
+        }
+      }
+    }
+  }
+
+  /**
+   * Write an INDI record
+   */
+  private void individual(int id, boolean male, String surname, int born,
+                          int childOf, int[] families, int marriages) throws IOException {
+    String given = male ? MALE[nextInt(MALE.length)] : FEMALE[nextInt(FEMALE.length)];
+    xrefLine('I', id, Utils.INDIVIDUAL_TAG);
+    text("1 ");
+    text(Utils.NAME_TAG);
+    text(" ");
+    text(given);
+    text(" /");
+    text(surname);
+    text("/\n1 ");
+    text(SEX_TAG);
+    text(male ? " M\n" : " F\n");
+    event(BIRTH_TAG, born + nextInt(GENERATION_YEARS / 2));
+    if(nextInt(3) > 0) {
+      event(DEATH_TAG, born + 20 + nextInt(70));
+    }
+    if(nextDouble() < m_notes) {
+      note();
+    }
+    for(int j = 0; j < marriages; j++) {
+      refLine(SPOUSE_FAMILY_TAG, 'F', families[j]);
+    }
+    if(childOf >= 0) {
+      refLine(CHILD_FAMILY_TAG, 'F', childOf);
+    }
+  }
+
+  /**
+   * Write an event with a date and a place
+   */
+  private void event(String tag, int year) throws IOException {
+    text("1 ");
+    text(tag);
+    text("\n2 ");
+    text(DATE_TAG);
+    text(" ");
+    number(1 + nextInt(28));
+    text(" ");
+    text(MONTHS[nextInt(12)]);
+    text(" ");
+    number(year);
+    text("\n2 ");
+    text(Utils.PLACE_TAG);
+    text(" ");
+    text(pick(m_placePool, m_placeWeights));
+    text("\n");
+  }
+
+  /**
+   * Write a NOTE continued on up to m_noteLines CONC lines. As GedcomWriter
+   * does, lines are cut inside a word: readers may trim the spaces at the
+   * ends of a continuation line.
+   */
+  private void note() throws IOException {
+    int lines = (m_noteLines == 0) ? 0 : 1 + nextInt(m_noteLines);
+    text("1 ");
+    text(NOTE_TAG);
+    text(" ");
+    String rest = words("", lines > 0);
+    for(int i = 0; i < lines; i++) {
+      text("2 ");
+      text(CONC_TAG);
+      text(" ");
+      rest = words(rest, i < lines - 1);
+    }
+  }
+
+  /**
+   * Write about NOTE_LINE characters of words and a line end
+   * @param start the rest of a word cut at the end of the last line
+   * @param cut true to cut the last word, as the note continues
+   * @return the rest of the cut word; null if not cut
+   */
+  private String words(String start, boolean cut) throws IOException {
+    text(start);
+    int written = start.length();
+    while(written < NOTE_LINE || cut) {
+      String word = WORDS[nextInt(WORDS.length)];
+      if(written > 0) {
+        text(" ");
+        written++;
+      }
+      if(cut && written + word.length() >= NOTE_LINE && word.length() > 1) {
+        int at = 1 + nextInt(word.length() - 1);
+        text(word.substring(0, at));
+        text("\n");
+        return word.substring(at);
+      }
+      text(word);
+      written += word.length();
+    }
+    text("\n");
+    return null;
+  }
+
+  /**
+   * Write "0 @&lt;prefix&gt;&lt;id&gt;@ &lt;tag&gt;"
+   */
+  private void xrefLine(char prefix, int id, String tag) throws IOException {
+    text("0 @");
+    put(prefix);
+    number(id);
+    text("@ ");
+    text(tag);
+    text("\n");
+  }
+
+  /**
+   * Write "1 &lt;tag&gt; @&lt;prefix&gt;&lt;id&gt;@"
+   */
+  private void refLine(String tag, char prefix, int id) throws IOException {
+    text("1 ");
+    text(tag);
+    text(" @");
+    put(prefix);
+    number(id);
+    text("@\n");
+  }
+
+  private void text(String s) throws IOException {
+    int n = s.length();
+    if(m_pos + n > m_buf.length) {
+      flush();
+    }
+    for(int i = 0; i < n; i++) {
+      m_buf[m_pos++] = (byte) s.charAt(i);
+    }
+  }
+
+  private void put(char c) throws IOException {
+    if(m_pos == m_buf.length) {
+      flush();
+    }
+    m_buf[m_pos++] = (byte) c;
+  }
+
+  private void number(int n) throws IOException {
+    if(m_pos + 11 > m_buf.length) {
+      flush();
+    }
+    int digits = 1;
+    for(int x = n; x >= 10; x /= 10) {
+      digits++;
+    }
+    for(int i = m_pos + digits - 1; i >= m_pos; i--) {
+      m_buf[i] = (byte) ('0' + n % 10);
+      n /= 10;
+    }
+    m_pos += digits;
+  }
+
+  private void flush() throws IOException {
+    m_out.write(m_buf, 0, m_pos);
+    m_bytes += m_pos;
+    m_pos = 0;
+  }
+
+  /**
+   * @return the next pseudo-random 64 bits, by SplitMix64
+   */
+  private long next() {
+    long z = (m_random += 0x9E3779B97F4A7C15L);
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+
+  /**
+   * @return a pseudo-random int from 0 to n-1
+   */
+  private int nextInt(int n) {
+    return (int) (((next() >>> 33) * n) >>> 31);
+  }
+
+  private double nextDouble() {
+    return (next() >>> 11) * 0x1.0p-53;
+  }
+
+  /**
+   * @return a Poisson distributed count with the given mean
+   */
+  private int poisson(double mean) {
+    double limit = Math.exp(-mean);
+    double p = nextDouble();
+    int k = 0;
+    while(p > limit) {
+      p *= nextDouble();
+      k++;
+    }
+    return k;
+  }
+
+  /**
+   * @return cumulative Zipf weights of n ranks, from 0 to 1
+   */
+  private double[] zipf(int n) {
+    double[] weights = new double[n];
+    double sum = 0;
+    for(int i = 0; i < n; i++) {
+      sum += 1 / Math.pow(i + 1, m_skew);
+      weights[i] = sum;
+    }
+    for(int i = 0; i < n; i++) {
+      weights[i] /= sum;
+    }
+    return weights;
+  }
+
+  private String pick(String[] pool, double[] weights) {
+    int i = Arrays.binarySearch(weights, nextDouble());
+    if(i < 0) {
+      i = -i - 1;
+    }
+    return pool[Math.min(i, pool.length - 1)];
+  }
+
+  /**
+   * Make n distinct capitalized names of at least the given number of
+   * syllables; places get a region and country as well
+   */
+  private static String[] names(int n, int syllables, boolean place) {
+    String[] names = new String[n];
+    for(int i = 0; i < n; i++) {
+      String name = word(i, syllables);
+      if(place) {
+        name = name + ", " + word(i % 97, 2) + ", " + word(i % 7, 2);
+      }
+      names[i] = name;
+    }
+    return names;
+  }
+
+  /**
+   * The digits of i in base SYLLABLES.length as syllables
+   */
+  private static String word(int i, int syllables) {
+    StringBuilder sb = new StringBuilder();
+    int count = 0;
+    do {
+      sb.append(SYLLABLES[i % SYLLABLES.length]);
+      i /= SYLLABLES.length;
+      count++;
+    } while(i > 0 || count < syllables);
+    sb.setCharAt(0, Character.toUpperCase(sb.charAt(0)));
+    return sb.toString();
+  }
+}
@@ -0,0 +1,43 @@
+/******************************************************************************
+* GedcomHandler
+* Callback interface for receiving level=0 records from a GedcomReader
+* as they are parsed, without building the whole file in memory.
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj;
+
+import com.msbmsb.genealoj.GedcomNode;
+
+/**
+ * Receives parse events from a GedcomReader, one level=0 record at a time.
+ * The reader drops its own reference to a record once endRecord returns,
+ * so a handler that does not keep the record lets it be collected.
+ */
+public interface GedcomHandler {
+  /**
+   * Called once before any record is read
+   */
+  public void startDocument();
+
+  /**
+   * Called when the level=0 line of a record has been read, before any of
+   * its children have been parsed
+   * @param record the level=0 node; it has no children yet
+   */
+  public void startRecord(GedcomNode record);
+
+  /**
+   * Called once the record and all of its descendants have been parsed
+   * and finalized
+   * @param record the complete level=0 node
+   */
+  public void endRecord(GedcomNode record);
+
+  /**
+   * Called once after the last record has been read
+   */
+  public void endDocument();
+}
@@ -15,20 +15,45 @@ import java.io.IOException;
 
 import java.util.Map;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
 
 /**
  * Generic node for holding and traversing through a GEDCOM line
  */
 public class GedcomNode {
+  private static final int TAG_ID_UNSET = -2;
+
   private int m_level;
   private String m_tag;
+  /**
+   * ID of m_tag in GedcomSymbols; TAG_ID_UNSET until first needed
+   */
+  private int m_tagId = TAG_ID_UNSET;
   private String m_reference = null;
   private String m_data = null;
-  private Map<String, List<GedcomNode> > m_childrenByTag = new HashMap<String, List<GedcomNode> >();
-  private Map<String, GedcomNode> m_referencedNodes = new HashMap<String, GedcomNode>();
+  /**
+   * Children grouped by tag, one list per distinct tag in the order the
+   * tags were first seen. Allocated with the first child, so leaf nodes
+   * hold no child storage at all.
+   */
+  private List<GedcomNode>[] m_childGroups = null;
+  /**
+   * Map of reference-&gt;node for children that carry a reference.
+   * Allocated with the first such child; in a parsed tree only the root
+   * node, which holds the level=0 records, has one.
+   */
+  private Map<String, GedcomNode> m_referencedNodes = null;
+  /**
+   * Input order of the children: the tag group of each child, in the
+   * order the children were added. null as long as every child was added
+   * to the last group, since the groups are then in input order as is.
+   */
+  private int[] m_childOrder = null;
 
   /**
    * Constructors
@@ -68,6 +93,25 @@ public class GedcomNode {
     return m_tag;
   }
 
+  /**
+   * @return ID of this node's tag, GedcomSymbols.UNKNOWN_TAG if it is not
+   *         a standard GEDCOM tag
+   */
+  public int tagId() {
+    if(m_tagId == TAG_ID_UNSET) {
+      m_tagId = GedcomSymbols.tagId(m_tag);
+    }
+    return m_tagId;
+  }
+
+  /**
+   * Set the tag ID, as already resolved by the tokenizer
+   * @param tagId the ID of this node's tag
+   */
+  void tagId(int tagId) {
+    m_tagId = tagId;
+  }
+
   /**
    * Set the reference for this node
    * @param ref the reference element of this node
@@ -104,11 +148,22 @@ public class GedcomNode {
    * @param child the node that is to be set as child
    */
   public void addChildNode(GedcomNode child) {
-    List<GedcomNode> nodes = getChildrenWithTag(child.tag());
-    if(nodes == null) {
-      m_childrenByTag.put(child.tag(), nodes = new ArrayList<GedcomNode>());
+    int g = groupIndex(child.tag());
+    if(g < 0) {
+      addChildGroup(new ArrayList<GedcomNode>(1));
+      g = m_childGroups.length - 1;
+    } else if(m_childOrder == null && g != m_childGroups.length - 1) {
+      // first child out of group order, so record the order from now on
+      m_childOrder = groupOrder();
     }
-    nodes.add(child);
+    if(m_childOrder != null) {
+      int count = childCount();
+      if(count == m_childOrder.length) {
+        m_childOrder = Arrays.copyOf(m_childOrder, count + (count >> 1) + 4);
+      }
+      m_childOrder[count] = g;
+    }
+    m_childGroups[g].add(child);
 
     // if this child is a reference node, add it to map of ref nodes
     // if this child is not a reference node, nothing will be done
@@ -117,6 +172,221 @@ public class GedcomNode {
     }
   }
 
+  /**
+   * Remove a child node of this node, and its reference from the map for
+   * reference-&gt;node
+   * @param child the child node to remove
+   * @return true if child was a child of this node
+   */
+  public boolean removeChildNode(GedcomNode child) {
+    if(m_childGroups == null) {
+      return false;
+    }
+    for(int g = 0; g < m_childGroups.length; g++) {
+      List<GedcomNode> group = m_childGroups[g];
+      int i = indexOf(group, child);
+      if(i < 0) {
+        continue;
+      }
+      if(m_childOrder != null) {
+        removeOrder(g, i);
+      }
+      group.remove(i);
+      if(group.isEmpty()) {
+        // tag groups are never empty, so drop the group
+        List<GedcomNode>[] groups = Arrays.copyOf(m_childGroups, m_childGroups.length - 1);
+        System.arraycopy(m_childGroups, g + 1, groups, g, groups.length - g);
+        m_childGroups = (groups.length == 0) ? null : groups;
+        if(m_childOrder != null) {
+          int count = childCount();
+          for(int k = 0; k < count; k++) {
+            if(m_childOrder[k] > g) {
+              m_childOrder[k]--;
+            }
+          }
+        }
+      }
+      removeReferencedNode(child);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Replace a child node of this node with another node, keeping its place
+   * among the children if both have the same tag
+   * @param child the child node to replace
+   * @param replacement the node to put in its place
+   * @return true if child was a child of this node
+   */
+  public boolean replaceChildNode(GedcomNode child, GedcomNode replacement) {
+    List<GedcomNode> group = getChildrenWithTag(child.tag());
+    int i = (group == null) ? -1 : indexOf(group, child);
+    if(i < 0) {
+      return false;
+    }
+    if(!child.tag().equals(replacement.tag())) {
+      removeChildNode(child);
+      addChildNode(replacement);
+      return true;
+    }
+    group.set(i, replacement);
+    removeReferencedNode(child);
+    if(m_level != 0) {
+      addReferencedNode(replacement);
+    }
+    return true;
+  }
+
+  /**
+   * Remove the entry of the i-th child of group g from m_childOrder
+   */
+  private void removeOrder(int g, int i) {
+    int count = childCount();
+    for(int k = 0; k < count; k++) {
+      if(m_childOrder[k] == g && i-- == 0) {
+        System.arraycopy(m_childOrder, k + 1, m_childOrder, k, count - k - 1);
+        return;
+      }
+    }
+  }
+
+  /**
+   * @return the group of each child as if added in group order
+   */
+  private int[] groupOrder() {
+    int[] order = new int[childCount() + 4];
+    int k = 0;
+    for(int g = 0; g < m_childGroups.length; g++) {
+      for(int i = 0; i < m_childGroups[g].size(); i++) {
+        order[k++] = g;
+      }
+    }
+    return order;
+  }
+
+  /**
+   * @return index of the group of children with the given tag; -1 if none
+   */
+  private int groupIndex(String tag) {
+    if(m_childGroups == null) {
+      return -1;
+    }
+    // few distinct tags per node, so a scan beats hashing
+    for(int g = 0; g < m_childGroups.length; g++) {
+      String groupTag = m_childGroups[g].get(0).tag();
+      if(groupTag == tag || groupTag.equals(tag)) {
+        return g;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @return index of node in list by identity; -1 if not found
+   */
+  private static int indexOf(List<GedcomNode> list, GedcomNode node) {
+    for(int i = 0; i < list.size(); i++) {
+      if(list.get(i) == node) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Remove node from the map for reference-&gt;node, if it is mapped
+   */
+  private void removeReferencedNode(GedcomNode node) {
+    String ref = node.reference();
+    if(ref != null && m_referencedNodes != null && m_referencedNodes.get(ref) == node) {
+      m_referencedNodes.remove(ref);
+    }
+  }
+
+  /**
+   * Append a new tag group to m_childGroups
+   * @param nodes the list holding the children of the new tag
+   */
+  private void addChildGroup(List<GedcomNode> nodes) {
+    if(m_childGroups == null) {
+      m_childGroups = newChildGroups(1);
+    } else {
+      m_childGroups = Arrays.copyOf(m_childGroups, m_childGroups.length + 1);
+    }
+    m_childGroups[m_childGroups.length - 1] = nodes;
+  }
+
+  /**
+   * @param size number of tag groups
+   * @return a new m_childGroups array; Java cannot create a generic array
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static List<GedcomNode>[] newChildGroups(int size) {
+    return new List[size];
+  }
+
+  /**
+   * @return number of distinct tags among this node's children
+   */
+  int childGroupCount() {
+    return (m_childGroups == null) ? 0 : m_childGroups.length;
+  }
+
+  /**
+   * @param i index of the tag group, in the order tags were first seen
+   * @return the children with the i-th distinct tag
+   */
+  List<GedcomNode> childGroup(int i) {
+    return m_childGroups[i];
+  }
+
+  /**
+   * @return number of children of this node
+   */
+  int childCount() {
+    int count = 0;
+    if(m_childGroups != null) {
+      for(List<GedcomNode> group : m_childGroups) {
+        count += group.size();
+      }
+    }
+    return count;
+  }
+
+  /**
+   * @return true if the child groups, read one after the other, list the
+   *         children in the order they were added
+   */
+  boolean childGroupsInOrder() {
+    return m_childOrder == null;
+  }
+
+  /**
+   * Get all children nodes of m_level+1 in the order they were added,
+   * which for a parsed tree is the order of the input file
+   * @return List<GedcomNode> of the children; empty if there are none
+   */
+  public List<GedcomNode> getChildNodes() {
+    List<GedcomNode> children = new ArrayList<GedcomNode>(childCount());
+    if(m_childGroups == null) {
+      return children;
+    }
+    if(m_childOrder == null) {
+      for(List<GedcomNode> group : m_childGroups) {
+        children.addAll(group);
+      }
+    } else {
+      int[] next = new int[m_childGroups.length];
+      int count = childCount();
+      for(int k = 0; k < count; k++) {
+        int g = m_childOrder[k];
+        children.add(m_childGroups[g].get(next[g]++));
+      }
+    }
+    return children;
+  }
+
   /**
    * Get the list of all children nodes of m_level+1 given a tag
    * @param tag the tag to retrieve on
@@ -124,38 +394,72 @@ public class GedcomNode {
    *         null if no matches found
    */
   public List<GedcomNode> getChildrenWithTag(String tag) {
-    return m_childrenByTag.get(tag);
+    int g = groupIndex(tag);
+    return (g < 0) ? null : m_childGroups[g];
   }
 
   /**
-   * Recursively get the list of all descendant nodes given a tag
-   * Builds a list from all children of children
-   * @param tag the tag to retrieve on
-   * @return List<GedcomNode> of recursively retrieved nodes matching tag;
+   * Get the list of all children nodes of m_level+1 given a tag ID.
+   * Only standard tags have IDs; use getChildrenWithTag(String) for others.
+   * @param tagId the GedcomSymbols tag ID to retrieve on
+   * @return List<GedcomNode> of nodes matching tag;
    *         null if no matches found
    */
-  public List<GedcomNode> getDescendantsWithTag(String tag) {
-    List<GedcomNode> decList = getChildrenWithTag(tag);
+  public List<GedcomNode> getChildrenWithTag(int tagId) {
+    if(m_childGroups == null || tagId < 0) {
+      return null;
+    }
+    for(List<GedcomNode> group : m_childGroups) {
+      if(group.get(0).tagId() == tagId) {
+        return group;
+      }
+    }
+    return null;
+  }
 
-    Iterator nodes = m_childrenByTag.entrySet().iterator();
-    while(nodes.hasNext()) {
-      List<GedcomNode> childrenList = (ArrayList<GedcomNode>)((Map.Entry)nodes.next()).getValue();
-      for(GedcomNode n : childrenList) {
-        decList.addAll(n.getDescendantsWithTag(tag));
+  /**
+   * Get the list of all descendant nodes given a tag, at any depth, in
+   * document order. The subtree is walked with an explicit stack, so deep
+   * trees cannot overflow the call stack, and is left as it is.
+   * @param tag the tag to retrieve on, compared as is
+   * @return new List<GedcomNode> of the descendant nodes matching tag;
+   *         empty if no matches found
+   */
+  public List<GedcomNode> getDescendantsWithTag(String tag) {
+    List<GedcomNode> matches = new ArrayList<GedcomNode>();
+    if(childGroupCount() == 0) {
+      return matches;
+    }
+    Deque<Iterator<GedcomNode>> stack = new ArrayDeque<Iterator<GedcomNode>>();
+    stack.push(getChildNodes().iterator());
+    while(!stack.isEmpty()) {
+      Iterator<GedcomNode> children = stack.peek();
+      if(!children.hasNext()) {
+        stack.pop();
+        continue;
+      }
+      GedcomNode child = children.next();
+      if(child.tag().equals(tag)) {
+        matches.add(child);
+      }
+      if(child.childGroupCount() > 0) {
+        stack.push(child.getChildNodes().iterator());
       }
     }
-    return decList;
+    return matches;
   }
 
   /**
    * Add this node to the reference-&gt;GedcomNode map
-   * If node is not a reference or this is not a level=0 node,
-   * then nothing will be added to the map
+   * If node is not a reference, then nothing will be added to the map
    * @param node the node to add
    */
   public void addReferencedNode(GedcomNode node) {
     String ref = node.reference();
-    if((m_level != 0) || (ref != null)) {
+    if(ref != null) {
+      if(m_referencedNodes == null) {
+        m_referencedNodes = new HashMap<String, GedcomNode>();
+      }
       m_referencedNodes.put(ref, node);
     }
   }
@@ -166,7 +470,7 @@ public class GedcomNode {
    * @return the GedcomNode with the given ref reference
    */
   public GedcomNode getReferencedNode(String ref) {
-    return m_referencedNodes.get(ref);
+    return (m_referencedNodes == null) ? null : m_referencedNodes.get(ref);
   }
 
   /**
@@ -180,48 +484,24 @@ public class GedcomNode {
 
   /**
    * Build a string representation of this node and its children
-   * This builds a string in the GEDCOM format just as it was input
-   * but will not necessarily return in the same order as it was given
+   * This builds a string in the GEDCOM format and line order just as it
+   * was input, as GedcomWriter writes it. A node with a negative level,
+   * such as the root of a parse, only contributes its children.
+   * For large trees write to a stream with GedcomWriter instead.
    * @return string representation of this node and children
    */
   public String toString() {
     StringBuilder sb = new StringBuilder();
-    sb.append(m_level);
-    sb.append(" ");
-    // if this node is at level=0 and has a reference, it should be 
-    // printed reference before tag
-    if(m_level == 0 && m_reference != null) {
-      sb.append(m_reference);
-      sb.append(" ");
-      sb.append(m_tag);
-      sb.append(" ");
-    } else {
-      // otherwise always print tag before reference
-      sb.append(m_tag);
-      sb.append(" ");
-      if(m_reference != null) {
-        sb.append(m_reference);
-        sb.append(" ");
-      }
+    try {
+      new GedcomWriter(sb).write(this);
+    } catch(IOException ioe) {
+      // appending to a StringBuilder does not throw
+      throw new IllegalStateException(ioe);
     }
-    // print the data last 
-    if(m_data != null) {
-      sb.append(m_data);
+    // no terminator after the last line
+    if(sb.length() > 0) {
+      sb.setLength(sb.length() - 1);
     }
-
-    // iterate through children and recurse
-    Iterator nodes = m_childrenByTag.entrySet().iterator();
-    while(nodes.hasNext()) {
-      List<GedcomNode> childrenList = (ArrayList<GedcomNode>)((Map.Entry)nodes.next()).getValue();
-      for(GedcomNode n : childrenList) {
-        sb.append("\n");
-        sb.append(n.toString());
-      }
-      /*
-      sb.append("\n");
-      sb.append(((Map.Entry)nodes.next()).getValue().toString());*/
-    }
-
     return sb.toString();
   }
 }
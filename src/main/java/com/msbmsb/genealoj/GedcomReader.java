@@ -0,0 +1,492 @@
+/******************************************************************************
+* GedcomReader
+* Streaming reader for GEDCOM input. Reads one level=0 record at a time,
+* either pulled through nextRecord() or pushed to a GedcomHandler.
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj;
+
+import com.msbmsb.genealoj.GedcomEncoding;
+import com.msbmsb.genealoj.GedcomHandler;
+import com.msbmsb.genealoj.GedcomNode;
+import com.msbmsb.genealoj.GedcomSymbols;
+import com.msbmsb.genealoj.GedcomTokenizer;
+import com.msbmsb.genealoj.ParseMetrics;
+import com.msbmsb.genealoj.Projection;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+
+import java.nio.charset.Charset;
+
+import java.util.Arrays;
+
+/**
+ * Reads GEDCOM input record by record. Only the record currently being
+ * parsed is referenced by the reader, so memory use is bounded by the
+ * largest record rather than the size of the file.
+ */
+public class GedcomReader {
+  /**
+   * Source of GEDCOM lines
+   */
+  private BufferedReader m_reader;
+
+  /**
+   * Tokenizer reused for every line
+   */
+  private GedcomTokenizer m_tokenizer;
+
+  /**
+   * Level of the (implicit) node that records are children of.
+   * Any line at or below this level ends the input.
+   */
+  private int m_rootLevel;
+
+  /**
+   * Explicit stack of the nodes still open in the current record,
+   * m_stack[0] is the record itself
+   */
+  private GedcomNode[] m_stack = new GedcomNode[16];
+  private int m_depth = 0;
+
+  /**
+   * The first node of the next record, read while closing the current one
+   */
+  private GedcomNode m_nextRecord = null;
+
+  /**
+   * Projection of the lines to load; null to load every line
+   */
+  private Projection m_projection = null;
+
+  /**
+   * Projection trie node matched by each node of m_stack, by the next
+   * record and by the last node read
+   */
+  private Projection.Node[] m_matchStack = new Projection.Node[16];
+  private Projection.Node m_nextMatch = null;
+  private Projection.Node m_lastMatch = null;
+
+  /**
+   * Level of the last line left out of the projection; the lines below
+   * it are skipped. -1 if not skipping.
+   */
+  private int m_skipLevel = -1;
+
+  /**
+   * Set once a line at or below m_rootLevel, or the end of input, is reached
+   */
+  private boolean m_finished = false;
+
+  /**
+   * Number of lines read so far, for error reporting
+   */
+  protected int m_lineNumber = 0;
+
+  /**
+   * Metrics to fill in; null to collect none
+   */
+  private ParseMetrics m_metrics = null;
+
+  /**
+   * Set while reading a line whose phases are timed for the metrics
+   */
+  protected boolean m_sampling = false;
+
+  /**
+   * System.nanoTime when tokenizing the sampled line began
+   */
+  protected long m_tokenizeStart;
+
+  /**
+   * Time spent finalizing nodes on sampled lines
+   */
+  private long m_finalizeNanos = 0;
+
+  /**
+   * Constructor. Read records from the given reader.
+   * @param br BufferedReader positioned at the start of a level=0 line
+   */
+  public GedcomReader(BufferedReader br) {
+    this(br, -1);
+  }
+
+  /**
+   * Constructor. Read records from the given file in the charset named by
+   * its header, or else the platform default charset.
+   * @param file File of input GEDCOM file to read
+   */
+  public GedcomReader(File file) throws FileNotFoundException {
+    this(open(file));
+  }
+
+  /**
+   * Open a file in its detected charset
+   */
+  private static BufferedReader open(File file) throws FileNotFoundException {
+    try {
+      return GedcomEncoding.newReader(file,
+          GedcomEncoding.detect(file, Charset.defaultCharset()));
+    } catch(FileNotFoundException fne) {
+      throw fne;
+    } catch(IOException ioe) {
+      // unreadable header: let the reads report the error
+      return new BufferedReader(new FileReader(file));
+    }
+  }
+
+  /**
+   * Constructor. Read records that are children of a node at rootLevel,
+   * i.e. every line with a level greater than rootLevel.
+   * @param br BufferedReader positioned at the start of a line
+   * @param rootLevel level of the node the records belong to
+   */
+  GedcomReader(BufferedReader br, int rootLevel) {
+    m_reader = br;
+    m_rootLevel = rootLevel;
+    m_tokenizer = new GedcomTokenizer(new GedcomSymbols());
+  }
+
+  /**
+   * Constructor for readers that supply lines through their own
+   * readLine(GedcomTokenizer) rather than a BufferedReader
+   */
+  protected GedcomReader() {
+    this(null, -1);
+  }
+
+  /**
+   * Set the symbol table used for the tags and values of this parse.
+   * By default each reader has its own table of tags.
+   * @param symbols GedcomSymbols table to use
+   */
+  public void symbols(GedcomSymbols symbols) {
+    m_tokenizer = new GedcomTokenizer(symbols);
+  }
+
+  /**
+   * Only load the lines selected by the given projection. Other lines are
+   * skipped right after tokenizing, before any node is built for them;
+   * when reading from a BufferedReader they are still read as Strings.
+   * @param projection the Projection to load; null to load every line
+   */
+  public void projection(Projection projection) {
+    m_projection = projection;
+  }
+
+  /**
+   * Count the lines, nodes and records read and time a sample of the
+   * lines in the given metrics
+   * @param metrics the ParseMetrics to fill in; null to collect none
+   */
+  public void metrics(ParseMetrics metrics) {
+    m_metrics = metrics;
+  }
+
+  /**
+   * Pull the next level=0 record with all its descendants.
+   * @return the finalized record; null once the input is exhausted
+   */
+  public GedcomNode nextRecord() throws IOException {
+    return readRecord(null);
+  }
+
+  /**
+   * Push every remaining record of the input to the given handler.
+   * @param handler GedcomHandler receiving the parse events
+   */
+  public void parse(GedcomHandler handler) throws IOException {
+    handler.startDocument();
+    GedcomNode record;
+    while((record = readRecord(handler)) != null) {
+      handler.endRecord(record);
+    }
+    handler.endDocument();
+  }
+
+  /**
+   * Close the underlying reader
+   */
+  public void close() throws IOException {
+    m_reader.close();
+  }
+
+  /**
+   * Read one record, notifying the handler (if any) once its first line
+   * has been read.
+   * Every line is read exactly once. Open nodes are kept on m_stack: a new
+   * line closes every open node of the same or a deeper level, then becomes
+   * a child of the node left on top. A node is added to its parent and
+   * finalized when it is closed, i.e. once all its children are complete.
+   * @param handler GedcomHandler to notify; may be null
+   * @return the finalized record; null if no more records
+   */
+  private GedcomNode readRecord(GedcomHandler handler) throws IOException {
+    if(m_finished) {
+      return null;
+    }
+
+    GedcomNode record = m_nextRecord;
+    Projection.Node match = m_nextMatch;
+    m_nextRecord = null;
+    m_nextMatch = null;
+    if(record == null) {
+      record = readNode();
+      match = m_lastMatch;
+      if(record == null || record.level() <= m_rootLevel) {
+        m_finished = true;
+        return null;
+      }
+    }
+    if(handler != null) {
+      handler.startRecord(record);
+    }
+
+    m_stack[0] = record;
+    m_matchStack[0] = match;
+    m_depth = 1;
+    int size = 1;
+    GedcomNode node;
+    while((node = readNode()) != null) {
+      int level = node.level();
+      if(level <= record.level()) {
+        // this line starts the next record, or ends the input entirely
+        if(level > m_rootLevel) {
+          m_nextRecord = node;
+          m_nextMatch = m_lastMatch;
+        } else {
+          m_finished = true;
+        }
+        break;
+      }
+      long start = m_sampling ? System.nanoTime() : 0;
+      long finalized = m_finalizeNanos;
+      // close every open node that cannot be the parent of this line
+      while(m_stack[m_depth - 1].level() >= level) {
+        closeNode();
+      }
+      openNode(node);
+      size++;
+      if(m_sampling) {
+        m_metrics.sample(ParseMetrics.Phase.ASSEMBLE,
+                         System.nanoTime() - start - (m_finalizeNanos - finalized));
+      }
+    }
+    if(node == null) {
+      m_finished = true;
+    }
+
+    while(m_depth > 1) {
+      closeNode();
+    }
+    m_stack[0] = null;
+    m_matchStack[0] = null;
+    m_depth = 0;
+    finalizeNode(record);
+    if(m_metrics != null) {
+      m_metrics.record(record, size);
+    }
+    return record;
+  }
+
+  /**
+   * Push a node onto the stack of open nodes
+   * @param node the node to push
+   */
+  private void openNode(GedcomNode node) {
+    if(m_depth == m_stack.length) {
+      m_stack = Arrays.copyOf(m_stack, m_depth * 2);
+      m_matchStack = Arrays.copyOf(m_matchStack, m_depth * 2);
+    }
+    m_matchStack[m_depth] = m_lastMatch;
+    m_stack[m_depth++] = node;
+  }
+
+  /**
+   * Pop the top open node, add it to its parent and finalize it
+   */
+  private void closeNode() {
+    GedcomNode node = m_stack[--m_depth];
+    m_stack[m_depth] = null;
+    m_matchStack[m_depth] = null;
+    m_stack[m_depth - 1].addChildNode(node);
+    finalizeNode(node);
+  }
+
+  /**
+   * Finalize a complete node, timing it on sampled lines
+   */
+  private void finalizeNode(GedcomNode node) {
+    if(!m_sampling) {
+      node.finalize();
+      return;
+    }
+    long start = System.nanoTime();
+    node.finalize();
+    long nanos = System.nanoTime() - start;
+    m_finalizeNanos += nanos;
+    m_metrics.sample(ParseMetrics.Phase.FINALIZE, nanos);
+  }
+
+  /**
+   * Read the next non-blank line selected by the projection and build its
+   * node, setting m_lastMatch to its projection trie node
+   * @return the node for the line; null at the end of input
+   */
+  private GedcomNode readNode() throws IOException {
+    while(true) {
+      long start = 0;
+      if(m_metrics != null) {
+        m_sampling = ((m_lineNumber & ParseMetrics.SAMPLE_MASK) == 0);
+        if(m_sampling) {
+          start = System.nanoTime();
+          m_tokenizeStart = start;
+        }
+      }
+      try {
+        if(!readLine(m_tokenizer)) {
+          m_sampling = false;
+          return null;
+        }
+      } catch(IllegalArgumentException iae) {
+        throw new IOException("Error parsing file, invalid line " + m_lineNumber
+                              + ": " + iae.getMessage());
+      }
+      if(m_metrics != null) {
+        m_metrics.line();
+      }
+      if(m_projection == null) {
+        return buildNode(start);
+      }
+      int level = m_tokenizer.level();
+      if(level <= m_rootLevel) {
+        // the end of the input is never projected away
+        m_skipLevel = -1;
+        return buildNode(start);
+      }
+      if(m_skipLevel >= 0 && level > m_skipLevel) {
+        continue;
+      }
+      m_skipLevel = -1;
+      m_lastMatch = parentMatch(level).match(m_tokenizer);
+      if(m_lastMatch != null) {
+        return buildNode(start);
+      }
+      m_skipLevel = level;
+    }
+  }
+
+  /**
+   * Build the node of the tokenized line
+   * @param start System.nanoTime when reading a sampled line began
+   */
+  private GedcomNode buildNode(long start) {
+    GedcomNode node = m_tokenizer.buildNode();
+    if(m_metrics != null) {
+      m_metrics.node();
+      if(m_sampling) {
+        m_metrics.sample(ParseMetrics.Phase.READ, m_tokenizeStart - start);
+        m_metrics.sample(ParseMetrics.Phase.TOKENIZE, System.nanoTime() - m_tokenizeStart);
+      }
+    }
+    return node;
+  }
+
+  /**
+   * @return the projection trie node of the open node a line at the given
+   *         level belongs under; the trie root for a record line
+   */
+  private Projection.Node parentMatch(int level) {
+    for(int d = m_depth - 1; d >= 0; d--) {
+      if(m_stack[d].level() < level) {
+        return m_matchStack[d];
+      }
+    }
+    return m_projection.root();
+  }
+
+  /**
+   * Read the next non-blank line into the given tokenizer, counting every
+   * line read in m_lineNumber. While m_sampling, m_tokenizeStart is set
+   * to the time tokenizing began.
+   * @param tokenizer GedcomTokenizer to tokenize the line with
+   * @return false at the end of input, true otherwise
+   */
+  protected boolean readLine(GedcomTokenizer tokenizer) throws IOException {
+    String line;
+    do {
+      line = m_reader.readLine();
+      if(line == null) {
+        return false;
+      }
+      m_lineNumber++;
+      if(m_sampling) {
+        m_tokenizeStart = System.nanoTime();
+      }
+    } while(!tokenizer.tokenize(line));
+    return true;
+  }
+
+  /**
+   * Parse given the input Reader and current node.
+   * For every line with level, l &gt; node.level(), creates a new GedcomNode
+   * and adds it beneath node. Parsing stops at the end of input or at the
+   * first line with a level not greater than node.level(); that line is
+   * consumed.
+   * @param br BufferedReader pointing to the next file line
+   * @param node GedcomNode current node in which to add children nodes
+   */
+  public static void parseGedcom(BufferedReader br, GedcomNode node)
+    throws IOException {
+    GedcomReader reader = new GedcomReader(br, node.level());
+    GedcomNode child;
+    while((child = reader.nextRecord()) != null) {
+      node.addChildNode(child);
+    }
+  }
+
+  /**
+   * Given a GEDCOM file line, return a GedcomNode object containing
+   * the appropriate data members set.
+   * @param line the line of gedcom data to digest
+   * @return GedcomNode object initialized appropriately
+   */
+  public static GedcomNode buildGedcomNode(String line) {
+    GedcomTokenizer tokenizer = new GedcomTokenizer();
+    tokenizer.tokenize(line);
+    return tokenizer.buildNode();
+  }
+
+  /**
+   * Build the data portion of a gedcom line by ignoring tokens up to the
+   * index of token tokIndex
+   * For example:
+   *   line = 1 PLAC Saturn
+   *   tokIndex = 1
+   * will return 'Saturn'. 'PLAC' is the space-delimited token at tokIndex=1.
+   * @param line the whole gedcom line
+   * @param tokIndex the index of the space-delimited token to begin with
+   * @return the string from tokIndex to end of string
+   */
+  public static String restFromTok(String line, int tokIndex) {
+    int i=0;
+    int index = line.indexOf(" ");
+    while(i<tokIndex && index > 0) {
+      index = line.indexOf(" ", index+1);
+      i++;
+    }
+
+    try {
+      return (index > 0) ? line.substring(index+1) : "";
+    } catch(IndexOutOfBoundsException e) {
+      return "";
+    }
+  }
+}
@@ -0,0 +1,474 @@
+/******************************************************************************
+* GedcomSnapshot
+* Binary snapshot of a parsed and linked GedcomNode tree, for reloading a
+* GEDCOM file without parsing it again.
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj;
+
+import com.msbmsb.genealoj.GedcomNode;
+import com.msbmsb.genealoj.GedcomSymbols;
+import com.msbmsb.genealoj.IndividualNode;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * A snapshot file is a fixed header followed by the payload:
+ *   header:  magic "GENEALOJ", format version, size and modification time
+ *            of the source file, string, node and individual counts,
+ *            payload length and CRC32 of the payload
+ *   strings: every distinct tag, reference and data value, once each
+ *   nodes:   the tree in preorder; per node its flags, level, tag,
+ *            reference and data string numbers and number of children
+ *   links:   per individual, in preorder, its parents, children and
+ *            spouses (as individual numbers) and families (as node numbers)
+ * Numbers in the payload are unsigned LEB128 varints; strings are UTF-8.
+ * Reading maps the file and decodes the tree straight from the mapping.
+ * Equal strings become one shared instance and standard tags resolve to
+ * the GedcomSymbols instances. Links are restored from the stored
+ * numbers instead of being resolved through the references again.
+ */
+public class GedcomSnapshot {
+  /**
+   * Format version; snapshots of another version are not read
+   */
+  public static final int VERSION = 1;
+
+  private static final byte[] MAGIC = { 'G', 'E', 'N', 'E', 'A', 'L', 'O', 'J' };
+  private static final int HEADER_SIZE = 60;
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  private static final int FLAG_INDIVIDUAL = 1;
+
+  /**
+   * This class is intended to contain static functions, so disable constructing
+   */
+  private GedcomSnapshot() { }
+
+  /**
+   * Is snapshot a readable snapshot taken of source as it is now?
+   * Compares the size and modification time of source against those
+   * recorded in the snapshot header; the payload is not checked.
+   * @param snapshot the snapshot file
+   * @param source the GEDCOM file it was taken of
+   * @return true if the snapshot is current
+   */
+  public static boolean isCurrent(File snapshot, File source) {
+    if(!snapshot.isFile() || !source.isFile()) {
+      return false;
+    }
+    try {
+      DataInputStream in = new DataInputStream(new FileInputStream(snapshot));
+      try {
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        return Arrays.equals(magic, MAGIC) && in.readInt() == VERSION
+            && in.readInt() == 0
+            && in.readLong() == source.length()
+            && in.readLong() == source.lastModified();
+      } finally {
+        in.close();
+      }
+    } catch(IOException ioe) {
+      return false;
+    }
+  }
+
+  /**
+   * Write a snapshot of the tree under root. The file is written beside
+   * the target and renamed into place once complete.
+   * @param root the level=-1 root holding the level=0 records
+   * @param source the GEDCOM file the tree was parsed from
+   * @param snapshot the snapshot file to write
+   */
+  public static void write(GedcomNode root, File source, File snapshot)
+    throws IOException {
+    // number every node, individual and string in preorder
+    List<GedcomNode> nodes = new ArrayList<GedcomNode>();
+    List<IndividualNode> individuals = new ArrayList<IndividualNode>();
+    Map<GedcomNode, Integer> nodeIds = new IdentityHashMap<GedcomNode, Integer>();
+    Map<IndividualNode, Integer> individualIds =
+        new IdentityHashMap<IndividualNode, Integer>();
+    Map<String, Integer> stringIds = new HashMap<String, Integer>();
+    List<String> strings = new ArrayList<String>();
+
+    List<GedcomNode> pending = new ArrayList<GedcomNode>();
+    pushChildren(root, pending);
+    while(!pending.isEmpty()) {
+      GedcomNode node = pending.remove(pending.size() - 1);
+      nodeIds.put(node, nodes.size());
+      nodes.add(node);
+      if(node instanceof IndividualNode) {
+        individualIds.put((IndividualNode) node, individuals.size());
+        individuals.add((IndividualNode) node);
+      }
+      string(node.tag(), stringIds, strings);
+      string(node.reference(), stringIds, strings);
+      string(node.data(), stringIds, strings);
+      pushChildren(node, pending);
+    }
+
+    File tmp = new File(snapshot.getPath() + ".tmp");
+    FileOutputStream file = new FileOutputStream(tmp);
+    CRC32 crc = new CRC32();
+    long payload;
+    try {
+      file.write(new byte[HEADER_SIZE]);
+      CountingOutput out = new CountingOutput(
+          new CheckedOutputStream(new BufferedOutputStream(file, 64 * 1024), crc));
+      for(String s : strings) {
+        byte[] bytes = s.getBytes(UTF8);
+        out.varint(bytes.length);
+        out.write(bytes, 0, bytes.length);
+      }
+      out.varint(root.childCount());
+      for(GedcomNode node : nodes) {
+        out.write(node instanceof IndividualNode ? FLAG_INDIVIDUAL : 0);
+        out.varint(node.level());
+        out.varint(stringIds.get(node.tag()));
+        out.varint(id(node.reference(), stringIds));
+        out.varint(id(node.data(), stringIds));
+        out.varint(node.childCount());
+      }
+      for(IndividualNode indi : individuals) {
+        individualLinks(out, indi.getParents(), individualIds);
+        individualLinks(out, indi.getChildren(), individualIds);
+        individualLinks(out, indi.getSpouses(), individualIds);
+        nodeLinks(out, indi.families(), nodeIds);
+        nodeLinks(out, indi.familiesAsHead(), nodeIds);
+        nodeLinks(out, indi.familiesAsChild(), nodeIds);
+      }
+      out.flush();
+      payload = out.m_count;
+    } finally {
+      file.close();
+    }
+
+    RandomAccessFile header = new RandomAccessFile(tmp, "rw");
+    try {
+      header.write(MAGIC);
+      header.writeInt(VERSION);
+      header.writeInt(0);
+      header.writeLong(source.length());
+      header.writeLong(source.lastModified());
+      header.writeInt(strings.size());
+      header.writeInt(nodes.size());
+      header.writeInt(individuals.size());
+      header.writeLong(payload);
+      header.writeLong(crc.getValue());
+    } finally {
+      header.close();
+    }
+    if(snapshot.exists() && !snapshot.delete()) {
+      throw new IOException("Cannot replace snapshot: " + snapshot);
+    }
+    if(!tmp.renameTo(snapshot)) {
+      throw new IOException("Cannot write snapshot: " + snapshot);
+    }
+  }
+
+  /**
+   * Read a snapshot back into a linked tree
+   * @param snapshot the snapshot file
+   * @return the level=-1 root holding the level=0 records
+   * @throws IOException if the file is not a valid snapshot of this version
+   */
+  public static GedcomNode read(File snapshot) throws IOException {
+    FileChannel channel = new FileInputStream(snapshot).getChannel();
+    try {
+      long size = channel.size();
+      if(size < HEADER_SIZE) {
+        throw new IOException("Not a snapshot: " + snapshot);
+      }
+      if(size > Integer.MAX_VALUE) {
+        throw new IOException("Snapshot too large to map: " + snapshot);
+      }
+      MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      byte[] magic = new byte[MAGIC.length];
+      buf.get(magic);
+      if(!Arrays.equals(magic, MAGIC)) {
+        throw new IOException("Not a snapshot: " + snapshot);
+      }
+      int version = buf.getInt();
+      if(version != VERSION || buf.getInt() != 0) {
+        throw new IOException("Unsupported snapshot version " + version + ": " + snapshot);
+      }
+      buf.getLong();
+      buf.getLong();
+      int stringCount = buf.getInt();
+      int nodeCount = buf.getInt();
+      int individualCount = buf.getInt();
+      long payload = buf.getLong();
+      long checksum = buf.getLong();
+      if(HEADER_SIZE + payload != size) {
+        throw new IOException("Truncated snapshot: " + snapshot);
+      }
+      if(crc(buf, HEADER_SIZE, (int) size) != checksum) {
+        throw new IOException("Corrupt snapshot, checksum mismatch: " + snapshot);
+      }
+      buf.position(HEADER_SIZE);
+
+      String[] strings = new String[stringCount];
+      byte[] scratch = new byte[256];
+      for(int i = 0; i < stringCount; i++) {
+        int len = varint(buf);
+        if(len > scratch.length) {
+          scratch = new byte[Math.max(len, scratch.length * 2)];
+        }
+        buf.get(scratch, 0, len);
+        strings[i] = canonical(new String(scratch, 0, len, UTF8));
+      }
+
+      GedcomNode root = new GedcomNode(-1, "ROOT");
+      GedcomNode[] nodes = new GedcomNode[nodeCount];
+      IndividualNode[] individuals = new IndividualNode[individualCount];
+      int individual = 0;
+      // open nodes and the number of children each still expects
+      GedcomNode[] stack = new GedcomNode[16];
+      int[] remaining = new int[16];
+      int depth = 1;
+      stack[0] = root;
+      remaining[0] = varint(buf);
+      for(int i = 0; i < nodeCount; i++) {
+        while(remaining[depth - 1] == 0) {
+          close(stack, --depth);
+        }
+        remaining[depth - 1]--;
+        int flags = buf.get();
+        int level = varint(buf);
+        String tag = strings[varint(buf)];
+        String ref = string(strings, varint(buf));
+        String data = string(strings, varint(buf));
+        GedcomNode node;
+        if((flags & FLAG_INDIVIDUAL) != 0) {
+          node = individuals[individual++] = new IndividualNode(level, tag, data, ref);
+        } else if(ref != null) {
+          node = new GedcomNode(level, tag, data, ref);
+        } else {
+          node = new GedcomNode(level, tag, data);
+        }
+        node.tagId(GedcomSymbols.tagId(tag));
+        nodes[i] = node;
+        if(depth == stack.length) {
+          stack = Arrays.copyOf(stack, depth * 2);
+          remaining = Arrays.copyOf(remaining, depth * 2);
+        }
+        stack[depth] = node;
+        remaining[depth] = varint(buf);
+        depth++;
+      }
+      while(depth > 1) {
+        close(stack, --depth);
+      }
+
+      for(IndividualNode indi : individuals) {
+        indi.addParents(individualList(buf, individuals));
+        indi.addChildren(individualList(buf, individuals));
+        for(IndividualNode s : individualList(buf, individuals)) {
+          indi.addSpouse(s);
+        }
+        int n = varint(buf);
+        for(int k = 0; k < n; k++) {
+          indi.addFamily(nodes[varint(buf)]);
+        }
+        n = varint(buf);
+        for(int k = 0; k < n; k++) {
+          indi.addFamilyAsHead(nodes[varint(buf)]);
+        }
+        n = varint(buf);
+        for(int k = 0; k < n; k++) {
+          indi.addFamilyAsChild(nodes[varint(buf)]);
+        }
+      }
+      return root;
+    } catch(RuntimeException re) {
+      // buffer underflows and bad numbers of a damaged payload
+      throw new IOException("Corrupt snapshot: " + snapshot, re);
+    } finally {
+      channel.close();
+    }
+  }
+
+  /**
+   * Add the node on top of the stack to its parent and finalize it
+   */
+  private static void close(GedcomNode[] stack, int depth) {
+    GedcomNode node = stack[depth];
+    stack[depth] = null;
+    stack[depth - 1].addChildNode(node);
+    node.finalize();
+  }
+
+  /**
+   * Push the children of node so that they pop in input order
+   */
+  private static void pushChildren(GedcomNode node, List<GedcomNode> pending) {
+    List<GedcomNode> children = node.getChildNodes();
+    for(int k = children.size() - 1; k >= 0; k--) {
+      pending.add(children.get(k));
+    }
+  }
+
+  private static void string(String s, Map<String, Integer> ids, List<String> strings) {
+    if(s != null && !ids.containsKey(s)) {
+      ids.put(s, strings.size());
+      strings.add(s);
+    }
+  }
+
+  /**
+   * @return the string number of s, plus one; 0 for null
+   */
+  private static int id(String s, Map<String, Integer> ids) {
+    return (s == null) ? 0 : ids.get(s).intValue() + 1;
+  }
+
+  private static String string(String[] strings, int id) {
+    return (id == 0) ? null : strings[id - 1];
+  }
+
+  /**
+   * @return the GedcomSymbols instance of a standard tag, else s
+   */
+  private static String canonical(String s) {
+    int tagId = GedcomSymbols.tagId(s);
+    return (tagId < 0) ? s : GedcomSymbols.tag(tagId);
+  }
+
+  private static void individualLinks(CountingOutput out, List<IndividualNode> links,
+                                      Map<IndividualNode, Integer> ids)
+    throws IOException {
+    int n = 0;
+    for(IndividualNode i : links) {
+      if(ids.containsKey(i)) {
+        n++;
+      }
+    }
+    out.varint(n);
+    for(IndividualNode i : links) {
+      Integer id = ids.get(i);
+      if(id != null) {
+        out.varint(id.intValue());
+      }
+    }
+  }
+
+  private static void nodeLinks(CountingOutput out, List<GedcomNode> links,
+                                Map<GedcomNode, Integer> ids) throws IOException {
+    int n = 0;
+    for(GedcomNode node : links) {
+      if(ids.containsKey(node)) {
+        n++;
+      }
+    }
+    out.varint(n);
+    for(GedcomNode node : links) {
+      Integer id = ids.get(node);
+      if(id != null) {
+        out.varint(id.intValue());
+      }
+    }
+  }
+
+  private static List<IndividualNode> individualList(ByteBuffer buf,
+                                                     IndividualNode[] individuals) {
+    int n = varint(buf);
+    List<IndividualNode> list = new ArrayList<IndividualNode>(n);
+    for(int k = 0; k < n; k++) {
+      list.add(individuals[varint(buf)]);
+    }
+    return list;
+  }
+
+  private static int varint(ByteBuffer buf) {
+    int value = 0;
+    int shift = 0;
+    while(true) {
+      int b = buf.get();
+      value |= (b & 0x7f) << shift;
+      if((b & 0x80) == 0) {
+        return value;
+      }
+      shift += 7;
+      if(shift > 28) {
+        throw new IllegalStateException("Invalid varint");
+      }
+    }
+  }
+
+  /**
+   * CRC32 of bytes [start, end) of buf, read through a heap array
+   */
+  private static long crc(ByteBuffer buf, int start, int end) {
+    CRC32 crc = new CRC32();
+    byte[] chunk = new byte[64 * 1024];
+    buf.position(start);
+    while(buf.position() < end) {
+      int n = Math.min(chunk.length, end - buf.position());
+      buf.get(chunk, 0, n);
+      crc.update(chunk, 0, n);
+    }
+    return crc.getValue();
+  }
+
+  /**
+   * Output stream writing varints and counting bytes
+   */
+  private static class CountingOutput {
+    private OutputStream m_out;
+    long m_count = 0;
+
+    CountingOutput(OutputStream out) {
+      m_out = out;
+    }
+
+    void write(int b) throws IOException {
+      m_out.write(b);
+      m_count++;
+    }
+
+    void write(byte[] b, int off, int len) throws IOException {
+      m_out.write(b, off, len);
+      m_count += len;
+    }
+
+    void varint(int value) throws IOException {
+      if(value < 0) {
+        throw new IllegalArgumentException("Negative value in snapshot: " + value);
+      }
+      while((value & ~0x7f) != 0) {
+        write((value & 0x7f) | 0x80);
+        value >>>= 7;
+      }
+      write(value);
+    }
+
+    void flush() throws IOException {
+      m_out.flush();
+    }
+  }
+}
@@ -0,0 +1,390 @@
+/******************************************************************************
+* GedcomStore
+* Columnar in-memory store for a parsed GEDCOM file. Holds every line as
+* an index into primitive arrays instead of as a GedcomNode object.
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj;
+
+import com.msbmsb.genealoj.GedcomHandler;
+import com.msbmsb.genealoj.GedcomNode;
+import com.msbmsb.genealoj.IndividualNode;
+import com.msbmsb.genealoj.Utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Struct-of-arrays representation of a GEDCOM file.
+ * Each line is a node index; nodes are stored in file (pre)order, so the
+ * descendants of node i are the indices i+1 up to end(i). Per node the
+ * store keeps the level, parent index, tag ID, xref ID and the offset and
+ * length of its data in one shared char pool.
+ * Tag and xref IDs are local to the store. GedcomNode views are only
+ * created on demand through node(int).
+ * As a GedcomHandler it flattens each streamed record and lets the
+ * record's objects go, so a file can be loaded without ever holding the
+ * whole GedcomNode tree.
+ */
+public class GedcomStore implements GedcomHandler {
+  /**
+   * Index used for "no node", e.g. the parent of a level=0 record
+   */
+  public static final int NONE = -1;
+
+  private int m_size = 0;
+  private int[] m_levels = new int[1024];
+  private int[] m_parents = new int[1024];
+  private int[] m_ends = new int[1024];
+  private int[] m_tags = new int[1024];
+  private int[] m_xrefs = new int[1024];
+  private int[] m_valueOffsets = new int[1024];
+  /**
+   * Length of each node's data; -1 if the node has no data
+   */
+  private int[] m_valueLengths = new int[1024];
+
+  /**
+   * Shared pool of all data characters
+   */
+  private char[] m_pool = new char[16 * 1024];
+  private int m_poolSize = 0;
+
+  /**
+   * Node indices of the level=0 records, in file order
+   */
+  private int[] m_records = new int[256];
+  private int m_recordCount = 0;
+
+  /**
+   * Store-local tag IDs
+   */
+  private List<String> m_tagNames = new ArrayList<String>();
+  private Map<String, Integer> m_tagIds = new HashMap<String, Integer>();
+
+  /**
+   * Store-local xref IDs and the node each xref is declared on
+   */
+  private List<String> m_xrefNames = new ArrayList<String>();
+  private Map<String, Integer> m_xrefIds = new HashMap<String, Integer>();
+  private int[] m_xrefNodes = new int[256];
+
+  /**
+   * @return number of nodes (lines) in the store
+   */
+  public int size() {
+    return m_size;
+  }
+
+  /**
+   * @return number of level=0 records
+   */
+  public int recordCount() {
+    return m_recordCount;
+  }
+
+  /**
+   * @param i index among the level=0 records
+   * @return node index of the i-th record
+   */
+  public int record(int i) {
+    return m_records[i];
+  }
+
+  public int level(int node) {
+    return m_levels[node];
+  }
+
+  /**
+   * @return index of the parent node; NONE for level=0 records
+   */
+  public int parent(int node) {
+    return m_parents[node];
+  }
+
+  /**
+   * @return index after the last descendant of node
+   */
+  public int end(int node) {
+    return m_ends[node];
+  }
+
+  /**
+   * @return store-local tag ID of node
+   */
+  public int tagId(int node) {
+    return m_tags[node];
+  }
+
+  public String tag(int node) {
+    return m_tagNames.get(m_tags[node]);
+  }
+
+  /**
+   * @param tag the tag to look up
+   * @return store-local ID of tag; NONE if no node has this tag
+   */
+  public int tagId(String tag) {
+    Integer id = m_tagIds.get(tag);
+    return (id == null) ? NONE : id.intValue();
+  }
+
+  /**
+   * @return reference of node; null if it has none
+   */
+  public String reference(int node) {
+    int xref = m_xrefs[node];
+    return (xref == NONE) ? null : m_xrefNames.get(xref);
+  }
+
+  /**
+   * @return data of node, created from the char pool; null if it has none
+   */
+  public String data(int node) {
+    int len = m_valueLengths[node];
+    return (len < 0) ? null : new String(m_pool, m_valueOffsets[node], len);
+  }
+
+  /**
+   * Compare the data of node against a String without creating one
+   * @return true if node has data equal to value
+   */
+  public boolean dataEquals(int node, String value) {
+    int len = m_valueLengths[node];
+    if(len != value.length()) {
+      return false;
+    }
+    int offset = m_valueOffsets[node];
+    for(int i = 0; i < len; i++) {
+      if(m_pool[offset + i] != value.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @param ref the reference, e.g. @I1@
+   * @return index of the node declaring ref; NONE if there is none
+   */
+  public int getReferencedNode(String ref) {
+    Integer xref = m_xrefIds.get(ref);
+    return (xref == null) ? NONE : m_xrefNodes[xref];
+  }
+
+  /**
+   * Get the level=0 records with the given tag
+   * @param tag the tag of records to return
+   * @return node indices of the matching records, in file order
+   */
+  public int[] getRecords(String tag) {
+    int tagId = tagId(tag);
+    int[] result = new int[16];
+    int n = 0;
+    for(int i = 0; i < m_recordCount; i++) {
+      int node = m_records[i];
+      if(m_tags[node] == tagId) {
+        if(n == result.length) {
+          result = Arrays.copyOf(result, n * 2);
+        }
+        result[n++] = node;
+      }
+    }
+    return Arrays.copyOf(result, n);
+  }
+
+  /**
+   * Get all nodes with the given tag at any level
+   * @param tag the tag of nodes to return
+   * @return node indices of the matching nodes, in file order
+   */
+  public int[] getNodesWithTag(String tag) {
+    int tagId = tagId(tag);
+    int n = 0;
+    for(int i = 0; i < m_size; i++) {
+      if(m_tags[i] == tagId) {
+        n++;
+      }
+    }
+    int[] result = new int[n];
+    n = 0;
+    for(int i = 0; i < m_size && n < result.length; i++) {
+      if(m_tags[i] == tagId) {
+        result[n++] = i;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Get the direct children of node with the given tag
+   * @param node index of the parent node
+   * @param tag the tag of children to return
+   * @return node indices of the matching children, in file order
+   */
+  public int[] getChildrenWithTag(int node, String tag) {
+    int tagId = tagId(tag);
+    int n = 0;
+    int end = m_ends[node];
+    for(int i = node + 1; i < end; i = m_ends[i]) {
+      if(m_tags[i] == tagId) {
+        n++;
+      }
+    }
+    int[] result = new int[n];
+    n = 0;
+    for(int i = node + 1; i < end; i = m_ends[i]) {
+      if(m_tags[i] == tagId) {
+        result[n++] = i;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Materialize a GedcomNode view of node and its descendants.
+   * INDI records become (unlinked) IndividualNodes. The view is a copy;
+   * changes to it do not affect the store.
+   * @param node index of the node to materialize
+   * @return the GedcomNode subtree
+   */
+  public GedcomNode node(int node) {
+    GedcomNode n;
+    int tagId = m_tags[node];
+    String tag = m_tagNames.get(tagId);
+    String ref = reference(node);
+    String data = data(node);
+    if(ref != null && Utils.isIndividual(tag)) {
+      n = new IndividualNode(m_levels[node], tag, data, ref);
+    } else if(ref != null) {
+      n = new GedcomNode(m_levels[node], tag, data, ref);
+    } else {
+      n = new GedcomNode(m_levels[node], tag, data);
+    }
+    int end = m_ends[node];
+    for(int i = node + 1; i < end; i = m_ends[i]) {
+      n.addChildNode(node(i));
+    }
+    n.finalize();
+    return n;
+  }
+
+  public void startDocument() {
+    return;
+  }
+
+  public void startRecord(GedcomNode record) {
+    return;
+  }
+
+  /**
+   * Flatten the completed record into the arrays
+   */
+  public void endRecord(GedcomNode record) {
+    if(m_recordCount == m_records.length) {
+      m_records = Arrays.copyOf(m_records, Math.max(16, m_recordCount * 2));
+    }
+    m_records[m_recordCount++] = m_size;
+    append(record, NONE);
+  }
+
+  /**
+   * Trim the arrays to their final size
+   */
+  public void endDocument() {
+    m_levels = Arrays.copyOf(m_levels, m_size);
+    m_parents = Arrays.copyOf(m_parents, m_size);
+    m_ends = Arrays.copyOf(m_ends, m_size);
+    m_tags = Arrays.copyOf(m_tags, m_size);
+    m_xrefs = Arrays.copyOf(m_xrefs, m_size);
+    m_valueOffsets = Arrays.copyOf(m_valueOffsets, m_size);
+    m_valueLengths = Arrays.copyOf(m_valueLengths, m_size);
+    m_pool = Arrays.copyOf(m_pool, m_poolSize);
+    m_records = Arrays.copyOf(m_records, m_recordCount);
+    m_xrefNodes = Arrays.copyOf(m_xrefNodes, m_xrefNames.size());
+  }
+
+  /**
+   * Append node and, in preorder, its descendants
+   * @param node the GedcomNode to append
+   * @param parent index of its parent; NONE for a record
+   */
+  private void append(GedcomNode node, int parent) {
+    if(m_size == m_levels.length) {
+      grow();
+    }
+    int index = m_size++;
+    m_levels[index] = node.level();
+    m_parents[index] = parent;
+    m_tags[index] = internTag(node.tag());
+    m_xrefs[index] = internXref(node.reference(), index);
+
+    String data = node.data();
+    if(data == null) {
+      m_valueOffsets[index] = 0;
+      m_valueLengths[index] = -1;
+    } else {
+      int len = data.length();
+      if(m_poolSize + len > m_pool.length) {
+        long capacity = Math.max((long) m_pool.length * 2, (long) m_poolSize + len);
+        if(capacity > Integer.MAX_VALUE - 8) {
+          throw new IllegalStateException("GedcomStore data pool is full");
+        }
+        m_pool = Arrays.copyOf(m_pool, (int) capacity);
+      }
+      data.getChars(0, len, m_pool, m_poolSize);
+      m_valueOffsets[index] = m_poolSize;
+      m_valueLengths[index] = len;
+      m_poolSize += len;
+    }
+
+    for(GedcomNode child : node.getChildNodes()) {
+      append(child, index);
+    }
+    m_ends[index] = m_size;
+  }
+
+  private int internTag(String tag) {
+    Integer id = m_tagIds.get(tag);
+    if(id == null) {
+      id = m_tagNames.size();
+      m_tagNames.add(tag);
+      m_tagIds.put(tag, id);
+    }
+    return id.intValue();
+  }
+
+  private int internXref(String ref, int node) {
+    if(ref == null) {
+      return NONE;
+    }
+    Integer id = m_xrefIds.get(ref);
+    if(id == null) {
+      id = m_xrefNames.size();
+      m_xrefNames.add(ref);
+      m_xrefIds.put(ref, id);
+      if(id >= m_xrefNodes.length) {
+        m_xrefNodes = Arrays.copyOf(m_xrefNodes, Math.max(16, m_xrefNodes.length * 2));
+      }
+    }
+    m_xrefNodes[id] = node;
+    return id.intValue();
+  }
+
+  private void grow() {
+    int capacity = Math.max(16, m_levels.length * 2);
+    m_levels = Arrays.copyOf(m_levels, capacity);
+    m_parents = Arrays.copyOf(m_parents, capacity);
+    m_ends = Arrays.copyOf(m_ends, capacity);
+    m_tags = Arrays.copyOf(m_tags, capacity);
+    m_xrefs = Arrays.copyOf(m_xrefs, capacity);
+    m_valueOffsets = Arrays.copyOf(m_valueOffsets, capacity);
+    m_valueLengths = Arrays.copyOf(m_valueLengths, capacity);
+  }
+}
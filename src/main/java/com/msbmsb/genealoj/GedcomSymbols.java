@@ -0,0 +1,402 @@
+/******************************************************************************
+* GedcomSymbols
+* Symbol table for GEDCOM tags and, optionally, repeated data values.
+* Maps the standard tags to small integer IDs and canonical String
+* instances, so that parsed nodes share one String per distinct tag.
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj;
+
+import java.nio.ByteBuffer;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Canonicalizes tags and data values while parsing.
+ * Standard GEDCOM 5.5 tags have fixed IDs (their index in STANDARD_TAGS)
+ * that are the same for every table; any other tag is given the ID
+ * UNKNOWN_TAG and is compared by its String. The canonical instance of a
+ * standard tag is the String literal, so it is identical to the constants
+ * in Utils.
+ * Lookups take a region of a String or of a ByteBuffer, so a tag or value
+ * already in the table is found without creating a String for it.
+ * A table instance is meant for one parser and is not thread-safe.
+ */
+public class GedcomSymbols {
+  /**
+   * ID of any tag that is not a standard GEDCOM tag
+   */
+  public static final int UNKNOWN_TAG = -1;
+
+  /**
+   * The standard GEDCOM 5.5 tags; a tag's ID is its index in this array
+   */
+  private static final String[] STANDARD_TAGS = {
+    "ABBR", "ADDR", "ADR1", "ADR2", "ADOP", "AFN", "AGE", "AGNC", "ALIA",
+    "ANCE", "ANCI", "ANUL", "ASSO", "AUTH", "BAPL", "BAPM", "BARM", "BASM",
+    "BIRT", "BLES", "BURI", "CALN", "CAST", "CAUS", "CENS", "CHAN", "CHAR",
+    "CHIL", "CHR", "CHRA", "CITY", "CONC", "CONF", "CONL", "CONT", "COPR",
+    "CORP", "CREM", "CTRY", "DATA", "DATE", "DEAT", "DESC", "DESI", "DEST",
+    "DIV", "DIVF", "DSCR", "EDUC", "EMAIL", "EMIG", "ENDL", "ENGA", "EVEN",
+    "FACT", "FAM", "FAMC", "FAMF", "FAMS", "FAX", "FCOM", "FILE", "FONE",
+    "FORM", "GEDC", "GIVN", "GRAD", "HEAD", "HUSB", "IDNO", "IMMI", "INDI",
+    "LANG", "LATI", "LEGA", "LONG", "MAP", "MARB", "MARC", "MARL", "MARR",
+    "MARS", "MEDI", "NAME", "NATI", "NATU", "NCHI", "NICK", "NMR", "NOTE",
+    "NPFX", "NSFX", "OBJE", "OCCU", "ORDI", "ORDN", "PAGE", "PEDI", "PHON",
+    "PLAC", "POST", "PROB", "PROP", "PUBL", "QUAY", "REFN", "RELA", "RELI",
+    "REPO", "RESI", "RESN", "RETI", "RFN", "RIN", "ROLE", "ROMN", "SEX",
+    "SLGC", "SLGS", "SOUR", "SPFX", "SSN", "STAE", "STAT", "SUBM", "SUBN",
+    "SURN", "TEMP", "TEXT", "TIME", "TITL", "TRLR", "TYPE", "VERS", "WIFE",
+    "WILL", "WWW",
+  };
+
+  private static final Map<String, Integer> STANDARD_IDS = new HashMap<String, Integer>();
+  static {
+    for(int i = 0; i < STANDARD_TAGS.length; i++) {
+      STANDARD_IDS.put(STANDARD_TAGS[i], i);
+    }
+  }
+
+  /**
+   * IDs of the tags GenealoJ itself works with
+   */
+  public static final int BIRT = tagId("BIRT");
+  public static final int CHIL = tagId("CHIL");
+  public static final int DATE = tagId("DATE");
+  public static final int DEAT = tagId("DEAT");
+  public static final int FAM = tagId("FAM");
+  public static final int FAMC = tagId("FAMC");
+  public static final int FAMS = tagId("FAMS");
+  public static final int HUSB = tagId("HUSB");
+  public static final int INDI = tagId("INDI");
+  public static final int MARR = tagId("MARR");
+  public static final int NAME = tagId("NAME");
+  public static final int PLAC = tagId("PLAC");
+  public static final int WIFE = tagId("WIFE");
+
+  /**
+   * Read-only table of the standard tags, shared by tokenizers that have
+   * no table of their own. Unknown tags are not added to it.
+   */
+  static final GedcomSymbols STANDARD = new GedcomSymbols(true);
+
+  /**
+   * Open-addressing hash table of tag symbols, with their IDs
+   */
+  private String[] m_tags;
+  private int[] m_tagIds;
+  private int m_tagCount = 0;
+
+  /**
+   * Open-addressing hash table of interned data values; null until a tag
+   * is registered through internValues
+   */
+  private String[] m_values = null;
+  private int m_valueCount = 0;
+
+  /**
+   * Tags whose data values are interned
+   */
+  private String[] m_valueTags = new String[0];
+
+  private boolean m_readOnly;
+
+  /**
+   * Constructor. Creates a table holding the standard tags; other tags
+   * are added as they are seen.
+   */
+  public GedcomSymbols() {
+    this(false);
+  }
+
+  private GedcomSymbols(boolean readOnly) {
+    m_tags = new String[512];
+    m_tagIds = new int[512];
+    for(int i = 0; i < STANDARD_TAGS.length; i++) {
+      addTag(STANDARD_TAGS[i], i);
+    }
+    m_readOnly = readOnly;
+  }
+
+  /**
+   * @param tag the tag to look up
+   * @return the ID of a standard tag; UNKNOWN_TAG for any other tag
+   */
+  public static int tagId(String tag) {
+    Integer id = STANDARD_IDS.get(tag);
+    return (id == null) ? UNKNOWN_TAG : id.intValue();
+  }
+
+  /**
+   * @param id the ID of a standard tag
+   * @return the canonical tag String for the ID
+   */
+  public static String tag(int id) {
+    return STANDARD_TAGS[id];
+  }
+
+  /**
+   * @return number of standard tags, one more than the highest tag ID
+   */
+  public static int standardTagCount() {
+    return STANDARD_TAGS.length;
+  }
+
+  /**
+   * Intern the data values of lines with the given tag. Worth doing for
+   * tags whose values repeat a lot, such as PLAC or SEX.
+   * @param tag the tag whose values are interned
+   */
+  public void internValues(String tag) {
+    if(internsValues(tag)) {
+      return;
+    }
+    String[] valueTags = new String[m_valueTags.length + 1];
+    System.arraycopy(m_valueTags, 0, valueTags, 0, m_valueTags.length);
+    valueTags[m_valueTags.length] = canonicalTag(tag);
+    m_valueTags = valueTags;
+    if(m_values == null) {
+      m_values = new String[1024];
+    }
+  }
+
+  /**
+   * @param tag the tag to check, ideally a canonical instance
+   * @return true if data values of this tag are interned
+   */
+  public boolean internsValues(String tag) {
+    for(String t : m_valueTags) {
+      if(t == tag || t.equals(tag)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return number of distinct tags in this table, including standard ones
+   */
+  public int tagCount() {
+    return m_tagCount;
+  }
+
+  /**
+   * @return number of distinct interned data values
+   */
+  public int valueCount() {
+    return m_valueCount;
+  }
+
+  /**
+   * @param tag the tag to canonicalize
+   * @return the canonical instance of tag, adding it if needed
+   */
+  public String canonicalTag(String tag) {
+    int slot = tagSlot(tag, 0, tag.length());
+    return (slot < 0) ? tag : m_tags[slot];
+  }
+
+  /**
+   * Find the slot of the tag in [start, end) of line, adding it if the
+   * table is not read-only
+   * @return the slot; -1 if the tag is unknown to a read-only table
+   */
+  int tagSlot(String line, int start, int end) {
+    int hash = hash(line, start, end);
+    int mask = m_tags.length - 1;
+    int slot = hash & mask;
+    String t;
+    while((t = m_tags[slot]) != null) {
+      if(t.hashCode() == hash && t.length() == end - start
+         && t.regionMatches(0, line, start, end - start)) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+    if(m_readOnly) {
+      return -1;
+    }
+    return addTag(line.substring(start, end), UNKNOWN_TAG);
+  }
+
+  /**
+   * Find the slot of the ASCII tag in bytes [start, end) of buf, adding
+   * it if the table is not read-only
+   * @return the slot; -1 if the tag is unknown to a read-only table or
+   *         is not ASCII
+   */
+  int tagSlot(ByteBuffer buf, int start, int end) {
+    int hash = 0;
+    for(int i = start; i < end; i++) {
+      byte b = buf.get(i);
+      if(b < 0) {
+        return -1;
+      }
+      hash = 31 * hash + b;
+    }
+    int mask = m_tags.length - 1;
+    int slot = hash & mask;
+    String t;
+    while((t = m_tags[slot]) != null) {
+      if(t.hashCode() == hash && regionEquals(t, buf, start, end)) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+    if(m_readOnly) {
+      return -1;
+    }
+    char[] chars = new char[end - start];
+    for(int i = start; i < end; i++) {
+      chars[i - start] = (char) buf.get(i);
+    }
+    return addTag(new String(chars), UNKNOWN_TAG);
+  }
+
+  /**
+   * @return the canonical tag in the given slot
+   */
+  String tagAt(int slot) {
+    return m_tags[slot];
+  }
+
+  /**
+   * @return the ID of the tag in the given slot
+   */
+  int tagIdAt(int slot) {
+    return m_tagIds[slot];
+  }
+
+  /**
+   * Intern the value in [start, end) of line
+   * @return the canonical instance of the value
+   */
+  String value(String line, int start, int end) {
+    int hash = hash(line, start, end);
+    int mask = m_values.length - 1;
+    int slot = hash & mask;
+    String v;
+    while((v = m_values[slot]) != null) {
+      if(v.hashCode() == hash && v.length() == end - start
+         && v.regionMatches(0, line, start, end - start)) {
+        return v;
+      }
+      slot = (slot + 1) & mask;
+    }
+    v = line.substring(start, end);
+    m_values[slot] = v;
+    if(++m_valueCount * 2 > m_values.length) {
+      m_values = rehash(m_values);
+    }
+    return v;
+  }
+
+  /**
+   * Intern the ASCII value in bytes [start, end) of buf
+   * @return the canonical instance of the value; null if the value is
+   *         not ASCII and must be decoded by the caller
+   */
+  String value(ByteBuffer buf, int start, int end) {
+    int hash = 0;
+    for(int i = start; i < end; i++) {
+      byte b = buf.get(i);
+      if(b < 0) {
+        return null;
+      }
+      hash = 31 * hash + b;
+    }
+    int mask = m_values.length - 1;
+    int slot = hash & mask;
+    String v;
+    while((v = m_values[slot]) != null) {
+      if(v.hashCode() == hash && regionEquals(v, buf, start, end)) {
+        return v;
+      }
+      slot = (slot + 1) & mask;
+    }
+    char[] chars = new char[end - start];
+    for(int i = start; i < end; i++) {
+      chars[i - start] = (char) buf.get(i);
+    }
+    v = new String(chars);
+    m_values[slot] = v;
+    if(++m_valueCount * 2 > m_values.length) {
+      m_values = rehash(m_values);
+    }
+    return v;
+  }
+
+  /**
+   * Add a tag known not to be in the table
+   * @return the slot of the tag
+   */
+  private int addTag(String tag, int id) {
+    if((m_tagCount + 1) * 2 > m_tags.length) {
+      String[] tags = m_tags;
+      int[] ids = m_tagIds;
+      m_tags = new String[tags.length * 2];
+      m_tagIds = new int[tags.length * 2];
+      for(int i = 0; i < tags.length; i++) {
+        if(tags[i] != null) {
+          int slot = emptySlot(m_tags, tags[i].hashCode());
+          m_tags[slot] = tags[i];
+          m_tagIds[slot] = ids[i];
+        }
+      }
+    }
+    int slot = emptySlot(m_tags, tag.hashCode());
+    m_tags[slot] = tag;
+    m_tagIds[slot] = id;
+    m_tagCount++;
+    return slot;
+  }
+
+  /**
+   * @return a table twice the size holding the same Strings
+   */
+  private static String[] rehash(String[] table) {
+    String[] bigger = new String[table.length * 2];
+    for(String s : table) {
+      if(s != null) {
+        bigger[emptySlot(bigger, s.hashCode())] = s;
+      }
+    }
+    return bigger;
+  }
+
+  private static int emptySlot(String[] table, int hash) {
+    int mask = table.length - 1;
+    int slot = hash & mask;
+    while(table[slot] != null) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  /**
+   * Same value as String.hashCode() of the region
+   */
+  private static int hash(String line, int start, int end) {
+    int hash = 0;
+    for(int i = start; i < end; i++) {
+      hash = 31 * hash + line.charAt(i);
+    }
+    return hash;
+  }
+
+  private static boolean regionEquals(String s, ByteBuffer buf, int start, int end) {
+    if(s.length() != end - start) {
+      return false;
+    }
+    for(int i = start; i < end; i++) {
+      if(s.charAt(i - start) != buf.get(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
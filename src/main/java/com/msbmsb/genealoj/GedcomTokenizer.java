@@ -0,0 +1,332 @@
+/******************************************************************************
+* GedcomTokenizer
+* Single-pass tokenizer for a GEDCOM line. Locates level, reference, tag
+* and data by index and only creates the Strings a GedcomNode keeps.
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj;
+
+import com.msbmsb.genealoj.GedcomNode;
+import com.msbmsb.genealoj.GedcomSymbols;
+import com.msbmsb.genealoj.IndividualNode;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Splits a GEDCOM line of the form
+ *   level [reference] tag [data]
+ * by scanning it once and remembering the offsets of each part.
+ * No intermediate arrays or Strings are created; a tokenizer instance
+ * can be reused for every line of a file.
+ * Lines are either Strings or byte ranges of a ByteBuffer; for the latter
+ * only the parts that end up in the node are decoded.
+ * Tags, and the data of tags registered with the symbol table, are looked
+ * up in a GedcomSymbols table so that nodes share canonical instances.
+ */
+public class GedcomTokenizer {
+  /**
+   * Symbol table for tags and interned values
+   */
+  private GedcomSymbols m_symbols;
+
+  /**
+   * The current line, either as a String or as bytes of m_bytes
+   */
+  private String m_line = null;
+  private ByteBuffer m_bytes = null;
+  private Charset m_charset = null;
+  private byte[] m_scratch = new byte[256];
+
+  private int m_level;
+  private int m_refStart;
+  private int m_refEnd;
+  private int m_tagStart;
+  private int m_tagEnd;
+  /**
+   * Start of the data; -1 if the line has no data
+   */
+  private int m_dataStart;
+  private int m_end;
+
+  /**
+   * Canonical tag and tag ID of the current line, once resolved
+   */
+  private String m_tag = null;
+  private int m_tagId;
+
+  /**
+   * Constructor. Tags are canonicalized against the standard tags only.
+   */
+  public GedcomTokenizer() {
+    this(GedcomSymbols.STANDARD);
+  }
+
+  /**
+   * Constructor.
+   * @param symbols GedcomSymbols table for tags and interned values
+   */
+  public GedcomTokenizer(GedcomSymbols symbols) {
+    m_symbols = symbols;
+  }
+
+  /**
+   * Tokenize the given line. Leading and trailing whitespace is ignored.
+   * @param line the line of gedcom data to digest
+   * @return false if the line is blank, true otherwise
+   * @throws IllegalArgumentException if the line has no valid level or tag
+   */
+  public boolean tokenize(String line) {
+    m_line = line;
+    m_bytes = null;
+    return scan(0, line.length());
+  }
+
+  /**
+   * Tokenize the line held in bytes [start, end) of the given buffer.
+   * Leading and trailing whitespace is ignored. The buffer must not be
+   * changed while the parts of this line are still being retrieved.
+   * @param bytes ByteBuffer holding the line
+   * @param start index of the first byte of the line
+   * @param end index after the last byte of the line, excluding terminators
+   * @param charset Charset used to decode the parts that are retrieved
+   * @return false if the line is blank, true otherwise
+   * @throws IllegalArgumentException if the line has no valid level or tag
+   */
+  public boolean tokenize(ByteBuffer bytes, int start, int end, Charset charset) {
+    m_line = null;
+    m_bytes = bytes;
+    m_charset = charset;
+    return scan(start, end);
+  }
+
+  /**
+   * Locate the parts of the current line within [begin, end)
+   */
+  private boolean scan(int begin, int end) {
+    // same whitespace as String.trim()
+    while(begin < end && at(begin) <= ' ') {
+      begin++;
+    }
+    while(end > begin && at(end - 1) <= ' ') {
+      end--;
+    }
+    if(begin == end) {
+      return false;
+    }
+    m_end = end;
+    m_tag = null;
+
+    // level: all digits up to the first space
+    int i = begin;
+    int level = 0;
+    while(i < end && at(i) != ' ') {
+      char c = at(i);
+      if(c < '0' || c > '9') {
+        throw new NumberFormatException("Invalid level in line: " + string(begin, end));
+      }
+      level = level * 10 + (c - '0');
+      i++;
+    }
+    if(i == begin || i == end) {
+      throw new IllegalArgumentException("Missing tag in line: " + string(begin, end));
+    }
+    m_level = level;
+
+    // second token: either the reference or the tag
+    int start = ++i;
+    while(i < end && at(i) != ' ') {
+      i++;
+    }
+    if(i == end) {
+      // level and tag only
+      m_refStart = -1;
+      m_tagStart = start;
+      m_tagEnd = i;
+      m_dataStart = -1;
+      return true;
+    }
+
+    if(isReference(start, i)) {
+      m_refStart = start;
+      m_refEnd = i;
+      // third token is the tag, and the data, if any, follows it
+      m_tagStart = ++i;
+      while(i < end && at(i) != ' ') {
+        i++;
+      }
+      m_tagEnd = i;
+      m_dataStart = (i < end) ? i + 1 : end;
+    } else {
+      m_refStart = -1;
+      m_tagStart = start;
+      m_tagEnd = i;
+      m_dataStart = i + 1;
+    }
+    return true;
+  }
+
+  /**
+   * @return level of the last tokenized line
+   */
+  public int level() {
+    return m_level;
+  }
+
+  /**
+   * @return tag of the last tokenized line
+   */
+  public String tag() {
+    if(m_tag == null) {
+      resolveTag();
+    }
+    return m_tag;
+  }
+
+  /**
+   * @return tag ID of the last tokenized line,
+   *         GedcomSymbols.UNKNOWN_TAG if it is not a standard tag
+   */
+  public int tagId() {
+    if(m_tag == null) {
+      resolveTag();
+    }
+    return m_tagId;
+  }
+
+  /**
+   * @return reference of the last tokenized line; null if it has none
+   */
+  public String reference() {
+    return (m_refStart < 0) ? null : string(m_refStart, m_refEnd);
+  }
+
+  /**
+   * @return data of the last tokenized line; null if it has none
+   */
+  public String data() {
+    if(m_dataStart < 0) {
+      return null;
+    }
+    if(m_symbols.internsValues(tag())) {
+      return value(m_dataStart, m_end);
+    }
+    return string(m_dataStart, m_end);
+  }
+
+  /**
+   * Is the tag of the last tokenized line equal to the given tag
+   * @param tag the tag to compare against
+   * @return true if the tags match
+   */
+  public boolean tagEquals(String tag) {
+    int len = m_tagEnd - m_tagStart;
+    if(len != tag.length()) {
+      return false;
+    }
+    for(int i = 0; i < len; i++) {
+      if(at(m_tagStart + i) != tag.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Build a GedcomNode from the last tokenized line.
+   * Individuals (references with the INDI tag) become IndividualNodes.
+   * @return GedcomNode object initialized appropriately
+   */
+  public GedcomNode buildNode() {
+    GedcomNode node;
+    if(m_dataStart < 0) {
+      // basic constructor
+      node = new GedcomNode(m_level, tag());
+    } else if(m_refStart >= 0) {
+      if(tagId() == GedcomSymbols.INDI) {
+        node = new IndividualNode(m_level, tag(), data(), reference());
+      } else {
+        node = new GedcomNode(m_level, tag(), data(), reference());
+      }
+    } else {
+      node = new GedcomNode(m_level, tag(), data());
+    }
+    node.tagId(m_tagId);
+    return node;
+  }
+
+  /**
+   * Look the tag of the current line up in the symbol table
+   */
+  private void resolveTag() {
+    int slot = (m_line != null) ? m_symbols.tagSlot(m_line, m_tagStart, m_tagEnd)
+                                : m_symbols.tagSlot(m_bytes, m_tagStart, m_tagEnd);
+    if(slot < 0) {
+      m_tag = string(m_tagStart, m_tagEnd);
+      m_tagId = GedcomSymbols.UNKNOWN_TAG;
+    } else {
+      m_tag = m_symbols.tagAt(slot);
+      m_tagId = m_symbols.tagIdAt(slot);
+    }
+  }
+
+  /**
+   * Create or look up the interned String for [start, end) of the
+   * current line
+   */
+  private String value(int start, int end) {
+    if(m_line != null) {
+      return m_symbols.value(m_line, start, end);
+    }
+    String v = m_symbols.value(m_bytes, start, end);
+    if(v == null) {
+      // not ASCII: decode, then intern the decoded String
+      v = string(start, end);
+      v = m_symbols.value(v, 0, v.length());
+    }
+    return v;
+  }
+
+  /**
+   * Same test as Utils.isReference on a region of the current line
+   */
+  private boolean isReference(int start, int end) {
+    return end > start && at(start) == '@' && at(end - 1) == '@';
+  }
+
+  /**
+   * @return the character (or byte, widened) at index i of the current line
+   */
+  private char at(int i) {
+    return (m_line != null) ? m_line.charAt(i) : (char)(m_bytes.get(i) & 0xff);
+  }
+
+  /**
+   * Create the String for [start, end) of the current line
+   */
+  private String string(int start, int end) {
+    if(m_line != null) {
+      return m_line.substring(start, end);
+    }
+    int len = end - start;
+    if(len > m_scratch.length) {
+      m_scratch = new byte[Math.max(len, m_scratch.length * 2)];
+    }
+    m_bytes.position(start);
+    m_bytes.get(m_scratch, 0, len);
+    // ASCII decodes the same in every charset the byte path accepts, and
+    // ISO-8859-1 skips the charset's decoder, e.g. ANSEL's table lookups
+    int ascii = 0;
+    while(ascii < len && m_scratch[ascii] >= 0) {
+      ascii++;
+    }
+    if(ascii == len) {
+      return new String(m_scratch, 0, len, StandardCharsets.ISO_8859_1);
+    }
+    return new String(m_scratch, 0, len, m_charset);
+  }
+}
@@ -0,0 +1,377 @@
+/******************************************************************************
+* GedcomWriter
+* Streams GedcomNode trees out as GEDCOM lines through one reusable byte
+* buffer, in input order, splitting long and multi-line values into
+* CONC and CONT lines.
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj;
+
+import com.msbmsb.genealoj.GedcomNode;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+import java.util.List;
+
+/**
+ * Lines are encoded straight into a fixed buffer, which is written to the
+ * channel whenever it fills, so memory use does not grow with the tree.
+ * Characters below 0x80 are copied as bytes when the charset is
+ * ASCII-compatible; everything else goes through a CharsetEncoder, with
+ * unmappable characters replaced.
+ * A value holding line breaks is written as its first line followed by
+ * CONT lines one level deeper; a line longer than the maximum is cut into
+ * CONC lines, never next to a space or inside a surrogate pair. Children
+ * are written in the order they were added, i.e. the input order of a
+ * parsed tree.
+ * Not thread-safe.
+ */
+public class GedcomWriter {
+  /**
+   * Maximum GEDCOM line length, including the line terminator
+   */
+  public static final int DEFAULT_MAX_LINE_LENGTH = 255;
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private WritableByteChannel m_channel;
+  private StringBuilder m_text;
+  private CharsetEncoder m_encoder;
+  private boolean m_asciiBytes;
+  private byte[] m_buf;
+  private ByteBuffer m_bytes;
+  private int m_pos = 0;
+  private long m_written = 0;
+
+  private int m_maxLineLength = DEFAULT_MAX_LINE_LENGTH;
+  private String m_lineTerminator = "\n";
+
+  /**
+   * Constructor. Writes UTF-8.
+   * @param out OutputStream to write to
+   */
+  public GedcomWriter(OutputStream out) {
+    this(Channels.newChannel(out), Charset.forName("UTF-8"));
+  }
+
+  /**
+   * Constructor.
+   * @param out OutputStream to write to
+   * @param charset Charset to encode with
+   */
+  public GedcomWriter(OutputStream out, Charset charset) {
+    this(Channels.newChannel(out), charset);
+  }
+
+  /**
+   * Constructor.
+   * @param channel WritableByteChannel to write to
+   * @param charset Charset to encode with
+   */
+  public GedcomWriter(WritableByteChannel channel, Charset charset) {
+    m_channel = channel;
+    m_encoder = charset.newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    String name = charset.name();
+    m_asciiBytes = name.equals("UTF-8") || name.equals("US-ASCII")
+        || name.equals("ISO-8859-1") || name.equals("windows-1252");
+    m_buf = new byte[BUFFER_SIZE];
+    m_bytes = ByteBuffer.wrap(m_buf);
+  }
+
+  /**
+   * Constructor for writing into a StringBuilder, for toString
+   * @param text StringBuilder to append the lines to
+   */
+  GedcomWriter(StringBuilder text) {
+    m_text = text;
+  }
+
+  /**
+   * Set the maximum line length, including the line terminator; longer
+   * values are continued on CONC lines
+   * @param length the maximum length; 0 to never split lines
+   * @return this writer
+   */
+  public GedcomWriter maxLineLength(int length) {
+    if(length < 0) {
+      throw new IllegalArgumentException("Invalid line length: " + length);
+    }
+    m_maxLineLength = length;
+    return this;
+  }
+
+  /**
+   * Set the line terminator, "\n" by default
+   * @param terminator the line terminator, e.g. "\r\n"
+   * @return this writer
+   */
+  public GedcomWriter lineTerminator(String terminator) {
+    m_lineTerminator = terminator;
+    return this;
+  }
+
+  /**
+   * @return number of bytes written to the channel so far, including
+   *         bytes still buffered
+   */
+  public long bytesWritten() {
+    return m_written + m_pos;
+  }
+
+  /**
+   * Write a node and all its descendants. A node with a negative level,
+   * such as the root of a parse, only has its children written.
+   * @param node the GedcomNode to write
+   */
+  public void write(GedcomNode node) throws IOException {
+    if(node.level() >= 0) {
+      writeLine(node);
+    }
+    if(node.childGroupsInOrder()) {
+      // walk the groups directly rather than copying them into one list
+      for(int g = 0; g < node.childGroupCount(); g++) {
+        List<GedcomNode> group = node.childGroup(g);
+        for(int i = 0; i < group.size(); i++) {
+          write(group.get(i));
+        }
+      }
+    } else {
+      List<GedcomNode> children = node.getChildNodes();
+      for(int i = 0; i < children.size(); i++) {
+        write(children.get(i));
+      }
+    }
+  }
+
+  /**
+   * Write the line of one node, without its children, followed by the
+   * CONT and CONC lines its value needs
+   * @param node the GedcomNode to write
+   */
+  public void writeLine(GedcomNode node) throws IOException {
+    int level = node.level();
+    String ref = node.reference();
+    int length = length(level);
+    appendLevel(level);
+    // a level=0 node with a reference is written reference before tag
+    if(level == 0 && ref != null) {
+      append(" ");
+      append(ref);
+      length += 1 + ref.length();
+      ref = null;
+    }
+    append(" ");
+    append(node.tag());
+    length += 1 + node.tag().length();
+    if(ref != null) {
+      append(" ");
+      append(ref);
+      length += 1 + ref.length();
+    }
+
+    String data = node.data();
+    if(data == null || data.length() == 0) {
+      // no trailing space, which readers drop anyway
+      append(m_lineTerminator);
+      return;
+    }
+    int start = 0;
+    int end = lineEnd(data, 0);
+    writeValue(data, start, end, length, level + 1);
+    while(end < data.length()) {
+      // skip the line break, taking \r\n as one
+      start = end + 1;
+      if(data.charAt(end) == '\r' && start < data.length() && data.charAt(start) == '\n') {
+        start++;
+      }
+      end = lineEnd(data, start);
+      appendLevel(level + 1);
+      append(" CONT");
+      if(start == end) {
+        append(m_lineTerminator);
+      } else {
+        writeValue(data, start, end, length(level + 1) + 5, level + 1);
+      }
+    }
+  }
+
+  /**
+   * Write one line of a value after its line's prefix, and its CONC lines
+   * @param prefix length of the line before the value, without the space
+   * @param level level of the CONC lines, one below the node's
+   */
+  private void writeValue(String data, int start, int end, int prefix, int level)
+    throws IOException {
+    int room = m_maxLineLength - prefix - 1 - m_lineTerminator.length();
+    int split = splitPoint(data, start, end, room);
+    append(" ");
+    append(data, start, split);
+    append(m_lineTerminator);
+
+    room = m_maxLineLength - length(level) - 6 - m_lineTerminator.length();
+    while(split < end) {
+      start = split;
+      split = splitPoint(data, start, end, room);
+      appendLevel(level);
+      append(" CONC ");
+      append(data, start, split);
+      append(m_lineTerminator);
+    }
+  }
+
+  /**
+   * Find where to cut a value so that the part from start fits in room
+   * characters, without cutting next to a space or inside a surrogate pair
+   * @return the end of the part to write on this line
+   */
+  private int splitPoint(String data, int start, int end, int room) {
+    if(m_maxLineLength == 0 || end - start <= room) {
+      return end;
+    }
+    int split = start + Math.max(room, 1);
+    int cut = split;
+    while(cut > start + 1 && (data.charAt(cut - 1) == ' ' || data.charAt(cut) == ' '
+                              || Character.isHighSurrogate(data.charAt(cut - 1)))) {
+      cut--;
+    }
+    if(cut == start + 1 && split > start + 1) {
+      // nothing but spaces: cut anywhere but inside a surrogate pair
+      cut = split;
+      if(Character.isHighSurrogate(data.charAt(cut - 1))) {
+        cut--;
+      }
+    }
+    return cut;
+  }
+
+  /**
+   * @return index of the next line break in data from start; its length
+   *         if there is none
+   */
+  private static int lineEnd(String data, int start) {
+    for(int i = start; i < data.length(); i++) {
+      char c = data.charAt(i);
+      if(c == '\n' || c == '\r') {
+        return i;
+      }
+    }
+    return data.length();
+  }
+
+  private static int length(int level) {
+    return level < 10 ? 1 : String.valueOf(level).length();
+  }
+
+  private void appendLevel(int level) throws IOException {
+    if(level >= 0 && level < 10 && m_text == null && m_asciiBytes) {
+      if(m_pos == m_buf.length) {
+        drain();
+      }
+      m_buf[m_pos++] = (byte) ('0' + level);
+    } else {
+      append(String.valueOf(level));
+    }
+  }
+
+  private void append(String s) throws IOException {
+    append(s, 0, s.length());
+  }
+
+  /**
+   * Encode the characters of s from start to end into the buffer
+   */
+  private void append(String s, int start, int end) throws IOException {
+    if(m_text != null) {
+      m_text.append(s, start, end);
+      return;
+    }
+    if(m_asciiBytes) {
+      // copy ASCII characters directly, up to the first other one
+      while(start < end) {
+        if(m_pos == m_buf.length) {
+          drain();
+        }
+        int stop = Math.min(end, start + m_buf.length - m_pos);
+        int i = start;
+        int pos = m_pos;
+        while(i < stop) {
+          char c = s.charAt(i);
+          if(c >= 0x80) {
+            break;
+          }
+          m_buf[pos++] = (byte) c;
+          i++;
+        }
+        m_pos = pos;
+        start = i;
+        if(i < stop) {
+          break;
+        }
+      }
+      if(start == end) {
+        return;
+      }
+    }
+    CharBuffer chars = CharBuffer.wrap(s, start, end);
+    m_bytes.clear();
+    m_bytes.position(m_pos);
+    while(true) {
+      // the encoder's state runs on from string to string, e.g. to write
+      // a UTF-16 byte order mark only once
+      CoderResult result = m_encoder.encode(chars, m_bytes, false);
+      m_pos = m_bytes.position();
+      if(result.isOverflow()) {
+        drain();
+        m_bytes.clear();
+      } else {
+        break;
+      }
+    }
+  }
+
+  /**
+   * Write the buffered bytes to the channel
+   */
+  private void drain() throws IOException {
+    ByteBuffer out = ByteBuffer.wrap(m_buf, 0, m_pos);
+    while(out.hasRemaining()) {
+      m_channel.write(out);
+    }
+    m_written += m_pos;
+    m_pos = 0;
+  }
+
+  /**
+   * Write out any buffered bytes
+   */
+  public void flush() throws IOException {
+    if(m_text == null) {
+      drain();
+    }
+  }
+
+  /**
+   * Flush and close the channel
+   */
+  public void close() throws IOException {
+    if(m_text == null) {
+      flush();
+      m_channel.close();
+    }
+  }
+}
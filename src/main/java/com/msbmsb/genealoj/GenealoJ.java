@@ -8,18 +8,47 @@
 
 package com.msbmsb.genealoj;
 
+import com.msbmsb.genealoj.EventIndex;
+import com.msbmsb.genealoj.FamilyLinker;
+import com.msbmsb.genealoj.FrozenTree;
+import com.msbmsb.genealoj.GedcomChanges;
+import com.msbmsb.genealoj.GedcomEncoding;
+import com.msbmsb.genealoj.GedcomHandler;
 import com.msbmsb.genealoj.GedcomNode;
+import com.msbmsb.genealoj.GedcomReader;
+import com.msbmsb.genealoj.GedcomSnapshot;
+import com.msbmsb.genealoj.GedcomStore;
+import com.msbmsb.genealoj.GedcomWriter;
 import com.msbmsb.genealoj.IndividualNode;
+import com.msbmsb.genealoj.LazyRootNode;
+import com.msbmsb.genealoj.LinkReport;
+import com.msbmsb.genealoj.MappedGedcomReader;
+import com.msbmsb.genealoj.ParallelGedcomReader;
+import com.msbmsb.genealoj.ParseListener;
+import com.msbmsb.genealoj.ParseMetrics;
+import com.msbmsb.genealoj.ParseOptions;
+import com.msbmsb.genealoj.PedigreeGraph;
+import com.msbmsb.genealoj.PersonIndex;
+import com.msbmsb.genealoj.RecordIndex;
+import com.msbmsb.genealoj.RelationshipIndex;
+import com.msbmsb.genealoj.TreeBuilder;
 import com.msbmsb.genealoj.Utils;
 
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.FileNotFoundException;
+import java.io.OutputStream;
 
 import java.io.File;
+import java.nio.charset.Charset;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
 
 public class GenealoJ {
   /**
@@ -27,11 +56,73 @@ public class GenealoJ {
    */
   private GedcomNode m_parseRoot = new GedcomNode(-1, "ROOT");
 
+  /**
+   * Columnar store holding the parse when loaded with
+   * ParseOptions.columnar(true); null otherwise
+   */
+  private GedcomStore m_store = null;
+
+  /**
+   * Compact relationship graph over the linked individuals; built on the
+   * first call to getPedigreeGraph()
+   */
+  private PedigreeGraph m_pedigree = null;
+
+  /**
+   * Ancestor index answering relationship queries; built on the first call
+   * to getRelationshipIndex()
+   */
+  private RelationshipIndex m_relationships = null;
+
+  /**
+   * Name and place lookups; built on the first call to getPersonIndex()
+   */
+  private PersonIndex m_personIndex = null;
+
+  /**
+   * Date index of BIRT, DEAT and MARR; built on the first call to
+   * getEventIndex()
+   */
+  private EventIndex m_eventIndex = null;
+
+  /**
+   * Content hash of every level=0 record by record key, in file order;
+   * kept for update() when loaded with ParseOptions.trackChanges(true),
+   * null otherwise
+   */
+  private Map<String, Long> m_recordHashes = null;
+
+  /**
+   * Charset the file was read in
+   */
+  private Charset m_charset = Charset.defaultCharset();
+
+  /**
+   * Metrics of the load when ParseOptions.listener is set; null otherwise
+   */
+  private ParseMetrics m_metrics = null;
+
+  /**
+   * Outcome of linking the individuals of the load; null if they were
+   * not linked, e.g. for lazy, columnar and snapshot loads
+   */
+  private LinkReport m_linkReport = null;
+
+  /**
+   * True if the tree was read from ParseOptions.snapshot instead of parsed
+   */
+  private boolean m_fromSnapshot = false;
+
   /**
    * File source for current gedcom parse
    */
   private File m_gedcomFile = null;
 
+  /**
+   * Options controlling how the file is loaded
+   */
+  private ParseOptions m_options = null;
+
   /**
    * Check for valid initialization of input file
    */
@@ -43,8 +134,17 @@ public class GenealoJ {
    * @param file String filename of input GEDCOM file to parse
    */
   public GenealoJ(String file) {
-    m_gedcomFile = new File(file);
-    m_initialized = init();
+    this(new File(file), new ParseOptions());
+  }
+
+  /**
+   * Constructor. Given a file name and load options, parses the file and
+   * builds a hierarchy of GEDCOM lines represented by the GedcomNode class.
+   * @param file String filename of input GEDCOM file to parse
+   * @param options ParseOptions controlling how the file is loaded
+   */
+  public GenealoJ(String file, ParseOptions options) {
+    this(new File(file), options);
   }
 
   /**
@@ -53,7 +153,18 @@ public class GenealoJ {
    * @param file File of input GEDCOM file to parse
    */
   public GenealoJ(File file) {
+    this(file, new ParseOptions());
+  }
+
+  /**
+   * Constructor. Given a File object and load options, parses the file and
+   * builds a hierarchy of GEDCOM lines represented by the GedcomNode class.
+   * @param file File of input GEDCOM file to parse
+   * @param options ParseOptions controlling how the file is loaded
+   */
+  public GenealoJ(File file, ParseOptions options) {
     m_gedcomFile = file;
+    m_options = options;
     m_initialized = init();
   }
 
@@ -65,25 +176,165 @@ public class GenealoJ {
    */
   private boolean init() {
     boolean initialized = true;
+    ParseListener listener = m_options.listener();
+    long start = System.nanoTime();
+    if(listener != null) {
+      m_metrics = new ParseMetrics();
+      listener.loadStarted(m_gedcomFile);
+    }
     initialized &= load(m_gedcomFile);
+    if(listener != null) {
+      m_metrics.load(System.nanoTime() - start);
+      listener.loadFinished(m_gedcomFile, m_metrics);
+    }
+    if(initialized && untracked() == null) {
+      initialized &= trackChanges(m_gedcomFile);
+    }
 
     return initialized;
   }
 
+  /**
+   * @return why this load does not keep record hashes for update(); null
+   *         if it does
+   */
+  private String untracked() {
+    if(!m_options.trackChanges()) {
+      return "the load did not set ParseOptions.trackChanges(true)";
+    }
+    if(m_store != null) {
+      return "columnar loads do not track changes";
+    }
+    if(m_options.projection() != null) {
+      return "projection loads do not track changes";
+    }
+    if(m_parseRoot instanceof LazyRootNode) {
+      return "lazy loads do not track changes";
+    }
+    if(m_fromSnapshot) {
+      return "loads read from a snapshot do not track changes";
+    }
+    if(!GedcomEncoding.isAsciiCompatible(m_charset)) {
+      return "the file's charset " + m_charset.name() + " is not ASCII-compatible";
+    }
+    return null;
+  }
+
+  /**
+   * Private method for keeping the record hashes of the loaded file
+   * @param file File that was loaded
+   * @return boolean of successful read
+   */
+  private boolean trackChanges(File file) {
+    try {
+      RecordIndex index = indexRecords(file);
+      try {
+        String[] keys = recordKeys(index);
+        m_recordHashes = new LinkedHashMap<String, Long>(keys.length * 2);
+        for(int i = 0; i < keys.length; i++) {
+          m_recordHashes.put(keys[i], index.hash(i));
+        }
+      } finally {
+        index.close();
+      }
+      return true;
+    } catch(IOException ioe) {
+      System.err.println("IOException hashing records of file: " + file);
+      ioe.printStackTrace();
+      return false;
+    }
+  }
+
   /**
    * Private method for loading the input GEDCOM file
    * @param file File to load
    * @return boolean of successful load
    */
   private boolean load(File file) {
-    BufferedReader br;
+    GedcomReader reader;
+    GedcomHandler handler;
+    if(m_options.columnar()) {
+      // flatten every record into the columnar store instead of the tree
+      handler = m_store = new GedcomStore();
+    } else {
+      handler = new TreeBuilder(m_parseRoot);
+    }
+    long start = System.nanoTime();
     try {
-      br = new BufferedReader(new FileReader(file));
-      // begin parsing at the m_parseRoot level=-1 node
-      parseGedcom(br, m_parseRoot);
-      br.close();
-      // now link individuals in the genealogy graph through their families
-      linkIndividuals(m_parseRoot);
+      if(m_metrics != null) {
+        m_metrics.bytes(file.length());
+      }
+      m_charset = m_options.charset();
+      if(m_charset == null) {
+        m_charset = GedcomEncoding.detect(file, Charset.defaultCharset());
+      }
+      // UTF-16 lines can only be found by decoding the whole file
+      boolean bytes = GedcomEncoding.isAsciiCompatible(m_charset);
+      if(m_options.lazyCacheSize() > 0 && bytes) {
+        // only index the records here; each is parsed on first access
+        RecordIndex index = new RecordIndex(file, m_charset,
+                                            m_options.lazyCacheSize());
+        index.symbols(m_options.newSymbols());
+        index.projection(m_options.projection());
+        m_parseRoot = new LazyRootNode(index);
+        parsed(start);
+        return true;
+      }
+      File snapshot = m_options.snapshot();
+      if(m_store != null || m_options.projection() != null) {
+        snapshot = null;
+      }
+      if(snapshot != null && GedcomSnapshot.isCurrent(snapshot, file)) {
+        try {
+          m_parseRoot = GedcomSnapshot.read(snapshot);
+          m_fromSnapshot = true;
+          parsed(start);
+          return true;
+        } catch(IOException ioe) {
+          System.err.println("Ignoring unreadable snapshot: " + snapshot
+                             + ": " + ioe.getMessage());
+        }
+      }
+      if(m_options.parallel() && bytes) {
+        // parse chunks concurrently, records arrive in file order
+        ParallelGedcomReader parallel = new ParallelGedcomReader(file,
+            m_charset, m_options.parallelism(),
+            m_options.executor());
+        parallel.internValues(m_options.internValues());
+        parallel.projection(m_options.projection());
+        parallel.metrics(m_metrics);
+        parallel.parse(handler);
+      } else {
+        if(m_options.memoryMapped() && bytes) {
+          reader = new MappedGedcomReader(file, m_charset);
+        } else {
+          reader = new GedcomReader(GedcomEncoding.newReader(file, m_charset));
+        }
+        reader.symbols(m_options.newSymbols());
+        reader.projection(m_options.projection());
+        reader.metrics(m_metrics);
+        // stream every level=0 record into the m_parseRoot level=-1 node
+        reader.parse(handler);
+        reader.close();
+      }
+      parsed(start);
+      // now link individuals in the genealogy graph through their families,
+      // only once every record is in
+      if(m_store == null) {
+        long linkStart = System.nanoTime();
+        m_linkReport = linkIndividuals(m_parseRoot);
+        if(m_metrics != null) {
+          m_metrics.link(System.nanoTime() - linkStart, m_linkReport);
+        }
+      }
+      if(snapshot != null) {
+        try {
+          GedcomSnapshot.write(m_parseRoot, file, snapshot);
+        } catch(IOException ioe) {
+          System.err.println("Could not write snapshot: " + snapshot
+                             + ": " + ioe.getMessage());
+        }
+      }
       return true;
     } catch(FileNotFoundException fne) {
       System.err.println("Input file: " + file + " not found!");
@@ -95,6 +346,15 @@ public class GenealoJ {
     }
   }
 
+  /**
+   * Add the time since start to the metrics as the parse time
+   */
+  private void parsed(long start) {
+    if(m_metrics != null) {
+      m_metrics.parse(System.nanoTime() - start);
+    }
+  }
+
   /**
    * Get level=0 nodes of the given tag type
    * @param tag the tag of nodes to return
@@ -105,6 +365,12 @@ public class GenealoJ {
     return m_parseRoot.getChildrenWithTag(tag);
   }
 
+  /**
+   * Get the nodes of the given tag at any level
+   * @see GedcomNode#getDescendantsWithTag(String)
+   * @param tag the tag of nodes to return
+   * @return List<GedcomNode> of the nodes in document order; empty if none
+   */
   public List<GedcomNode> getDescendants(String tag) {
     return m_parseRoot.getDescendantsWithTag(tag);
   }
@@ -113,46 +379,128 @@ public class GenealoJ {
     return m_parseRoot;
   }
 
+  /**
+   * @return the columnar GedcomStore of this parse; null unless loaded
+   *         with ParseOptions.columnar(true)
+   */
+  public GedcomStore getStore() {
+    return m_store;
+  }
+
+  /**
+   * @return the families linked by the load and the references that could
+   *         not be linked, kept up to date by update(); null if the load
+   *         did not link, e.g. a lazy, columnar or snapshot load
+   */
+  public LinkReport getLinkReport() {
+    return m_linkReport;
+  }
+
+  /**
+   * @return the timings and counts of the load; null unless loaded with
+   *         a ParseOptions.listener
+   */
+  public ParseMetrics getMetrics() {
+    return m_metrics;
+  }
+
+  /**
+   * Get the int-indexed graph of the parent, child and spouse links.
+   * The graph is built on first use, after the individuals are linked,
+   * and reflects the links as they were at that time.
+   * @return the PedigreeGraph of all individuals; empty for a columnar load
+   */
+  public PedigreeGraph getPedigreeGraph() {
+    if(m_pedigree == null) {
+      if(m_store != null) {
+        m_pedigree = new PedigreeGraph(new ArrayList<IndividualNode>());
+      } else {
+        m_pedigree = new PedigreeGraph(getIndividuals());
+      }
+    }
+    return m_pedigree;
+  }
+
+  /**
+   * Get the index answering how two individuals are related. It is built
+   * on first use, after the individuals are linked; individuals linked in
+   * later must be added with RelationshipIndex.addIndividual.
+   * @return the RelationshipIndex of all individuals; empty for a
+   *         columnar load
+   */
+  public RelationshipIndex getRelationshipIndex() {
+    if(m_relationships == null) {
+      if(m_store != null) {
+        m_relationships = new RelationshipIndex(new ArrayList<IndividualNode>());
+      } else {
+        m_relationships = new RelationshipIndex(getIndividuals());
+      }
+    }
+    return m_relationships;
+  }
+
+  /**
+   * Get the index of individuals by surname, given name and place.
+   * It is built on first use and reflects the tree at that time.
+   * @return the PersonIndex of all individuals; empty for a columnar load
+   */
+  public PersonIndex getPersonIndex() {
+    if(m_personIndex == null) {
+      if(m_store != null) {
+        m_personIndex = new PersonIndex(new ArrayList<IndividualNode>());
+      } else {
+        m_personIndex = new PersonIndex(getIndividuals());
+      }
+    }
+    return m_personIndex;
+  }
+
+  /**
+   * Get the date index of the BIRT, DEAT and MARR events. It is built on
+   * first use, parsing every DATE once, and reflects the tree at that time.
+   * @return the EventIndex of the parse; empty for a columnar load
+   */
+  public EventIndex getEventIndex() {
+    if(m_eventIndex == null) {
+      m_eventIndex = new EventIndex(m_parseRoot);
+    }
+    return m_eventIndex;
+  }
+
   public List<IndividualNode> getIndividuals() {
     return Utils.getIndividuals(m_parseRoot);
   }
+
+  /**
+   * Take an immutable snapshot of the parse and the links between its
+   * individuals, which any number of threads can then query without
+   * locking. Later changes to this parse, e.g. by update(), do not show
+   * in the snapshot. A lazy load parses every record to take it.
+   * @return the FrozenTree snapshot
+   */
+  public FrozenTree freeze() {
+    if(m_store != null) {
+      GedcomNode root = new GedcomNode(-1, "ROOT");
+      for(int i = 0; i < m_store.recordCount(); i++) {
+        root.addChildNode(m_store.node(m_store.record(i)));
+      }
+      return new FrozenTree(root);
+    }
+    return new FrozenTree(m_parseRoot);
+  }
   
   /**
    * Parse given the input Reader and current node.
-   * For any level, l &gt; node.level(), creates a new GedcomNode and adds as 
-   * child to node. Otherwise, returns leaving the Reader pointing at the
-   * line containing the ignored level.
+   * For every line with level, l &gt; node.level(), creates a new GedcomNode
+   * and adds it beneath node. Parsing stops at the end of input or at the
+   * first line with a level not greater than node.level(); that line is
+   * consumed.
    * @param br BufferedReader pointing to the next file line
    * @param node GedcomNode current node in which to add children nodes
    */
   public void parseGedcom(BufferedReader br, GedcomNode node) 
     throws IOException {
-    while(br.ready()) {
-      // store current place in stream for peeking
-      br.mark(1);
-      // peek ahead for the next level
-      int nextLevel = Integer.parseInt(String.valueOf((char)br.read()));
-
-      // sanity check
-      if(nextLevel < 0) {
-        throw new IOException("Error parsing file, level < 0 encountered");
-      }
-
-      // reset to front of line
-      br.reset();
-      // only parse levels greater than this node
-      if(nextLevel > node.level()) {
-        // here, advance the BufferedReader position
-        GedcomNode child = buildGedcomNode(br.readLine().trim());
-        // add new node as child to current node and recurse on new node
-        parseGedcom(br, child);
-        node.addChildNode(child);
-        child.finalize();
-      } else {
-        // backtrack to parent node
-        return;
-      }
-    }
+    GedcomReader.parseGedcom(br, node);
   }
 
   /**
@@ -162,79 +510,86 @@ public class GenealoJ {
    * @return GedcomNode object initialized appropriately
    */
   public GedcomNode buildGedcomNode(String line) {
-    String[] toks = line.split(" ");
-    assert(toks.length > 1);
-    int level = Integer.parseInt(toks[0]);
-    if(toks.length == 2) {
-      // basic constructor
-      return new GedcomNode(level, toks[1]);
-    } else {
-      // is this a reference
-      if(Utils.isReference(toks[1])) {
-        // if it is, use contructor with reference
-        if(Utils.isIndividual(toks[2])) {
-          return new IndividualNode(level, toks[2], restFromTok(line, 2), toks[1]);
-        } else {
-          return new GedcomNode(level, toks[2], restFromTok(line, 2), toks[1]);
-        }
-      } else {
-        // else just construct with data
-        return new GedcomNode(level, toks[1], restFromTok(line, 1));
-      }
-    }
+    return GedcomReader.buildGedcomNode(line);
   }
 
   /**
    * Build the data portion of a gedcom line by ignoring tokens up to the
    * index of token tokIndex
-   * For example:
-   *   line = 1 PLAC Saturn
-   *   tokIndex = 1
-   * will return 'Saturn'. 'PLAC' is the space-delimited token at tokIndex=1.
+   * @see GedcomReader#restFromTok(String, int)
    * @param line the whole gedcom line
    * @param tokIndex the index of the space-delimited token to begin with
    * @return the string from tokIndex to end of string
    */
   public String restFromTok(String line, int tokIndex) {
-    int i=0;
-    int index = line.indexOf(" ");
-    while(i<tokIndex && index > 0) {
-      index = line.indexOf(" ", index+1);
-      i++;
-    }
-
-    try {
-      return (index > 0) ? line.substring(index+1) : "";
-    } catch(IndexOutOfBoundsException e) {
-      return "";
-    }
+    return GedcomReader.restFromTok(line, tokIndex);
   }
 
   /**
-   * Link all the individuals found in the given root through their families
+   * Link all the individuals found in the given root through their
+   * families, in one pass over the families. Every HUSB, WIFE and CHIL
+   * reference is resolved once through the root's reference index, and
+   * links that are already there are skipped.
    * @param root the GedcomNode to begin with
+   * @return the LinkReport of the families linked and the references that
+   *         could not be
    */
-  public void linkIndividuals(GedcomNode root) {
+  public LinkReport linkIndividuals(GedcomNode root) {
+    LinkReport report = new LinkReport();
     List<GedcomNode> families = Utils.getFamilies(root);
+    if(families == null) {
+      // no families, e.g. when projected away
+      return report;
+    }
 
+    FamilyLinker linker = new FamilyLinker(root, report);
     for(GedcomNode family : families) {
-      // build a list of parents and children nodes. 
-      // These nodes are not the individuals, but are the references to 
-      // individuals in the FAM nodes
-      // calling linkFamily will handle getting the actual individuals
-      List<GedcomNode> parents = new ArrayList<GedcomNode>();
-      List<GedcomNode> children = new ArrayList<GedcomNode>();
-
-      // get all the necessary reference nodes
-      List<GedcomNode> husb = family.getChildrenWithTag(Utils.HUSBAND_TAG);
-      List<GedcomNode> wife = family.getChildrenWithTag(Utils.WIFE_TAG);
-      List<GedcomNode> child = family.getChildrenWithTag(Utils.CHILD_TAG);
-      if(husb != null) parents.addAll(husb);
-      if(wife != null) parents.addAll(wife);
-      if(child != null) children.addAll(child);
+      linker.link(family);
+    }
+    return report;
+  }
 
-      // now link the IndividualNodes through the family
-      linkFamily(root, family, parents, children);
+  /**
+   * Undo the linking of one family: remove the family from its members,
+   * and each link it made that no other family of theirs also makes
+   * @param members FamilyLinker to resolve the family with
+   * @param others FamilyLinker to resolve the members' other families with
+   * @param family GedcomNode of the FAM node
+   */
+  private static void unlinkFamily(FamilyLinker members, FamilyLinker others,
+                                   GedcomNode family) {
+    members.resolve(family);
+    for(int i = 0; i < members.parents(); i++) {
+      members.parent(i).familiesAsHead().remove(family);
+    }
+    for(int j = 0; j < members.children(); j++) {
+      members.child(j).familiesAsChild().remove(family);
+    }
+    for(int i = 0; i < members.parents(); i++) {
+      IndividualNode p = members.parent(i);
+      // the links that p's other families still make
+      boolean[] keepChild = new boolean[members.children()];
+      boolean[] keepSpouse = new boolean[members.parents()];
+      for(GedcomNode other : p.familiesAsHead()) {
+        others.resolve(other);
+        for(int j = 0; j < keepChild.length; j++) {
+          keepChild[j] |= others.isChild(members.child(j));
+        }
+        for(int s = 0; s < keepSpouse.length; s++) {
+          keepSpouse[s] |= others.isParent(members.parent(s));
+        }
+      }
+      for(int j = 0; j < keepChild.length; j++) {
+        if(!keepChild[j]) {
+          p.getChildren().remove(members.child(j));
+          members.child(j).getParents().remove(p);
+        }
+      }
+      for(int s = 0; s < keepSpouse.length; s++) {
+        if(s != i && !keepSpouse[s]) {
+          p.getSpouses().remove(members.parent(s));
+        }
+      }
     }
   }
 
@@ -250,27 +605,254 @@ public class GenealoJ {
   public void linkFamily(GedcomNode root, GedcomNode family, 
                           List<GedcomNode> parents, 
                           List<GedcomNode> children) {
-    // use Utils to get the IndividualNodes for the members of this family
-    List<IndividualNode> pIndi = Utils.getIndividualsFromFamRef(root, parents);
-    List<IndividualNode> cIndi = Utils.getIndividualsFromFamRef(root, children);
-
-    // for each parent/husband/wife of family:
-    // add family reference
-    // add children list
-    // add rest of spouses
-    for(IndividualNode p : pIndi) {
-      p.addFamilyAsHead(family);
-      p.addChildren(cIndi);
-      p.addSpouses(pIndi);
-    }
-
-    // for each child:
-    // add family reference
-    // add parent list
-    for(IndividualNode c : cIndi) {
-      c.addFamilyAsChild(family);
-      c.addParents(pIndi);
+    new FamilyLinker(root, null).link(family, parents, children);
+  }
+
+  /**
+   * Bring the tree up to date with the input file after it was edited
+   * @see #update(File)
+   */
+  public GedcomChanges update() throws IOException {
+    return update(m_gedcomFile);
+  }
+
+  /**
+   * Bring the tree up to date with a new version of the input file.
+   * The file's level=0 records are hashed and compared with the hashes
+   * kept at load (or the last update), and only added and changed records
+   * are parsed. Changed records replace the old ones in place under the
+   * root, added records are appended and removed records dropped.
+   * Only the affected families are unlinked and linked again: changed FAM
+   * records, and the families of changed individuals before and after the
+   * change. An added individual's families are found through its FAMS and
+   * FAMC lines. The relinked families' problems replace their old ones in
+   * getLinkReport().
+   * The PedigreeGraph and the other indexes are built again on next use.
+   * Requires a full load of an ASCII-compatible file with
+   * ParseOptions.trackChanges(true) that was parsed, not read from a
+   * snapshot.
+   * @param file the new version of the GEDCOM file
+   * @return the records added, changed and removed
+   * @throws IllegalStateException if this load does not track changes;
+   *         the message says why
+   */
+  public GedcomChanges update(File file) throws IOException {
+    if(m_recordHashes == null) {
+      String reason = untracked();
+      throw new IllegalStateException("Changes are not tracked: "
+          + ((reason == null) ? "the load failed" : reason));
+    }
+    RecordIndex index = indexRecords(file);
+    try {
+      String[] keys = recordKeys(index);
+      Map<String, Long> hashes = new LinkedHashMap<String, Long>(keys.length * 2);
+      List<String> added = new ArrayList<String>();
+      List<String> changed = new ArrayList<String>();
+      List<String> removed = new ArrayList<String>();
+      Map<String, GedcomNode> newNodes = new HashMap<String, GedcomNode>();
+      for(int i = 0; i < keys.length; i++) {
+        long hash = index.hash(i);
+        Long old = m_recordHashes.get(keys[i]);
+        hashes.put(keys[i], hash);
+        if(old == null) {
+          added.add(keys[i]);
+        } else if(old.longValue() != hash) {
+          changed.add(keys[i]);
+        } else {
+          continue;
+        }
+        newNodes.put(keys[i], index.record(i));
+      }
+      for(String key : m_recordHashes.keySet()) {
+        if(!hashes.containsKey(key)) {
+          removed.add(key);
+        }
+      }
+
+      // find the old records before the tree changes
+      Map<String, GedcomNode> oldNodes = new HashMap<String, GedcomNode>();
+      for(String key : changed) {
+        oldNodes.put(key, recordNode(key));
+      }
+      for(String key : removed) {
+        oldNodes.put(key, recordNode(key));
+      }
+
+      // a family linked before must be unlinked before it is linked again
+      Set<String> families = new LinkedHashSet<String>();
+      for(GedcomNode node : oldNodes.values()) {
+        addFamilies(node, families);
+      }
+      for(GedcomNode node : newNodes.values()) {
+        addFamilies(node, families);
+      }
+      FamilyLinker members = new FamilyLinker(m_parseRoot, null);
+      FamilyLinker others = new FamilyLinker(m_parseRoot, null);
+      int unlinked = 0;
+      for(String ref : families) {
+        GedcomNode family = m_parseRoot.getReferencedNode(ref);
+        if(family != null && family.tag().equals(Utils.FAMILY_TAG)) {
+          unlinkFamily(members, others, family);
+          unlinked++;
+        }
+      }
+
+      // patch the records under the root
+      for(String key : removed) {
+        GedcomNode node = oldNodes.get(key);
+        if(node != null) {
+          m_parseRoot.removeChildNode(node);
+        }
+      }
+      for(String key : changed) {
+        GedcomNode node = oldNodes.get(key);
+        if(node == null || !m_parseRoot.replaceChildNode(node, newNodes.get(key))) {
+          m_parseRoot.addChildNode(newNodes.get(key));
+        }
+      }
+      for(String key : added) {
+        m_parseRoot.addChildNode(newNodes.get(key));
+      }
+
+      LinkReport report = new LinkReport();
+      FamilyLinker linker = new FamilyLinker(m_parseRoot, report);
+      for(String ref : families) {
+        GedcomNode family = m_parseRoot.getReferencedNode(ref);
+        if(family != null && family.tag().equals(Utils.FAMILY_TAG)) {
+          linker.link(family);
+        }
+      }
+      m_linkReport.update(families, unlinked, report);
+
+      m_recordHashes = hashes;
+      m_gedcomFile = file;
+      if(!added.isEmpty() || !changed.isEmpty() || !removed.isEmpty()) {
+        m_pedigree = null;
+        m_relationships = null;
+        m_personIndex = null;
+        m_eventIndex = null;
+      }
+      return new GedcomChanges(added, changed, removed, report.families());
+    } finally {
+      index.close();
+    }
+  }
+
+  /**
+   * Index the records of a file, parsing them as the load did
+   */
+  private RecordIndex indexRecords(File file) throws IOException {
+    RecordIndex index = new RecordIndex(file, m_charset, 1);
+    index.symbols(m_options.newSymbols());
+    return index;
+  }
+
+  /**
+   * Get the key of every record of the index: its reference, or for a
+   * record without one its tag, followed by #n for the n-th later record
+   * of that tag
+   * @see GedcomChanges
+   */
+  private static String[] recordKeys(RecordIndex index) {
+    String[] keys = new String[index.size()];
+    Map<String, Integer> counts = new HashMap<String, Integer>();
+    for(int i = 0; i < keys.length; i++) {
+      String ref = index.reference(i);
+      if(ref != null) {
+        keys[i] = ref;
+        continue;
+      }
+      String tag = index.tag(i);
+      Integer n = counts.get(tag);
+      keys[i] = (n == null) ? tag : tag + "#" + n;
+      counts.put(tag, (n == null) ? 1 : n.intValue() + 1);
+    }
+    return keys;
+  }
+
+  /**
+   * Find the level=0 record of the current tree with the given key
+   * @return the record; null if there is none
+   */
+  private GedcomNode recordNode(String key) {
+    if(Utils.isReference(key)) {
+      return m_parseRoot.getReferencedNode(key);
+    }
+    int sep = key.indexOf('#');
+    String tag = (sep < 0) ? key : key.substring(0, sep);
+    int n = (sep < 0) ? 0 : Integer.parseInt(key.substring(sep + 1));
+    List<GedcomNode> records = m_parseRoot.getChildrenWithTag(tag);
+    if(records != null) {
+      for(GedcomNode record : records) {
+        if(record.reference() == null && n-- == 0) {
+          return record;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Add the references of the families a record takes part in: its own
+   * for a FAM, those linked and those of the FAMS and FAMC lines for an
+   * individual
+   */
+  private static void addFamilies(GedcomNode record, Set<String> families) {
+    if(record == null) {
+      return;
+    }
+    if(record.tag().equals(Utils.FAMILY_TAG) && record.reference() != null) {
+      families.add(record.reference());
+    }
+    if(record instanceof IndividualNode) {
+      IndividualNode indi = (IndividualNode) record;
+      for(GedcomNode family : indi.familiesAsHead()) {
+        families.add(family.reference());
+      }
+      for(GedcomNode family : indi.familiesAsChild()) {
+        families.add(family.reference());
+      }
+      addReferences(record.getChildrenWithTag("FAMS"), families);
+      addReferences(record.getChildrenWithTag("FAMC"), families);
+    }
+  }
+
+  private static void addReferences(List<GedcomNode> nodes, Set<String> refs) {
+    if(nodes != null) {
+      for(GedcomNode n : nodes) {
+        if(n.data() != null && Utils.isReference(n.data())) {
+          refs.add(n.data());
+        }
+      }
+    }
+  }
+
+  /**
+   * Release the input file, which a lazy load keeps open to parse records
+   * on access. Does nothing for other loads.
+   */
+  public void close() throws IOException {
+    if(m_parseRoot instanceof LazyRootNode) {
+      ((LazyRootNode) m_parseRoot).index().close();
+    }
+  }
+
+  /**
+   * Write the parse out as a GEDCOM file, in input order, in the charset
+   * the file was read in. A columnar load writes its records
+   * one at a time from the store.
+   * @param out OutputStream to write to; flushed but not closed
+   */
+  public void write(OutputStream out) throws IOException {
+    GedcomWriter writer = new GedcomWriter(out, m_charset);
+    if(m_store != null) {
+      for(int i = 0; i < m_store.recordCount(); i++) {
+        writer.write(m_store.node(m_store.record(i)));
+      }
+    } else {
+      writer.write(m_parseRoot);
     }
+    writer.flush();
   }
 
   /**
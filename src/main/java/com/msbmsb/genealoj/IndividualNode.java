@@ -15,27 +15,31 @@ import java.util.List;
 import java.util.ArrayList;
 
 public class IndividualNode extends GedcomNode {
+  // the link lists start at no capacity rather than the default of 10:
+  // most individuals have one or two links of each kind, and millions
+  // of mostly empty arrays add up
+
   /**
    * List of other IndividualNodes that are spouses
    */
-  private List<IndividualNode> m_spouses = new ArrayList<IndividualNode>();
+  private List<IndividualNode> m_spouses = new ArrayList<IndividualNode>(0);
 
   /**
    * List of other IndividualNodes that are parents
    */
-  private List<IndividualNode> m_parents = new ArrayList<IndividualNode>();
+  private List<IndividualNode> m_parents = new ArrayList<IndividualNode>(0);
 
   /**
    * List of other IndividualNodes that are children
    */
-  private List<IndividualNode> m_children = new ArrayList<IndividualNode>();
+  private List<IndividualNode> m_children = new ArrayList<IndividualNode>(0);
 
   /**
    * Quick-access list of family GedcomNodes that this individual is a part of
    */
   private List<GedcomNode> m_families = new ArrayList<GedcomNode>();
-  private List<GedcomNode> m_familiesAsHead = new ArrayList<GedcomNode>();
-  private List<GedcomNode> m_familiesAsChild = new ArrayList<GedcomNode>();
+  private List<GedcomNode> m_familiesAsHead = new ArrayList<GedcomNode>(0);
+  private List<GedcomNode> m_familiesAsChild = new ArrayList<GedcomNode>(0);
 
   /**
    * Quick-access container for the individual's surname only
@@ -54,18 +58,32 @@ public class IndividualNode extends GedcomNode {
   public String getSurname() {
     List<GedcomNode> names = getChildrenWithTag("NAME");
     if(names != null && names.size() > 0) {
-      if(m_surname.length() == 0) {
+      if(m_surname.length() == 0 && names.get(0).data() != null) {
         m_fullName = names.get(0).data().trim();
-        if(m_fullName.charAt(m_fullName.length() - 1) == '/') {
-          int surnameBegin = m_fullName.indexOf('/');
-          m_surname = m_fullName.substring(++surnameBegin, m_fullName.length() - 1);
-        }
+        m_surname = surname(m_fullName);
       } 
     }
 
     return m_surname;
   }
 
+  /**
+   * Get the surname of a full name, the part between slashes when the name
+   * ends with one, e.g. "Smith" of "John /Smith/"
+   * @param fullName the trimmed NAME value
+   * @return the surname; "" if there is none
+   */
+  static String surname(String fullName) {
+    int end = fullName.length() - 1;
+    if(end >= 0 && fullName.charAt(end) == '/') {
+      int surnameBegin = fullName.indexOf('/') + 1;
+      if(surnameBegin <= end) {
+        return fullName.substring(surnameBegin, end);
+      }
+    }
+    return "";
+  }
+
   public String getFullName() {
     return m_fullName;
   }
@@ -104,39 +122,103 @@ public class IndividualNode extends GedcomNode {
   }
 
   /**
-   * Add an individual node to this individual
+   * Add an individual node to this individual, unless already a spouse
    * @param spouse
    */
   public void addSpouse(IndividualNode spouse) {
-    m_spouses.add(spouse);
+    linkSpouse(spouse);
   }
 
   /**
-   * Add a list of individual nodes to this individual
+   * Add a list of individual nodes to this individual, skipping this
+   * individual and those already spouses
    * @param spouses
    */
   public void addSpouses(List<IndividualNode> spouses) {
     for(IndividualNode s : spouses) {
-      if(s != this) {
-        m_spouses.add(s);
-      }
+      linkSpouse(s);
     }
   }
 
   /**
-   * Add a list of individual nodes to this individual
+   * Add a list of individual nodes to this individual, skipping those
+   * already parents
    * @param parents
    */
   public void addParents(List<IndividualNode> parents) {
-    m_parents.addAll(parents);
+    for(IndividualNode p : parents) {
+      linkParent(p);
+    }
   }
 
   /**
-   * Add a list of individual nodes to this individual
+   * Add a list of individual nodes to this individual, skipping those
+   * already children
    * @param children 
    */
   public void addChildren(List<IndividualNode> children) {
-    m_children.addAll(children);
+    for(IndividualNode c : children) {
+      linkChild(c);
+    }
+  }
+
+  /**
+   * Add a spouse unless it is this individual or already a spouse
+   * @return true if added
+   */
+  boolean linkSpouse(IndividualNode spouse) {
+    return spouse != this && link(m_spouses, spouse);
+  }
+
+  /**
+   * Add a parent unless already a parent
+   * @return true if added
+   */
+  boolean linkParent(IndividualNode parent) {
+    return link(m_parents, parent);
+  }
+
+  /**
+   * Add a child unless already a child
+   * @return true if added
+   */
+  boolean linkChild(IndividualNode child) {
+    return link(m_children, child);
+  }
+
+  /**
+   * Add an individual to a list of links unless it is in it; the lists
+   * are short, so a scan beats a set
+   */
+  private static boolean link(List<IndividualNode> links, IndividualNode other) {
+    for(int i = links.size() - 1; i >= 0; i--) {
+      if(links.get(i) == other) {
+        return false;
+      }
+    }
+    links.add(other);
+    return true;
+  }
+
+  /**
+   * @return the family nodes added with addFamily
+   */
+  List<GedcomNode> families() {
+    return m_families;
+  }
+
+  /**
+   * @return the family nodes this individual heads
+   */
+  List<GedcomNode> familiesAsHead() {
+    return m_familiesAsHead;
+  }
+
+  /**
+   * @return the family nodes this individual is a child of
+   */
+  List<GedcomNode> familiesAsChild() {
+    return m_familiesAsChild;
   }
 
   /**
@@ -0,0 +1,96 @@
+/******************************************************************************
+* LazyRootNode
+* Root GedcomNode whose level=0 records are parsed on access from a
+* RecordIndex instead of being held as children.
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj;
+
+import com.msbmsb.genealoj.GedcomNode;
+import com.msbmsb.genealoj.GedcomSymbols;
+import com.msbmsb.genealoj.RecordIndex;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Answers the record queries of a root node from the RecordIndex. The
+ * returned lists are built per call and hold their records strongly; the
+ * index itself only keeps its most recently used records.
+ */
+class LazyRootNode extends GedcomNode {
+  private RecordIndex m_index;
+
+  LazyRootNode(RecordIndex index) {
+    super(-1, "ROOT");
+    m_index = index;
+  }
+
+  /**
+   * @return the RecordIndex backing this root
+   */
+  RecordIndex index() {
+    return m_index;
+  }
+
+  public List<GedcomNode> getChildrenWithTag(String tag) {
+    int[] records = m_index.records(tag);
+    if(records.length == 0) {
+      return null;
+    }
+    List<GedcomNode> result = new ArrayList<GedcomNode>(records.length);
+    for(int r : records) {
+      result.add(m_index.record(r));
+    }
+    return result;
+  }
+
+  public List<GedcomNode> getChildrenWithTag(int tagId) {
+    if(tagId < 0) {
+      return null;
+    }
+    return getChildrenWithTag(GedcomSymbols.tag(tagId));
+  }
+
+  public GedcomNode getReferencedNode(String ref) {
+    int r = m_index.indexOf(ref);
+    return (r < 0) ? null : m_index.record(r);
+  }
+
+  /**
+   * The records are grouped by tag through the index, not held in file
+   * order
+   */
+  boolean childGroupsInOrder() {
+    return false;
+  }
+
+  int childGroupCount() {
+    return m_index.tags().size();
+  }
+
+  /**
+   * Parses every record with the i-th distinct tag
+   */
+  List<GedcomNode> childGroup(int i) {
+    return getChildrenWithTag(m_index.tags().get(i));
+  }
+
+  int childCount() {
+    return m_index.size();
+  }
+
+  /**
+   * Parses every record; the records are returned in file order
+   */
+  public List<GedcomNode> getChildNodes() {
+    List<GedcomNode> result = new ArrayList<GedcomNode>(m_index.size());
+    for(int r = 0; r < m_index.size(); r++) {
+      result.add(m_index.record(r));
+    }
+    return result;
+  }
+}
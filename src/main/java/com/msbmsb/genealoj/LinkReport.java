@@ -0,0 +1,163 @@
+/******************************************************************************
+* LinkReport
+* The outcome of linking individuals through their families: how many
+* families and links there are, and the references that could not be
+* followed.
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj;
+
+import com.msbmsb.genealoj.GedcomNode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Every HUSB, WIFE and CHIL line of a FAM record either links an
+ * individual or is reported here as a Problem. Links that another
+ * family, or the same family, already made are counted as duplicates
+ * and not added again.
+ */
+public class LinkReport {
+  /**
+   * Why a family reference was not linked
+   */
+  public enum Kind {
+    /** The value is not a reference such as @I1@ */
+    MALFORMED,
+    /** No record has the reference */
+    UNRESOLVED,
+    /** The record with the reference is not an individual */
+    MISTYPED
+  }
+
+  /**
+   * A family reference that was not linked
+   */
+  public static class Problem {
+    private final Kind m_kind;
+    private final GedcomNode m_family;
+    private final GedcomNode m_reference;
+
+    Problem(Kind kind, GedcomNode family, GedcomNode reference) {
+      m_kind = kind;
+      m_family = family;
+      m_reference = reference;
+    }
+
+    public Kind kind() {
+      return m_kind;
+    }
+
+    /**
+     * @return the FAM record
+     */
+    public GedcomNode family() {
+      return m_family;
+    }
+
+    /**
+     * @return the HUSB, WIFE or CHIL line
+     */
+    public GedcomNode reference() {
+      return m_reference;
+    }
+
+    public String toString() {
+      return m_kind + " " + m_reference.tag() + " " + m_reference.data()
+          + " in " + m_family.reference();
+    }
+  }
+
+  private int m_families = 0;
+  private long m_links = 0;
+  private long m_duplicates = 0;
+  private List<Problem> m_problems = new ArrayList<Problem>();
+
+  LinkReport() { }
+
+  void family() {
+    m_families++;
+  }
+
+  void link(boolean added) {
+    if(added) {
+      m_links++;
+    } else {
+      m_duplicates++;
+    }
+  }
+
+  void problem(Kind kind, GedcomNode family, GedcomNode reference) {
+    m_problems.add(new Problem(kind, family, reference));
+  }
+
+  /**
+   * Take in the outcome of relinking some families, e.g. after an update
+   * @param families references of the families that were unlinked and
+   *        relinked; their old problems are dropped
+   * @param unlinked number of families unlinked
+   * @param relinked LinkReport of linking the families again
+   */
+  void update(Set<String> families, int unlinked, LinkReport relinked) {
+    for(Iterator<Problem> it = m_problems.iterator(); it.hasNext(); ) {
+      if(families.contains(it.next().family().reference())) {
+        it.remove();
+      }
+    }
+    m_problems.addAll(relinked.m_problems);
+    m_families += relinked.m_families - unlinked;
+    m_links += relinked.m_links;
+    m_duplicates += relinked.m_duplicates;
+  }
+
+  /**
+   * @return number of FAM records linked
+   */
+  public int families() {
+    return m_families;
+  }
+
+  /**
+   * @return number of parent, child and spouse links added, by the load
+   *         and any updates since; each relationship counts once from each
+   *         side
+   */
+  public long links() {
+    return m_links;
+  }
+
+  /**
+   * @return number of links that were already there
+   */
+  public long duplicates() {
+    return m_duplicates;
+  }
+
+  /**
+   * @return the references that were not linked, by family and then
+   *         HUSB, WIFE and CHIL lines; those of families relinked by an
+   *         update come last
+   */
+  public List<Problem> problems() {
+    return Collections.unmodifiableList(m_problems);
+  }
+
+  /**
+   * @return true if every reference was linked
+   */
+  public boolean isClean() {
+    return m_problems.isEmpty();
+  }
+
+  public String toString() {
+    return m_families + " families, " + m_links + " links, " + m_duplicates
+        + " duplicates, " + m_problems.size() + " problems";
+  }
+}
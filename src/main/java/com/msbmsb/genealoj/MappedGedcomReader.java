@@ -0,0 +1,181 @@
+/******************************************************************************
+* MappedGedcomReader
+* GedcomReader that memory-maps the input file and tokenizes GEDCOM lines
+* directly from the mapped bytes.
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj;
+
+import com.msbmsb.genealoj.GedcomEncoding;
+import com.msbmsb.genealoj.GedcomReader;
+import com.msbmsb.genealoj.GedcomTokenizer;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Reads records from a memory-mapped file. Lines are never copied into
+ * Strings; the tokenizer works on the mapped bytes and only the tag,
+ * reference and data kept in each node are decoded.
+ * The file is mapped in windows of at most m_windowSize bytes, so files
+ * larger than 2 GB can be read. A window is remapped at the start of the
+ * line that crosses its end.
+ */
+public class MappedGedcomReader extends GedcomReader {
+  /**
+   * Default size of each mapped window, 1 GB
+   */
+  public static final long DEFAULT_WINDOW_SIZE = 1L << 30;
+
+  private FileChannel m_channel;
+  private Charset m_charset;
+  private long m_windowSize;
+
+  /**
+   * File offset after the last byte to read
+   */
+  private long m_end;
+
+  /**
+   * Currently mapped window, the file offset it starts at and the index
+   * in it of the next line
+   */
+  private MappedByteBuffer m_window = null;
+  private long m_windowStart;
+  private int m_pos = 0;
+
+  /**
+   * Constructor. Read records from the given file in the charset named by
+   * its header, or else the platform default charset.
+   * @param file File of input GEDCOM file to read
+   */
+  public MappedGedcomReader(File file) throws IOException {
+    this(file, GedcomEncoding.detect(file, Charset.defaultCharset()));
+  }
+
+  /**
+   * Constructor. Read records from the given file.
+   * @param file File of input GEDCOM file to read
+   * @param charset ASCII-compatible Charset used to decode tags,
+   *        references and data
+   * @throws IllegalArgumentException if the charset is not
+   *         ASCII-compatible, e.g. UTF-16
+   */
+  public MappedGedcomReader(File file, Charset charset) throws IOException {
+    this(new FileInputStream(checked(file, charset)).getChannel(), 0, -1, charset,
+         DEFAULT_WINDOW_SIZE);
+  }
+
+  /**
+   * @return file, if lines of the charset can be read byte by byte
+   */
+  private static File checked(File file, Charset charset) {
+    if(!GedcomEncoding.isAsciiCompatible(charset)) {
+      throw new IllegalArgumentException("Charset is not ASCII-compatible: " + charset);
+    }
+    return file;
+  }
+
+  /**
+   * Constructor. Read records from bytes [start, end) of the given channel.
+   * start must be the beginning of a line.
+   * @param channel FileChannel to map; closed by close()
+   * @param start file offset to begin reading at
+   * @param end file offset to stop reading at; -1 for the end of the file
+   * @param charset Charset used to decode tags, references and data
+   * @param windowSize maximum number of bytes mapped at a time
+   */
+  MappedGedcomReader(FileChannel channel, long start, long end,
+                     Charset charset, long windowSize) throws IOException {
+    super();
+    if(windowSize <= 0 || windowSize > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Invalid window size: " + windowSize);
+    }
+    m_channel = channel;
+    m_charset = charset;
+    m_windowSize = windowSize;
+    m_end = (end < 0) ? channel.size() : end;
+    map(start);
+    if(start == 0 && m_window.limit() >= 3 && m_window.get(0) == (byte) 0xEF
+       && m_window.get(1) == (byte) 0xBB && m_window.get(2) == (byte) 0xBF) {
+      // skip a UTF-8 byte order mark
+      m_pos = 3;
+    }
+  }
+
+  /**
+   * Close the underlying channel. The mapped window is released once it
+   * is garbage collected.
+   */
+  public void close() throws IOException {
+    m_window = null;
+    m_channel.close();
+  }
+
+  /**
+   * Read the next non-blank line of the mapped file into the tokenizer.
+   * Lines may end with LF, CR LF or CR.
+   * @param tokenizer GedcomTokenizer to tokenize the line with
+   * @return false at the end of input, true otherwise
+   */
+  protected boolean readLine(GedcomTokenizer tokenizer) throws IOException {
+    while(true) {
+      int limit = m_window.limit();
+      boolean lastWindow = (m_windowStart + limit >= m_end);
+      if(m_pos >= limit && lastWindow) {
+        return false;
+      }
+
+      int i = m_pos;
+      byte b = 0;
+      while(i < limit && (b = m_window.get(i)) != '\n' && b != '\r') {
+        i++;
+      }
+      // the line, or its CR LF terminator, runs past the window
+      if(!lastWindow && (i >= limit || (b == '\r' && i == limit - 1))) {
+        if(m_pos == 0) {
+          throw new IOException("Line longer than mapping window at offset "
+                                + m_windowStart);
+        }
+        map(m_windowStart + m_pos);
+        continue;
+      }
+
+      int lineStart = m_pos;
+      int lineEnd = i;
+      if(i < limit) {
+        i++;
+        if(b == '\r' && i < limit && m_window.get(i) == '\n') {
+          i++;
+        }
+      }
+      m_pos = i;
+      m_lineNumber++;
+      if(m_sampling) {
+        m_tokenizeStart = System.nanoTime();
+      }
+      if(tokenizer.tokenize(m_window, lineStart, lineEnd, m_charset)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Map the window beginning at the given file offset
+   * @param offset file offset of the first byte of the window
+   */
+  private void map(long offset) throws IOException {
+    long size = Math.min(m_windowSize, m_end - offset);
+    m_window = m_channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+    m_windowStart = offset;
+    m_pos = 0;
+  }
+}
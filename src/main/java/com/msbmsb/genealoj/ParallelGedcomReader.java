@@ -0,0 +1,290 @@
+/******************************************************************************
+* ParallelGedcomReader
+* Reads a GEDCOM file on several threads by splitting it into chunks at
+* level=0 record boundaries and parsing each chunk with its own
+* MappedGedcomReader.
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj;
+
+import com.msbmsb.genealoj.GedcomHandler;
+import com.msbmsb.genealoj.GedcomNode;
+import com.msbmsb.genealoj.GedcomSymbols;
+import com.msbmsb.genealoj.MappedGedcomReader;
+import com.msbmsb.genealoj.ParseMetrics;
+import com.msbmsb.genealoj.Projection;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Every line starting with "0 " begins an independent record, so a file
+ * can be cut into chunks at those lines and the chunks parsed in parallel.
+ * Records are handed to the GedcomHandler in file order, chunk by chunk,
+ * as soon as each chunk and all chunks before it are complete. Since a
+ * record is only delivered once parsed, startRecord is called directly
+ * before endRecord.
+ * The charset must be ASCII-compatible so that level=0 lines can be found
+ * by their bytes.
+ */
+public class ParallelGedcomReader {
+  /**
+   * Smallest chunk worth handing to a separate task, 1 MB
+   */
+  public static final long MIN_CHUNK_SIZE = 1L << 20;
+
+  /**
+   * Chunks created per thread, so that uneven chunks still balance
+   */
+  private static final int CHUNKS_PER_THREAD = 4;
+
+  private File m_file;
+  private Charset m_charset;
+  private int m_parallelism;
+  private ExecutorService m_executor;
+  private int m_chunks;
+  private String[] m_internedValueTags = new String[0];
+  private Projection m_projection = null;
+  private ParseMetrics m_metrics = null;
+
+  /**
+   * Constructor.
+   * @param file File of input GEDCOM file to read
+   * @param charset ASCII-compatible Charset of the file
+   * @param parallelism number of threads to parse with
+   * @param executor ExecutorService to run chunks on; if null, a
+   *        ForkJoinPool of the given parallelism is used for the parse
+   */
+  public ParallelGedcomReader(File file, Charset charset, int parallelism,
+                              ExecutorService executor) {
+    this(file, charset, parallelism, executor, -1);
+  }
+
+  /**
+   * Constructor with a fixed number of chunks.
+   * @param chunks number of chunks to split into; -1 to derive it from
+   *        the parallelism and the file size
+   */
+  ParallelGedcomReader(File file, Charset charset, int parallelism,
+                       ExecutorService executor, int chunks) {
+    if(parallelism < 1) {
+      throw new IllegalArgumentException("Invalid parallelism: " + parallelism);
+    }
+    m_file = file;
+    m_charset = charset;
+    m_parallelism = parallelism;
+    m_executor = executor;
+    m_chunks = chunks;
+  }
+
+  /**
+   * Set the tags whose data values are interned. Each chunk is parsed
+   * with its own GedcomSymbols table.
+   * @param tags the tags whose values are interned
+   */
+  public void internValues(String[] tags) {
+    m_internedValueTags = tags.clone();
+  }
+
+  /**
+   * Only load the lines selected by the given projection
+   * @param projection the Projection to load; null to load every line
+   */
+  public void projection(Projection projection) {
+    m_projection = projection;
+  }
+
+  /**
+   * Collect metrics of the parse. Each chunk fills its own, which are
+   * added to the given metrics as the chunk is handed over.
+   * @param metrics the ParseMetrics to fill in; null to collect none
+   */
+  public void metrics(ParseMetrics metrics) {
+    m_metrics = metrics;
+  }
+
+  /**
+   * Parse the whole file, pushing every record to the given handler in
+   * file order.
+   * @param handler GedcomHandler receiving the parse events
+   */
+  public void parse(GedcomHandler handler) throws IOException {
+    long[] bounds = split();
+
+    ExecutorService executor = m_executor;
+    if(executor == null) {
+      executor = new ForkJoinPool(m_parallelism);
+    }
+    try {
+      List<Future<List<GedcomNode>>> chunks = new ArrayList<Future<List<GedcomNode>>>();
+      ParseMetrics[] metrics = new ParseMetrics[bounds.length - 1];
+      for(int i = 0; i + 1 < bounds.length; i++) {
+        if(m_metrics != null) {
+          metrics[i] = new ParseMetrics();
+        }
+        chunks.add(executor.submit(new ChunkTask(bounds[i], bounds[i + 1], metrics[i])));
+      }
+
+      handler.startDocument();
+      for(int i = 0; i < chunks.size(); i++) {
+        List<GedcomNode> records = chunks.get(i).get();
+        // release this chunk's records once they are handed over
+        chunks.set(i, null);
+        if(m_metrics != null) {
+          m_metrics.add(metrics[i]);
+        }
+        for(GedcomNode record : records) {
+          handler.startRecord(record);
+          handler.endRecord(record);
+        }
+      }
+      handler.endDocument();
+    } catch(InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted parsing file: " + m_file);
+    } catch(ExecutionException ee) {
+      Throwable cause = ee.getCause();
+      if(cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if(cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IOException("Error parsing file: " + m_file, cause);
+    } finally {
+      if(m_executor == null) {
+        executor.shutdown();
+      }
+    }
+  }
+
+  /**
+   * Compute the chunk boundaries: the offsets of level=0 lines nearest
+   * after evenly spaced points in the file.
+   * @return sorted offsets beginning with 0 and ending with the file size
+   */
+  long[] split() throws IOException {
+    FileChannel channel = new FileInputStream(m_file).getChannel();
+    try {
+      long size = channel.size();
+      int chunks = m_chunks;
+      if(chunks < 0) {
+        chunks = (int) Math.max(1, Math.min((long) m_parallelism * CHUNKS_PER_THREAD,
+                                            size / MIN_CHUNK_SIZE));
+      }
+
+      List<Long> bounds = new ArrayList<Long>();
+      bounds.add(0L);
+      for(int i = 1; i < chunks; i++) {
+        long from = Math.max(size / chunks * i, bounds.get(bounds.size() - 1) + 1);
+        long offset = findRecordStart(channel, from, size);
+        if(offset >= size) {
+          break;
+        }
+        if(offset > bounds.get(bounds.size() - 1)) {
+          bounds.add(offset);
+        }
+      }
+      bounds.add(size);
+
+      long[] result = new long[bounds.size()];
+      for(int i = 0; i < result.length; i++) {
+        result[i] = bounds.get(i);
+      }
+      return result;
+    } finally {
+      channel.close();
+    }
+  }
+
+  /**
+   * Find the first level=0 line beginning at or after the given offset
+   * @param channel FileChannel of the file
+   * @param from offset to start searching at
+   * @param size size of the file
+   * @return offset of the level=0 line; size if there is none
+   */
+  private static long findRecordStart(FileChannel channel, long from, long size)
+    throws IOException {
+    ByteBuffer buf = ByteBuffer.allocate(64 * 1024);
+    // a line starts after a terminator, so look at the byte before from too
+    long pos = from - 1;
+    while(pos < size) {
+      buf.clear();
+      int n = channel.read(buf, pos);
+      if(n <= 0) {
+        break;
+      }
+      // the last two bytes are only checked once the next read includes
+      // what follows them
+      int last = (pos + n >= size) ? n : n - 2;
+      for(int i = 0; i < last; i++) {
+        byte b = buf.get(i);
+        if(b == '\n' || b == '\r') {
+          int start = i + 1;
+          if(start < n && buf.get(start) == '0'
+             && (start + 1 >= n || buf.get(start + 1) == ' ')) {
+            return pos + start;
+          }
+        }
+      }
+      pos += Math.max(last, 1);
+    }
+    return size;
+  }
+
+  /**
+   * Parses the records of one chunk of the file
+   */
+  private class ChunkTask implements Callable<List<GedcomNode>> {
+    private long m_start;
+    private long m_end;
+    private ParseMetrics m_chunkMetrics;
+
+    ChunkTask(long start, long end, ParseMetrics metrics) {
+      m_start = start;
+      m_end = end;
+      m_chunkMetrics = metrics;
+    }
+
+    public List<GedcomNode> call() throws IOException {
+      List<GedcomNode> records = new ArrayList<GedcomNode>();
+      MappedGedcomReader reader = new MappedGedcomReader(
+          new FileInputStream(m_file).getChannel(), m_start, m_end,
+          m_charset, MappedGedcomReader.DEFAULT_WINDOW_SIZE);
+      GedcomSymbols symbols = new GedcomSymbols();
+      for(String tag : m_internedValueTags) {
+        symbols.internValues(tag);
+      }
+      reader.symbols(symbols);
+      reader.projection(m_projection);
+      reader.metrics(m_chunkMetrics);
+      try {
+        GedcomNode record;
+        while((record = reader.nextRecord()) != null) {
+          records.add(record);
+        }
+      } finally {
+        reader.close();
+      }
+      return records;
+    }
+  }
+}
@@ -0,0 +1,33 @@
+/******************************************************************************
+* ParseListener
+* Callback interface for following the loads of GenealoJ and the metrics
+* of their phases.
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj;
+
+import com.msbmsb.genealoj.ParseMetrics;
+
+import java.io.File;
+
+/**
+ * Set with ParseOptions.listener; both calls are made on the thread
+ * constructing the GenealoJ.
+ */
+public interface ParseListener {
+  /**
+   * Called before the file is opened
+   * @param file the File being loaded
+   */
+  public void loadStarted(File file);
+
+  /**
+   * Called once the file is loaded and linked, also when the load failed
+   * @param file the File loaded
+   * @param metrics the timings and counts of the load
+   */
+  public void loadFinished(File file, ParseMetrics metrics);
+}
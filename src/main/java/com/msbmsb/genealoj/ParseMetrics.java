@@ -0,0 +1,288 @@
+/******************************************************************************
+* ParseMetrics
+* Timings and counts of the phases of one GEDCOM load, for finding which
+* phase makes a slow load slow.
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj;
+
+import com.msbmsb.genealoj.GedcomNode;
+import com.msbmsb.genealoj.LinkReport;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Counts are exact. Timing every line would cost about as much as parsing
+ * it, so the per-line phases are only timed on one line in SAMPLE_RATE
+ * and scaled up to all lines; linking and the parse as a whole are timed
+ * exactly. Updating the metrics does not allocate, except for the first
+ * record of each tag.
+ * Collected when ParseOptions.listener is set and read through
+ * GenealoJ.getMetrics or ParseListener.loadFinished. Not thread-safe:
+ * each reader thread fills its own metrics, which are then added up.
+ */
+public class ParseMetrics {
+  /**
+   * Phases of a load
+   */
+  public enum Phase {
+    /** Reading a line from the input */
+    READ,
+    /** Tokenizing a line and building its GedcomNode, as buildGedcomNode */
+    TOKENIZE,
+    /** Adding nodes to their parents, as parseGedcom */
+    ASSEMBLE,
+    /** Finalizing complete nodes, e.g. IndividualNode.finalize */
+    FINALIZE,
+    /** Linking individuals through their families, as linkIndividuals */
+    LINK
+  }
+
+  /**
+   * One line in SAMPLE_RATE has its phases timed; a power of two
+   */
+  public static final int SAMPLE_RATE = 64;
+  static final int SAMPLE_MASK = SAMPLE_RATE - 1;
+
+  private static final int PHASES = Phase.values().length;
+
+  private long m_lines;
+  private long m_bytes;
+  private long m_nodes;
+  private long m_records;
+  private long m_largestRecord;
+  private long m_families;
+  private long m_unresolved;
+  private long m_parseNanos;
+  private long m_loadNanos;
+  private long[] m_sampleNanos = new long[PHASES];
+  private long[] m_samples = new long[PHASES];
+  private Map<String, long[]> m_recordCounts = new LinkedHashMap<String, long[]>();
+
+  // updated while parsing
+
+  /**
+   * Count one non-blank line read
+   */
+  void line() {
+    m_lines++;
+  }
+
+  /**
+   * Count one node built
+   */
+  void node() {
+    m_nodes++;
+  }
+
+  /**
+   * Count a complete record
+   * @param record the level=0 node
+   * @param nodes number of nodes in the record, itself included
+   */
+  void record(GedcomNode record, int nodes) {
+    m_records++;
+    if(nodes > m_largestRecord) {
+      m_largestRecord = nodes;
+    }
+    long[] count = m_recordCounts.get(record.tag());
+    if(count == null) {
+      count = new long[1];
+      m_recordCounts.put(record.tag(), count);
+    }
+    count[0]++;
+  }
+
+  /**
+   * Add a timed sample of a phase
+   * @param phase the phase timed
+   * @param nanos time the phase took
+   */
+  void sample(Phase phase, long nanos) {
+    m_sampleNanos[phase.ordinal()] += nanos;
+    m_samples[phase.ordinal()]++;
+  }
+
+  void bytes(long bytes) {
+    m_bytes = bytes;
+  }
+
+  /**
+   * Set the time and outcome of linking
+   * @param nanos time linking took
+   * @param report the LinkReport of linking
+   */
+  void link(long nanos, LinkReport report) {
+    m_sampleNanos[Phase.LINK.ordinal()] = nanos;
+    m_samples[Phase.LINK.ordinal()] = 1;
+    m_families = report.families();
+    m_unresolved = report.problems().size();
+  }
+
+  void parse(long nanos) {
+    m_parseNanos = nanos;
+  }
+
+  void load(long nanos) {
+    m_loadNanos = nanos;
+  }
+
+  /**
+   * Add the counts and samples of another part of the same parse, e.g.
+   * of one chunk of a parallel parse
+   * @param other the metrics to add
+   */
+  void add(ParseMetrics other) {
+    m_lines += other.m_lines;
+    m_nodes += other.m_nodes;
+    m_records += other.m_records;
+    m_largestRecord = Math.max(m_largestRecord, other.m_largestRecord);
+    for(int p = 0; p < PHASES; p++) {
+      m_sampleNanos[p] += other.m_sampleNanos[p];
+      m_samples[p] += other.m_samples[p];
+    }
+    for(Map.Entry<String, long[]> e : other.m_recordCounts.entrySet()) {
+      long[] count = m_recordCounts.get(e.getKey());
+      if(count == null) {
+        m_recordCounts.put(e.getKey(), e.getValue().clone());
+      } else {
+        count[0] += e.getValue()[0];
+      }
+    }
+  }
+
+  // results
+
+  /**
+   * @return number of non-blank lines read
+   */
+  public long lines() {
+    return m_lines;
+  }
+
+  /**
+   * @return size of the input file in bytes
+   */
+  public long bytes() {
+    return m_bytes;
+  }
+
+  /**
+   * @return number of nodes built; the peak number held in memory when
+   *         loading the whole tree
+   */
+  public long nodes() {
+    return m_nodes;
+  }
+
+  /**
+   * @return number of level=0 records read
+   */
+  public long records() {
+    return m_records;
+  }
+
+  /**
+   * @return number of nodes in the largest record, the most a streaming
+   *         parse holds at once
+   */
+  public long largestRecord() {
+    return m_largestRecord;
+  }
+
+  /**
+   * @return number of level=0 records of each tag, in order of first
+   *         occurrence
+   */
+  public Map<String, Long> recordCounts() {
+    Map<String, Long> counts = new LinkedHashMap<String, Long>();
+    for(Map.Entry<String, long[]> e : m_recordCounts.entrySet()) {
+      counts.put(e.getKey(), e.getValue()[0]);
+    }
+    return Collections.unmodifiableMap(counts);
+  }
+
+  /**
+   * @return number of families linked
+   */
+  public long families() {
+    return m_families;
+  }
+
+  /**
+   * @return number of HUSB, WIFE and CHIL references of linked families
+   *         that do not resolve to an individual
+   */
+  public long unresolvedReferences() {
+    return m_unresolved;
+  }
+
+  /**
+   * @param phase a phase of the load
+   * @return nanoseconds spent in the phase; estimated from the timed
+   *         samples for all but LINK. In a parallel parse this is the
+   *         time summed over the threads.
+   */
+  public long nanos(Phase phase) {
+    int p = phase.ordinal();
+    if(m_samples[p] == 0) {
+      return 0;
+    }
+    if(phase == Phase.LINK) {
+      return m_sampleNanos[p];
+    }
+    long events = (phase == Phase.FINALIZE) ? m_nodes : m_lines;
+    return (long) ((double) m_sampleNanos[p] * events / m_samples[p]);
+  }
+
+  /**
+   * @return wall clock nanoseconds from opening the file to the last
+   *         record read
+   */
+  public long parseNanos() {
+    return m_parseNanos;
+  }
+
+  /**
+   * @return wall clock nanoseconds of the whole load, linking included
+   */
+  public long loadNanos() {
+    return m_loadNanos;
+  }
+
+  /**
+   * @return lines read per second of parsing
+   */
+  public double linesPerSecond() {
+    return (m_parseNanos == 0) ? 0 : m_lines * 1e9 / m_parseNanos;
+  }
+
+  /**
+   * @return bytes read per second of parsing
+   */
+  public double bytesPerSecond() {
+    return (m_parseNanos == 0) ? 0 : m_bytes * 1e9 / m_parseNanos;
+  }
+
+  /**
+   * @return a one line summary, e.g. for a log
+   */
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    sb.append(String.format("load %.1fms, parse %.1fms (%.0f lines/s, %.1f MB/s)",
+                            m_loadNanos / 1e6, m_parseNanos / 1e6,
+                            linesPerSecond(), bytesPerSecond() / 1e6));
+    for(Phase phase : Phase.values()) {
+      sb.append(String.format(", %s %.1fms", phase.name().toLowerCase(), nanos(phase) / 1e6));
+    }
+    sb.append(", ").append(m_lines).append(" lines, ").append(m_nodes).append(" nodes, ");
+    sb.append(m_records).append(" records ").append(recordCounts());
+    sb.append(", ").append(m_unresolved).append(" unresolved references");
+    return sb.toString();
+  }
+}
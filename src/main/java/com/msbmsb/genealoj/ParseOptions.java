@@ -0,0 +1,327 @@
+/******************************************************************************
+* ParseOptions
+* Options controlling how GenealoJ loads a GEDCOM file.
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj;
+
+import com.msbmsb.genealoj.ParseListener;
+import com.msbmsb.genealoj.Projection;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Holds the load options for a GenealoJ parse. The defaults reproduce the
+ * plain buffered, single-threaded load.
+ * Setters return this options object so they can be chained.
+ */
+public class ParseOptions {
+  /**
+   * Read the file through a memory mapping instead of a Reader
+   */
+  private boolean m_memoryMapped = false;
+
+  /**
+   * Number of threads to parse with; 1 parses on the calling thread
+   */
+  private int m_parallelism = 1;
+
+  /**
+   * Executor for parallel parsing; null to use a pool created per load
+   */
+  private ExecutorService m_executor = null;
+
+  /**
+   * Tags whose data values are interned while parsing
+   */
+  private String[] m_internedValueTags = new String[0];
+
+  /**
+   * Load into a columnar GedcomStore instead of a GedcomNode tree
+   */
+  private boolean m_columnar = false;
+
+  /**
+   * Projection of the tags to load; null to load everything
+   */
+  private Projection m_projection = null;
+
+  /**
+   * Number of records cached in lazy mode; 0 to load everything up front
+   */
+  private int m_lazyCacheSize = 0;
+
+  /**
+   * Binary snapshot file to load from and save to; null for none
+   */
+  private File m_snapshot = null;
+
+  /**
+   * Keep record hashes for GenealoJ.update
+   */
+  private boolean m_trackChanges = false;
+
+  /**
+   * Charset of the file; null to detect it
+   */
+  private Charset m_charset = null;
+
+  /**
+   * Listener told of every load and its metrics; null for none
+   */
+  private ParseListener m_listener = null;
+
+  /**
+   * Set whether the file is read through a memory mapping.
+   * Mapped loading tokenizes lines directly from the file's bytes and
+   * only decodes the parts kept in each node.
+   * @param mapped true to memory-map the input file
+   * @return this options object
+   */
+  public ParseOptions memoryMapped(boolean mapped) {
+    m_memoryMapped = mapped;
+    return this;
+  }
+
+  /**
+   * @return true if the input file is memory-mapped
+   */
+  public boolean memoryMapped() {
+    return m_memoryMapped;
+  }
+
+  /**
+   * Set the number of threads used to parse the file. With more than one,
+   * the file is split into chunks at level=0 records which are parsed in
+   * parallel and then linked once all chunks are in.
+   * @param threads number of threads, at least 1
+   * @return this options object
+   */
+  public ParseOptions parallelism(int threads) {
+    if(threads < 1) {
+      throw new IllegalArgumentException("Invalid parallelism: " + threads);
+    }
+    m_parallelism = threads;
+    return this;
+  }
+
+  /**
+   * @return number of threads used to parse the file
+   */
+  public int parallelism() {
+    return m_parallelism;
+  }
+
+  /**
+   * Set the executor that parallel parsing runs its chunks on. Setting an
+   * executor enables parallel parsing even with a parallelism of 1; the
+   * executor is not shut down by the load.
+   * @param executor ExecutorService to use; null for a pool per load
+   * @return this options object
+   */
+  public ParseOptions executor(ExecutorService executor) {
+    m_executor = executor;
+    return this;
+  }
+
+  /**
+   * @return executor for parallel parsing; null if none was set
+   */
+  public ExecutorService executor() {
+    return m_executor;
+  }
+
+  /**
+   * @return true if the file is parsed in parallel chunks
+   */
+  public boolean parallel() {
+    return m_parallelism > 1 || m_executor != null;
+  }
+
+  /**
+   * Set the tags whose data values are interned while parsing, so that
+   * every node with the same value of one of these tags shares a single
+   * String. Suited to values that repeat a lot, such as PLAC or SEX.
+   * @param tags the tags whose values are interned
+   * @return this options object
+   */
+  public ParseOptions internValues(String... tags) {
+    m_internedValueTags = tags.clone();
+    return this;
+  }
+
+  /**
+   * @return tags whose data values are interned while parsing
+   */
+  public String[] internValues() {
+    return m_internedValueTags.clone();
+  }
+
+  /**
+   * Create the symbol table for one parser with these options
+   * @return a new GedcomSymbols interning the configured value tags
+   */
+  GedcomSymbols newSymbols() {
+    GedcomSymbols symbols = new GedcomSymbols();
+    for(String tag : m_internedValueTags) {
+      symbols.internValues(tag);
+    }
+    return symbols;
+  }
+
+  /**
+   * Set whether the file is loaded into a columnar GedcomStore rather than
+   * a tree of GedcomNodes. Records are flattened into the store as they
+   * are parsed; the tree is not built and individuals are not linked.
+   * @param columnar true to load into a GedcomStore
+   * @return this options object
+   */
+  public ParseOptions columnar(boolean columnar) {
+    m_columnar = columnar;
+    return this;
+  }
+
+  /**
+   * @return true if the file is loaded into a GedcomStore
+   */
+  public boolean columnar() {
+    return m_columnar;
+  }
+
+  /**
+   * Only load the records and tags selected by a projection spec, e.g.
+   * "INDI.NAME, INDI.BIRT.DATE, FAM.*"; see Projection for the syntax.
+   * Other lines are skipped without building nodes for them. Memory-mapped
+   * and parallel loads check each line in the file's bytes, so skipped
+   * lines never become Strings; sequential loads through a Reader still
+   * read every line into a String and tokenize it, and only save building
+   * the nodes.
+   * @param spec the projection spec; null to load everything
+   * @return this options object
+   * @throws IllegalArgumentException if the spec is invalid
+   */
+  public ParseOptions projection(String spec) {
+    m_projection = (spec == null) ? null : new Projection(spec);
+    return this;
+  }
+
+  /**
+   * @return the compiled projection; null if everything is loaded
+   */
+  public Projection projection() {
+    return m_projection;
+  }
+
+  /**
+   * Set lazy loading. The load only indexes the offsets of the level=0
+   * records; each record is parsed when first accessed through the root,
+   * and at most cacheSize parsed records are kept. Individuals are not
+   * linked in this mode.
+   * @param cacheSize number of parsed records to keep; 0 to load the whole
+   *        file up front
+   * @return this options object
+   */
+  public ParseOptions lazy(int cacheSize) {
+    if(cacheSize < 0) {
+      throw new IllegalArgumentException("Invalid cache size: " + cacheSize);
+    }
+    m_lazyCacheSize = cacheSize;
+    return this;
+  }
+
+  /**
+   * @return number of records cached in lazy mode; 0 if not lazy
+   */
+  public int lazyCacheSize() {
+    return m_lazyCacheSize;
+  }
+
+  /**
+   * Set a binary snapshot file for the parsed tree. If the snapshot was
+   * taken of the input file as it is now, the tree is read from it instead
+   * of parsing; otherwise the file is parsed and the snapshot (re)written.
+   * Only used for full tree loads, i.e. not with columnar, lazy or
+   * projection loads. A tree read from the snapshot has no LinkReport and
+   * does not track changes.
+   * @param snapshot the snapshot file; null for none
+   * @return this options object
+   */
+  public ParseOptions snapshot(File snapshot) {
+    m_snapshot = snapshot;
+    return this;
+  }
+
+  /**
+   * @return the snapshot file; null if none
+   */
+  public File snapshot() {
+    return m_snapshot;
+  }
+
+  /**
+   * Keep a content hash of every level=0 record, so that GenealoJ.update
+   * can re-parse only the records that changed. Costs one more pass over
+   * the file at load. Only used for full tree loads of ASCII-compatible
+   * files, i.e. not with columnar, lazy or projection loads or UTF-16.
+   * A load read from a current snapshot is not linked again and does not
+   * track changes either; GenealoJ.update says which one disabled it.
+   * @param track true to keep record hashes
+   * @return this options object
+   */
+  public ParseOptions trackChanges(boolean track) {
+    m_trackChanges = track;
+    return this;
+  }
+
+  /**
+   * @return true if record hashes are kept for GenealoJ.update
+   */
+  public boolean trackChanges() {
+    return m_trackChanges;
+  }
+
+  /**
+   * Set the charset the file is read in, overriding detection. By default
+   * it is taken from a byte order mark or the header's CHAR line (see
+   * GedcomEncoding), falling back to the platform default. Files in a
+   * charset that is not ASCII-compatible, i.e. UTF-16, are always read
+   * sequentially: memory-mapped, parallel, lazy and change-tracking loads
+   * need to find lines in the raw bytes.
+   * @param charset the Charset of the file; null to detect it
+   * @return this options object
+   */
+  public ParseOptions charset(Charset charset) {
+    m_charset = charset;
+    return this;
+  }
+
+  /**
+   * @return the Charset of the file; null if it is detected
+   */
+  public Charset charset() {
+    return m_charset;
+  }
+
+  /**
+   * Collect ParseMetrics of every load with these options and pass them
+   * to the given listener. Without a listener no metrics are collected.
+   * @param listener the ParseListener to notify; null for none
+   * @return this options object
+   */
+  public ParseOptions listener(ParseListener listener) {
+    m_listener = listener;
+    return this;
+  }
+
+  /**
+   * @return the listener told of every load; null if there is none
+   */
+  public ParseListener listener() {
+    return m_listener;
+  }
+}
@@ -0,0 +1,309 @@
+/******************************************************************************
+* PedigreeGraph
+* Compact parent/child/spouse graph over linked IndividualNodes, stored as
+* int arrays indexed by dense individual IDs.
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj;
+
+import com.msbmsb.genealoj.IndividualNode;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Every individual gets a dense ID from 0 to size()-1, available through
+ * id(). IDs belong to the graph, so graphs over the same individuals do
+ * not interfere. The edges of each kind are stored in
+ * compressed sparse row form: the neighbours of individual i are
+ * edges[offsets[i]] up to edges[offsets[i+1]].
+ * Traversals write their results into a caller-owned Workspace, so once a
+ * Workspace exists they allocate nothing. The graph is a snapshot of the
+ * links at build time and is not updated afterwards.
+ */
+public class PedigreeGraph {
+  /**
+   * Traverse all generations
+   */
+  public static final int ALL_GENERATIONS = Integer.MAX_VALUE;
+
+  private static final int PARENTS = 1;
+  private static final int CHILDREN = 2;
+  private static final int SPOUSES = 4;
+
+  private IndividualNode[] m_individuals;
+  /**
+   * Dense ID of each individual
+   */
+  private IdentityHashMap<IndividualNode, Integer> m_ids;
+
+  private int[] m_parentOffsets;
+  private int[] m_parentEdges;
+  private int[] m_childOffsets;
+  private int[] m_childEdges;
+  private int[] m_spouseOffsets;
+  private int[] m_spouseEdges;
+
+  /**
+   * Build the graph over linked individuals, assigning each its dense ID
+   * in list order. Links to individuals outside the list are dropped.
+   * @param individuals the linked IndividualNodes
+   */
+  public PedigreeGraph(List<IndividualNode> individuals) {
+    int n = individuals.size();
+    m_individuals = individuals.toArray(new IndividualNode[n]);
+    m_ids = new IdentityHashMap<IndividualNode, Integer>(n);
+    for(int i = 0; i < n; i++) {
+      m_ids.put(m_individuals[i], i);
+    }
+
+    m_parentOffsets = new int[n + 1];
+    m_childOffsets = new int[n + 1];
+    m_spouseOffsets = new int[n + 1];
+    m_parentEdges = edges(PARENTS, m_parentOffsets);
+    m_childEdges = edges(CHILDREN, m_childOffsets);
+    m_spouseEdges = edges(SPOUSES, m_spouseOffsets);
+  }
+
+  /**
+   * Fill offsets and build the edge array of one kind of link
+   */
+  private int[] edges(int kind, int[] offsets) {
+    int total = 0;
+    for(int i = 0; i < m_individuals.length; i++) {
+      offsets[i] = total;
+      total += links(m_individuals[i], kind).size();
+    }
+    offsets[m_individuals.length] = total;
+
+    int[] edges = new int[total];
+    int e = 0;
+    for(int i = 0; i < m_individuals.length; i++) {
+      offsets[i] = e;
+      for(IndividualNode other : links(m_individuals[i], kind)) {
+        Integer id = m_ids.get(other);
+        if(id != null) {
+          edges[e++] = id;
+        }
+      }
+    }
+    offsets[m_individuals.length] = e;
+    return (e == total) ? edges : Arrays.copyOf(edges, e);
+  }
+
+  private static List<IndividualNode> links(IndividualNode indi, int kind) {
+    if(kind == PARENTS) {
+      return indi.getParents();
+    }
+    if(kind == CHILDREN) {
+      return indi.getChildren();
+    }
+    return indi.getSpouses();
+  }
+
+  /**
+   * @return number of individuals in the graph
+   */
+  public int size() {
+    return m_individuals.length;
+  }
+
+  /**
+   * @param id dense ID of an individual
+   * @return the IndividualNode with this ID
+   */
+  public IndividualNode individual(int id) {
+    return m_individuals[id];
+  }
+
+  /**
+   * @param indi an individual
+   * @return dense ID of indi; -1 if it is not in this graph
+   */
+  public int id(IndividualNode indi) {
+    Integer id = m_ids.get(indi);
+    return (id == null) ? -1 : id;
+  }
+
+  public int parentCount(int id) {
+    return m_parentOffsets[id + 1] - m_parentOffsets[id];
+  }
+
+  /**
+   * @param id dense ID of an individual
+   * @param k index among its parents, 0 to parentCount(id)-1
+   * @return dense ID of the k-th parent
+   */
+  public int parent(int id, int k) {
+    return m_parentEdges[m_parentOffsets[id] + k];
+  }
+
+  public int childCount(int id) {
+    return m_childOffsets[id + 1] - m_childOffsets[id];
+  }
+
+  public int child(int id, int k) {
+    return m_childEdges[m_childOffsets[id] + k];
+  }
+
+  public int spouseCount(int id) {
+    return m_spouseOffsets[id + 1] - m_spouseOffsets[id];
+  }
+
+  public int spouse(int id, int k) {
+    return m_spouseEdges[m_spouseOffsets[id] + k];
+  }
+
+  /**
+   * Find the ancestors of an individual, nearest generations first
+   * @param id dense ID of the individual
+   * @param generations number of generations to go up
+   * @param ws Workspace receiving the ancestors and their generation
+   * @return number of ancestors found
+   */
+  public int ancestors(int id, int generations, Workspace ws) {
+    return traverse(id, generations, PARENTS, ws);
+  }
+
+  /**
+   * Find the descendants of an individual, nearest generations first
+   * @param id dense ID of the individual
+   * @param generations number of generations to go down
+   * @param ws Workspace receiving the descendants and their generation
+   * @return number of descendants found
+   */
+  public int descendants(int id, int generations, Workspace ws) {
+    return traverse(id, generations, CHILDREN, ws);
+  }
+
+  /**
+   * Find everyone connected to an individual through any parent, child or
+   * spouse link, at most the given number of links away
+   * @param id dense ID of the individual
+   * @param distance maximum number of links to follow
+   * @param ws Workspace receiving the relatives and their distance
+   * @return number of relatives found
+   */
+  public int relatives(int id, int distance, Workspace ws) {
+    return traverse(id, distance, PARENTS | CHILDREN | SPOUSES, ws);
+  }
+
+  /**
+   * Breadth-first search from id following the given kinds of edges.
+   * The start individual is not part of the result.
+   */
+  private int traverse(int id, int maxDepth, int kinds, Workspace ws) {
+    ws.reset(m_individuals.length);
+    ws.mark(id);
+    int head = 0;
+    int[] queue = ws.m_queue;
+    int[] depths = ws.m_depths;
+    int tail = 0;
+    int current = id;
+    int depth = 0;
+    while(true) {
+      if(depth < maxDepth) {
+        if((kinds & PARENTS) != 0) {
+          tail = visit(m_parentEdges, m_parentOffsets, current, depth + 1, ws, tail);
+        }
+        if((kinds & CHILDREN) != 0) {
+          tail = visit(m_childEdges, m_childOffsets, current, depth + 1, ws, tail);
+        }
+        if((kinds & SPOUSES) != 0) {
+          tail = visit(m_spouseEdges, m_spouseOffsets, current, depth + 1, ws, tail);
+        }
+      }
+      if(head == tail) {
+        break;
+      }
+      current = queue[head];
+      depth = depths[head];
+      head++;
+    }
+    ws.m_count = tail;
+    return tail;
+  }
+
+  private static int visit(int[] edges, int[] offsets, int from, int depth,
+                           Workspace ws, int tail) {
+    for(int e = offsets[from]; e < offsets[from + 1]; e++) {
+      int to = edges[e];
+      if(ws.mark(to)) {
+        ws.m_queue[tail] = to;
+        ws.m_depths[tail] = depth;
+        tail++;
+      }
+    }
+    return tail;
+  }
+
+  /**
+   * Reusable traversal state and result buffer. A Workspace grows to the
+   * size of the graph on first use and is not thread-safe; use one per
+   * thread.
+   */
+  public static class Workspace {
+    private int[] m_queue = new int[0];
+    private int[] m_depths = new int[0];
+    /**
+     * Visited marks; an individual is visited if its mark equals m_stamp,
+     * so no clearing is needed between traversals
+     */
+    private int[] m_marks = new int[0];
+    private int m_stamp = 0;
+    private int m_count = 0;
+
+    /**
+     * @return number of individuals found by the last traversal
+     */
+    public int count() {
+      return m_count;
+    }
+
+    /**
+     * @param i index among the results, 0 to count()-1
+     * @return dense ID of the i-th individual found
+     */
+    public int get(int i) {
+      return m_queue[i];
+    }
+
+    /**
+     * @param i index among the results, 0 to count()-1
+     * @return generation or distance of the i-th individual found
+     */
+    public int depth(int i) {
+      return m_depths[i];
+    }
+
+    private void reset(int size) {
+      if(m_marks.length < size) {
+        m_queue = new int[size];
+        m_depths = new int[size];
+        m_marks = new int[size];
+        m_stamp = 0;
+      }
+      m_stamp++;
+      if(m_stamp == 0) {
+        Arrays.fill(m_marks, 0);
+        m_stamp = 1;
+      }
+      m_count = 0;
+    }
+
+    /**
+     * @return true if id was not yet visited
+     */
+    private boolean mark(int id) {
+      if(m_marks[id] == m_stamp) {
+        return false;
+      }
+      m_marks[id] = m_stamp;
+      return true;
+    }
+  }
+}
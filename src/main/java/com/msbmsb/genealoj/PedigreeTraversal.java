@@ -0,0 +1,230 @@
+/******************************************************************************
+* PedigreeTraversal
+* Iterative breadth- or depth-first walk over the parent or child links of
+* IndividualNodes, returning individuals lazily.
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj;
+
+import com.msbmsb.genealoj.IndividualNode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A traversal uses its own queue or stack instead of recursion, and
+ * visits every individual at most once, so deep pedigrees cannot overflow
+ * the stack and cyclic (bad) data cannot loop forever.
+ * Visited individuals, and for collapse() repeated ones, are tracked by
+ * identity.
+ * The start individual is not returned. Settings return this, e.g.
+ *   for(IndividualNode a : PedigreeTraversal.ancestors(x).generations(4))
+ */
+public class PedigreeTraversal implements Iterable<IndividualNode> {
+  /**
+   * Traverse all generations
+   */
+  public static final int ALL_GENERATIONS = Integer.MAX_VALUE;
+
+  private IndividualNode m_start;
+  private boolean m_up;
+  private int m_generations = ALL_GENERATIONS;
+  private boolean m_depthFirst = false;
+
+  private PedigreeTraversal(IndividualNode start, boolean up) {
+    m_start = start;
+    m_up = up;
+  }
+
+  /**
+   * @param start the individual to start from
+   * @return a traversal over the ancestors of start
+   */
+  public static PedigreeTraversal ancestors(IndividualNode start) {
+    return new PedigreeTraversal(start, true);
+  }
+
+  /**
+   * @param start the individual to start from
+   * @return a traversal over the descendants of start
+   */
+  public static PedigreeTraversal descendants(IndividualNode start) {
+    return new PedigreeTraversal(start, false);
+  }
+
+  /**
+   * Limit the number of generations to traverse
+   * @param generations maximum generations away from the start, at least 0
+   * @return this traversal
+   */
+  public PedigreeTraversal generations(int generations) {
+    if(generations < 0) {
+      throw new IllegalArgumentException("Invalid generations: " + generations);
+    }
+    m_generations = generations;
+    return this;
+  }
+
+  /**
+   * Set depth-first instead of breadth-first order. Breadth-first returns
+   * every individual at its nearest generation; depth-first follows each
+   * line to its end first and returns the generation it was found at.
+   * @param depthFirst true to traverse depth-first
+   * @return this traversal
+   */
+  public PedigreeTraversal depthFirst(boolean depthFirst) {
+    m_depthFirst = depthFirst;
+    return this;
+  }
+
+  /**
+   * @return a lazy iterator over the individuals of this traversal
+   */
+  public Walker iterator() {
+    return new Walker(false);
+  }
+
+  /**
+   * Collect the whole traversal into a list
+   * @return the individuals in traversal order
+   */
+  public List<IndividualNode> toList() {
+    List<IndividualNode> result = new ArrayList<IndividualNode>();
+    Walker walker = iterator();
+    while(walker.hasNext()) {
+      result.add(walker.next());
+    }
+    return result;
+  }
+
+  /**
+   * Find pedigree collapse: individuals reached through more than one line.
+   * Only the nearest shared individuals are returned, as their own lines
+   * are not walked twice.
+   * @return the individuals reached more than once, in the order they
+   *         were first reached again
+   */
+  public List<IndividualNode> collapse() {
+    Walker walker = new Walker(true);
+    while(walker.hasNext()) {
+      walker.next();
+    }
+    return walker.m_repeated;
+  }
+
+  /**
+   * Iterator over a traversal. Individuals are discovered one step ahead,
+   * so each call to next() only expands a single individual.
+   */
+  public class Walker implements Iterator<IndividualNode> {
+    private IndividualNode[] m_nodes = new IndividualNode[16];
+    private int[] m_depths = new int[16];
+    private int m_head = 0;
+    private int m_tail = 0;
+    private int m_generation = 0;
+
+    private Set<IndividualNode> m_visited = identitySet();
+    /**
+     * Individuals reached again, for collapse(); null when not wanted
+     */
+    private Set<IndividualNode> m_repeats = null;
+    private List<IndividualNode> m_repeated = null;
+
+    private Walker(boolean collapse) {
+      if(collapse) {
+        m_repeats = identitySet();
+        m_repeated = new ArrayList<IndividualNode>();
+      }
+      m_visited.add(m_start);
+      expand(m_start, 0);
+    }
+
+    public boolean hasNext() {
+      return m_head < m_tail;
+    }
+
+    public IndividualNode next() {
+      if(m_head == m_tail) {
+        throw new NoSuchElementException();
+      }
+      IndividualNode node;
+      if(m_depthFirst) {
+        m_tail--;
+        node = m_nodes[m_tail];
+        m_generation = m_depths[m_tail];
+        m_nodes[m_tail] = null;
+      } else {
+        node = m_nodes[m_head];
+        m_generation = m_depths[m_head];
+        m_nodes[m_head] = null;
+        m_head++;
+      }
+      expand(node, m_generation);
+      return node;
+    }
+
+    /**
+     * @return generation of the individual last returned by next()
+     */
+    public int generation() {
+      return m_generation;
+    }
+
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Add the unvisited parents or children of node to the queue/stack
+     */
+    private void expand(IndividualNode node, int depth) {
+      if(depth >= m_generations) {
+        return;
+      }
+      List<IndividualNode> next = m_up ? node.getParents() : node.getChildren();
+      // a stack is pushed in reverse so lines are followed in list order
+      int count = next.size();
+      for(int k = 0; k < count; k++) {
+        IndividualNode n = next.get(m_depthFirst ? count - 1 - k : k);
+        if(m_visited.add(n)) {
+          push(n, depth + 1);
+        } else if(m_repeats != null && m_repeats.add(n)) {
+          m_repeated.add(n);
+        }
+      }
+    }
+
+    private void push(IndividualNode node, int depth) {
+      if(m_tail == m_nodes.length) {
+        if(m_head > m_nodes.length / 2) {
+          // reclaim the consumed front of the queue
+          System.arraycopy(m_nodes, m_head, m_nodes, 0, m_tail - m_head);
+          System.arraycopy(m_depths, m_head, m_depths, 0, m_tail - m_head);
+          m_tail -= m_head;
+          m_head = 0;
+          Arrays.fill(m_nodes, m_tail, m_nodes.length, null);
+        } else {
+          m_nodes = Arrays.copyOf(m_nodes, m_nodes.length * 2);
+          m_depths = Arrays.copyOf(m_depths, m_depths.length * 2);
+        }
+      }
+      m_nodes[m_tail] = node;
+      m_depths[m_tail] = depth;
+      m_tail++;
+    }
+
+  }
+
+  private static Set<IndividualNode> identitySet() {
+    return Collections.newSetFromMap(new IdentityHashMap<IndividualNode, Boolean>());
+  }
+}
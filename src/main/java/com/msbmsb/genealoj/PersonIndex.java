@@ -0,0 +1,199 @@
+/******************************************************************************
+* PersonIndex
+* Lookup of individuals by surname, given name, Soundex code and place,
+* built once over the linked individuals.
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj;
+
+import com.msbmsb.genealoj.GedcomNode;
+import com.msbmsb.genealoj.IndividualNode;
+import com.msbmsb.genealoj.Utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Names are matched case-insensitively; places are compared in the form
+ * of Utils.normalizePlace. Surnames are additionally kept in sorted order
+ * for prefix lookups, and under their Soundex code for phonetic lookups.
+ * Places index the events (BIRT, DEAT, ...) whose PLAC is that place, as
+ * well as the individuals having those events.
+ * The index is a snapshot of the individuals at build time. Lookups
+ * return unmodifiable lists, empty if nothing matches, and are safe to run
+ * concurrently.
+ */
+public class PersonIndex {
+  private Map<String, List<IndividualNode>> m_surnames =
+      new HashMap<String, List<IndividualNode>>();
+  private TreeMap<String, List<IndividualNode>> m_sortedSurnames;
+  private Map<String, List<IndividualNode>> m_givenNames =
+      new HashMap<String, List<IndividualNode>>();
+  private Map<String, List<IndividualNode>> m_soundex =
+      new HashMap<String, List<IndividualNode>>();
+  private Map<String, List<IndividualNode>> m_placeIndividuals =
+      new HashMap<String, List<IndividualNode>>();
+  private Map<String, List<GedcomNode>> m_placeEvents =
+      new HashMap<String, List<GedcomNode>>();
+
+  /**
+   * Build the index.
+   * @param individuals the IndividualNodes to index
+   */
+  public PersonIndex(List<IndividualNode> individuals) {
+    for(IndividualNode indi : individuals) {
+      List<GedcomNode> names = indi.getChildrenWithTag(Utils.NAME_TAG);
+      if(names != null) {
+        for(GedcomNode name : names) {
+          if(name.data() != null) {
+            addName(indi, name.data());
+          }
+        }
+      }
+      addPlaces(indi);
+    }
+    m_sortedSurnames = new TreeMap<String, List<IndividualNode>>(m_surnames);
+  }
+
+  /**
+   * Index one NAME value, e.g. "Jerry Allen /Seinfeld/"
+   */
+  private void addName(IndividualNode indi, String name) {
+    int slash = name.indexOf('/');
+    String given = (slash < 0) ? name : name.substring(0, slash);
+    if(slash >= 0) {
+      int end = name.indexOf('/', slash + 1);
+      String surname = name.substring(slash + 1, (end < 0) ? name.length() : end).trim();
+      if(surname.length() > 0) {
+        add(m_surnames, surname.toLowerCase(), indi);
+        String code = Utils.soundex(surname);
+        if(code.length() > 0) {
+          add(m_soundex, code, indi);
+        }
+      }
+    }
+    for(String part : given.trim().split("\\s+")) {
+      if(part.length() > 0) {
+        add(m_givenNames, part.toLowerCase(), indi);
+      }
+    }
+  }
+
+  /**
+   * Index the PLAC of every event of indi
+   */
+  private void addPlaces(IndividualNode indi) {
+    for(int g = 0; g < indi.childGroupCount(); g++) {
+      for(GedcomNode event : indi.childGroup(g)) {
+        List<GedcomNode> places = event.getChildrenWithTag(Utils.PLACE_TAG);
+        if(places == null) {
+          continue;
+        }
+        for(GedcomNode place : places) {
+          if(place.data() == null) {
+            continue;
+          }
+          String key = Utils.normalizePlace(place.data());
+          if(key.length() > 0) {
+            add(m_placeEvents, key, event);
+            add(m_placeIndividuals, key, indi);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Add value to the list of key, skipping a repeat of the last value
+   */
+  private static <T> void add(Map<String, List<T>> map, String key, T value) {
+    List<T> list = map.get(key);
+    if(list == null) {
+      list = new ArrayList<T>(2);
+      map.put(key, list);
+    }
+    if(list.isEmpty() || list.get(list.size() - 1) != value) {
+      list.add(value);
+    }
+  }
+
+  private static <T> List<T> get(Map<String, List<T>> map, String key) {
+    List<T> list = map.get(key);
+    if(list == null) {
+      return Collections.emptyList();
+    }
+    return Collections.unmodifiableList(list);
+  }
+
+  /**
+   * @param surname the surname, in any case
+   * @return individuals with a NAME of this surname
+   */
+  public List<IndividualNode> getBySurname(String surname) {
+    return get(m_surnames, surname.trim().toLowerCase());
+  }
+
+  /**
+   * @param prefix start of the surname, in any case
+   * @return individuals whose surname starts with prefix, by surname
+   */
+  public List<IndividualNode> getBySurnamePrefix(String prefix) {
+    String from = prefix.trim().toLowerCase();
+    SortedMap<String, List<IndividualNode>> range =
+        m_sortedSurnames.subMap(from, from + Character.MAX_VALUE);
+    List<IndividualNode> result = new ArrayList<IndividualNode>();
+    for(List<IndividualNode> list : range.values()) {
+      result.addAll(list);
+    }
+    return Collections.unmodifiableList(result);
+  }
+
+  /**
+   * @param surname a surname, in any spelling
+   * @return individuals whose surname has the same Soundex code
+   */
+  public List<IndividualNode> getBySurnameSound(String surname) {
+    return get(m_soundex, Utils.soundex(surname));
+  }
+
+  /**
+   * @param given one given name, in any case
+   * @return individuals with this among their given names
+   */
+  public List<IndividualNode> getByGivenName(String given) {
+    return get(m_givenNames, given.trim().toLowerCase());
+  }
+
+  /**
+   * @param place the place, normalized with Utils.normalizePlace
+   * @return individuals with an event at this place
+   */
+  public List<IndividualNode> getByPlace(String place) {
+    return get(m_placeIndividuals, Utils.normalizePlace(place));
+  }
+
+  /**
+   * @param place the place, normalized with Utils.normalizePlace
+   * @return event nodes (BIRT, DEAT, ...) of individuals at this place
+   */
+  public List<GedcomNode> getEventsAtPlace(String place) {
+    return get(m_placeEvents, Utils.normalizePlace(place));
+  }
+
+  /**
+   * @return the distinct normalized places, sorted
+   */
+  public List<String> getPlaces() {
+    List<String> places = new ArrayList<String>(m_placeEvents.keySet());
+    Collections.sort(places);
+    return places;
+  }
+}
@@ -0,0 +1,175 @@
+/******************************************************************************
+* Projection
+* Selection of the record types and tags to load, compiled from a spec such
+* as "INDI.NAME, INDI.BIRT.DATE, FAM.*" into a trie of tag paths.
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj;
+
+import com.msbmsb.genealoj.GedcomTokenizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A spec is a comma-separated list of dot-separated tag paths starting at
+ * a level=0 record tag. A path selects the node it names together with its
+ * whole subtree, and the nodes on the way to it (without their other
+ * children). "*" as the last part selects the whole subtree of its parent,
+ * so "FAM.*" is the same as "FAM"; anywhere else it matches any tag, e.g.
+ * "INDI.*.DATE" selects the DATE of every event. Since lines are decided
+ * as they stream by, every node on a path is kept even when nothing below
+ * it turns out to match, e.g. the NAME of an individual for "INDI.*.DATE".
+ * Readers test every line against the trie on its tokenized tag bytes,
+ * so lines outside the projection are skipped without creating any
+ * Strings or GedcomNodes. Immutable, and shared safely between readers.
+ */
+public class Projection {
+  private String m_spec;
+  private Node m_root = new Node();
+
+  /**
+   * Compile a projection spec.
+   * @param spec the spec, e.g. "INDI.NAME, FAM.*"
+   * @throws IllegalArgumentException if a path is empty or has an empty part
+   */
+  public Projection(String spec) {
+    m_spec = spec;
+    for(String path : spec.split(",")) {
+      path = path.trim();
+      if(path.length() == 0) {
+        throw new IllegalArgumentException("Empty path in projection: " + spec);
+      }
+      Node node = m_root;
+      String[] parts = path.split("\\.", -1);
+      for(int i = 0; i < parts.length && !node.m_all; i++) {
+        String part = parts[i].trim();
+        if(part.length() == 0) {
+          throw new IllegalArgumentException("Invalid path in projection: " + path);
+        }
+        if(part.equals("*") && i == parts.length - 1) {
+          node.selectAll();
+        } else {
+          node = node.getOrCreate(part);
+          if(i == parts.length - 1) {
+            node.selectAll();
+          }
+        }
+      }
+    }
+    m_root.mergeWildcards();
+  }
+
+  /**
+   * @return the trie node matched by the (implicit) root of the records
+   */
+  Node root() {
+    return m_root;
+  }
+
+  public String toString() {
+    return m_spec;
+  }
+
+  /**
+   * A node of the trie: the children selected beneath one matched line
+   */
+  static class Node {
+    private String[] m_tags = new String[0];
+    private Node[] m_children = new Node[0];
+    /**
+     * Child matching any tag; null if none
+     */
+    private Node m_wildcard = null;
+    /**
+     * Set if the whole subtree is selected
+     */
+    private boolean m_all = false;
+
+    /**
+     * Find the trie node of the line in tokenizer, a child of the line
+     * this node matched
+     * @return the matching node; null if the line is not selected
+     */
+    Node match(GedcomTokenizer tokenizer) {
+      if(m_all) {
+        return this;
+      }
+      for(int i = 0; i < m_tags.length; i++) {
+        if(tokenizer.tagEquals(m_tags[i])) {
+          return m_children[i];
+        }
+      }
+      return m_wildcard;
+    }
+
+    private Node getOrCreate(String tag) {
+      if(tag.equals("*")) {
+        if(m_wildcard == null) {
+          m_wildcard = new Node();
+        }
+        return m_wildcard;
+      }
+      for(int i = 0; i < m_tags.length; i++) {
+        if(m_tags[i].equals(tag)) {
+          return m_children[i];
+        }
+      }
+      Node child = new Node();
+      m_tags = Arrays.copyOf(m_tags, m_tags.length + 1);
+      m_children = Arrays.copyOf(m_children, m_children.length + 1);
+      m_tags[m_tags.length - 1] = tag;
+      m_children[m_children.length - 1] = child;
+      return child;
+    }
+
+    private void selectAll() {
+      m_all = true;
+      m_tags = new String[0];
+      m_children = new Node[0];
+      m_wildcard = null;
+    }
+
+    /**
+     * Copy the selections of other into this node
+     */
+    private void merge(Node other) {
+      if(m_all) {
+        return;
+      }
+      if(other.m_all) {
+        selectAll();
+        return;
+      }
+      for(int i = 0; i < other.m_tags.length; i++) {
+        getOrCreate(other.m_tags[i]).merge(other.m_children[i]);
+      }
+      if(other.m_wildcard != null) {
+        getOrCreate("*").merge(other.m_wildcard);
+      }
+    }
+
+    /**
+     * A tag matches only its own child, so merge what the wildcard selects
+     * into every named sibling, from the top down
+     */
+    private void mergeWildcards() {
+      List<Node> pending = new ArrayList<Node>();
+      pending.add(this);
+      while(!pending.isEmpty()) {
+        Node node = pending.remove(pending.size() - 1);
+        if(node.m_wildcard != null) {
+          for(Node child : node.m_children) {
+            child.merge(node.m_wildcard);
+          }
+          pending.add(node.m_wildcard);
+        }
+        pending.addAll(Arrays.asList(node.m_children));
+      }
+    }
+  }
+}
@@ -0,0 +1,385 @@
+/******************************************************************************
+* RecordIndex
+* Offset index of the level=0 records of a GEDCOM file. Records are parsed
+* from the file only when asked for, and kept in a bounded LRU cache.
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj;
+
+import com.msbmsb.genealoj.GedcomNode;
+import com.msbmsb.genealoj.GedcomReader;
+import com.msbmsb.genealoj.GedcomSymbols;
+import com.msbmsb.genealoj.GedcomTokenizer;
+import com.msbmsb.genealoj.Projection;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Opening a file makes one pass over its bytes, reading only the level=0
+ * lines: each record's offset, length, tag, reference and content hash
+ * are kept in arrays, and references and tags are indexed. A record's GedcomNode
+ * subtree is parsed from its bytes on first access and cached; the least
+ * recently used records are evicted once the cache is full, and parsed
+ * again if needed.
+ * As with ParallelGedcomReader, level=0 lines must start at the beginning
+ * of a line and the charset must be ASCII-compatible.
+ * Records are parsed one at a time, so the index can be shared between
+ * threads. Records are not linked to each other.
+ */
+public class RecordIndex {
+  /**
+   * 64-bit FNV-1a parameters
+   */
+  private static final long FNV_BASIS = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  private FileChannel m_channel;
+  private Charset m_charset;
+  private GedcomSymbols m_symbols = new GedcomSymbols();
+  private Projection m_projection = null;
+
+  private int m_count = 0;
+  private long[] m_offsets = new long[1024];
+  private int[] m_lengths = new int[1024];
+  private String[] m_tags = new String[1024];
+  private String[] m_references = new String[1024];
+  /**
+   * 64-bit FNV-1a hash of each record's bytes
+   */
+  private long[] m_hashes = new long[1024];
+
+  /**
+   * Record indices per tag, tags in order of first appearance
+   */
+  private Map<String, int[]> m_byTag = new LinkedHashMap<String, int[]>();
+  private Map<String, Integer> m_tagCounts = new HashMap<String, Integer>();
+  private Map<String, Integer> m_byReference = new HashMap<String, Integer>();
+
+  private Map<Integer, GedcomNode> m_cache;
+
+  /**
+   * Constructor. Scans the file for its records.
+   * @param file File of input GEDCOM file to read
+   * @param charset ASCII-compatible Charset of the file
+   * @param cacheSize maximum number of parsed records kept in memory
+   */
+  public RecordIndex(File file, Charset charset, final int cacheSize)
+    throws IOException {
+    if(cacheSize < 1) {
+      throw new IllegalArgumentException("Invalid cache size: " + cacheSize);
+    }
+    m_channel = new FileInputStream(file).getChannel();
+    m_charset = charset;
+    m_cache = new LinkedHashMap<Integer, GedcomNode>(16, 0.75f, true) {
+      protected boolean removeEldestEntry(Map.Entry<Integer, GedcomNode> eldest) {
+        return size() > cacheSize;
+      }
+    };
+    try {
+      scan();
+    } catch(IOException ioe) {
+      m_channel.close();
+      throw ioe;
+    }
+  }
+
+  /**
+   * Set the symbol table used for the tags and values of parsed records
+   * @param symbols GedcomSymbols table to use
+   */
+  public synchronized void symbols(GedcomSymbols symbols) {
+    m_symbols = symbols;
+  }
+
+  /**
+   * Only load the lines of each record selected by the given projection
+   * @param projection the Projection to load; null to load every line
+   */
+  public synchronized void projection(Projection projection) {
+    m_projection = projection;
+  }
+
+  /**
+   * Find every level=0 line, reading the file in blocks
+   */
+  private void scan() throws IOException {
+    long size = m_channel.size();
+    byte[] block = new byte[64 * 1024];
+    byte[] line = new byte[256];
+    int lineLength = 0;
+    boolean lineStart = true;
+    boolean capturing = false;
+    long recordStart = -1;
+    long candidate = 0;
+    // hash of the current record, and of it up to the candidate line
+    long hash = FNV_BASIS;
+    long hashBefore = FNV_BASIS;
+    GedcomTokenizer tokenizer = new GedcomTokenizer(m_symbols);
+
+    long pos = 0;
+    while(pos < size) {
+      int n = m_channel.read(ByteBuffer.wrap(block), pos);
+      if(n <= 0) {
+        break;
+      }
+      int i = 0;
+      if(pos == 0 && n >= 3 && block[0] == (byte) 0xEF && block[1] == (byte) 0xBB
+         && block[2] == (byte) 0xBF) {
+        // skip a UTF-8 byte order mark
+        i = 3;
+      }
+      for(; i < n; i++) {
+        byte b = block[i];
+        if(b == '\n' || b == '\r') {
+          if(capturing) {
+            recordStart = addRecord(tokenizer, line, lineLength, candidate, recordStart);
+            if(recordStart == candidate) {
+              hash = startHash(hashBefore, line, lineLength);
+            }
+            capturing = false;
+          }
+          lineStart = true;
+        } else if(lineStart) {
+          lineStart = false;
+          if(b == '0') {
+            hashBefore = hash;
+            capturing = true;
+            candidate = pos + i;
+            line[0] = b;
+            lineLength = 1;
+          }
+        } else if(capturing) {
+          if(lineLength == 1 && b != ' ') {
+            // a level such as 01 or 0x: not a record line
+            capturing = false;
+          } else {
+            if(lineLength == line.length) {
+              line = Arrays.copyOf(line, lineLength * 2);
+            }
+            line[lineLength++] = b;
+          }
+        }
+        hash = (hash ^ (b & 0xff)) * FNV_PRIME;
+      }
+      pos += n;
+    }
+    if(capturing) {
+      recordStart = addRecord(tokenizer, line, lineLength, candidate, recordStart);
+      if(recordStart == candidate) {
+        hash = startHash(hashBefore, line, lineLength);
+      }
+    }
+    if(recordStart >= 0) {
+      m_lengths[m_count - 1] = (int) (size - recordStart);
+      m_hashes[m_count - 1] = hash;
+    }
+  }
+
+  /**
+   * A record line was confirmed: close the previous record's hash and
+   * restart the hash with the bytes of the new record's line
+   * @param previous hash of the previous record up to this line
+   * @return hash of the new record so far
+   */
+  private long startHash(long previous, byte[] line, int length) {
+    if(m_count > 1) {
+      m_hashes[m_count - 2] = previous;
+    }
+    long hash = FNV_BASIS;
+    for(int i = 0; i < length; i++) {
+      hash = (hash ^ (line[i] & 0xff)) * FNV_PRIME;
+    }
+    return hash;
+  }
+
+  /**
+   * Add the record whose level=0 line was just read, and close the
+   * previous record at its start
+   * @return the start of the added record
+   */
+  private long addRecord(GedcomTokenizer tokenizer, byte[] line, int length,
+                         long start, long previousStart) throws IOException {
+    if(length < 2) {
+      return previousStart;
+    }
+    if(!tokenizer.tokenize(ByteBuffer.wrap(line, 0, length), 0, length, m_charset)) {
+      return previousStart;
+    }
+    if(previousStart >= 0) {
+      long previousLength = start - previousStart;
+      if(previousLength > Integer.MAX_VALUE) {
+        throw new IOException("Record too large at offset " + previousStart);
+      }
+      m_lengths[m_count - 1] = (int) previousLength;
+    }
+    if(m_count == m_offsets.length) {
+      m_offsets = Arrays.copyOf(m_offsets, m_count * 2);
+      m_lengths = Arrays.copyOf(m_lengths, m_count * 2);
+      m_tags = Arrays.copyOf(m_tags, m_count * 2);
+      m_references = Arrays.copyOf(m_references, m_count * 2);
+      m_hashes = Arrays.copyOf(m_hashes, m_count * 2);
+    }
+    String tag = tokenizer.tag();
+    String ref = tokenizer.reference();
+    m_offsets[m_count] = start;
+    m_tags[m_count] = tag;
+    m_references[m_count] = ref;
+    if(ref != null) {
+      m_byReference.put(ref, m_count);
+    }
+    int[] records = m_byTag.get(tag);
+    Integer count = m_tagCounts.get(tag);
+    int c = (count == null) ? 0 : count.intValue();
+    if(records == null) {
+      records = new int[4];
+    } else if(c == records.length) {
+      records = Arrays.copyOf(records, c * 2);
+    }
+    records[c] = m_count;
+    m_byTag.put(tag, records);
+    m_tagCounts.put(tag, c + 1);
+    m_count++;
+    return start;
+  }
+
+  /**
+   * @return number of level=0 records
+   */
+  public int size() {
+    return m_count;
+  }
+
+  public String tag(int record) {
+    return m_tags[record];
+  }
+
+  public String reference(int record) {
+    return m_references[record];
+  }
+
+  /**
+   * @return file offset of the first byte of the record
+   */
+  public long offset(int record) {
+    return m_offsets[record];
+  }
+
+  /**
+   * @return number of bytes of the record, including its line terminators
+   */
+  public int length(int record) {
+    return m_lengths[record];
+  }
+
+  /**
+   * @return 64-bit FNV-1a hash of the record's bytes; records with equal
+   *         bytes have equal hashes
+   */
+  public long hash(int record) {
+    return m_hashes[record];
+  }
+
+  /**
+   * @param ref the reference, e.g. @I1@
+   * @return index of the record declaring ref; -1 if there is none
+   */
+  public int indexOf(String ref) {
+    Integer i = m_byReference.get(ref);
+    return (i == null) ? -1 : i.intValue();
+  }
+
+  /**
+   * @param tag the tag of records to return
+   * @return indices of the records with this tag, in file order
+   */
+  public int[] records(String tag) {
+    int[] records = m_byTag.get(tag);
+    if(records == null) {
+      return new int[0];
+    }
+    return Arrays.copyOf(records, m_tagCounts.get(tag).intValue());
+  }
+
+  /**
+   * @return the distinct record tags, in order of first appearance
+   */
+  public List<String> tags() {
+    return new ArrayList<String>(m_byTag.keySet());
+  }
+
+  /**
+   * @return number of parsed records currently cached
+   */
+  public synchronized int cached() {
+    return m_cache.size();
+  }
+
+  /**
+   * Get a record, parsing it from the file unless it is cached
+   * @param record index of the record
+   * @return the finalized record
+   * @throws IllegalStateException if the file can no longer be read or
+   *         the record no longer parses
+   */
+  public synchronized GedcomNode record(int record) {
+    GedcomNode node = m_cache.get(record);
+    if(node == null) {
+      try {
+        node = parse(record);
+      } catch(IOException ioe) {
+        throw new IllegalStateException("Error reading record " + record
+                                        + " at offset " + m_offsets[record], ioe);
+      }
+      m_cache.put(record, node);
+    }
+    return node;
+  }
+
+  /**
+   * Read and parse the bytes of one record
+   */
+  private GedcomNode parse(int record) throws IOException {
+    ByteBuffer buf = ByteBuffer.allocate(m_lengths[record]);
+    long pos = m_offsets[record];
+    while(buf.hasRemaining()) {
+      if(m_channel.read(buf, pos + buf.position()) < 0) {
+        throw new IOException("Unexpected end of file");
+      }
+    }
+    String text = new String(buf.array(), m_charset);
+    GedcomReader reader = new GedcomReader(new BufferedReader(new StringReader(text)));
+    reader.symbols(m_symbols);
+    reader.projection(m_projection);
+    GedcomNode node = reader.nextRecord();
+    if(node == null) {
+      // the record's own line was projected away
+      node = new GedcomNode(0, m_tags[record], null, m_references[record]);
+    }
+    return node;
+  }
+
+  /**
+   * Close the file
+   */
+  public void close() throws IOException {
+    m_channel.close();
+  }
+}
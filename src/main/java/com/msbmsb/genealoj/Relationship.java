@@ -0,0 +1,172 @@
+/******************************************************************************
+* Relationship
+* Kinship between two individuals through their nearest common ancestors,
+* as computed by a RelationshipIndex.
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj;
+
+import com.msbmsb.genealoj.IndividualNode;
+
+/**
+ * A relationship is described by the number of generations from each
+ * individual up to their nearest common ancestor. Both are 0 for the same
+ * individual; one of them is 0 for a direct line (parent, grandparent...);
+ * both are 1 for siblings, 2 for first cousins, and so on.
+ * Immutable.
+ */
+public class Relationship {
+  /**
+   * No common ancestor is known
+   */
+  public static final Relationship NONE = new Relationship(null, -1, -1, false);
+
+  private IndividualNode m_ancestor;
+  private int m_generationsA;
+  private int m_generationsB;
+  private boolean m_half;
+
+  /**
+   * Constructor.
+   * @param ancestor a nearest common ancestor
+   * @param generationsA generations from the first individual to ancestor
+   * @param generationsB generations from the second individual to ancestor
+   * @param half true if only one common ancestor is shared at this distance
+   */
+  public Relationship(IndividualNode ancestor, int generationsA,
+                      int generationsB, boolean half) {
+    m_ancestor = ancestor;
+    m_generationsA = generationsA;
+    m_generationsB = generationsB;
+    m_half = half;
+  }
+
+  /**
+   * @return true if the two individuals share a known ancestor
+   */
+  public boolean isRelated() {
+    return m_ancestor != null;
+  }
+
+  /**
+   * @return a nearest common ancestor; null if not related
+   */
+  public IndividualNode commonAncestor() {
+    return m_ancestor;
+  }
+
+  public int generationsA() {
+    return m_generationsA;
+  }
+
+  public int generationsB() {
+    return m_generationsB;
+  }
+
+  /**
+   * @return true if one individual is a direct ancestor of the other
+   */
+  public boolean isDirectLine() {
+    return isRelated() && Math.min(m_generationsA, m_generationsB) == 0;
+  }
+
+  /**
+   * @return true if the relationship is through only one of a couple,
+   *         e.g. half siblings; as far as the data shows
+   */
+  public boolean isHalf() {
+    return m_half;
+  }
+
+  /**
+   * @return cousin degree: 0 for siblings, 1 for first cousins, ...;
+   *         -1 for a direct line or no relationship
+   */
+  public int cousinDegree() {
+    if(!isRelated() || isDirectLine()) {
+      return -1;
+    }
+    return Math.min(m_generationsA, m_generationsB) - 1;
+  }
+
+  /**
+   * @return number of generations the two are removed from each other
+   *         below their common ancestor
+   */
+  public int removal() {
+    return Math.abs(m_generationsA - m_generationsB);
+  }
+
+  /**
+   * @return a new Relationship as seen from the second individual
+   */
+  public Relationship reverse() {
+    if(!isRelated()) {
+      return this;
+    }
+    return new Relationship(m_ancestor, m_generationsB, m_generationsA, m_half);
+  }
+
+  /**
+   * Describe the second individual as seen from the first,
+   * e.g. "grandparent", "half sibling", "2nd cousin 1x removed"
+   */
+  public String toString() {
+    if(!isRelated()) {
+      return "unrelated";
+    }
+    if(m_generationsA == 0 && m_generationsB == 0) {
+      return "self";
+    }
+    if(isDirectLine()) {
+      int gen = Math.max(m_generationsA, m_generationsB);
+      String base = (m_generationsA > 0) ? "parent" : "child";
+      if(gen == 1) {
+        return base;
+      }
+      StringBuilder sb = new StringBuilder();
+      for(int i = 2; i < gen; i++) {
+        sb.append("great-");
+      }
+      return sb.append("grand").append(base).toString();
+    }
+    StringBuilder sb = new StringBuilder();
+    if(m_half) {
+      sb.append("half ");
+    }
+    int degree = cousinDegree();
+    if(degree == 0 && removal() == 0) {
+      return sb.append("sibling").toString();
+    }
+    if(degree == 0) {
+      // a sibling's descendant or ancestor
+      for(int i = 2; i < removal(); i++) {
+        sb.append("great-");
+      }
+      if(removal() > 1) {
+        sb.append("grand");
+      }
+      return sb.append(m_generationsA < m_generationsB ? "niece/nephew" : "aunt/uncle").toString();
+    }
+    sb.append(degree).append(ordinalSuffix(degree)).append(" cousin");
+    if(removal() > 0) {
+      sb.append(" ").append(removal()).append("x removed");
+    }
+    return sb.toString();
+  }
+
+  private static String ordinalSuffix(int n) {
+    if(n % 100 >= 11 && n % 100 <= 13) {
+      return "th";
+    }
+    switch(n % 10) {
+      case 1: return "st";
+      case 2: return "nd";
+      case 3: return "rd";
+      default: return "th";
+    }
+  }
+}
@@ -0,0 +1,343 @@
+/******************************************************************************
+* RelationshipIndex
+* Answers "how is A related to B?" from precomputed ancestor sets of the
+* linked individuals.
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj;
+
+import com.msbmsb.genealoj.IndividualNode;
+import com.msbmsb.genealoj.PedigreeTraversal;
+import com.msbmsb.genealoj.Relationship;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Every indexed individual has an index-local ID and a sorted array of
+ * its ancestors, each entry packed into a long as (ancestor ID << 32 |
+ * generations up). A query merges the two arrays to find the nearest
+ * common ancestors, so it costs time linear in the number of ancestors
+ * and no walks over the IndividualNodes. Answers are kept in an LRU cache.
+ * Ancestor sets can be bounded to a number of generations to limit memory
+ * on very deep trees. Individuals can be added after construction; the
+ * ancestor sets of their indexed descendants are then rebuilt.
+ * Queries may run concurrently; adding individuals may not.
+ */
+public class RelationshipIndex {
+  /**
+   * Default number of answers kept in the cache
+   */
+  public static final int DEFAULT_CACHE_SIZE = 10000;
+
+  private static final long[] NO_ANCESTORS = new long[0];
+  private static final long DISTANCE_MASK = 0xFFFFFFFFL;
+
+  private int m_generations;
+  private List<IndividualNode> m_individuals = new ArrayList<IndividualNode>();
+  private Map<IndividualNode, Integer> m_ids =
+      new IdentityHashMap<IndividualNode, Integer>();
+  private long[][] m_ancestors = new long[16][];
+
+  private Map<Long, Relationship> m_cache;
+
+  /**
+   * Index individuals with unbounded ancestor sets
+   * @param individuals the linked IndividualNodes
+   */
+  public RelationshipIndex(List<IndividualNode> individuals) {
+    this(individuals, PedigreeTraversal.ALL_GENERATIONS, DEFAULT_CACHE_SIZE);
+  }
+
+  /**
+   * Constructor.
+   * @param individuals the linked IndividualNodes; their ancestors are
+   *        indexed too
+   * @param generations number of generations kept per ancestor set;
+   *        relationships through older common ancestors are not found
+   * @param cacheSize number of answers kept in the cache
+   */
+  public RelationshipIndex(List<IndividualNode> individuals, int generations,
+                           final int cacheSize) {
+    if(generations < 1) {
+      throw new IllegalArgumentException("Invalid generations: " + generations);
+    }
+    m_generations = generations;
+    m_cache = new LinkedHashMap<Long, Relationship>(16, 0.75f, true) {
+      protected boolean removeEldestEntry(Map.Entry<Long, Relationship> eldest) {
+        return size() > cacheSize;
+      }
+    };
+    for(IndividualNode indi : individuals) {
+      id(indi);
+    }
+    for(int i = 0; i < m_individuals.size(); i++) {
+      build(i);
+    }
+  }
+
+  /**
+   * @return number of indexed individuals
+   */
+  public int size() {
+    return m_individuals.size();
+  }
+
+  /**
+   * @param indi an individual
+   * @return true if indi is in this index
+   */
+  public boolean contains(IndividualNode indi) {
+    return m_ids.containsKey(indi);
+  }
+
+  /**
+   * Add an individual, and any of its ancestors not yet indexed, after its
+   * links are in place. Indexed descendants of indi are rebuilt, since
+   * they gain ancestors through it.
+   * @param indi the linked IndividualNode to add
+   */
+  public void addIndividual(IndividualNode indi) {
+    if(m_ids.containsKey(indi)) {
+      return;
+    }
+    int first = m_individuals.size();
+    int id = id(indi);
+    build(id);
+    List<IndividualNode> descendants = PedigreeTraversal.descendants(indi).toList();
+    for(IndividualNode d : descendants) {
+      Integer did = m_ids.get(d);
+      if(did != null && did.intValue() < first) {
+        m_ancestors[did.intValue()] = null;
+      }
+    }
+    // rebuild nearest generations first so parents are ready for children
+    for(IndividualNode d : descendants) {
+      Integer did = m_ids.get(d);
+      if(did != null) {
+        build(did.intValue());
+      }
+    }
+    synchronized(m_cache) {
+      m_cache.clear();
+    }
+  }
+
+  /**
+   * Find how b is related to a
+   * @param a the first individual
+   * @param b the second individual
+   * @return the Relationship; Relationship.NONE if either is not indexed
+   *         or no common ancestor is known
+   */
+  public Relationship relate(IndividualNode a, IndividualNode b) {
+    Integer ia = m_ids.get(a);
+    Integer ib = m_ids.get(b);
+    if(ia == null || ib == null) {
+      return Relationship.NONE;
+    }
+    int idA = ia.intValue();
+    int idB = ib.intValue();
+    // cache under the lower ID first and reverse on the way out
+    boolean swap = idA > idB;
+    Long key = swap ? (((long) idB << 32) | idA) : (((long) idA << 32) | idB);
+    Relationship r;
+    synchronized(m_cache) {
+      r = m_cache.get(key);
+    }
+    if(r == null) {
+      r = swap ? compute(idB, idA) : compute(idA, idB);
+      synchronized(m_cache) {
+        m_cache.put(key, r);
+      }
+    }
+    return swap ? r.reverse() : r;
+  }
+
+  /**
+   * Find the nearest common ancestors of a and b from their ancestor sets
+   */
+  private Relationship compute(int a, int b) {
+    if(a == b) {
+      return new Relationship(m_individuals.get(a), 0, 0, false);
+    }
+    long[] ancA = m_ancestors[a];
+    long[] ancB = m_ancestors[b];
+    // direct line: one is an ancestor of the other
+    int dist = distance(ancA, b);
+    if(dist > 0) {
+      return new Relationship(m_individuals.get(b), dist, 0, false);
+    }
+    dist = distance(ancB, a);
+    if(dist > 0) {
+      return new Relationship(m_individuals.get(a), 0, dist, false);
+    }
+
+    int best = Integer.MAX_VALUE;
+    int bestA = -1;
+    int bestB = -1;
+    int bestId = -1;
+    int count = 0;
+    int i = 0;
+    int j = 0;
+    while(i < ancA.length && j < ancB.length) {
+      long idA = ancA[i] >>> 32;
+      long idB = ancB[j] >>> 32;
+      if(idA < idB) {
+        i++;
+      } else if(idB < idA) {
+        j++;
+      } else {
+        int distA = (int) (ancA[i] & DISTANCE_MASK);
+        int distB = (int) (ancB[j] & DISTANCE_MASK);
+        if(distA + distB < best) {
+          best = distA + distB;
+          bestA = distA;
+          bestB = distB;
+          bestId = (int) idA;
+          count = 1;
+        } else if(distA == bestA && distB == bestB) {
+          count++;
+        }
+        i++;
+        j++;
+      }
+    }
+    if(bestId < 0) {
+      return Relationship.NONE;
+    }
+    // a couple shares the descendants of both; a single match is half
+    return new Relationship(m_individuals.get(bestId), bestA, bestB, count < 2);
+  }
+
+  /**
+   * @return generations up to ancestor id in the sorted set; 0 if absent
+   */
+  private static int distance(long[] ancestors, int id) {
+    int lo = 0;
+    int hi = ancestors.length - 1;
+    while(lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      long midId = ancestors[mid] >>> 32;
+      if(midId < id) {
+        lo = mid + 1;
+      } else if(midId > id) {
+        hi = mid - 1;
+      } else {
+        return (int) (ancestors[mid] & DISTANCE_MASK);
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Get or assign the ID of indi, indexing its unindexed ancestors too
+   */
+  private int id(IndividualNode indi) {
+    Integer existing = m_ids.get(indi);
+    if(existing != null) {
+      return existing.intValue();
+    }
+    List<IndividualNode> pending = new ArrayList<IndividualNode>();
+    pending.add(indi);
+    while(!pending.isEmpty()) {
+      IndividualNode next = pending.remove(pending.size() - 1);
+      if(m_ids.containsKey(next)) {
+        continue;
+      }
+      int id = m_individuals.size();
+      m_individuals.add(next);
+      m_ids.put(next, id);
+      if(id == m_ancestors.length) {
+        m_ancestors = Arrays.copyOf(m_ancestors, id * 2);
+      }
+      pending.addAll(next.getParents());
+    }
+    return m_ids.get(indi).intValue();
+  }
+
+  /**
+   * Build the ancestor set of id, building those of its parents first.
+   * Iterative, so deep pedigrees do not overflow the stack; a parent still
+   * being built (a cycle in bad data) only adds itself.
+   */
+  private void build(int id) {
+    if(m_ancestors[id] != null) {
+      return;
+    }
+    int[] stack = new int[16];
+    int top = 0;
+    stack[top++] = id;
+    BitSet open = new BitSet();
+    while(top > 0) {
+      int current = stack[top - 1];
+      if(m_ancestors[current] != null) {
+        top--;
+      } else if(!open.get(current)) {
+        open.set(current);
+        for(IndividualNode p : m_individuals.get(current).getParents()) {
+          int pid = m_ids.get(p).intValue();
+          if(m_ancestors[pid] == null && !open.get(pid)) {
+            if(top == stack.length) {
+              stack = Arrays.copyOf(stack, top * 2);
+            }
+            stack[top++] = pid;
+          }
+        }
+      } else {
+        m_ancestors[current] = merge(current);
+        top--;
+      }
+    }
+  }
+
+  /**
+   * Union of the parents of id and their ancestor sets one generation up
+   */
+  private long[] merge(int id) {
+    List<IndividualNode> parents = m_individuals.get(id).getParents();
+    if(parents.isEmpty()) {
+      return NO_ANCESTORS;
+    }
+    int total = 0;
+    for(IndividualNode p : parents) {
+      long[] anc = m_ancestors[m_ids.get(p).intValue()];
+      total += 1 + ((anc == null) ? 0 : anc.length);
+    }
+    long[] entries = new long[total];
+    int n = 0;
+    for(IndividualNode p : parents) {
+      int pid = m_ids.get(p).intValue();
+      if(pid != id) {
+        entries[n++] = ((long) pid << 32) | 1;
+      }
+      long[] anc = m_ancestors[pid];
+      if(anc == null || m_generations < 2) {
+        continue;
+      }
+      for(long e : anc) {
+        long dist = (e & DISTANCE_MASK) + 1;
+        if((e >>> 32) != id && dist <= m_generations) {
+          entries[n++] = (e & ~DISTANCE_MASK) | dist;
+        }
+      }
+    }
+    // sorted by ID, then distance: the first entry of each ID is nearest
+    Arrays.sort(entries, 0, n);
+    int m = 0;
+    for(int k = 0; k < n; k++) {
+      if(m == 0 || (entries[k] >>> 32) != (entries[m - 1] >>> 32)) {
+        entries[m++] = entries[k];
+      }
+    }
+    return (m == entries.length) ? entries : Arrays.copyOf(entries, m);
+  }
+}
@@ -0,0 +1,426 @@
+/******************************************************************************
+* TagQuery
+* Compiled tag path, such as INDI/BIRT/PLAC, evaluated lazily over a
+* GedcomNode tree without modifying it.
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj;
+
+import com.msbmsb.genealoj.GedcomNode;
+import com.msbmsb.genealoj.LazyRootNode;
+import com.msbmsb.genealoj.RecordIndex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * A path is a list of tags separated by "/" (or ".", as in Projection),
+ * matched against the children of the node the query runs on, then their
+ * children, and so on: on the root of a parse "INDI/NAME" finds the NAME
+ * of every individual. "*" matches any one tag and "**" any number of
+ * levels, including none, so "**&#47;PLAC" finds every PLAC at any depth
+ * and "INDI/**&#47;DATE" every date within an individual.
+ * The path is compiled into a small automaton whose states are held as a
+ * bit set, so each node is visited at most once and matched once, and a
+ * subtree is skipped as soon as no state is left. Where only one tag can
+ * match, only that tag's children are looked at. Matches come in
+ * document order, each node before its descendants, and are produced one
+ * at a time as the iterator is advanced: no lists are built and nothing
+ * in the tree is touched. On a lazily loaded root, records are parsed one
+ * by one as the walk reaches them.
+ * Immutable; one query can run on many trees and threads at once.
+ */
+public class TagQuery {
+  /**
+   * Maximum number of tags in a path
+   */
+  public static final int MAX_STEPS = 62;
+
+  private static final String ANY = "*";
+  private static final String DEEP = "**";
+
+  private String m_path;
+  /**
+   * Tag of each step; ANY and DEEP are only ever these instances
+   */
+  private String[] m_steps;
+  /**
+   * Bit of the state reached once every step has matched
+   */
+  private long m_accept;
+  /**
+   * Bits of the states that still have a step to match
+   */
+  private long m_stepMask;
+  private long m_deepMask;
+
+  /**
+   * Compile a tag path
+   * @param path the path, e.g. "INDI/BIRT/PLAC"
+   * @throws IllegalArgumentException if the path is empty, has an empty
+   *         part or more than MAX_STEPS parts
+   */
+  public TagQuery(String path) {
+    m_path = path;
+    String[] parts = path.trim().split("[/.]", -1);
+    List<String> steps = new ArrayList<String>(parts.length);
+    for(String part : parts) {
+      part = part.trim();
+      if(part.length() == 0) {
+        throw new IllegalArgumentException("Invalid tag path: " + path);
+      }
+      if(part.equals(DEEP)) {
+        // "**/**" is the same as "**"
+        if(steps.isEmpty() || steps.get(steps.size() - 1) != DEEP) {
+          steps.add(DEEP);
+        }
+      } else {
+        steps.add(part.equals(ANY) ? ANY : part);
+      }
+    }
+    if(steps.size() > MAX_STEPS) {
+      throw new IllegalArgumentException("Tag path longer than " + MAX_STEPS + ": " + path);
+    }
+    m_steps = steps.toArray(new String[steps.size()]);
+    m_accept = 1L << m_steps.length;
+    m_stepMask = m_accept - 1;
+    for(int i = 0; i < m_steps.length; i++) {
+      if(m_steps[i] == DEEP) {
+        m_deepMask |= 1L << i;
+      }
+    }
+  }
+
+  public String toString() {
+    return m_path;
+  }
+
+  /**
+   * Iterate over the matches below a node
+   * @param node the node whose children the path starts at, e.g. the root
+   *         of a parse
+   * @return an Iterator over the matching nodes, in document order
+   */
+  public Iterator<GedcomNode> iterator(GedcomNode node) {
+    return new Matches(node, start());
+  }
+
+  /**
+   * @param node the node whose children the path starts at
+   * @return an Iterable over the matching nodes, for for-each loops
+   */
+  public Iterable<GedcomNode> in(final GedcomNode node) {
+    return new Iterable<GedcomNode>() {
+      public Iterator<GedcomNode> iterator() {
+        return TagQuery.this.iterator(node);
+      }
+    };
+  }
+
+  /**
+   * @param node the node whose children the path starts at
+   * @return the first match in document order; null if there is none
+   */
+  public GedcomNode first(GedcomNode node) {
+    Iterator<GedcomNode> matches = iterator(node);
+    return matches.hasNext() ? matches.next() : null;
+  }
+
+  /**
+   * @param node the node whose children the path starts at
+   * @return every match in document order; empty if there are none
+   */
+  public List<GedcomNode> findAll(GedcomNode node) {
+    List<GedcomNode> result = new ArrayList<GedcomNode>();
+    Iterator<GedcomNode> matches = iterator(node);
+    while(matches.hasNext()) {
+      result.add(matches.next());
+    }
+    return result;
+  }
+
+  /**
+   * Find every match using several threads, each walking a share of the
+   * children of node; for scans of a whole parse, the level=0 records
+   * @param node the node whose children the path starts at
+   * @param parallelism number of threads to use
+   * @return every match in document order, as findAll(node)
+   */
+  public List<GedcomNode> findAll(GedcomNode node, int parallelism) {
+    if(parallelism < 1) {
+      throw new IllegalArgumentException("Invalid parallelism: " + parallelism);
+    }
+    ExecutorService executor = new ForkJoinPool(parallelism);
+    try {
+      return findAll(node, executor, parallelism * 4);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Find every match, walking shares of the children of node on the given
+   * executor, which is not shut down
+   * @param node the node whose children the path starts at
+   * @param executor ExecutorService to run on
+   * @param tasks number of shares to split the children into
+   * @return every match in document order, as findAll(node)
+   */
+  public List<GedcomNode> findAll(GedcomNode node, ExecutorService executor, int tasks) {
+    final long start = start();
+    final List<GedcomNode> children = children(node, start);
+    int n = children.size();
+    tasks = Math.max(1, Math.min(tasks, n));
+    List<Future<List<GedcomNode>>> shares = new ArrayList<Future<List<GedcomNode>>>(tasks);
+    for(int t = 0; t < tasks; t++) {
+      final int from = (int) ((long) n * t / tasks);
+      final int to = (int) ((long) n * (t + 1) / tasks);
+      shares.add(executor.submit(new Callable<List<GedcomNode>>() {
+        public List<GedcomNode> call() {
+          List<GedcomNode> result = new ArrayList<GedcomNode>();
+          for(int i = from; i < to; i++) {
+            GedcomNode child = children.get(i);
+            long states = step(start, child.tag());
+            if((states & m_accept) != 0) {
+              result.add(child);
+            }
+            if((states & m_stepMask) != 0) {
+              Matches matches = new Matches(child, states);
+              while(matches.hasNext()) {
+                result.add(matches.next());
+              }
+            }
+          }
+          return result;
+        }
+      }));
+    }
+
+    List<GedcomNode> result = new ArrayList<GedcomNode>();
+    try {
+      for(Future<List<GedcomNode>> share : shares) {
+        result.addAll(share.get());
+      }
+    } catch(InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted running query: " + m_path, ie);
+    } catch(ExecutionException ee) {
+      Throwable cause = ee.getCause();
+      if(cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IllegalStateException("Error running query: " + m_path, cause);
+    }
+    return result;
+  }
+
+  /**
+   * The children of node the query can match, as a list; on a lazy root
+   * this parses every such record up front
+   */
+  private List<GedcomNode> children(GedcomNode node, long states) {
+    String tag = singleTag(states);
+    if(tag != null) {
+      List<GedcomNode> children = node.getChildrenWithTag(tag);
+      return (children == null) ? new ArrayList<GedcomNode>() : children;
+    }
+    return node.getChildNodes();
+  }
+
+  /**
+   * @return the states before any tag has been matched
+   */
+  private long start() {
+    return closure(1L);
+  }
+
+  /**
+   * Add the states reachable without matching a tag, i.e. past a "**"
+   * matching no levels
+   */
+  private long closure(long states) {
+    long deep = states & m_deepMask;
+    while(deep != 0) {
+      int i = Long.numberOfTrailingZeros(deep);
+      deep &= deep - 1;
+      states |= 1L << (i + 1);
+      if((m_deepMask & (1L << (i + 1))) != 0) {
+        deep |= 1L << (i + 1);
+      }
+    }
+    return states;
+  }
+
+  /**
+   * @return the states of a child with the given tag, from the states of
+   *         its parent
+   */
+  private long step(long states, String tag) {
+    long next = 0;
+    long s = states & m_stepMask;
+    while(s != 0) {
+      int i = Long.numberOfTrailingZeros(s);
+      s &= s - 1;
+      String step = m_steps[i];
+      if(step == DEEP) {
+        next |= 1L << i;
+      } else if(step == ANY || step.equals(tag)) {
+        next |= 1L << (i + 1);
+      }
+    }
+    return closure(next);
+  }
+
+  /**
+   * @return the only tag a child can match in the given states; null if
+   *         any tag could
+   */
+  private String singleTag(long states) {
+    String tag = null;
+    long s = states & m_stepMask;
+    while(s != 0) {
+      int i = Long.numberOfTrailingZeros(s);
+      s &= s - 1;
+      String step = m_steps[i];
+      if(step == DEEP || step == ANY || (tag != null && !tag.equals(step))) {
+        return null;
+      }
+      tag = step;
+    }
+    return tag;
+  }
+
+  /**
+   * Depth-first walk, one frame per level, reusing its frames
+   */
+  private class Matches implements Iterator<GedcomNode> {
+    private Frame[] m_stack = new Frame[8];
+    private int m_depth = 0;
+    private GedcomNode m_next = null;
+
+    Matches(GedcomNode node, long states) {
+      push(node, states);
+      advance();
+    }
+
+    private void push(GedcomNode node, long states) {
+      if(m_depth == m_stack.length) {
+        m_stack = Arrays.copyOf(m_stack, m_depth * 2);
+      }
+      Frame frame = m_stack[m_depth];
+      if(frame == null) {
+        frame = m_stack[m_depth] = new Frame();
+      }
+      m_depth++;
+      frame.m_states = states;
+      frame.m_node = node;
+      frame.m_list = null;
+      frame.m_index = 0;
+      frame.m_group = -1;
+      frame.m_records = null;
+      String tag = singleTag(states);
+      if(node instanceof LazyRootNode) {
+        // read the records through the index, one at a time
+        RecordIndex index = ((LazyRootNode) node).index();
+        frame.m_index = -1;
+        frame.m_records = (tag != null) ? index.records(tag) : null;
+      } else if(tag != null) {
+        frame.m_list = node.getChildrenWithTag(tag);
+      } else if(node.childGroupsInOrder()) {
+        frame.m_group = 0;
+      } else {
+        frame.m_list = node.getChildNodes();
+      }
+    }
+
+    /**
+     * Find the next match, leaving it in m_next; null at the end
+     */
+    private void advance() {
+      m_next = null;
+      while(m_depth > 0) {
+        Frame frame = m_stack[m_depth - 1];
+        GedcomNode child = frame.next();
+        if(child == null) {
+          frame.m_node = null;
+          frame.m_list = null;
+          m_depth--;
+          continue;
+        }
+        long states = step(frame.m_states, child.tag());
+        if((states & m_stepMask) != 0) {
+          push(child, states);
+        }
+        if((states & m_accept) != 0) {
+          m_next = child;
+          return;
+        }
+      }
+    }
+
+    public boolean hasNext() {
+      return m_next != null;
+    }
+
+    public GedcomNode next() {
+      if(m_next == null) {
+        throw new NoSuchElementException();
+      }
+      GedcomNode next = m_next;
+      advance();
+      return next;
+    }
+
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  /**
+   * Position among the children of one node on the walk: in one list, in
+   * its tag groups one after the other, or in the records of a lazy root
+   */
+  private static class Frame {
+    long m_states;
+    GedcomNode m_node;
+    List<GedcomNode> m_list;
+    int m_index;
+    int m_group;
+    int[] m_records;
+
+    /**
+     * @return the next child; null if there are no more
+     */
+    GedcomNode next() {
+      if(m_node instanceof LazyRootNode) {
+        RecordIndex index = ((LazyRootNode) m_node).index();
+        m_index++;
+        if(m_records != null) {
+          return (m_index < m_records.length) ? index.record(m_records[m_index]) : null;
+        }
+        return (m_index < index.size()) ? index.record(m_index) : null;
+      }
+      while(true) {
+        if(m_list != null && m_index < m_list.size()) {
+          return m_list.get(m_index++);
+        }
+        if(m_group < 0 || m_group >= m_node.childGroupCount()) {
+          return null;
+        }
+        m_list = m_node.childGroup(m_group++);
+        m_index = 0;
+      }
+    }
+  }
+}
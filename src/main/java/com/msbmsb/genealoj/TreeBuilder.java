@@ -0,0 +1,52 @@
+/******************************************************************************
+* TreeBuilder
+* GedcomHandler that collects every streamed record under a root node,
+* building the in-memory hierarchy used by GenealoJ.
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj;
+
+import com.msbmsb.genealoj.GedcomHandler;
+import com.msbmsb.genealoj.GedcomNode;
+
+/**
+ * Tree mode as a consumer of the record stream: every completed level=0
+ * record is added as a child of the given root node
+ */
+public class TreeBuilder implements GedcomHandler {
+  private GedcomNode m_root;
+
+  /**
+   * Constructor
+   * @param root the node to which all level=0 records are added
+   */
+  public TreeBuilder(GedcomNode root) {
+    m_root = root;
+  }
+
+  /**
+   * @return the root node records are added to
+   */
+  public GedcomNode root() {
+    return m_root;
+  }
+
+  public void startDocument() {
+    return;
+  }
+
+  public void startRecord(GedcomNode record) {
+    return;
+  }
+
+  public void endRecord(GedcomNode record) {
+    m_root.addChildNode(record);
+  }
+
+  public void endDocument() {
+    return;
+  }
+}
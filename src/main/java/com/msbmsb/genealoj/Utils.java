@@ -9,9 +9,15 @@
 package com.msbmsb.genealoj;
 
 import com.msbmsb.genealoj.GedcomNode;
+import com.msbmsb.genealoj.GedcomStore;
+import com.msbmsb.genealoj.PedigreeTraversal;
+import com.msbmsb.genealoj.TagQuery;
 
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
 
 public class Utils {
   /**
@@ -25,6 +31,11 @@ public class Utils {
   public static String PLACE_TAG = "PLAC";
   public static String NAME_TAG = "NAME";
 
+  /**
+   * Query for place nodes at any depth
+   */
+  private static final TagQuery LOCATIONS = new TagQuery("**/" + PLACE_TAG);
+
   /**
    * This class is intended to contain static functions, so disable constructing
    */
@@ -38,14 +49,13 @@ public class Utils {
   public static List<IndividualNode> getIndividuals(GedcomNode root) {
     List<IndividualNode> roots = new ArrayList<IndividualNode>();
     List<GedcomNode> indis = root.getChildrenWithTag(INDIVIDUAL_TAG);
+    if(indis == null) {
+      return roots;
+    }
     for(GedcomNode g : indis) {
-      try {
-        // attempt to cast to IndividualNode
-        IndividualNode i = (IndividualNode) g;
-        roots.add(i);
-      } catch(ClassCastException cce) {
-        // if the cast fails, just move on
-        continue;
+      // skip INDI records that were not built as IndividualNodes
+      if(g instanceof IndividualNode) {
+        roots.add((IndividualNode) g);
       }
     }
     return roots;
@@ -78,18 +88,47 @@ public class Utils {
    */
   public static IndividualNode getSurnameRoot(IndividualNode node) {
     IndividualNode anc = node;
+    String surname = node.getSurname();
 
-    List<IndividualNode> parents = node.getParents();
-    for(IndividualNode p : parents) {
-      if(p.getSurname() == node.getSurname()) {
-        anc = getSurnameRoot(p);
-        break;
+    // walk up iteratively; the visited set stops cyclic (bad) pedigrees
+    Set<IndividualNode> visited = Collections.newSetFromMap(
+        new IdentityHashMap<IndividualNode, Boolean>());
+    visited.add(anc);
+    boolean found = true;
+    while(found) {
+      found = false;
+      for(IndividualNode p : anc.getParents()) {
+        if(p.getSurname().equals(surname) && visited.add(p)) {
+          anc = p;
+          found = true;
+          break;
+        }
       }
     }
 
     return anc;
   }
 
+  /**
+   * Get the ancestors of an individual, nearest generations first
+   * @param node the individual
+   * @param generations number of generations to go up
+   * @return List<IndividualNode> of the ancestors, each once
+   */
+  public static List<IndividualNode> getAncestors(IndividualNode node, int generations) {
+    return PedigreeTraversal.ancestors(node).generations(generations).toList();
+  }
+
+  /**
+   * Get the descendants of an individual, nearest generations first
+   * @param node the individual
+   * @param generations number of generations to go down
+   * @return List<IndividualNode> of the descendants, each once
+   */
+  public static List<IndividualNode> getDescendants(IndividualNode node, int generations) {
+    return PedigreeTraversal.descendants(node).generations(generations).toList();
+  }
+
   /**
    * Get all the families found on the given root node
    * @param root the GedcomNode to use as a root for level=0 nodes
@@ -99,8 +138,102 @@ public class Utils {
     return root.getChildrenWithTag(FAMILY_TAG);
   }
 
+  /**
+   * Get all the locations found below the given root node
+   * @param root the GedcomNode to use as a root for level=0 nodes
+   * @return a List<GedcomNode> containing all place nodes at any level,
+   *         in document order; empty if there are none
+   */
   public static List<GedcomNode> getLocations(GedcomNode root) {
-    return root.getDescendantsWithTag(PLACE_TAG);
+    return LOCATIONS.findAll(root);
+  }
+
+  /**
+   * Get all the individuals in a columnar store
+   * @param store the GedcomStore to search
+   * @return node indices of all level=0 individual records
+   */
+  public static int[] getIndividuals(GedcomStore store) {
+    return store.getRecords(INDIVIDUAL_TAG);
+  }
+
+  /**
+   * Get all the families in a columnar store
+   * @param store the GedcomStore to search
+   * @return node indices of all level=0 family records
+   */
+  public static int[] getFamilies(GedcomStore store) {
+    return store.getRecords(FAMILY_TAG);
+  }
+
+  /**
+   * Get all the locations in a columnar store
+   * @param store the GedcomStore to search
+   * @return node indices of all place nodes at any level
+   */
+  public static int[] getLocations(GedcomStore store) {
+    return store.getNodesWithTag(PLACE_TAG);
+  }
+
+  /**
+   * American Soundex code of a name, e.g. "Robert" and "Rupert" give "R163".
+   * Characters other than ASCII letters are ignored.
+   * @param name the name to encode
+   * @return the four character code; "" if name has no letters
+   */
+  public static String soundex(String name) {
+    // codes of A-Z; '0' for vowels and Y, '-' for H and W
+    final String codes = "01230120022455012623010202";
+    char[] result = new char[] { 0, '0', '0', '0' };
+    int n = 0;
+    char last = 0;
+    for(int i = 0; i < name.length() && n < 4; i++) {
+      char c = Character.toUpperCase(name.charAt(i));
+      if(c < 'A' || c > 'Z') {
+        continue;
+      }
+      char code = (c == 'H' || c == 'W') ? '-' : codes.charAt(c - 'A');
+      if(n == 0) {
+        result[n++] = c;
+        last = code;
+      } else if(code == '-') {
+        // H and W do not separate equal codes
+        continue;
+      } else {
+        if(code != '0' && code != last) {
+          result[n++] = code;
+        }
+        last = code;
+      }
+    }
+    return (n == 0) ? "" : new String(result);
+  }
+
+  /**
+   * Normalize a place for comparison: lower case, single spaces, and no
+   * space before or after a comma, so "New York , NY" and "new york,ny"
+   * are equal.
+   * @param place the place name
+   * @return the normalized place
+   */
+  public static String normalizePlace(String place) {
+    StringBuilder sb = new StringBuilder(place.length());
+    boolean space = false;
+    for(int i = 0; i < place.length(); i++) {
+      char c = place.charAt(i);
+      if(Character.isWhitespace(c)) {
+        space = true;
+        continue;
+      }
+      if(c == ',') {
+        space = false;
+      } else if(space && sb.length() > 0 && sb.charAt(sb.length() - 1) != ',') {
+        sb.append(' ');
+      }
+      space = false;
+      sb.append(Character.toLowerCase(c));
+    }
+    return sb.toString();
   }
 
   /**
@@ -127,23 +260,18 @@ public class Utils {
    * Get a list of IndividualNodes using the references found in a family node
    * @param root the GedcomNode to use as a root for level=0 nodes
    * @param famRef list of GedcomNodes that are references in the family node
+   * @return the individuals referenced, in order; references that are
+   *         malformed, unresolved or not to an individual are skipped
    */
   public static List<IndividualNode> getIndividualsFromFamRef(GedcomNode root,
                                                       List<GedcomNode> famRef) {
-    List<IndividualNode> indis = new ArrayList<IndividualNode>();
+    List<IndividualNode> indis = new ArrayList<IndividualNode>(famRef.size());
     for(GedcomNode n : famRef) {
       String ref = n.data();
-      if(isReference(ref)) {
+      if(ref != null && isReference(ref)) {
         GedcomNode refNode = root.getReferencedNode(ref);
-        if(refNode != null) {
-          try {
-            // attempt to cast to IndividualNode
-            IndividualNode indi = (IndividualNode) refNode;
-            indis.add(indi);
-          } catch(ClassCastException cce) {
-            // if the cast fails, just move on
-            continue;
-          }
+        if(refNode instanceof IndividualNode) {
+          indis.add((IndividualNode) refNode);
         }
       }
     }
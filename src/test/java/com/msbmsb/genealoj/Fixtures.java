@@ -0,0 +1,86 @@
+/******************************************************************************
+* Fixtures
+* Shared helpers of the junit tests: temporary GEDCOM files
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * Test helpers
+ */
+class Fixtures
+{
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    private Fixtures()
+    {
+    }
+
+    /**
+     * @return a new empty file, deleted when the tests end
+     */
+    static File temporary() throws IOException
+    {
+        File file = File.createTempFile("genealoj", ".ged");
+        file.deleteOnExit();
+        return file;
+    }
+
+    /**
+     * @param text GEDCOM text in ASCII
+     * @return a new temporary file holding text
+     */
+    static File write(String text) throws IOException
+    {
+        return write(text, ASCII);
+    }
+
+    /**
+     * @param text GEDCOM text
+     * @param charset Charset to encode text in
+     * @return a new temporary file holding text
+     */
+    static File write(String text, Charset charset) throws IOException
+    {
+        return write(text.getBytes(charset));
+    }
+
+    /**
+     * @param bytes the file's contents
+     * @return a new temporary file holding bytes
+     */
+    static File write(byte[] bytes) throws IOException
+    {
+        File file = temporary();
+        write(file, bytes);
+        return file;
+    }
+
+    /**
+     * Replace the contents of a file
+     * @param file the file to write
+     * @param text GEDCOM text in ASCII
+     */
+    static void write(File file, String text) throws IOException
+    {
+        write(file, text.getBytes(ASCII));
+    }
+
+    private static void write(File file, byte[] bytes) throws IOException
+    {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+          out.write(bytes);
+        } finally {
+          out.close();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/******************************************************************************
+* FrozenTreeTest
+* Simple junit test for the immutable FrozenTree snapshot
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj;
+
+import com.msbmsb.genealoj.FrozenIndividual;
+import com.msbmsb.genealoj.FrozenNode;
+import com.msbmsb.genealoj.FrozenTree;
+import com.msbmsb.genealoj.GedcomNode;
+import com.msbmsb.genealoj.GenealoJ;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for FrozenTree.
+ */
+public class FrozenTreeTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public FrozenTreeTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( FrozenTreeTest.class );
+    }
+
+    /**
+     * The snapshot holds the records, names and links of the parse, and
+     * does not change with it
+     */
+    public void testFreeze()
+    {
+        GenealoJ gedcom = new GenealoJ("example/example.ged");
+        FrozenTree tree = gedcom.freeze();
+        assertEquals(3, tree.getIndividuals().size());
+        assertEquals(1, tree.getNodes("FAM").size());
+        assertTrue(tree.getNodes("NOTE").isEmpty());
+
+        FrozenIndividual jimmy = (FrozenIndividual) tree.getReferencedNode("@P-499082365@");
+        assertEquals("Jimmy /Seinfeld/", jimmy.getFullName());
+        assertEquals("Seinfeld", jimmy.getSurname());
+        assertEquals("New York, NY", jimmy.getLocation().data());
+        assertEquals(2, jimmy.id());
+        assertSame(jimmy, tree.individual(2));
+        assertEquals(2, jimmy.getParents().size());
+        assertSame(jimmy, jimmy.getParents().get(0).getChildren().get(0));
+        assertEquals("Janie /Seinfeld/", tree.individual(0).getSpouses().get(0).getFullName());
+        assertEquals(2, tree.getRoot().getDescendantsWithTag("_FREL").size()
+                     + tree.getRoot().getDescendantsWithTag("_MREL").size());
+        assertTrue(jimmy.getChildrenWithTag("DEAT").isEmpty());
+
+        try {
+          jimmy.getChildNodes().clear();
+          fail("children are modifiable");
+        } catch(UnsupportedOperationException uoe) {
+          // expected
+        }
+        try {
+          tree.getIndividuals().remove(0);
+          fail("individuals are modifiable");
+        } catch(UnsupportedOperationException uoe) {
+          // expected
+        }
+
+        gedcom.getRoot().getReferencedNode("@P-499082365@")
+            .getChildrenWithTag("NAME").get(0).data("James /Seinfeld/");
+        assertEquals("Jimmy /Seinfeld/", jimmy.getChildWithTag("NAME").data());
+
+        // levels are copied as they are, however deep
+        assertEquals(40000, new FrozenNode(new GedcomNode(40000, "NAME"),
+                                           FrozenNode.NO_CHILDREN).level());
+    }
+
+    /**
+     * Threads sharing a snapshot through a plain field all read the same
+     */
+    public void testConcurrentReads() throws Exception
+    {
+        final FrozenTree tree = new GenealoJ("example/example.ged").freeze();
+        final List<String> expected = describe(tree);
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+        Thread[] threads = new Thread[4];
+        for(int t = 0; t < threads.length; t++) {
+          threads[t] = new Thread() {
+            public void run() {
+              for(int i = 0; i < 1000; i++) {
+                if(!expected.equals(describe(tree))) {
+                  failures.add(new AssertionError("different read"));
+                  return;
+                }
+              }
+            }
+          };
+          threads[t].start();
+        }
+        for(Thread t : threads) {
+          t.join();
+        }
+        assertTrue(failures.isEmpty());
+    }
+
+    private static List<String> describe(FrozenTree tree)
+    {
+        List<String> lines = new ArrayList<String>();
+        for(FrozenIndividual i : tree.getIndividuals()) {
+          lines.add(i.getFullName() + " " + i.getParents().size() + " "
+                    + i.getChildren().size() + " " + i.getSpouses().size());
+        }
+        for(FrozenNode place : tree.getRoot().getDescendantsWithTag("PLAC")) {
+          lines.add(place.data());
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,155 @@
+/******************************************************************************
+* GedcomDateTest
+* Simple junit test for GedcomDate parsing and the EventIndex
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj;
+
+import com.msbmsb.genealoj.EventIndex;
+import com.msbmsb.genealoj.GedcomDate;
+import com.msbmsb.genealoj.GedcomNode;
+import com.msbmsb.genealoj.GenealoJ;
+
+import java.io.File;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for GedcomDate and EventIndex.
+ */
+public class GedcomDateTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public GedcomDateTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( GedcomDateTest.class );
+    }
+
+    private static void assertRange(int min, int max, String value)
+    {
+        GedcomDate date = GedcomDate.parse(value);
+        assertNotNull(value, date);
+        assertEquals(value, min, date.min());
+        assertEquals(value, max, date.max());
+    }
+
+    /**
+     * Standard date forms parse into ranges
+     */
+    public void testParse()
+    {
+        assertRange(19160119, 19160119, "19 JAN 1916");
+        assertRange(19160101, 19160131, "jan 1916");
+        assertRange(19160101, 19161231, " 1916 ");
+        assertRange(18500101, 18501231, "ABT 1850");
+        assertTrue(GedcomDate.parse("EST 1850").isApproximate());
+        assertFalse(GedcomDate.parse("1850").isApproximate());
+        // BEF and AFT exclude the date itself
+        assertRange(GedcomDate.MIN, 18491231, "BEF 1850");
+        assertRange(GedcomDate.MIN, 19000228, "BEF 1 MAR 1900");
+        assertRange(18500401, GedcomDate.MAX, "AFT MAR 1850");
+        assertRange(18510101, GedcomDate.MAX, "AFT 31 DEC 1850");
+        assertFalse(GedcomDate.parse("BEF 1900").overlaps(19001231, 19001231));
+        assertRange(18200101, 18501231, "BET 1820 AND 1850");
+        assertRange(18200101, 18501231, "FROM 1820 TO 1850");
+        assertRange(18200101, GedcomDate.MAX, "FROM 1820");
+        assertRange(GedcomDate.MIN, 18501231, "TO 1850");
+        assertRange(17510211, 17510211, "11 FEB 1750/51");
+        assertRange(18000101, 18001231, "1799/00");
+        assertRange(17000101, 17000101, "@#DJULIAN@ 1 JAN 1700");
+        assertRange(19000201, 19000228, "FEB 1900");
+        assertRange(20000201, 20000229, "FEB 2000");
+        assertRange(19160401, 19160430, "APR 1916");
+        assertRange(17000229, 17000229, "@#DJULIAN@ 29 FEB 1700");
+        assertRange(18500101, 18501231, "INT 1850 (about when grandpa was born)");
+
+        assertNull(GedcomDate.parse("(unknown)"));
+        assertNull(GedcomDate.parse("@#DHEBREW@ 1 TSH 5700"));
+        assertNull(GedcomDate.parse("BET 1850 AND 1820"));
+        assertNull(GedcomDate.parse("BET 1850"));
+        assertNull(GedcomDate.parse("32 JAN 1850"));
+        assertNull(GedcomDate.parse("31 FEB 1900"));
+        assertNull(GedcomDate.parse("29 FEB 1900"));
+        assertNull(GedcomDate.parse("31 APR 1850"));
+        assertNull(GedcomDate.parse("Spring 1850"));
+        assertNull(GedcomDate.parse(""));
+        assertNull(GedcomDate.parse(null));
+    }
+
+    /**
+     * Range queries find overlapping events, optionally at a place
+     */
+    public void testEventIndex() throws Exception
+    {
+        StringBuilder ged = new StringBuilder("0 HEAD\n");
+        String[] dates = { "1801", "ABT 1830", "BEF 1790", "BET 1845 AND 1860",
+                           "AFT 1900", "3 MAR 1835", "(unknown)" };
+        for(int i = 0; i < dates.length; i++) {
+          ged.append("0 @I" + i + "@ INDI\n1 NAME P" + i + " /Family/\n");
+          ged.append("1 BIRT\n2 DATE " + dates[i] + "\n");
+          ged.append("2 PLAC " + (i % 2 == 0 ? "Boston, MA" : "York") + "\n");
+        }
+        ged.append("0 @F1@ FAM\n1 HUSB @I0@\n1 MARR\n2 DATE 12 JUN 1825\n");
+        ged.append("0 TRLR\n");
+        File file = Fixtures.write(ged.toString());
+
+        GenealoJ gedcom = new GenealoJ(file);
+        EventIndex index = gedcom.getEventIndex();
+        assertEquals(6, index.size("BIRT"));
+        assertEquals(1, index.size("MARR"));
+        assertEquals(0, index.size("DEAT"));
+
+        List<GedcomNode> born = index.findRecords("BIRT", 1820, 1850);
+        assertEquals(3, born.size());
+        assertEquals("@I1@", born.get(0).reference());
+        assertEquals("@I5@", born.get(1).reference());
+        assertEquals("@I3@", born.get(2).reference());
+        assertEquals(3, index.findRecords("BIRT", 1820, 1850, "york").size());
+        assertEquals(0, index.findRecords("BIRT", 1820, 1850, "Boston, MA").size());
+        assertEquals(1, index.findRecords("BIRT", 1700, 1795, "boston ,ma").size());
+        assertEquals(1, index.findRecords("BIRT", 1700, 1795).size());
+        assertEquals(1, index.findRecords("BIRT", 2000, 2010).size());
+        assertEquals(0, index.findRecords("BIRT", 1802, 1820).size());
+        assertEquals(6, index.findRecords("BIRT", 0, 9999).size());
+
+        List<GedcomNode> married = index.findEvents("MARR",
+            GedcomDate.pack(1825, 6, 1), GedcomDate.pack(1825, 6, 30));
+        assertEquals(1, married.size());
+        assertEquals("MARR", married.get(0).tag());
+        assertEquals(0, index.findEvents("MARR", 0, GedcomDate.pack(1825, 6, 11)).size());
+
+        // every query agrees with a scan
+        for(int from = 1780; from < 1910; from += 7) {
+          for(int to = from; to < 1920; to += 11) {
+            int expected = 0;
+            for(String d : dates) {
+              GedcomDate date = GedcomDate.parse(d);
+              if(date != null && date.overlaps(GedcomDate.pack(from, 1, 1),
+                                               GedcomDate.pack(to, 12, 31))) {
+                expected++;
+              }
+            }
+            assertEquals(expected, index.findRecords("BIRT", from, to).size());
+          }
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/******************************************************************************
+* GedcomEncodingTest
+* Simple junit test for charset detection and the ANSEL charset
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj;
+
+import com.msbmsb.genealoj.AnselCharset;
+import com.msbmsb.genealoj.GedcomEncoding;
+import com.msbmsb.genealoj.GenealoJ;
+import com.msbmsb.genealoj.ParseOptions;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for GedcomEncoding and AnselCharset.
+ */
+public class GedcomEncodingTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public GedcomEncodingTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( GedcomEncodingTest.class );
+    }
+
+    /**
+     * A byte order mark wins over the CHAR line, which wins over the
+     * fallback
+     */
+    public void testDetect()
+    {
+        Charset fallback = StandardCharsets.US_ASCII;
+        assertEquals(AnselCharset.INSTANCE, detect("0 HEAD\n1 SOUR X\n1 CHAR ANSEL\n0 TRLR\n"));
+        assertEquals(StandardCharsets.UTF_8, detect("0 HEAD\r\n1 CHAR UTF-8\r\n"));
+        assertEquals(StandardCharsets.ISO_8859_1, detect("0 HEAD\n1 CHAR ASCII\n"));
+        // declared UNICODE, but 8-bit
+        assertEquals(StandardCharsets.UTF_8, detect("0 HEAD\n1 CHAR UNICODE\n"));
+        // only the header is searched
+        assertEquals(fallback, detect("0 HEAD\n0 @I1@ INDI\n1 CHAR ANSEL\n"));
+        assertEquals(fallback, detect("0 HEAD\n1 CHAR KLINGON\n"));
+
+        byte[] bom = { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF, '0', ' ', 'H' };
+        assertEquals(StandardCharsets.UTF_8, GedcomEncoding.detect(bom, bom.length, fallback));
+        byte[] le = "0 HEAD\n1 CHAR UNICODE\n".getBytes(StandardCharsets.UTF_16LE);
+        assertEquals(StandardCharsets.UTF_16LE, GedcomEncoding.detect(le, le.length, fallback));
+        byte[] be = "0 HEAD\n".getBytes(StandardCharsets.UTF_16BE);
+        assertEquals(StandardCharsets.UTF_16BE, GedcomEncoding.detect(be, be.length, fallback));
+
+        assertTrue(GedcomEncoding.isAsciiCompatible(AnselCharset.INSTANCE));
+        assertFalse(GedcomEncoding.isAsciiCompatible(StandardCharsets.UTF_16));
+    }
+
+    private static Charset detect(String header)
+    {
+        byte[] bytes = header.getBytes(StandardCharsets.US_ASCII);
+        return GedcomEncoding.detect(bytes, bytes.length, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * ANSEL diacritics precede their letter, Unicode ones follow it
+     */
+    public void testAnsel()
+    {
+        byte[] ansel = { 'M', (byte) 0xE8, 'u', 'l', 'l', 'e', 'r', ' ',
+                         (byte) 0xA1, 'o', 'd', 'z', ' ', (byte) 0xE2, (byte) 0xE8, 'i' };
+        String text = new String(ansel, AnselCharset.INSTANCE);
+        assertEquals("Mu\u0308ller \u0141odz i\u0301\u0308", text);
+        assertTrue(Arrays.equals(ansel, text.getBytes(AnselCharset.INSTANCE)));
+
+        // precomposed letters are decomposed
+        byte[] bytes = "M\u00fcller \u00e9".getBytes(AnselCharset.INSTANCE);
+        assertTrue(Arrays.equals(new byte[] { 'M', (byte) 0xE8, 'u', 'l', 'l', 'e', 'r', ' ',
+                                              (byte) 0xE2, 'e' }, bytes));
+        // a diacritic without a letter is kept
+        assertEquals("\u0301\n", new String(new byte[] { (byte) 0xE2, '\n' }, AnselCharset.INSTANCE));
+    }
+
+    /**
+     * Every reader path decodes the file in its detected charset, and a
+     * write encodes it back the same
+     */
+    public void testLoad() throws Exception
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write("0 HEAD\n1 CHAR ANSEL\n0 @I1@ INDI\n1 NAME J".getBytes(StandardCharsets.US_ASCII));
+        bytes.write(new byte[] { (byte) 0xE8, 'u', 'r', 'g' });
+        bytes.write(" /M".getBytes(StandardCharsets.US_ASCII));
+        bytes.write(new byte[] { (byte) 0xE8, 'u', 'l', 'l', 'e', 'r' });
+        bytes.write("/\n0 TRLR\n".getBytes(StandardCharsets.US_ASCII));
+        File file = Fixtures.write(bytes.toByteArray());
+        String name = "Ju\u0308rg /Mu\u0308ller/";
+        assertEquals(name, name(new GenealoJ(file)));
+        assertEquals(name, name(new GenealoJ(file, new ParseOptions().memoryMapped(true))));
+        assertEquals(name, name(new GenealoJ(file, new ParseOptions().parallelism(2))));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new GenealoJ(file).write(out);
+        assertTrue(Arrays.equals(bytes.toByteArray(), out.toByteArray()));
+
+        // UTF-16 with a byte order mark is read sequentially whatever the options
+        file = Fixtures.write("0 HEAD\n1 CHAR UNICODE\n0 @I1@ INDI\n1 NAME \u00c5sa /\u00d6st/\n0 TRLR\n"
+                     .getBytes(StandardCharsets.UTF_16));
+        assertEquals("\u00c5sa /\u00d6st/", name(new GenealoJ(file)));
+        assertEquals("\u00c5sa /\u00d6st/",
+                     name(new GenealoJ(file, new ParseOptions().memoryMapped(true).parallelism(2))));
+
+        // a UTF-8 byte order mark is skipped by the mapped reader too
+        bytes.reset();
+        bytes.write(new byte[] { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF });
+        bytes.write("0 @I1@ INDI\n1 NAME \u00c5sa\n".getBytes(StandardCharsets.UTF_8));
+        file = Fixtures.write(bytes.toByteArray());
+        assertEquals("\u00c5sa", name(new GenealoJ(file, new ParseOptions().memoryMapped(true))));
+        assertEquals("\u00c5sa", name(new GenealoJ(file)));
+    }
+
+    private static String name(GenealoJ gedcom)
+    {
+        return gedcom.getRoot().getReferencedNode("@I1@").getChildrenWithTag("NAME").get(0).data();
+    }
+}
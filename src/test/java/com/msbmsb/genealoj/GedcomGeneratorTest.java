@@ -0,0 +1,144 @@
+/******************************************************************************
+* GedcomGeneratorTest
+* Simple junit test for the synthetic GedcomGenerator
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj;
+
+import com.msbmsb.genealoj.GedcomGenerator;
+import com.msbmsb.genealoj.GedcomNode;
+import com.msbmsb.genealoj.GenealoJ;
+import com.msbmsb.genealoj.IndividualNode;
+import com.msbmsb.genealoj.Utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for GedcomGenerator.
+ */
+public class GedcomGeneratorTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public GedcomGeneratorTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( GedcomGeneratorTest.class );
+    }
+
+    /**
+     * The same options and seed give the same bytes, another seed does not
+     */
+    public void testDeterministic() throws Exception
+    {
+        GedcomGenerator generator = new GedcomGenerator().individuals(500);
+        byte[] first = generate(generator);
+        assertTrue(Arrays.equals(first, generate(generator)));
+        assertTrue(Arrays.equals(first, generate(new GedcomGenerator().individuals(500))));
+        assertFalse(Arrays.equals(first, generate(generator.seed(7))));
+    }
+
+    /**
+     * The file has the requested number of individuals, every reference
+     * resolves, lines stay within the GEDCOM limit and the families link
+     */
+    public void testValid() throws Exception
+    {
+        File file = Fixtures.temporary();
+        long bytes = new GedcomGenerator().individuals(3001).remarriage(0.5)
+            .notes(0.5).write(file);
+        assertEquals(file.length(), bytes);
+
+        GenealoJ gedcom = new GenealoJ(file);
+        GedcomNode root = gedcom.getRoot();
+        List<IndividualNode> individuals = Utils.getIndividuals(root);
+        assertEquals(3001, individuals.size());
+        List<GedcomNode> families = Utils.getFamilies(root);
+        assertTrue(families.size() > 500);
+        for(GedcomNode family : families) {
+          for(String tag : new String[] { Utils.HUSBAND_TAG, Utils.WIFE_TAG, Utils.CHILD_TAG }) {
+            List<GedcomNode> refs = family.getChildrenWithTag(tag);
+            if(refs == null) {
+              // only childless families lack a reference
+              assertEquals(Utils.CHILD_TAG, tag);
+              continue;
+            }
+            for(GedcomNode ref : refs) {
+              assertTrue(root.getReferencedNode(ref.data()) instanceof IndividualNode);
+            }
+          }
+        }
+
+        int remarried = 0;
+        int withParents = 0;
+        Map<String, Integer> surnames = new HashMap<String, Integer>();
+        for(IndividualNode indi : individuals) {
+          if(indi.getSpouses().size() > 1) {
+            remarried++;
+          }
+          if(indi.getParents().size() == 2) {
+            withParents++;
+          }
+          for(GedcomNode fams : nodes(indi, "FAMS")) {
+            assertNotNull(root.getReferencedNode(fams.data()));
+          }
+          String surname = indi.getSurname();
+          Integer n = surnames.get(surname);
+          surnames.put(surname, (n == null) ? 1 : n + 1);
+        }
+        assertTrue(remarried > 0);
+        assertTrue(withParents > individuals.size() / 4);
+        // skewed: the most common surname is far above the mean
+        int most = 0;
+        for(Integer n : surnames.values()) {
+          most = Math.max(most, n);
+        }
+        assertTrue(most > 5 * individuals.size() / surnames.size());
+
+        String text = new String(Files.readAllBytes(file.toPath()), "US-ASCII");
+        assertTrue(text.contains("\n2 CONC "));
+        for(String line : text.split("\n")) {
+          assertTrue(line.length() <= 255);
+          // continued values are cut inside a word
+          assertFalse(line, line.startsWith("2 CONC  ") || line.endsWith(" "));
+        }
+    }
+
+    private static List<GedcomNode> nodes(GedcomNode node, String tag)
+    {
+        List<GedcomNode> nodes = node.getChildrenWithTag(tag);
+        return (nodes == null) ? Collections.<GedcomNode>emptyList() : nodes;
+    }
+
+    private static byte[] generate(GedcomGenerator generator) throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        generator.write(out);
+        return out.toByteArray();
+    }
+}
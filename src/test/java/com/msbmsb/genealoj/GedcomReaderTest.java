@@ -0,0 +1,147 @@
+/******************************************************************************
+* GedcomReaderTest
+* Simple junit test for the streaming GedcomReader class
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj;
+
+import com.msbmsb.genealoj.GedcomHandler;
+import com.msbmsb.genealoj.GedcomNode;
+import com.msbmsb.genealoj.GedcomReader;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for GedcomReader.
+ */
+public class GedcomReaderTest
+    extends TestCase
+{
+    private static final String TEST_FILE = "example/example.ged";
+
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public GedcomReaderTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( GedcomReaderTest.class );
+    }
+
+    /**
+     * Pulling records returns each level=0 record complete
+     */
+    public void testNextRecord() throws Exception
+    {
+        GedcomReader reader = new GedcomReader(new File(TEST_FILE));
+        List<String> tags = new ArrayList<String>();
+        GedcomNode record;
+        while((record = reader.nextRecord()) != null) {
+          assertEquals(0, record.level());
+          tags.add(record.tag());
+        }
+        reader.close();
+
+        assertEquals(6, tags.size());
+        assertEquals("HEAD", tags.get(0));
+        assertEquals("FAM", tags.get(4));
+        assertEquals("TRLR", tags.get(5));
+    }
+
+    /**
+     * Pushed records arrive with start/end events in order, and start is
+     * sent before the children of the record have been parsed
+     */
+    public void testHandler() throws Exception
+    {
+        final List<String> events = new ArrayList<String>();
+        GedcomReader reader = new GedcomReader(new File(TEST_FILE));
+        reader.parse(new GedcomHandler() {
+          public void startDocument() {
+            events.add("start");
+          }
+          public void startRecord(GedcomNode record) {
+            assertNull(record.getChildrenWithTag("NAME"));
+            events.add("+" + record.tag());
+          }
+          public void endRecord(GedcomNode record) {
+            if(record instanceof IndividualNode) {
+              assertEquals("Seinfeld", ((IndividualNode) record).getSurname());
+            }
+            events.add("-" + record.tag());
+          }
+          public void endDocument() {
+            events.add("end");
+          }
+        });
+        reader.close();
+
+        assertEquals(14, events.size());
+        assertEquals("start", events.get(0));
+        assertEquals("+HEAD", events.get(1));
+        assertEquals("-HEAD", events.get(2));
+        assertEquals("+INDI", events.get(3));
+        assertEquals("end", events.get(13));
+    }
+
+    /**
+     * Levels of 10 and above nest correctly and do not end the record
+     */
+    public void testDeepLevels() throws Exception
+    {
+        StringBuilder sb = new StringBuilder("0 @N1@ NOTE\n");
+        for(int l = 1; l <= 12; l++) {
+          sb.append(l).append(" CONC part").append(l).append("\n");
+        }
+        sb.append("\n1 CONT tail\n0 TRLR\n");
+        GedcomReader reader = new GedcomReader(
+            new BufferedReader(new StringReader(sb.toString())));
+
+        GedcomNode note = reader.nextRecord();
+        assertEquals("@N1@", note.reference());
+        assertEquals(1, note.getChildrenWithTag("CONT").size());
+        GedcomNode n = note;
+        for(int l = 1; l <= 12; l++) {
+          List<GedcomNode> conc = n.getChildrenWithTag("CONC");
+          assertEquals(1, conc.size());
+          n = conc.get(0);
+          assertEquals(l, n.level());
+          assertEquals("part" + l, n.data());
+        }
+        assertEquals("TRLR", reader.nextRecord().tag());
+        assertNull(reader.nextRecord());
+    }
+
+    /**
+     * Levels beyond a short are kept as read
+     */
+    public void testLargeLevel() throws Exception
+    {
+        GedcomReader reader = new GedcomReader(new BufferedReader(
+            new StringReader("0 @I1@ INDI\n1 NAME A /B/\n40000 NAME x\n0 TRLR\n")));
+        GedcomNode indi = reader.nextRecord();
+        assertEquals("@I1@", indi.reference());
+        assertEquals("TRLR", reader.nextRecord().tag());
+        assertEquals(40000, new GedcomNode(40000, "NAME").level());
+    }
+}
@@ -0,0 +1,121 @@
+/******************************************************************************
+* GedcomSnapshotTest
+* Simple junit test for binary snapshots of parsed trees
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj;
+
+import com.msbmsb.genealoj.GedcomNode;
+import com.msbmsb.genealoj.GedcomSnapshot;
+import com.msbmsb.genealoj.GenealoJ;
+import com.msbmsb.genealoj.IndividualNode;
+import com.msbmsb.genealoj.ParseOptions;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for GedcomSnapshot.
+ */
+public class GedcomSnapshotTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public GedcomSnapshotTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( GedcomSnapshotTest.class );
+    }
+
+    private static File copy(String from) throws IOException
+    {
+        return Fixtures.write(Files.readAllBytes(new File(from).toPath()));
+    }
+
+    /**
+     * A snapshot reads back the same tree with the same links
+     */
+    public void testRoundTrip() throws Exception
+    {
+        File source = copy("example/example.ged");
+        File snapshot = new File(source.getPath() + ".snap");
+        snapshot.deleteOnExit();
+
+        GenealoJ parsed = new GenealoJ(source, new ParseOptions().snapshot(snapshot));
+        assertTrue(snapshot.isFile());
+        assertTrue(GedcomSnapshot.isCurrent(snapshot, source));
+
+        GedcomNode root = GedcomSnapshot.read(snapshot);
+        assertEquals(parsed.toString(), root.toString());
+        IndividualNode child = (IndividualNode) root.getReferencedNode("@P-499082365@");
+        assertEquals(2, child.getParents().size());
+        assertSame(root.getReferencedNode("@P-499082364@"), child.getParents().get(0));
+        assertSame(child, child.getParents().get(0).getChildren().get(0));
+        assertEquals(1, child.getParents().get(1).getSpouses().size());
+        assertSame(root.getReferencedNode("@F1@"), child.familiesAsChild().get(0));
+        assertEquals("Seinfeld", child.getSurname());
+        assertSame(Utils.PLACE_TAG, child.getChildrenWithTag("BIRT").get(0)
+                   .getChildrenWithTag(GedcomSymbols.PLAC).get(0).tag());
+
+        // a second load comes from the snapshot
+        GenealoJ loaded = new GenealoJ(source, new ParseOptions().snapshot(snapshot));
+        assertEquals(parsed.toString(), loaded.toString());
+        assertEquals(2, Utils.getRootIndividuals(loaded.getRoot()).size());
+
+        // changing the source makes the snapshot stale
+        assertTrue(source.setLastModified(source.lastModified() + 2000));
+        assertFalse(GedcomSnapshot.isCurrent(snapshot, source));
+        new GenealoJ(source, new ParseOptions().snapshot(snapshot));
+        assertTrue(GedcomSnapshot.isCurrent(snapshot, source));
+    }
+
+    /**
+     * Damaged snapshots are rejected
+     */
+    public void testCorrupt() throws Exception
+    {
+        File source = copy("example/example.ged");
+        File snapshot = new File(source.getPath() + ".snap");
+        snapshot.deleteOnExit();
+        GedcomSnapshot.write(new GenealoJ(source).getRoot(), source, snapshot);
+
+        RandomAccessFile raf = new RandomAccessFile(snapshot, "rw");
+        raf.seek(raf.length() - 5);
+        int b = raf.read();
+        raf.seek(raf.length() - 5);
+        raf.write(b ^ 0x55);
+        raf.close();
+        try {
+          GedcomSnapshot.read(snapshot);
+          fail("corrupt snapshot read");
+        } catch(IOException ioe) {
+          assertTrue(ioe.getMessage().indexOf("checksum") >= 0);
+        }
+        // the load falls back to parsing and replaces the snapshot
+        List<GedcomNode> indis = new GenealoJ(source,
+            new ParseOptions().snapshot(snapshot)).getNodes("INDI");
+        assertEquals(3, indis.size());
+        assertNotNull(GedcomSnapshot.read(snapshot));
+    }
+}
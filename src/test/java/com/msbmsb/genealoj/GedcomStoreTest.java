@@ -0,0 +1,101 @@
+/******************************************************************************
+* GedcomStoreTest
+* Simple junit test for the columnar GedcomStore
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj;
+
+import com.msbmsb.genealoj.GedcomNode;
+import com.msbmsb.genealoj.GedcomStore;
+import com.msbmsb.genealoj.GenealoJ;
+import com.msbmsb.genealoj.IndividualNode;
+import com.msbmsb.genealoj.ParseOptions;
+import com.msbmsb.genealoj.Utils;
+
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for GedcomStore.
+ */
+public class GedcomStoreTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public GedcomStoreTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( GedcomStoreTest.class );
+    }
+
+    /**
+     * The store holds every line, and the Utils queries match the tree
+     */
+    public void testStore()
+    {
+        String testFile = "example/example.ged";
+        GenealoJ gedcom = new GenealoJ(testFile,
+            new ParseOptions().columnar(true));
+        GedcomStore store = gedcom.getStore();
+        assertNotNull(store);
+        assertNull(gedcom.getRoot().getChildrenWithTag("INDI"));
+        assertEquals(34, store.size());
+        assertEquals(6, store.recordCount());
+
+        int[] indis = Utils.getIndividuals(store);
+        assertEquals(3, indis.length);
+        assertEquals(1, Utils.getFamilies(store).length);
+        int[] places = Utils.getLocations(store);
+        assertEquals(3, places.length);
+        for(int place : places) {
+          assertTrue(store.dataEquals(place, "New York, NY"));
+          assertEquals(2, store.level(place));
+          assertEquals("BIRT", store.tag(store.parent(place)));
+        }
+
+        int fam = store.getReferencedNode("@F1@");
+        assertEquals("FAM", store.tag(fam));
+        assertEquals(GedcomStore.NONE, store.parent(fam));
+        assertEquals(store.size() - 1, store.end(fam));
+        int[] chil = store.getChildrenWithTag(fam, "CHIL");
+        assertEquals(1, chil.length);
+        assertEquals(indis[2], store.getReferencedNode(store.data(chil[0])));
+        assertEquals(0, store.getChildrenWithTag(fam, "NOTE").length);
+        assertEquals(GedcomStore.NONE, store.getReferencedNode("@X@"));
+    }
+
+    /**
+     * Materialized views equal the nodes of a tree parse
+     */
+    public void testNodeViews()
+    {
+        String testFile = "example/example.ged";
+        GenealoJ tree = new GenealoJ(testFile);
+        GedcomStore store = new GenealoJ(testFile,
+            new ParseOptions().columnar(true)).getStore();
+        List<GedcomNode> records = tree.getRoot().getChildrenWithTag("INDI");
+        int[] indis = Utils.getIndividuals(store);
+        for(int i = 0; i < indis.length; i++) {
+          GedcomNode view = store.node(indis[i]);
+          assertTrue(view instanceof IndividualNode);
+          assertEquals(records.get(i).toString(), view.toString());
+        }
+    }
+}
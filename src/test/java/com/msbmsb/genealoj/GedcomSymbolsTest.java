@@ -0,0 +1,117 @@
+/******************************************************************************
+* GedcomSymbolsTest
+* Simple junit test for the GedcomSymbols tag and value table
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj;
+
+import com.msbmsb.genealoj.GedcomNode;
+import com.msbmsb.genealoj.GedcomSymbols;
+import com.msbmsb.genealoj.GedcomTokenizer;
+import com.msbmsb.genealoj.GenealoJ;
+import com.msbmsb.genealoj.ParseOptions;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for GedcomSymbols.
+ */
+public class GedcomSymbolsTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public GedcomSymbolsTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( GedcomSymbolsTest.class );
+    }
+
+    /**
+     * Standard tags resolve to fixed IDs and the Utils constants, other
+     * tags to one instance per table
+     */
+    public void testTags()
+    {
+        GedcomSymbols symbols = new GedcomSymbols();
+        GedcomTokenizer tokenizer = new GedcomTokenizer(symbols);
+
+        tokenizer.tokenize("2 PLAC Somewhere");
+        assertSame(Utils.PLACE_TAG, tokenizer.tag());
+        assertEquals(GedcomSymbols.PLAC, tokenizer.tagId());
+        assertEquals("PLAC", GedcomSymbols.tag(GedcomSymbols.PLAC));
+
+        tokenizer.tokenize("2 _FREL Natural");
+        String custom = tokenizer.tag();
+        assertEquals(GedcomSymbols.UNKNOWN_TAG, tokenizer.tagId());
+        tokenizer.tokenize("2 _FREL Adopted");
+        assertSame(custom, tokenizer.tag());
+
+        Charset ascii = Charset.forName("US-ASCII");
+        ByteBuffer buf = ByteBuffer.wrap("1 _FREL x\n1 NAME y".getBytes());
+        tokenizer.tokenize(buf, 0, 9, ascii);
+        assertSame(custom, tokenizer.tag());
+        tokenizer.tokenize(buf, 10, 18, ascii);
+        assertSame(Utils.NAME_TAG, tokenizer.tag());
+        assertEquals(GedcomSymbols.NAME, tokenizer.buildNode().tagId());
+    }
+
+    /**
+     * Values of registered tags are shared, others are not
+     */
+    public void testValues()
+    {
+        GedcomSymbols symbols = new GedcomSymbols();
+        symbols.internValues("PLAC");
+        GedcomTokenizer tokenizer = new GedcomTokenizer(symbols);
+
+        tokenizer.tokenize("2 PLAC New York, NY");
+        String first = tokenizer.data();
+        tokenizer.tokenize("3 PLAC New York, NY");
+        assertSame(first, tokenizer.data());
+        ByteBuffer buf = ByteBuffer.wrap("2 PLAC New York, NY".getBytes());
+        tokenizer.tokenize(buf, 0, buf.limit(), Charset.forName("UTF-8"));
+        assertSame(first, tokenizer.data());
+        assertEquals(1, symbols.valueCount());
+
+        tokenizer.tokenize("2 NOTE New York, NY");
+        assertNotSame(first, tokenizer.data());
+    }
+
+    /**
+     * Parsed trees share tags and can be queried by tag ID
+     */
+    public void testParsedTree()
+    {
+        GenealoJ gedcom = new GenealoJ("example/example.ged",
+            new ParseOptions().internValues("PLAC"));
+        List<GedcomNode> indis = gedcom.getRoot().getChildrenWithTag(GedcomSymbols.INDI);
+        assertEquals(3, indis.size());
+        GedcomNode first = indis.get(0).getChildrenWithTag(GedcomSymbols.BIRT).get(0)
+            .getChildrenWithTag(GedcomSymbols.PLAC).get(0);
+        GedcomNode second = indis.get(1).getChildrenWithTag(GedcomSymbols.BIRT).get(0)
+            .getChildrenWithTag(GedcomSymbols.PLAC).get(0);
+        assertSame(first.tag(), second.tag());
+        assertSame(first.data(), second.data());
+        assertNull(indis.get(0).getChildrenWithTag(GedcomSymbols.UNKNOWN_TAG));
+    }
+}
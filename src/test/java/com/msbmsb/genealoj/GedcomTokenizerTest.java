@@ -0,0 +1,116 @@
+/******************************************************************************
+* GedcomTokenizerTest
+* Simple junit test for the GedcomTokenizer class
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj;
+
+import com.msbmsb.genealoj.GedcomNode;
+import com.msbmsb.genealoj.GedcomReader;
+import com.msbmsb.genealoj.GedcomTokenizer;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for GedcomTokenizer.
+ */
+public class GedcomTokenizerTest
+    extends TestCase
+{
+    private static final String[] LINES = {
+      "0 HEAD",
+      "1 CHAR ANSI",
+      "0 @P-499082364@ INDI ",
+      "0 @F1@ FAM",
+      "1 NAME Jerry /Seinfeld/",
+      "2 PLAC New York, NY",
+      "1 FAMS @F1@",
+      "12 CONC  leading space kept",
+      "0 @N1@ NOTE some note text",
+      "0 @X@",
+      "1  TAG",
+      "  3 DATE 1 JAN 1900  ",
+    };
+
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public GedcomTokenizerTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( GedcomTokenizerTest.class );
+    }
+
+    /**
+     * The tokenizer builds the same nodes as the former String.split path
+     */
+    public void testMatchesSplit()
+    {
+        GedcomTokenizer tokenizer = new GedcomTokenizer();
+        for(String line : LINES) {
+          assertTrue(tokenizer.tokenize(line));
+          GedcomNode expected = splitNode(line.trim());
+          GedcomNode actual = tokenizer.buildNode();
+          assertEquals(line, expected.level(), actual.level());
+          assertEquals(line, expected.tag(), actual.tag());
+          assertEquals(line, expected.reference(), actual.reference());
+          assertEquals(line, expected.data(), actual.data());
+          assertEquals(line, expected.getClass(), actual.getClass());
+        }
+    }
+
+    /**
+     * Blank lines are reported, malformed lines rejected
+     */
+    public void testBlankAndInvalid()
+    {
+        GedcomTokenizer tokenizer = new GedcomTokenizer();
+        assertFalse(tokenizer.tokenize(""));
+        assertFalse(tokenizer.tokenize(" \t "));
+        try {
+          tokenizer.tokenize("X HEAD");
+          fail("non-numeric level accepted");
+        } catch(NumberFormatException nfe) {
+          // expected
+        }
+        try {
+          tokenizer.tokenize("0");
+          fail("line without tag accepted");
+        } catch(IllegalArgumentException iae) {
+          // expected
+        }
+    }
+
+    /**
+     * The String.split based line parsing used before GedcomTokenizer
+     */
+    private static GedcomNode splitNode(String line) {
+        String[] toks = line.split(" ");
+        int level = Integer.parseInt(toks[0]);
+        if(toks.length == 2) {
+          return new GedcomNode(level, toks[1]);
+        } else if(Utils.isReference(toks[1])) {
+          if(Utils.isIndividual(toks[2])) {
+            return new IndividualNode(level, toks[2],
+                GedcomReader.restFromTok(line, 2), toks[1]);
+          }
+          return new GedcomNode(level, toks[2],
+              GedcomReader.restFromTok(line, 2), toks[1]);
+        }
+        return new GedcomNode(level, toks[1], GedcomReader.restFromTok(line, 1));
+    }
+}
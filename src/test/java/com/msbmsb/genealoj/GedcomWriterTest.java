@@ -0,0 +1,122 @@
+/******************************************************************************
+* GedcomWriterTest
+* Simple junit test for the streaming GedcomWriter
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj;
+
+import com.msbmsb.genealoj.GedcomNode;
+import com.msbmsb.genealoj.GedcomWriter;
+import com.msbmsb.genealoj.GenealoJ;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.Charset;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for GedcomWriter.
+ */
+public class GedcomWriterTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public GedcomWriterTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( GedcomWriterTest.class );
+    }
+
+    /**
+     * A parsed file is written back line for line, in input order
+     */
+    public void testRoundTrip() throws Exception
+    {
+        String text = "0 HEAD\n1 CHAR UTF-8\n"
+            + "0 @I1@ INDI\n1 NAME Ann /Smith/\n1 BIRT\n2 DATE 1900\n"
+            + "1 NAME Anna /Smith/\n1 RESI\n2 PLAC Zurich\n1 NOTE first\n1 RESI\n"
+            + "0 @F1@ FAM\n1 WIFE @I1@\n"
+            + "0 @I2@ INDI\n1 NAME Bo /Smith/\n"
+            + "0 TRLR\n";
+        File file = Fixtures.write(text, Charset.defaultCharset());
+
+        GenealoJ gedcom = new GenealoJ(file);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        gedcom.write(bytes);
+        assertEquals(text, new String(bytes.toByteArray(), Charset.defaultCharset()));
+        assertEquals(text.substring(0, text.length() - 1), gedcom.toString());
+
+        // removing children keeps the others in order
+        GedcomNode indi = gedcom.getRoot().getReferencedNode("@I1@");
+        indi.removeChildNode(indi.getChildrenWithTag("NAME").get(0));
+        indi.removeChildNode(indi.getChildrenWithTag("BIRT").get(0));
+        assertEquals("0 @I1@ INDI\n1 NAME Anna /Smith/\n1 RESI\n2 PLAC Zurich\n"
+                     + "1 NOTE first\n1 RESI", indi.toString());
+
+        // so does a columnar load
+        bytes.reset();
+        new GenealoJ(file, new ParseOptions().columnar(true)).write(bytes);
+        assertEquals(text, new String(bytes.toByteArray(), Charset.defaultCharset()));
+    }
+
+    /**
+     * Line breaks become CONT lines and long lines are cut into CONC lines
+     * that keep spaces out of the cuts
+     */
+    public void testContinuation() throws Exception
+    {
+        GedcomNode note = new GedcomNode(1, "NOTE", "first line\r\n\nthird aaaa bbbb cccc");
+        note.addChildNode(new GedcomNode(2, "SOUR", "@S1@"));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GedcomWriter writer = new GedcomWriter(bytes).maxLineLength(16);
+        writer.write(note);
+        writer.flush();
+        assertEquals("1 NOTE first li\n2 CONC ne\n2 CONT\n2 CONT third aa\n"
+                     + "2 CONC aa bbb\n2 CONC b cccc\n2 SOUR @S1@\n",
+                     new String(bytes.toByteArray(), "UTF-8"));
+        assertEquals(bytes.size(), writer.bytesWritten());
+
+        bytes.reset();
+        writer = new GedcomWriter(bytes).maxLineLength(0).lineTerminator("\r\n");
+        writer.writeLine(new GedcomNode(0, "NOTE", "x y\nz", "@N1@"));
+        writer.close();
+        assertEquals("0 @N1@ NOTE x y\r\n1 CONT z\r\n", new String(bytes.toByteArray(), "UTF-8"));
+    }
+
+    /**
+     * Characters outside ASCII go through the charset's encoder
+     */
+    public void testEncoding() throws Exception
+    {
+        GedcomNode name = new GedcomNode(1, "NAME", "\u00d6d\u00f6n \u00e9\ud83d\ude00 /\u0141/");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GedcomWriter writer = new GedcomWriter(bytes, Charset.forName("UTF-16BE"));
+        writer.write(name);
+        writer.flush();
+        assertEquals("1 NAME \u00d6d\u00f6n \u00e9\ud83d\ude00 /\u0141/\n",
+                     new String(bytes.toByteArray(), "UTF-16BE"));
+
+        bytes.reset();
+        writer = new GedcomWriter(bytes, Charset.forName("US-ASCII"));
+        writer.write(name);
+        writer.flush();
+        assertEquals("1 NAME ?d?n ?? /?/\n", new String(bytes.toByteArray(), "US-ASCII"));
+    }
+}
@@ -8,8 +8,15 @@
 
 package com.msbmsb.genealoj;
 
+import com.msbmsb.genealoj.GedcomChanges;
 import com.msbmsb.genealoj.GenealoJ;
+import com.msbmsb.genealoj.ParseOptions;
 
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import junit.framework.Test;
@@ -56,5 +63,123 @@ public class GenealoJTest
         }
         assertTrue(gedcom.getNodes("INDI").size() == 3);
     }
-}
 
+    /**
+     * An update re-parses the changed records and leaves the tree linked as
+     * a fresh load of the new file would be
+     */
+    public void testUpdate() throws Exception
+    {
+        File file = Fixtures.write("0 HEAD\n1 CHAR ASCII\n"
+              + "0 @I1@ INDI\n1 NAME Abe /A/\n1 FAMS @F1@\n"
+              + "0 @I2@ INDI\n1 NAME Bea /B/\n1 FAMS @F1@\n"
+              + "0 @I3@ INDI\n1 NAME Cy /A/\n1 FAMC @F1@\n1 FAMS @F2@\n"
+              + "0 @I4@ INDI\n1 NAME Di /D/\n1 FAMS @F2@\n"
+              + "0 @I5@ INDI\n1 NAME Ed /A/\n1 FAMC @F2@\n"
+              + "0 @F1@ FAM\n1 HUSB @I1@\n1 WIFE @I2@\n1 CHIL @I3@\n"
+              + "0 @F2@ FAM\n1 HUSB @I3@\n1 WIFE @I4@\n1 CHIL @I5@\n"
+              + "0 TRLR\n");
+        GenealoJ gedcom = new GenealoJ(file, new ParseOptions().trackChanges(true));
+        assertTrue(gedcom.update().isEmpty());
+
+        // rename Cy, drop Ed, add Flo as a second child of F1
+        Fixtures.write(file, "0 HEAD\n1 CHAR ASCII\n"
+              + "0 @I1@ INDI\n1 NAME Abe /A/\n1 FAMS @F1@\n"
+              + "0 @I2@ INDI\n1 NAME Bea /B/\n1 FAMS @F1@\n"
+              + "0 @I3@ INDI\n1 NAME Cyrus /A/\n1 FAMC @F1@\n1 FAMS @F2@\n"
+              + "0 @I4@ INDI\n1 NAME Di /D/\n1 FAMS @F2@\n"
+              + "0 @F1@ FAM\n1 HUSB @I1@\n1 WIFE @I2@\n1 CHIL @I3@\n1 CHIL @I6@\n"
+              + "0 @F2@ FAM\n1 HUSB @I3@\n1 WIFE @I4@\n1 CHIL @I5@\n"
+              + "0 @I6@ INDI\n1 NAME Flo /A/\n1 FAMC @F1@\n"
+              + "0 TRLR\n");
+        GedcomChanges changes = gedcom.update();
+        assertEquals(Arrays.asList("@I6@"), changes.added());
+        assertEquals(Arrays.asList("@I3@", "@F1@"), changes.changed());
+        assertEquals(Arrays.asList("@I5@"), changes.removed());
+        assertEquals(2, changes.relinked());
+
+        GenealoJ fresh = new GenealoJ(file);
+        assertEquals(links(fresh), links(gedcom));
+        assertEquals(5, gedcom.getIndividuals().size());
+        assertEquals("Cyrus /A/", gedcom.getRoot().getReferencedNode("@I3@")
+                     .getChildrenWithTag("NAME").get(0).data());
+        assertNull(gedcom.getRoot().getReferencedNode("@I5@"));
+        assertEquals(5, gedcom.getPedigreeGraph().size());
+
+        try {
+          new GenealoJ(file).update();
+          fail("update without tracked changes");
+        } catch(IllegalStateException ise) {
+          assertTrue(ise.getMessage().contains("trackChanges(true)"));
+        }
+
+        // UTF-16 files are loaded, but not tracked
+        file = Fixtures.write("\uFEFF0 HEAD\n1 CHAR UNICODE\n0 @I1@ INDI\n0 TRLR\n",
+                              Charset.forName("UTF-16BE"));
+        GenealoJ utf16 = new GenealoJ(file, new ParseOptions().trackChanges(true));
+        assertEquals(1, utf16.getIndividuals().size());
+        try {
+          utf16.update();
+          fail("update of a UTF-16 file");
+        } catch(IllegalStateException ise) {
+          assertTrue(ise.getMessage(), ise.getMessage().contains("UTF-16"));
+        }
+    }
+
+    /**
+     * A tree read from a snapshot is not linked at load, so it refuses to
+     * update instead of failing on the missing LinkReport
+     */
+    public void testSnapshotUpdate() throws Exception
+    {
+        String ged = "0 HEAD\n1 CHAR ASCII\n"
+              + "0 @I1@ INDI\n1 NAME Abe /A/\n0 @I2@ INDI\n1 NAME Cy /A/\n"
+              + "0 @F1@ FAM\n1 HUSB @I1@\n1 CHIL @I2@\n"
+              + "0 TRLR\n";
+        File file = Fixtures.write(ged);
+        File snapshot = Fixtures.temporary();
+        ParseOptions options = new ParseOptions().snapshot(snapshot).trackChanges(true);
+        // the first load parses the file and writes the snapshot
+        GenealoJ parsed = new GenealoJ(file, options);
+        assertNotNull(parsed.getLinkReport());
+
+        GenealoJ loaded = new GenealoJ(file, options);
+        assertNull(loaded.getLinkReport());
+        Fixtures.write(file, ged.replace("Cy /A/", "Cyrus /A/"));
+        try {
+          loaded.update();
+          fail("update of a load read from a snapshot");
+        } catch(IllegalStateException ise) {
+          assertTrue(ise.getMessage(), ise.getMessage().contains("snapshot"));
+        }
+
+        // the parsed load still updates
+        assertEquals(Arrays.asList("@I2@"), parsed.update().changed());
+        assertEquals(1, parsed.getLinkReport().families());
+    }
+
+    /**
+     * @return the sorted links of every individual, by full name
+     */
+    private static List<String> links(GenealoJ gedcom)
+    {
+        List<String> links = new ArrayList<String>();
+        for(IndividualNode i : gedcom.getIndividuals()) {
+          links.add(i.getFullName() + " parents " + names(i.getParents())
+                    + " children " + names(i.getChildren())
+                    + " spouses " + names(i.getSpouses()));
+        }
+        Collections.sort(links);
+        return links;
+    }
+
+    private static List<String> names(List<IndividualNode> individuals)
+    {
+        List<String> names = new ArrayList<String>();
+        for(IndividualNode i : individuals) {
+          names.add(i.getFullName());
+        }
+        Collections.sort(names);
+        return names;
+    }
+}
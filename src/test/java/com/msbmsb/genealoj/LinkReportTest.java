@@ -0,0 +1,149 @@
+/******************************************************************************
+* LinkReportTest
+* Simple junit test for linking individuals and its LinkReport
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj;
+
+import com.msbmsb.genealoj.GedcomChanges;
+import com.msbmsb.genealoj.GenealoJ;
+import com.msbmsb.genealoj.IndividualNode;
+import com.msbmsb.genealoj.LinkReport;
+import com.msbmsb.genealoj.ParseOptions;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for LinkReport.
+ */
+public class LinkReportTest
+    extends TestCase
+{
+    private static final String GEDCOM = "0 HEAD\n"
+        + "0 @I1@ INDI\n1 NAME Al /A/\n"
+        + "0 @I2@ INDI\n1 NAME Bea /A/\n"
+        + "0 @I3@ INDI\n1 NAME Cy /A/\n"
+        + "0 @N1@ NOTE a note\n"
+        // the same couple twice, Cy listed twice
+        + "0 @F1@ FAM\n1 HUSB @I1@\n1 WIFE @I2@\n1 CHIL @I3@\n1 CHIL @I3@\n"
+        + "1 CHIL @I9@\n1 CHIL @N1@\n1 CHIL I3\n"
+        + "0 @F2@ FAM\n1 CHIL @I3@\n1 WIFE @I2@\n1 HUSB @I1@\n1 HUSB\n"
+        + "0 TRLR\n";
+
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public LinkReportTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( LinkReportTest.class );
+    }
+
+    /**
+     * References that cannot be linked are reported, links are made once
+     */
+    public void testReport() throws Exception
+    {
+        GenealoJ gedcom = new GenealoJ(Fixtures.write(GEDCOM));
+        LinkReport report = gedcom.getLinkReport();
+        assertEquals(2, report.families());
+        assertEquals(Arrays.asList("UNRESOLVED CHIL @I9@ in @F1@", "MISTYPED CHIL @N1@ in @F1@",
+                                   "MALFORMED CHIL I3 in @F1@", "MALFORMED HUSB null in @F2@"),
+                     strings(report.problems()));
+        assertFalse(report.isClean());
+        // Al and Bea: spouse and child each; Cy: two parents
+        assertEquals(6, report.links());
+        // the second CHIL @I3@, and all six again through @F2@
+        assertEquals(7, report.duplicates());
+
+        IndividualNode al = (IndividualNode) gedcom.getRoot().getReferencedNode("@I1@");
+        IndividualNode cy = (IndividualNode) gedcom.getRoot().getReferencedNode("@I3@");
+        assertEquals(1, al.getSpouses().size());
+        assertEquals(1, al.getChildren().size());
+        assertEquals(2, cy.getParents().size());
+        assertSame(al, cy.getParents().get(0));
+        assertEquals(2, al.familiesAsHead().size());
+        assertEquals(2, cy.familiesAsChild().size());
+
+        // linking again adds nothing
+        LinkReport again = gedcom.linkIndividuals(gedcom.getRoot());
+        assertEquals(0, again.links());
+        assertEquals(1, al.getChildren().size());
+        assertEquals(2, cy.getParents().size());
+    }
+
+    /**
+     * Unlinking one of two families that make the same link keeps the link
+     */
+    public void testUpdate() throws Exception
+    {
+        File file = Fixtures.write(GEDCOM);
+        GenealoJ gedcom = new GenealoJ(file, new ParseOptions().trackChanges(true));
+        Fixtures.write(file, GEDCOM.replace("0 @F2@ FAM\n1 CHIL @I3@\n", "0 @F2@ FAM\n"));
+        assertEquals(Arrays.asList("@F2@"), gedcom.update().changed());
+        IndividualNode cy = (IndividualNode) gedcom.getRoot().getReferencedNode("@I3@");
+        assertEquals(2, cy.getParents().size());
+        assertEquals(1, cy.familiesAsChild().size());
+
+        Fixtures.write(file, GEDCOM.replace("0 @F2@ FAM\n1 CHIL @I3@\n", "0 @F2@ FAM\n")
+                .replace("1 CHIL @I3@\n1 CHIL @I3@\n", ""));
+        gedcom.update();
+        assertEquals(0, cy.getParents().size());
+        IndividualNode al = (IndividualNode) gedcom.getRoot().getReferencedNode("@I1@");
+        assertEquals(0, al.getChildren().size());
+        assertEquals(1, al.getSpouses().size());
+    }
+
+    /**
+     * An update reports the problems of the families it relinks
+     */
+    public void testUpdateReport() throws Exception
+    {
+        File file = Fixtures.write(GEDCOM);
+        GenealoJ gedcom = new GenealoJ(file, new ParseOptions().trackChanges(true));
+        Fixtures.write(file, GEDCOM.replace("1 CHIL @I3@\n1 WIFE @I2@", "1 CHIL @I7@\n1 WIFE @I2@"));
+        GedcomChanges changes = gedcom.update();
+        assertEquals(1, changes.relinked());
+        LinkReport report = gedcom.getLinkReport();
+        assertEquals(2, report.families());
+        assertEquals(Arrays.asList("UNRESOLVED CHIL @I9@ in @F1@", "MISTYPED CHIL @N1@ in @F1@",
+                                   "MALFORMED CHIL I3 in @F1@", "MALFORMED HUSB null in @F2@",
+                                   "UNRESOLVED CHIL @I7@ in @F2@"),
+                     strings(report.problems()));
+
+        // removing the family drops its problems
+        Fixtures.write(file, GEDCOM.substring(0, GEDCOM.indexOf("0 @F2@")) + "0 TRLR\n");
+        gedcom.update();
+        report = gedcom.getLinkReport();
+        assertEquals(1, report.families());
+        assertEquals(3, report.problems().size());
+    }
+
+    private static List<String> strings(List<LinkReport.Problem> problems)
+    {
+        List<String> strings = new ArrayList<String>();
+        for(LinkReport.Problem p : problems) {
+          strings.add(p.toString());
+        }
+        return strings;
+    }
+}
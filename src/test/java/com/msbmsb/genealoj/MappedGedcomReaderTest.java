@@ -0,0 +1,97 @@
+/******************************************************************************
+* MappedGedcomReaderTest
+* Simple junit test for the memory-mapped MappedGedcomReader class
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj;
+
+import com.msbmsb.genealoj.GedcomNode;
+import com.msbmsb.genealoj.GedcomReader;
+import com.msbmsb.genealoj.GenealoJ;
+import com.msbmsb.genealoj.MappedGedcomReader;
+import com.msbmsb.genealoj.ParseOptions;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for MappedGedcomReader.
+ */
+public class MappedGedcomReaderTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public MappedGedcomReaderTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( MappedGedcomReaderTest.class );
+    }
+
+    /**
+     * A mapped load builds the same tree as the buffered load
+     */
+    public void testMappedLoad()
+    {
+        String testFile = "example/example.ged";
+        GenealoJ buffered = new GenealoJ(testFile);
+        GenealoJ mapped = new GenealoJ(testFile,
+            new ParseOptions().memoryMapped(true));
+        assertEquals(3, mapped.getNodes("INDI").size());
+        assertEquals(buffered.toString(), mapped.toString());
+    }
+
+    /**
+     * Lines crossing small mapping windows, mixed line endings and
+     * non-ASCII data are read the same as through a BufferedReader
+     */
+    public void testWindows() throws Exception
+    {
+        StringBuilder sb = new StringBuilder();
+        for(int i = 0; i < 40; i++) {
+          sb.append("0 @I").append(i).append("@ INDI\r\n");
+          sb.append("1 NAME J\u00f6rg").append(i).append(" /M\u00fcller/\n");
+          sb.append("1 BIRT\r");
+          sb.append("2 PLAC Z\u00fcrich\r\n\r\n");
+        }
+        sb.append("0 TRLR");
+        Charset utf8 = Charset.forName("UTF-8");
+        File file = Fixtures.write(sb.toString(), utf8);
+
+        GedcomReader expected = new GedcomReader(
+            new BufferedReader(new StringReader(sb.toString())));
+        MappedGedcomReader actual = new MappedGedcomReader(
+            new FileInputStream(file).getChannel(), 0, -1, utf8, 64);
+        int records = 0;
+        GedcomNode e;
+        while((e = expected.nextRecord()) != null) {
+          GedcomNode a = actual.nextRecord();
+          assertNotNull(a);
+          assertEquals(e.toString(), a.toString());
+          records++;
+        }
+        assertNull(actual.nextRecord());
+        actual.close();
+        assertEquals(41, records);
+    }
+}
@@ -0,0 +1,117 @@
+/******************************************************************************
+* ParallelGedcomReaderTest
+* Simple junit test for the ParallelGedcomReader class
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj;
+
+import com.msbmsb.genealoj.GedcomNode;
+import com.msbmsb.genealoj.GedcomReader;
+import com.msbmsb.genealoj.GenealoJ;
+import com.msbmsb.genealoj.ParallelGedcomReader;
+import com.msbmsb.genealoj.ParseOptions;
+import com.msbmsb.genealoj.TreeBuilder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for ParallelGedcomReader.
+ */
+public class ParallelGedcomReaderTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public ParallelGedcomReaderTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( ParallelGedcomReaderTest.class );
+    }
+
+    /**
+     * Chunks start on level=0 lines and records come back in file order
+     */
+    public void testChunks() throws Exception
+    {
+        File file = Fixtures.temporary();
+        FileOutputStream out = new FileOutputStream(file);
+        out.write("0 HEAD\n1 CHAR UTF-8\n".getBytes("US-ASCII"));
+        for(int i = 0; i < 200; i++) {
+          String rec = "0 @I" + i + "@ INDI\n1 NAME Person" + i + " /Family"
+              + (i % 7) + "/\n1 BIRT\n2 DATE " + (1800 + i) + "\n"
+              + "10 NOTE deep " + i + "\r\n";
+          out.write(rec.getBytes("US-ASCII"));
+        }
+        out.write("0 TRLR\n".getBytes("US-ASCII"));
+        out.close();
+
+        Charset ascii = Charset.forName("US-ASCII");
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        try {
+          ParallelGedcomReader parallel =
+              new ParallelGedcomReader(file, ascii, 3, pool, 7);
+          long[] bounds = parallel.split();
+          assertEquals(8, bounds.length);
+          RandomAccessFile raf = new RandomAccessFile(file, "r");
+          for(int i = 1; i < bounds.length - 1; i++) {
+            raf.seek(bounds[i]);
+            assertEquals('0', (char) raf.read());
+            assertEquals(' ', (char) raf.read());
+          }
+          raf.close();
+
+          GedcomNode root = new GedcomNode(-1, "ROOT");
+          parallel.parse(new TreeBuilder(root));
+
+          GedcomReader sequential = new GedcomReader(file);
+          List<GedcomNode> indis = root.getChildrenWithTag("INDI");
+          assertEquals(200, indis.size());
+          int i = 0;
+          GedcomNode record;
+          while((record = sequential.nextRecord()) != null) {
+            if(record.tag().equals("INDI")) {
+              assertEquals(record.toString(), indis.get(i++).toString());
+            }
+          }
+          sequential.close();
+        } finally {
+          pool.shutdown();
+        }
+    }
+
+    /**
+     * A parallel load builds and links the same tree as a sequential one
+     */
+    public void testParallelLoad()
+    {
+        String testFile = "example/example.ged";
+        GenealoJ sequential = new GenealoJ(testFile);
+        GenealoJ parallel = new GenealoJ(testFile,
+            new ParseOptions().parallelism(4));
+        assertEquals(sequential.toString(), parallel.toString());
+        assertEquals(2, Utils.getRootIndividuals(parallel.getRoot()).size());
+    }
+}
@@ -0,0 +1,132 @@
+/******************************************************************************
+* ParseMetricsTest
+* Simple junit test for the load metrics and their listener
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj;
+
+import com.msbmsb.genealoj.GedcomGenerator;
+import com.msbmsb.genealoj.GenealoJ;
+import com.msbmsb.genealoj.ParseListener;
+import com.msbmsb.genealoj.ParseMetrics;
+import com.msbmsb.genealoj.ParseOptions;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for ParseMetrics.
+ */
+public class ParseMetricsTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public ParseMetricsTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( ParseMetricsTest.class );
+    }
+
+    /**
+     * The listener is told of the load and the counts are exact
+     */
+    public void testCounts() throws Exception
+    {
+        final List<String> calls = new ArrayList<String>();
+        ParseOptions options = new ParseOptions().listener(new ParseListener() {
+            public void loadStarted(File file) {
+              calls.add("started " + file.getName());
+            }
+            public void loadFinished(File file, ParseMetrics metrics) {
+              calls.add("finished " + metrics.records());
+            }
+          });
+        File file = new File("example/example.ged");
+        GenealoJ gedcom = new GenealoJ(file, options);
+        ParseMetrics metrics = gedcom.getMetrics();
+        assertEquals(2, calls.size());
+        assertEquals("started example.ged", calls.get(0));
+        assertEquals("finished 6", calls.get(1));
+
+        assertEquals(34, metrics.lines());
+        assertEquals(34, metrics.nodes());
+        assertEquals(file.length(), metrics.bytes());
+        assertEquals(9, metrics.largestRecord());
+        assertEquals(Long.valueOf(3), metrics.recordCounts().get("INDI"));
+        assertEquals(Long.valueOf(1), metrics.recordCounts().get("FAM"));
+        assertEquals(1, metrics.families());
+        assertEquals(0, metrics.unresolvedReferences());
+        // line 0 is always timed
+        assertTrue(metrics.nanos(ParseMetrics.Phase.TOKENIZE) > 0);
+        assertTrue(metrics.nanos(ParseMetrics.Phase.LINK) > 0);
+        assertTrue(metrics.loadNanos() >= metrics.parseNanos());
+        assertTrue(metrics.linesPerSecond() > 0);
+
+        assertNull(new GenealoJ(file).getMetrics());
+    }
+
+    /**
+     * References to missing individuals are counted, once per load
+     */
+    public void testUnresolved() throws Exception
+    {
+        File file = Fixtures.write("0 HEAD\n0 @I1@ INDI\n1 NAME A /B/\n"
+                                   + "0 @F1@ FAM\n1 HUSB @I1@\n1 WIFE @I9@\n1 CHIL @I8@\n"
+                                   + "0 TRLR\n");
+        ParseOptions options = new ParseOptions().trackChanges(true).listener(new NoListener());
+        GenealoJ gedcom = new GenealoJ(file, options);
+        assertEquals(2, gedcom.getMetrics().unresolvedReferences());
+        gedcom.linkIndividuals(gedcom.getRoot());
+        assertEquals(2, gedcom.getMetrics().unresolvedReferences());
+    }
+
+    /**
+     * A parallel load adds up the counts of its chunks
+     */
+    public void testParallel() throws Exception
+    {
+        File file = Fixtures.temporary();
+        new GedcomGenerator().individuals(2000).write(file);
+        ParseMetrics sequential = new GenealoJ(file,
+            new ParseOptions().listener(new NoListener())).getMetrics();
+        ParseMetrics parallel = new GenealoJ(file,
+            new ParseOptions().parallelism(3).listener(new NoListener())).getMetrics();
+        assertEquals(sequential.lines(), parallel.lines());
+        assertEquals(sequential.nodes(), parallel.nodes());
+        assertEquals(sequential.recordCounts(), parallel.recordCounts());
+        assertEquals(sequential.largestRecord(), parallel.largestRecord());
+        assertEquals(2000, parallel.recordCounts().get("INDI").longValue());
+    }
+
+    private static class NoListener implements ParseListener
+    {
+        public void loadStarted(File file)
+        {
+            return;
+        }
+
+        public void loadFinished(File file, ParseMetrics metrics)
+        {
+            return;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/******************************************************************************
+* PedigreeGraphTest
+* Simple junit test for the PedigreeGraph class
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj;
+
+import com.msbmsb.genealoj.GenealoJ;
+import com.msbmsb.genealoj.IndividualNode;
+import com.msbmsb.genealoj.PedigreeGraph;
+
+import java.io.File;
+import java.util.Collections;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for PedigreeGraph.
+ */
+public class PedigreeGraphTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public PedigreeGraphTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( PedigreeGraphTest.class );
+    }
+
+    /**
+     * Edges mirror the linked IndividualNodes
+     */
+    public void testEdges()
+    {
+        GenealoJ gedcom = new GenealoJ("example/example.ged");
+        PedigreeGraph graph = gedcom.getPedigreeGraph();
+        assertEquals(3, graph.size());
+        for(IndividualNode indi : gedcom.getIndividuals()) {
+          int id = graph.id(indi);
+          assertTrue(id >= 0);
+          assertSame(indi, graph.individual(id));
+          assertEquals(indi.getParents().size(), graph.parentCount(id));
+          for(int k = 0; k < graph.parentCount(id); k++) {
+            assertSame(indi.getParents().get(k), graph.individual(graph.parent(id, k)));
+          }
+          assertEquals(indi.getChildren().size(), graph.childCount(id));
+          assertEquals(indi.getSpouses().size(), graph.spouseCount(id));
+        }
+    }
+
+    /**
+     * Traversals follow generations and reuse one workspace
+     */
+    public void testTraversals() throws Exception
+    {
+        // grandparents 1+2, parents 3+4, children 5 and 6; 7 is unrelated
+        StringBuilder ged = new StringBuilder("0 HEAD\n");
+        for(int i = 1; i <= 7; i++) {
+          ged.append("0 @I" + i + "@ INDI\n1 NAME P" + i + " /Family/\n");
+        }
+        ged.append("0 @F1@ FAM\n1 HUSB @I1@\n1 WIFE @I2@\n1 CHIL @I3@\n");
+        ged.append("0 @F2@ FAM\n1 HUSB @I3@\n1 WIFE @I4@\n1 CHIL @I5@\n1 CHIL @I6@\n");
+        ged.append("0 TRLR\n");
+        File file = Fixtures.write(ged.toString());
+
+        GenealoJ gedcom = new GenealoJ(file);
+        PedigreeGraph graph = gedcom.getPedigreeGraph();
+        PedigreeGraph.Workspace ws = new PedigreeGraph.Workspace();
+        int child = graph.id((IndividualNode) gedcom.getRoot().getReferencedNode("@I5@"));
+        int grandfather = graph.id((IndividualNode) gedcom.getRoot().getReferencedNode("@I1@"));
+        int stranger = graph.id((IndividualNode) gedcom.getRoot().getReferencedNode("@I7@"));
+
+        assertEquals(4, graph.ancestors(child, PedigreeGraph.ALL_GENERATIONS, ws));
+        assertEquals(1, ws.depth(0));
+        assertEquals(2, ws.depth(3));
+        assertEquals(2, graph.ancestors(child, 1, ws));
+
+        assertEquals(3, graph.descendants(grandfather, PedigreeGraph.ALL_GENERATIONS, ws));
+        assertEquals(1, graph.descendants(grandfather, 1, ws));
+        assertEquals("@I3@", graph.individual(ws.get(0)).reference());
+
+        // everyone but the stranger, through parent, child and spouse links
+        assertEquals(5, graph.relatives(child, PedigreeGraph.ALL_GENERATIONS, ws));
+        assertEquals(5, ws.count());
+        assertEquals(0, graph.relatives(stranger, PedigreeGraph.ALL_GENERATIONS, ws));
+
+        // a graph over part of the individuals has IDs of its own
+        IndividualNode grandchild = graph.individual(child);
+        PedigreeGraph part = new PedigreeGraph(Collections.singletonList(grandchild));
+        assertEquals(0, part.id(grandchild));
+        assertEquals(-1, part.id(graph.individual(grandfather)));
+        assertEquals(child, graph.id(grandchild));
+        assertEquals(0, part.ancestors(0, PedigreeGraph.ALL_GENERATIONS, ws));
+        assertEquals(4, graph.ancestors(child, PedigreeGraph.ALL_GENERATIONS, ws));
+    }
+}
@@ -0,0 +1,126 @@
+/******************************************************************************
+* PedigreeTraversalTest
+* Simple junit test for the PedigreeTraversal class
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj;
+
+import com.msbmsb.genealoj.GenealoJ;
+import com.msbmsb.genealoj.IndividualNode;
+import com.msbmsb.genealoj.PedigreeGraph;
+import com.msbmsb.genealoj.PedigreeTraversal;
+import com.msbmsb.genealoj.Utils;
+
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for PedigreeTraversal.
+ */
+public class PedigreeTraversalTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public PedigreeTraversalTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( PedigreeTraversalTest.class );
+    }
+
+    private static IndividualNode person(GenealoJ gedcom, String ref)
+    {
+        return (IndividualNode) gedcom.getRoot().getReferencedNode(ref);
+    }
+
+    /**
+     * Generations are limited and cousin marriage shows as collapse
+     */
+    public void testAncestors() throws Exception
+    {
+        // child of two cousins, who share grandparents g1 and g2
+        GenealoJ gedcom = new GenealoJ(Fixtures.write("0 HEAD\n"
+            + "0 @G1@ INDI\n1 NAME G1 /Smith/\n0 @G2@ INDI\n1 NAME G2 /Jones/\n"
+            + "0 @A@ INDI\n1 NAME A /Smith/\n0 @B@ INDI\n1 NAME B /Smith/\n"
+            + "0 @M@ INDI\n1 NAME M /Smith/\n0 @F@ INDI\n1 NAME F /Brown/\n"
+            + "0 @X@ INDI\n1 NAME X /Smith/\n"
+            + "0 @F1@ FAM\n1 HUSB @G1@\n1 WIFE @G2@\n1 CHIL @A@\n1 CHIL @B@\n"
+            + "0 @F2@ FAM\n1 HUSB @A@\n1 CHIL @M@\n"
+            + "0 @F3@ FAM\n1 HUSB @B@\n1 CHIL @F@\n"
+            + "0 @F4@ FAM\n1 HUSB @M@\n1 WIFE @F@\n1 CHIL @X@\n"
+            + "0 TRLR\n"));
+        IndividualNode g1 = person(gedcom, "@G1@");
+        IndividualNode g2 = person(gedcom, "@G2@");
+        IndividualNode a = person(gedcom, "@A@");
+        IndividualNode b = person(gedcom, "@B@");
+        IndividualNode m = person(gedcom, "@M@");
+        IndividualNode f = person(gedcom, "@F@");
+        IndividualNode x = person(gedcom, "@X@");
+        // graphs built over the pedigree, or over part of it, do not change
+        // which individuals a walk counts as visited
+        gedcom.getPedigreeGraph();
+        new PedigreeGraph(Collections.singletonList(m));
+
+        assertEquals(2, Utils.getAncestors(x, 1).size());
+        List<IndividualNode> all = Utils.getAncestors(x, PedigreeTraversal.ALL_GENERATIONS);
+        assertEquals(6, all.size());
+        assertSame(g1, all.get(4));
+
+        PedigreeTraversal.Walker walker = PedigreeTraversal.ancestors(x).iterator();
+        int last = 0;
+        while(walker.hasNext()) {
+          walker.next();
+          assertTrue(walker.generation() >= last);
+          last = walker.generation();
+        }
+        assertEquals(3, last);
+
+        List<IndividualNode> dfs = PedigreeTraversal.ancestors(x).depthFirst(true).toList();
+        assertSame(m, dfs.get(0));
+        assertSame(a, dfs.get(1));
+        assertSame(g1, dfs.get(2));
+        assertSame(f, dfs.get(4));
+
+        List<IndividualNode> collapse = PedigreeTraversal.ancestors(x).collapse();
+        assertEquals(2, collapse.size());
+        assertTrue(collapse.contains(g1));
+        assertEquals(0, PedigreeTraversal.ancestors(x).generations(2).collapse().size());
+
+        assertSame(g1, Utils.getSurnameRoot(x));
+        assertEquals(5, Utils.getDescendants(g1, PedigreeTraversal.ALL_GENERATIONS).size());
+    }
+
+    /**
+     * A cycle in bad data terminates
+     */
+    public void testCycle() throws Exception
+    {
+        GenealoJ gedcom = new GenealoJ(Fixtures.write("0 HEAD\n"
+            + "0 @P@ INDI\n1 NAME P /Loop/\n0 @Q@ INDI\n1 NAME Q /Loop/\n"
+            + "0 @F1@ FAM\n1 HUSB @Q@\n1 CHIL @P@\n"
+            + "0 @F2@ FAM\n1 HUSB @P@\n1 CHIL @Q@\n"
+            + "0 TRLR\n"));
+        IndividualNode p = person(gedcom, "@P@");
+        IndividualNode q = person(gedcom, "@Q@");
+        assertEquals(1, Utils.getAncestors(p, PedigreeTraversal.ALL_GENERATIONS).size());
+        assertEquals(1, PedigreeTraversal.descendants(p).collapse().size());
+        assertSame(q, Utils.getSurnameRoot(p));
+    }
+}
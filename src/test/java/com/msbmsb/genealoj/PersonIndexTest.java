@@ -0,0 +1,88 @@
+/******************************************************************************
+* PersonIndexTest
+* Simple junit test for the PersonIndex class
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj;
+
+import com.msbmsb.genealoj.GenealoJ;
+import com.msbmsb.genealoj.IndividualNode;
+import com.msbmsb.genealoj.PersonIndex;
+import com.msbmsb.genealoj.Utils;
+
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for PersonIndex.
+ */
+public class PersonIndexTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public PersonIndexTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( PersonIndexTest.class );
+    }
+
+    /**
+     * Name and place lookups on the example file
+     */
+    public void testLookups()
+    {
+        GenealoJ gedcom = new GenealoJ("example/example.ged");
+        PersonIndex index = gedcom.getPersonIndex();
+        assertSame(index, gedcom.getPersonIndex());
+
+        assertEquals(3, index.getBySurname("seinfeld").size());
+        assertEquals(3, index.getBySurnamePrefix("Sein").size());
+        assertEquals(0, index.getBySurnamePrefix("Seinz").size());
+        assertEquals(3, index.getBySurnameSound("Sinefeld").size());
+        assertEquals(0, index.getBySurname("Costanza").size());
+
+        List<IndividualNode> jerry = index.getByGivenName("JERRY");
+        assertEquals(1, jerry.size());
+        assertEquals("@P-499082364@", jerry.get(0).reference());
+
+        assertEquals(3, index.getByPlace("new york ,  NY").size());
+        assertEquals("BIRT", index.getEventsAtPlace("New York, NY").get(0).tag());
+        assertEquals(1, index.getPlaces().size());
+        assertEquals("new york,ny", index.getPlaces().get(0));
+    }
+
+    /**
+     * Soundex codes and place normalization
+     */
+    public void testKeys()
+    {
+        assertEquals("R163", Utils.soundex("Robert"));
+        assertEquals("R163", Utils.soundex("Rupert"));
+        assertEquals("A261", Utils.soundex("Ashcraft"));
+        assertEquals("T522", Utils.soundex("Tymczak"));
+        assertEquals("P236", Utils.soundex("Pfister"));
+        assertEquals("L000", Utils.soundex("Lee"));
+        assertEquals("O254", Utils.soundex("O'Connell"));
+        assertEquals("", Utils.soundex("--"));
+
+        assertEquals("new york,ny,usa", Utils.normalizePlace(" New  York , NY,USA "));
+        assertEquals("", Utils.normalizePlace("  "));
+    }
+}
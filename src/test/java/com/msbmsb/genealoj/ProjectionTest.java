@@ -0,0 +1,124 @@
+/******************************************************************************
+* ProjectionTest
+* Simple junit test for projection parsing
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj;
+
+import com.msbmsb.genealoj.GedcomNode;
+import com.msbmsb.genealoj.GedcomReader;
+import com.msbmsb.genealoj.GenealoJ;
+import com.msbmsb.genealoj.IndividualNode;
+import com.msbmsb.genealoj.ParseOptions;
+import com.msbmsb.genealoj.Projection;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for Projection.
+ */
+public class ProjectionTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public ProjectionTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( ProjectionTest.class );
+    }
+
+    private static String project(String spec, String ged) throws Exception
+    {
+        GedcomReader reader = new GedcomReader(new BufferedReader(new StringReader(ged)));
+        reader.projection(new Projection(spec));
+        StringBuilder sb = new StringBuilder();
+        GedcomNode record;
+        while((record = reader.nextRecord()) != null) {
+          sb.append(record.toString());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Only selected paths, their subtrees and their ancestors are loaded
+     */
+    public void testPaths() throws Exception
+    {
+        String ged = "0 HEAD\n1 CHAR UTF-8\n"
+            + "0 @I1@ INDI\n1 NAME A /B/\n2 GIVN A\n1 BIRT\n2 DATE 1900\n2 PLAC X\n"
+            + "1 DEAT\n2 DATE 1950\n1 NOTE skip\n2 CONC me\n"
+            + "0 @F1@ FAM\n1 HUSB @I1@\n1 _CUSTOM y\n"
+            + "0 TRLR\n";
+
+        String names = project("INDI.NAME", ged);
+        assertTrue(names.contains("GIVN"));
+        assertFalse(names.contains("BIRT"));
+        assertFalse(names.contains("HEAD"));
+        assertFalse(names.contains("FAM"));
+
+        String dates = project("INDI.*.DATE, INDI.BIRT.PLAC", ged);
+        assertTrue(dates.contains("1900"));
+        assertTrue(dates.contains("1950"));
+        assertTrue(dates.contains("PLAC"));
+        // the wildcard keeps NAME and NOTE, but none of their children
+        assertFalse(dates.contains("GIVN"));
+        assertFalse(dates.contains("CONC"));
+
+        String fams = project("FAM.*", ged);
+        assertEquals(project("FAM", ged), fams);
+        assertTrue(fams.contains("_CUSTOM"));
+        assertFalse(fams.contains("INDI"));
+
+        assertEquals(project("*", ged), project("HEAD, INDI, FAM, TRLR", ged));
+
+        try {
+          new Projection("INDI..NAME");
+          fail("empty part accepted");
+        } catch(IllegalArgumentException iae) {
+          // expected
+        }
+    }
+
+    /**
+     * A projected load still links individuals through their families
+     */
+    public void testLoad()
+    {
+        String testFile = "example/example.ged";
+        GenealoJ gedcom = new GenealoJ(testFile,
+            new ParseOptions().projection("INDI.NAME, INDI.FAMS, FAM.*"));
+        List<IndividualNode> indis = gedcom.getIndividuals();
+        assertEquals(3, indis.size());
+        assertNull(indis.get(0).getChildrenWithTag("BIRT"));
+        assertEquals("Seinfeld", indis.get(0).getSurname());
+        assertEquals(2, indis.get(2).getParents().size());
+        assertNull(gedcom.getNodes("HEAD"));
+
+        GenealoJ mapped = new GenealoJ(testFile, new ParseOptions()
+            .projection("INDI.NAME, INDI.FAMS, FAM.*").memoryMapped(true));
+        assertEquals(gedcom.toString(), mapped.toString());
+        GenealoJ parallel = new GenealoJ(testFile, new ParseOptions()
+            .projection("INDI.NAME, INDI.FAMS, FAM.*").parallelism(2));
+        assertEquals(gedcom.toString(), parallel.toString());
+    }
+}
@@ -0,0 +1,154 @@
+/******************************************************************************
+* RecordIndexTest
+* Simple junit test for the RecordIndex and lazy loading
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj;
+
+import com.msbmsb.genealoj.EventIndex;
+import com.msbmsb.genealoj.GedcomNode;
+import com.msbmsb.genealoj.GenealoJ;
+import com.msbmsb.genealoj.ParseOptions;
+import com.msbmsb.genealoj.RecordIndex;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.Charset;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for RecordIndex.
+ */
+public class RecordIndexTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public RecordIndexTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( RecordIndexTest.class );
+    }
+
+    /**
+     * Offsets cover every record, which parse on access into a bounded cache
+     */
+    public void testIndex() throws Exception
+    {
+        File file = Fixtures.temporary();
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(new byte[] { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF });
+        out.write("0 HEAD\r\n1 CHAR UTF-8\r\n".getBytes("US-ASCII"));
+        for(int i = 0; i < 50; i++) {
+          out.write(("0 @I" + i + "@ INDI\n1 NAME P" + i + " /F/\n"
+                     + "10 NOTE 0 not a record\n").getBytes("US-ASCII"));
+        }
+        out.write("0 TRLR".getBytes("US-ASCII"));
+        out.close();
+
+        RecordIndex index = new RecordIndex(file, Charset.forName("UTF-8"), 5);
+        try {
+          assertEquals(52, index.size());
+          assertEquals("HEAD", index.tag(0));
+          assertEquals(3, index.offset(0));
+          assertEquals(22, index.length(0));
+          assertEquals("TRLR", index.tag(51));
+          assertEquals(6, index.length(51));
+          long total = 3;
+          for(int r = 0; r < index.size(); r++) {
+            assertEquals(total, index.offset(r));
+            total += index.length(r);
+          }
+          assertEquals(file.length(), total);
+          byte[] bytes = java.nio.file.Files.readAllBytes(file.toPath());
+          for(int r = 0; r < index.size(); r++) {
+            long hash = 0xcbf29ce484222325L;
+            for(long i = index.offset(r); i < index.offset(r) + index.length(r); i++) {
+              hash = (hash ^ (bytes[(int) i] & 0xff)) * 0x100000001b3L;
+            }
+            assertEquals(hash, index.hash(r));
+          }
+          assertEquals(50, index.records("INDI").length);
+          assertEquals(0, index.cached());
+
+          GedcomNode indi = index.record(index.indexOf("@I7@"));
+          assertEquals("P7 /F/", indi.getChildrenWithTag("NAME").get(0).data());
+          assertSame(indi, index.record(index.indexOf("@I7@")));
+          for(int r = 0; r < index.size(); r++) {
+            index.record(r);
+          }
+          assertEquals(5, index.cached());
+          assertEquals(-1, index.indexOf("@X@"));
+        } finally {
+          index.close();
+        }
+    }
+
+    /**
+     * A lazy load answers the same queries as a full one
+     */
+    public void testLazyLoad() throws Exception
+    {
+        String testFile = "example/example.ged";
+        GenealoJ full = new GenealoJ(testFile);
+        GenealoJ lazy = new GenealoJ(testFile, new ParseOptions().lazy(2));
+        try {
+          assertEquals(full.toString(), lazy.toString());
+          assertEquals(3, lazy.getNodes("INDI").size());
+          assertEquals(3, lazy.getDescendants("PLAC").size());
+          assertEquals(3, lazy.getPersonIndex().getBySurname("Seinfeld").size());
+          assertEquals(full.getRoot().getReferencedNode("@F1@").toString(),
+                       lazy.getRoot().getReferencedNode("@F1@").toString());
+          assertNull(lazy.getRoot().getReferencedNode("@F2@"));
+          assertNull(lazy.getNodes("SOUR"));
+        } finally {
+          lazy.close();
+        }
+    }
+
+    /**
+     * The child groups of a lazy root come from its index, so walks over
+     * them, e.g. the EventIndex, see every record
+     */
+    public void testLazyChildGroups() throws Exception
+    {
+        File file = Fixtures.write("0 HEAD\n"
+            + "0 @I1@ INDI\n1 BIRT\n2 DATE 1801\n"
+            + "0 @I2@ INDI\n1 BIRT\n2 DATE ABT 1830\n"
+            + "0 @F1@ FAM\n1 HUSB @I1@\n1 MARR\n2 DATE 12 JUN 1825\n"
+            + "0 TRLR\n");
+        GedcomNode full = new GenealoJ(file).getRoot();
+        GenealoJ lazy = new GenealoJ(file, new ParseOptions().lazy(2));
+        try {
+          GedcomNode root = lazy.getRoot();
+          assertEquals(5, root.childCount());
+          assertEquals(full.childGroupCount(), root.childGroupCount());
+          for(int i = 0; i < root.childGroupCount(); i++) {
+            assertEquals(full.childGroup(i).toString(), root.childGroup(i).toString());
+          }
+
+          EventIndex events = lazy.getEventIndex();
+          assertEquals(2, events.size("BIRT"));
+          assertEquals(1, events.size("MARR"));
+          assertEquals(1, events.findRecords("BIRT", 1820, 1850).size());
+        } finally {
+          lazy.close();
+        }
+    }
+}
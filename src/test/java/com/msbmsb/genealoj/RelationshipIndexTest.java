@@ -0,0 +1,146 @@
+/******************************************************************************
+* RelationshipIndexTest
+* Simple junit test for the RelationshipIndex class
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj;
+
+import com.msbmsb.genealoj.GedcomNode;
+import com.msbmsb.genealoj.GenealoJ;
+import com.msbmsb.genealoj.IndividualNode;
+import com.msbmsb.genealoj.Relationship;
+import com.msbmsb.genealoj.RelationshipIndex;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for RelationshipIndex.
+ */
+public class RelationshipIndexTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public RelationshipIndexTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( RelationshipIndexTest.class );
+    }
+
+    // two couples of cousins' lines under G1 and G2, C a half sibling
+    // through G1; @F6@ is linked by the test
+    private static final String GEDCOM = "0 HEAD\n"
+        + "0 @G1@ INDI\n0 @G2@ INDI\n0 @A@ INDI\n0 @B@ INDI\n0 @C@ INDI\n"
+        + "0 @A1@ INDI\n0 @B1@ INDI\n0 @B2@ INDI\n0 @O@ INDI\n0 @R@ INDI\n"
+        + "0 @F1@ FAM\n1 HUSB @G1@\n1 WIFE @G2@\n1 CHIL @A@\n1 CHIL @B@\n"
+        + "0 @F2@ FAM\n1 HUSB @G1@\n1 CHIL @C@\n"
+        + "0 @F3@ FAM\n1 HUSB @A@\n1 CHIL @A1@\n"
+        + "0 @F4@ FAM\n1 HUSB @B@\n1 CHIL @B1@\n"
+        + "0 @F5@ FAM\n1 HUSB @B1@\n1 CHIL @B2@\n"
+        + "0 @F6@ FAM\n"
+        + "0 TRLR\n";
+
+    private static IndividualNode person(GenealoJ gedcom, String ref)
+    {
+        return (IndividualNode) gedcom.getRoot().getReferencedNode(ref);
+    }
+
+    private static List<GedcomNode> lines(String tag, String... refs)
+    {
+        List<GedcomNode> lines = new ArrayList<GedcomNode>();
+        for(String ref : refs) {
+          lines.add(new GedcomNode(1, tag, ref));
+        }
+        return lines;
+    }
+
+    /**
+     * Kinship of the example file
+     */
+    public void testExample()
+    {
+        GenealoJ gedcom = new GenealoJ("example/example.ged");
+        List<IndividualNode> indis = gedcom.getIndividuals();
+        RelationshipIndex index = gedcom.getRelationshipIndex();
+        assertEquals(3, index.size());
+        assertEquals("child", index.relate(indis.get(0), indis.get(2)).toString());
+        assertEquals("parent", index.relate(indis.get(2), indis.get(1)).toString());
+        // a couple without common ancestors
+        assertFalse(index.relate(indis.get(0), indis.get(1)).isRelated());
+    }
+
+    /**
+     * Cousins, removal, half relations and incremental additions
+     */
+    public void testKinship() throws Exception
+    {
+        GenealoJ gedcom = new GenealoJ(Fixtures.write(GEDCOM));
+        IndividualNode g1 = person(gedcom, "@G1@");
+        IndividualNode g2 = person(gedcom, "@G2@");
+        IndividualNode a = person(gedcom, "@A@");
+        IndividualNode b = person(gedcom, "@B@");
+        IndividualNode c = person(gedcom, "@C@");
+        IndividualNode a1 = person(gedcom, "@A1@");
+        IndividualNode b1 = person(gedcom, "@B1@");
+        IndividualNode b2 = person(gedcom, "@B2@");
+        IndividualNode other = person(gedcom, "@O@");
+
+        List<IndividualNode> people = new ArrayList<IndividualNode>();
+        people.add(b2);
+        people.add(a1);
+        people.add(c);
+        people.add(other);
+        RelationshipIndex index = new RelationshipIndex(people, 8, 4);
+        // ancestors were indexed along with the listed individuals
+        assertEquals(9, index.size());
+        assertTrue(index.contains(g2));
+
+        Relationship sib = index.relate(a, b);
+        assertEquals(0, sib.cousinDegree());
+        assertFalse(sib.isHalf());
+        assertEquals("sibling", sib.toString());
+        assertEquals("half sibling", index.relate(a, c).toString());
+        assertEquals("1st cousin", index.relate(a1, b1).toString());
+        assertEquals("1st cousin 1x removed", index.relate(a1, b2).toString());
+        assertEquals("1st cousin 1x removed", index.relate(b2, a1).toString());
+        assertEquals(2, index.relate(b2, a1).generationsB());
+        assertEquals("great-grandparent", index.relate(b2, g2).toString());
+        assertEquals("great-grandchild", index.relate(g1, b2).toString());
+        assertEquals("niece/nephew", index.relate(a, b1).toString());
+        assertEquals("aunt/uncle", index.relate(b1, a).toString());
+        assertEquals("self", index.relate(a, a).toString());
+        assertSame(Relationship.NONE, index.relate(a, other));
+
+        // a new great-grandparent joins other's line to g1's
+        IndividualNode root = person(gedcom, "@R@");
+        gedcom.linkFamily(gedcom.getRoot(), gedcom.getRoot().getReferencedNode("@F6@"),
+                          lines("HUSB", "@R@"), lines("CHIL", "@G1@", "@O@"));
+        index.addIndividual(root);
+        assertEquals("half niece/nephew", index.relate(other, a).toString());
+        assertEquals("half aunt/uncle", index.relate(a, other).toString());
+        assertEquals(4, index.relate(b2, root).generationsA());
+
+        // shallow ancestor sets do not reach far common ancestors
+        RelationshipIndex shallow = new RelationshipIndex(people, 1, 4);
+        assertFalse(shallow.relate(a1, b1).isRelated());
+        assertEquals("sibling", shallow.relate(a, b).toString());
+    }
+}
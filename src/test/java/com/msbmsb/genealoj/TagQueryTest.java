@@ -0,0 +1,175 @@
+/******************************************************************************
+* TagQueryTest
+* Simple junit test for tag path queries
+*
+* Author:       Mitchell Bowden <mitchellbowden AT gmail DOT com>
+* License:      MIT License: http://creativecommons.org/licenses/MIT/
+******************************************************************************/
+
+package com.msbmsb.genealoj;
+
+import com.msbmsb.genealoj.GedcomNode;
+import com.msbmsb.genealoj.GedcomReader;
+import com.msbmsb.genealoj.GenealoJ;
+import com.msbmsb.genealoj.ParseOptions;
+import com.msbmsb.genealoj.TagQuery;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for TagQuery.
+ */
+public class TagQueryTest
+    extends TestCase
+{
+    private static final String GEDCOM = "0 HEAD\n1 CHAR ASCII\n"
+        + "0 @I1@ INDI\n1 NAME Ann /A/\n1 BIRT\n2 DATE 1900\n2 PLAC Bern\n"
+        + "1 RESI\n2 PLAC Basel\n1 DEAT\n2 PLAC Chur\n3 MAP\n4 PLAC inner\n"
+        + "0 @I2@ INDI\n1 NAME Bo /B/\n1 BIRT\n2 PLAC Genf\n"
+        + "0 @F1@ FAM\n1 MARR\n2 DATE 1920\n2 PLAC Zug\n"
+        + "0 TRLR\n";
+
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public TagQueryTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( TagQueryTest.class );
+    }
+
+    /**
+     * Paths with tags, "*" and "**" find their nodes in document order
+     */
+    public void testPaths() throws Exception
+    {
+        GedcomNode root = parse();
+        assertEquals(Arrays.asList("Bern", "Genf"), data(new TagQuery("INDI/BIRT/PLAC"), root));
+        assertEquals(Arrays.asList("Bern", "Genf"), data(new TagQuery("INDI.BIRT.PLAC"), root));
+        assertEquals(Arrays.asList("Bern", "Basel", "Chur", "Genf", "Zug"),
+                     data(new TagQuery("*/*/PLAC"), root));
+        assertEquals(Arrays.asList("Bern", "Basel", "Chur", "inner", "Genf", "Zug"),
+                     data(new TagQuery("**/PLAC"), root));
+        assertEquals(Arrays.asList("1900", "1920"), data(new TagQuery("**/**/DATE"), root));
+        assertEquals(Arrays.asList("inner"), data(new TagQuery("INDI/**/MAP/PLAC"), root));
+        assertEquals(Arrays.asList("Chur", "inner"), data(new TagQuery("INDI/DEAT/**/PLAC"), root));
+        assertTrue(new TagQuery("INDI/BURI/PLAC").findAll(root).isEmpty());
+        assertEquals("Basel", new TagQuery("**/RESI/PLAC").first(root).data());
+
+        // relative to a record
+        GedcomNode ann = root.getReferencedNode("@I1@");
+        assertEquals(Arrays.asList("Bern"), data(new TagQuery("BIRT/PLAC"), ann));
+
+        try {
+          new TagQuery("INDI//PLAC");
+          fail("empty step");
+        } catch(IllegalArgumentException iae) {
+          // expected
+        }
+    }
+
+    /**
+     * Queries leave the tree as it was, including getDescendantsWithTag,
+     * which used to append to the node's own child lists
+     */
+    public void testNoMutation() throws Exception
+    {
+        GedcomNode root = parse();
+        String before = root.toString();
+        GedcomNode ann = root.getReferencedNode("@I1@");
+        assertEquals(4, ann.getDescendantsWithTag("PLAC").size());
+        assertEquals(4, ann.getDescendantsWithTag("PLAC").size());
+        assertTrue(ann.getDescendantsWithTag("BURI").isEmpty());
+        // a tag is not read as a path
+        assertTrue(root.getDescendantsWithTag("BIRT/PLAC").isEmpty());
+        assertEquals(6, Utils.getLocations(root).size());
+        assertEquals(before, root.toString());
+
+        Iterator<GedcomNode> places = new TagQuery("**/PLAC").iterator(root);
+        places.next();
+        try {
+          places.remove();
+          fail("remove through a query");
+        } catch(UnsupportedOperationException uoe) {
+          // expected
+        }
+    }
+
+    /**
+     * A parallel scan finds the same as a sequential one, in the same order
+     */
+    public void testParallel() throws Exception
+    {
+        StringBuilder sb = new StringBuilder("0 HEAD\n");
+        for(int i = 0; i < 500; i++) {
+          sb.append("0 @I").append(i).append("@ INDI\n1 BIRT\n2 PLAC P").append(i).append('\n');
+          if(i % 3 == 0) {
+            sb.append("1 NOTE n\n2 PLAC Q").append(i).append('\n');
+          }
+        }
+        sb.append("0 TRLR\n");
+        GedcomNode root = parse(sb.toString());
+        TagQuery query = new TagQuery("**/PLAC");
+        List<GedcomNode> sequential = query.findAll(root);
+        assertEquals(500 + 167, sequential.size());
+        assertEquals(sequential, query.findAll(root, 4));
+    }
+
+    /**
+     * On a lazy root records are read through the index
+     */
+    public void testLazy() throws Exception
+    {
+        File file = Fixtures.write(GEDCOM);
+        GenealoJ gedcom = new GenealoJ(file, new ParseOptions().lazy(1));
+        assertEquals(Arrays.asList("Bern", "Genf"),
+                     data(new TagQuery("INDI/BIRT/PLAC"), gedcom.getRoot()));
+        assertEquals(6, gedcom.getDescendants("PLAC").size());
+        assertEquals(6, new TagQuery("**/PLAC").findAll(gedcom.getRoot(), 2).size());
+        gedcom.close();
+    }
+
+    private static GedcomNode parse() throws Exception
+    {
+        return parse(GEDCOM);
+    }
+
+    private static GedcomNode parse(String text) throws Exception
+    {
+        GedcomReader reader = new GedcomReader(new BufferedReader(new StringReader(text)));
+        GedcomNode root = new GedcomNode(-1, "ROOT");
+        GedcomNode record;
+        while((record = reader.nextRecord()) != null) {
+          root.addChildNode(record);
+        }
+        return root;
+    }
+
+    private static List<String> data(TagQuery query, GedcomNode node)
+    {
+        List<String> data = new ArrayList<String>();
+        for(GedcomNode n : query.in(node)) {
+          data.add(n.data());
+        }
+        return data;
+    }
+}